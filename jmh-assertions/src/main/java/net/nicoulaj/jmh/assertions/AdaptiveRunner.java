@@ -0,0 +1,134 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import org.apache.commons.math3.distribution.TDistribution;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Runs benchmarks one fork at a time, until their results are statistically settled or a fork budget is exhausted.
+ * <p/>
+ * A result is settled when the relative half-width of its score confidence interval is under a target, or when the
+ * interval does not contain the threshold an assertion compares the score with, as the assertion outcome cannot
+ * change anymore. Settled benchmarks are excluded from the next forks.
+ * <p/>
+ * Iterations of the same fork share its JIT compilation and memory layout, so their spread underestimates the
+ * run-to-run variance: the confidence interval is computed from the per-fork mean scores, and results are not
+ * settled before they have at least two forks.
+ * <p/>
+ * JMH does not allow to stop a fork early, so forks are the adaptive unit: each fork runs the configured number of
+ * measurement iterations. The output of each fork is appended to the output file of the run, if any.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+final class AdaptiveRunner {
+
+    private AdaptiveRunner() {
+        // Static class
+    }
+
+    /**
+     * Confidence level of the score intervals, the same as JMH score errors.
+     */
+    private static final double CONFIDENCE = 0.999;
+
+    /**
+     * @param options          run options
+     * @param maxRelativeError target relative half-width of the score confidence interval
+     * @param maxForks         max number of forks of each benchmark
+     * @param threshold        score an assertion compares results with, {@link Double#NaN} if none
+     * @param step             runs a single fork of benchmarks
+     * @return run results, with all forks of each benchmark
+     */
+    static List<RunResult> run(final Options options,
+                               final double maxRelativeError,
+                               final int maxForks,
+                               final double threshold,
+                               final RunStep step) {
+        final List<Collection<RunResult>> runs = new ArrayList<>();
+        final Set<String> settled = new TreeSet<>();
+        List<RunResult> results = new ArrayList<>();
+        int forks = 0;
+        while (forks < maxForks) {
+            final ChainedOptionsBuilder fork = new OptionsBuilder().parent(options).forks(1);
+            if (forks > 0) fork.warmupForks(0);
+            for (String benchmark : settled)
+                fork.exclude("^" + Pattern.quote(benchmark) + "$");
+            runs.add(RunResults.step(fork.build(), forks == 0, step));
+            forks++;
+
+            results = RunResults.merge(runs);
+            final Set<String> unsettled = new LinkedHashSet<>();
+            for (RunResult result : results)
+                if (!isSettled(result, maxRelativeError, threshold))
+                    unsettled.add(result.getParams().getBenchmark());
+            for (RunResult result : results)
+                if (!unsettled.contains(result.getParams().getBenchmark()))
+                    settled.add(result.getParams().getBenchmark());
+
+            if (unsettled.isEmpty()) {
+                JMHAssertions.status(options, "# Adaptive run settled after " + forks + " fork(s)");
+                break;
+            }
+            if (forks == maxForks)
+                JMHAssertions.status(options, "# Adaptive run budget of " + maxForks + " fork(s) exhausted, unsettled benchmarks: " + unsettled);
+        }
+
+        RunResults.write(options, results);
+        return results;
+    }
+
+    /**
+     * @param result           result to check
+     * @param maxRelativeError target relative half-width of the score confidence interval
+     * @param threshold        score an assertion compares results with, {@link Double#NaN} if none
+     * @return whether more measurements would not change the result or an assertion outcome
+     */
+    static boolean isSettled(final RunResult result, final double maxRelativeError, final double threshold) {
+        final List<Double> means = new ArrayList<>();
+        for (BenchmarkResult fork : result.getBenchmarkResults())
+            means.add(fork.getPrimaryResult().getScore());
+        final int n = means.size();
+        if (n < 2) return false;
+
+        double score = 0;
+        for (double mean : means) score += mean;
+        score /= n;
+        double variance = 0;
+        for (double mean : means) variance += (mean - score) * (mean - score);
+        variance /= n - 1;
+
+        final double error = new TDistribution(n - 1).inverseCumulativeProbability(1 - (1 - CONFIDENCE) / 2) * Math.sqrt(variance / n);
+        if (Double.isNaN(error) || Double.isNaN(score)) return false;
+        if (error <= maxRelativeError * Math.abs(score)) return true;
+        return score - error > threshold || score + error < threshold;
+    }
+}
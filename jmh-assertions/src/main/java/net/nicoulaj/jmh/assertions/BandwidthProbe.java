@@ -0,0 +1,169 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import net.nicoulaj.jmh.profilers.AffinityUtils;
+import net.nicoulaj.jmh.profilers.CpuSet;
+import net.nicoulaj.jmh.profilers.ProcUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates memory bandwidth contention between concurrent streams, by comparing the read bandwidth of a
+ * single thread with the per-thread read bandwidth of one thread per CPU set streaming at the same time.
+ * <p/>
+ * Each stream thread pins itself to its CPU set, so that streams run where the forks would. Buffers are larger
+ * than the last level cache (and at least 64 MB), so that reads hit memory, and each stream reads its buffer
+ * once before measuring, so that the measured loop is compiled and the buffer pages are mapped. If a stream fails
+ * (eg: the heap cannot hold its buffer), the loss is unknown.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.ConcurrentRunner
+ */
+final class BandwidthProbe {
+
+    private static final long MIN_BUFFER_BYTES = 64L << 20;
+
+    private static final long WARMUP_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long DURATION_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private static volatile long sink;
+
+    private BandwidthProbe() {
+        // Static class
+    }
+
+    /**
+     * @param cpuSets CPU sets to run one stream on each, as <code>taskset</code> CPU lists
+     * @return per-stream bandwidth loss, in [0, 1], {@code 0} meaning no contention, {@link Double#NaN} if unknown
+     */
+    static double loss(final List<String> cpuSets) {
+        if (cpuSets.size() <= 1) return 0;
+        final int length = bufferLongs(cpuSets.size());
+        final double solo = measure(cpuSets.subList(0, 1), length);
+        if (!(solo > 0)) return Double.NaN;
+        final double concurrent = measure(cpuSets, length);
+        if (Double.isNaN(concurrent)) return Double.NaN;
+        return Math.max(0, 1 - concurrent / solo);
+    }
+
+    /**
+     * @return per-stream buffer length, larger than the last level cache if the heap allows it
+     */
+    private static int bufferLongs(final int streams) {
+        long cache = 0;
+        for (int index = 0; ; index++) {
+            final String size = ProcUtils.readString("/sys/devices/system/cpu/cpu0/cache/index" + index + "/size");
+            if (size == null) break;
+            cache = Math.max(cache, parseSize(size.trim()));
+        }
+        long bytes = Math.max(MIN_BUFFER_BYTES, 2 * cache);
+        bytes = Math.min(bytes, Runtime.getRuntime().maxMemory() / (2L * streams));
+        return (int) Math.min(Integer.MAX_VALUE - 8, bytes / 8);
+    }
+
+    /**
+     * @param size sysfs cache size, eg: <code>32768K</code>
+     * @return size in bytes, {@code 0} if it cannot be parsed
+     */
+    private static long parseSize(final String size) {
+        try {
+            if (size.endsWith("K")) return Long.parseLong(size.substring(0, size.length() - 1)) << 10;
+            if (size.endsWith("M")) return Long.parseLong(size.substring(0, size.length() - 1)) << 20;
+            return Long.parseLong(size);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return average per-stream bandwidth, in bytes per nanosecond, {@link Double#NaN} if a stream failed
+     */
+    private static double measure(final List<String> cpuSets, final int length) {
+        final int streams = cpuSets.size();
+        final double[] bandwidths = new double[streams];
+        Arrays.fill(bandwidths, Double.NaN);
+        final CountDownLatch ready = new CountDownLatch(streams);
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[streams];
+        for (int i = 0; i < streams; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    // A failed stream keeps a NaN bandwidth, it must not keep the others waiting
+                    final long[] buffer;
+                    try {
+                        AffinityUtils.setAffinity(AffinityUtils.currentThreadId(), CpuSet.parse(cpuSets.get(index)));
+                        buffer = new long[length];
+                        for (int j = 0; j < buffer.length; j++) buffer[j] = j;
+                        stream(buffer, WARMUP_NANOS);
+                    } catch (RuntimeException | OutOfMemoryError e) {
+                        return;
+                    } finally {
+                        ready.countDown();
+                    }
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    bandwidths[index] = stream(buffer, DURATION_NANOS);
+                }
+            }, "jmh-bandwidth-probe-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+
+        try {
+            ready.await();
+            start.countDown();
+            for (Thread thread : threads) thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Double.NaN;
+        }
+
+        double total = 0;
+        for (double bandwidth : bandwidths) total += bandwidth;
+        return total / streams;
+    }
+
+    /**
+     * @return read bandwidth, in bytes per nanosecond
+     */
+    private static double stream(final long[] buffer, final long duration) {
+        long sum = 0;
+        long bytes = 0;
+        final long begin = System.nanoTime();
+        long elapsed;
+        do {
+            for (long value : buffer) sum += value;
+            bytes += 8L * buffer.length;
+            elapsed = System.nanoTime() - begin;
+        } while (elapsed < duration);
+        sink += sum;
+        return (double) bytes / elapsed;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import net.nicoulaj.jmh.profilers.Json;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Benchmark results of a previous run, read from a JMH JSON result file (<code>-rf json</code>).
+ * <p/>
+ * Only the primary metric raw data is kept: the scores of the measurement iterations, by fork. For
+ * <code>SampleTime</code> benchmarks, the score of an iteration is the mean of its samples histogram.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+final class Baseline {
+
+    private final List<Entry> entries;
+
+    private Baseline(final List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * @param file JMH JSON result file
+     * @return baseline
+     * @throws AssertionError if the file cannot be read or is not a JMH JSON result file
+     */
+    static Baseline read(final Path file) {
+        final Object json;
+        try {
+            json = Json.parse(new String(Files.readAllBytes(file), UTF_8));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new AssertionError("Failed to read baseline " + file + ": " + e.getMessage(), e);
+        }
+
+        final List<Entry> entries = new ArrayList<>();
+        for (Object item : list(file, json, "results")) {
+            final Map<?, ?> result = map(file, item, "result");
+            final Map<?, ?> primary = map(file, result.get("primaryMetric"), "primaryMetric");
+            final Map<String, String> params = new LinkedHashMap<>();
+            if (result.get("params") != null)
+                for (Map.Entry<?, ?> param : map(file, result.get("params"), "params").entrySet())
+                    params.put(String.valueOf(param.getKey()), String.valueOf(param.getValue()));
+
+            final List<double[]> forks = new ArrayList<>();
+            if (primary.get("rawData") != null)
+                for (Object fork : list(file, primary.get("rawData"), "rawData")) {
+                    final List<Double> scores = new ArrayList<>();
+                    for (Object score : list(file, fork, "rawData fork"))
+                        if (score instanceof Double) scores.add((Double) score);
+                    if (!scores.isEmpty()) forks.add(toArray(scores));
+                }
+            if (primary.get("rawDataHistogram") != null)
+                for (Object fork : list(file, primary.get("rawDataHistogram"), "rawDataHistogram")) {
+                    final List<Double> scores = new ArrayList<>();
+                    for (Object iteration : list(file, fork, "rawDataHistogram fork")) {
+                        final double mean = histogramMean(file, list(file, iteration, "rawDataHistogram iteration"));
+                        if (!Double.isNaN(mean)) scores.add(mean);
+                    }
+                    if (!scores.isEmpty()) forks.add(toArray(scores));
+                }
+
+            entries.add(new Entry(String.valueOf(result.get("benchmark")),
+                                  String.valueOf(result.get("mode")),
+                                  params,
+                                  String.valueOf(primary.get("scoreUnit")),
+                                  forks.toArray(new double[forks.size()][])));
+        }
+        return new Baseline(entries);
+    }
+
+    private static double[] toArray(final List<Double> values) {
+        final double[] array = new double[values.size()];
+        for (int i = 0; i < array.length; i++) array[i] = values.get(i);
+        return array;
+    }
+
+    private static double histogramMean(final Path file, final List<?> histogram) {
+        double sum = 0;
+        double count = 0;
+        for (Object bucket : histogram) {
+            final List<?> pair = list(file, bucket, "histogram bucket");
+            if (pair.size() != 2 || !(pair.get(0) instanceof Double) || !(pair.get(1) instanceof Double))
+                throw malformed(file, "histogram bucket is not a [value, count] pair");
+            sum += (Double) pair.get(0) * (Double) pair.get(1);
+            count += (Double) pair.get(1);
+        }
+        return count > 0 ? sum / count : Double.NaN;
+    }
+
+    private static List<?> list(final Path file, final Object value, final String name) {
+        if (!(value instanceof List)) throw malformed(file, name + " is not an array");
+        return (List<?>) value;
+    }
+
+    private static Map<?, ?> map(final Path file, final Object value, final String name) {
+        if (!(value instanceof Map)) throw malformed(file, name + " is not an object");
+        return (Map<?, ?>) value;
+    }
+
+    private static AssertionError malformed(final Path file, final String reason) {
+        return new AssertionError("Baseline " + file + " is not a JMH JSON result file: " + reason);
+    }
+
+    /**
+     * @param params benchmark parameters of a result
+     * @return baseline entry with the same benchmark, mode and parameters, {@code null} if none
+     */
+    Entry find(final BenchmarkParams params) {
+        final Map<String, String> values = new LinkedHashMap<>();
+        for (String key : params.getParamsKeys()) values.put(key, params.getParam(key));
+        for (Entry entry : entries)
+            if (entry.benchmark.equals(params.getBenchmark())
+                && entry.mode.equals(params.getMode().shortLabel())
+                && entry.params.equals(values))
+                return entry;
+        return null;
+    }
+
+    /**
+     * A baseline benchmark result.
+     */
+    static final class Entry {
+
+        final String benchmark;
+
+        final String mode;
+
+        final Map<String, String> params;
+
+        final String unit;
+
+        /** Iteration scores, by fork. */
+        final double[][] forks;
+
+        Entry(final String benchmark, final String mode, final Map<String, String> params, final String unit, final double[][] forks) {
+            this.benchmark = benchmark;
+            this.mode = mode;
+            this.params = params;
+            this.unit = unit;
+            this.forks = forks;
+        }
+
+        @Override
+        public String toString() {
+            return params.isEmpty() ? benchmark : benchmark + " " + params;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.nicoulaj.jmh.assertions.Failures.describe;
+import static net.nicoulaj.jmh.assertions.Failures.fail;
+
+/**
+ * Default implementation of {@link net.nicoulaj.jmh.assertions.JMHBenchmarkAssert}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.JMHAssertions
+ */
+final class BenchmarkAssert implements JMHBenchmarkAssert {
+
+    private final RunResultsAssert runResultsAssert;
+
+    private final Collection<RunResult> runResults;
+
+    private final String name;
+
+    BenchmarkAssert(final RunResultsAssert runResultsAssert, final Collection<RunResult> runResults, final String name) {
+        this.runResultsAssert = runResultsAssert;
+        this.runResults = runResults;
+        this.name = name;
+        if (select(name).isEmpty())
+            throw new AssertionError("No result for benchmark " + name);
+    }
+
+    @Override
+    public JMHBenchmarkComparisonAssert isFasterThan(final String other) {
+        if (select(other).isEmpty())
+            throw new AssertionError("No result for benchmark " + other);
+        return new JMHBenchmarkComparisonAssert() {
+            @Override
+            public JMHRunResultsAssert byAtLeast(final double amount, final RelativeUnit unit) {
+                return byAtLeast(amount, unit, RunResultAssert.DEFAULT_CONFIDENCE);
+            }
+
+            @Override
+            public JMHRunResultsAssert byAtLeast(final double amount, final RelativeUnit unit, final double confidence) {
+                if (!(confidence > 0 && confidence < 1))
+                    throw new IllegalArgumentException("Confidence must be in ]0, 1[, got " + confidence);
+                return isFasterThan(other, unit.toRatio(amount), amount + " " + unit.name().toLowerCase(), confidence);
+            }
+        };
+    }
+
+    private JMHRunResultsAssert isFasterThan(final String other, final double ratio, final String description, final double confidence) {
+        final List<String> failures = new ArrayList<>();
+        int compared = 0;
+        for (RunResult result : select(name)) {
+            for (RunResult otherResult : select(other)) {
+                if (!matches(result.getParams(), otherResult.getParams())) continue;
+                compared++;
+
+                final double[][] forks = logSpeeds(result);
+                final double[][] otherForks = logSpeeds(otherResult);
+                final double[] speeds = RunResultAssert.flatten(forks);
+                final double[] otherSpeeds = RunResultAssert.flatten(otherForks);
+                if (speeds.length == 0 || otherSpeeds.length == 0)
+                    throw new AssertionError("No iteration score to compare " + describe(result.getParams())
+                                             + " with " + describe(otherResult.getParams()));
+
+                final boolean perFork = forks.length >= 2 && otherForks.length >= 2;
+                final double actual = Math.exp(perFork
+                                               ? RunResultAssert.lowerBound(RunResultAssert.means(forks), RunResultAssert.means(otherForks), confidence)
+                                               : RunResultAssert.lowerBound(speeds, otherSpeeds, confidence));
+                if (!(actual >= ratio))
+                    failures.add(describe(result.getParams()) + " is " + format(Math.exp(mean(speeds) - mean(otherSpeeds)))
+                                 + " times as fast as " + describe(otherResult.getParams())
+                                 + " (at least " + format(actual) + " with " + (100 * confidence) + "% confidence"
+                                 + (perFork ? "" : " within forks only") + ")");
+            }
+        }
+
+        if (compared == 0)
+            throw new AssertionError("No results of " + name + " and " + other + " with the same mode and parameters");
+        fail("Expected " + name + " faster than " + other + " by at least " + description, failures);
+        return runResultsAssert;
+    }
+
+    private List<RunResult> select(final String benchmark) {
+        final List<RunResult> selected = new ArrayList<>();
+        for (RunResult result : runResults) {
+            final String fullName = result.getParams().getBenchmark();
+            if (fullName.equals(benchmark) || fullName.endsWith("." + benchmark))
+                selected.add(result);
+        }
+        return selected;
+    }
+
+    /**
+     * Results match if they have the same mode and the same values for the parameters they both have,
+     * so that a benchmark without parameters is compared with each parameters combination of the other.
+     */
+    private static boolean matches(final BenchmarkParams params, final BenchmarkParams other) {
+        if (params.getMode() != other.getMode()) return false;
+        final Map<String, String> otherParameters = parameters(other);
+        for (Map.Entry<String, String> parameter : parameters(params).entrySet())
+            if (otherParameters.containsKey(parameter.getKey())
+                && !otherParameters.get(parameter.getKey()).equals(parameter.getValue()))
+                return false;
+        return true;
+    }
+
+    private static Map<String, String> parameters(final BenchmarkParams params) {
+        final Map<String, String> values = new LinkedHashMap<>();
+        for (String key : params.getParamsKeys())
+            values.put(key, params.getParam(key));
+        return values;
+    }
+
+    /**
+     * Speeds are compared on a log scale, where the ratio of two speeds is a difference of means,
+     * and the time per operation of non-throughput modes is the inverse of a speed.
+     *
+     * @return log of the operations per time unit of each measurement iteration, by fork, higher is faster
+     */
+    private static double[][] logSpeeds(final RunResult result) {
+        final double[][] forks = RunResultAssert.forkScores(result);
+        final double sign = result.getParams().getMode() == Mode.Throughput ? 1 : -1;
+        for (double[] scores : forks)
+            for (int i = 0; i < scores.length; i++)
+                scores[i] = sign * Math.log(scores[i]);
+        return forks;
+    }
+
+    private static double mean(final double[] values) {
+        double sum = 0;
+        for (double value : values) sum += value;
+        return sum / values.length;
+    }
+
+    private static String format(final double value) {
+        return String.format("%.2f", value);
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Hashes the bytecode of classes and of all the classes they reference, transitively.
+ * <p/>
+ * References are read from class files constant pools: class entries and type descriptors of fields, methods and
+ * signatures. Classes of the Java platform are skipped, the JVM version being expected to be hashed separately.
+ * Classes only reached by reflection (eg: {@link java.util.ServiceLoader} services), and resources, are not part of
+ * the closure: as a conservative fallback, the {@link #classpath() class path} content is hashed too, so that any
+ * change to the class path jars or directories invalidates the hash.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.ResultCache
+ */
+final class BytecodeClosure {
+
+    private static final Pattern DESCRIPTOR_TYPE = Pattern.compile("L([^;<>:.\\[]+)[;<]");
+
+    private final ClassLoader loader;
+
+    private final ClassLoader platform;
+
+    private final Map<String, ClassFile> classes = new HashMap<>();
+
+    private String classpath;
+
+    /**
+     * @param loader class loader to read class files from
+     */
+    BytecodeClosure(final ClassLoader loader) {
+        this.loader = loader;
+        ClassLoader platform = ClassLoader.getSystemClassLoader();
+        while (platform.getParent() != null) platform = platform.getParent();
+        this.platform = platform;
+    }
+
+    /**
+     * @param roots binary names of the root classes
+     * @return hex encoded SHA-256 of the bytecode of the classes reachable from {@code roots}
+     */
+    synchronized String hash(final Collection<String> roots) {
+        final SortedMap<String, byte[]> closure = new TreeMap<>();
+        final Deque<String> queue = new ArrayDeque<>(roots);
+        while (!queue.isEmpty()) {
+            final String name = queue.pop();
+            if (closure.containsKey(name)) continue;
+            final ClassFile file = load(name);
+            if (file == null) continue;
+            closure.put(name, file.digest);
+            queue.addAll(file.references);
+        }
+
+        final MessageDigest digest = sha256();
+        for (Map.Entry<String, byte[]> entry : closure.entrySet()) {
+            digest.update(entry.getKey().getBytes(UTF_8));
+            digest.update(entry.getValue());
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * @return hex encoded SHA-256 of the content of the <code>java.class.path</code> entries, including the entries
+     * of jar manifests <code>Class-Path</code> (eg: manifest-only jars of test runners)
+     */
+    synchronized String classpath() {
+        if (classpath == null) {
+            final List<Path> entries = new ArrayList<>();
+            for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator))
+                if (!entry.isEmpty()) entries.add(Paths.get(entry));
+            classpath = classpath(entries);
+        }
+        return classpath;
+    }
+
+    /**
+     * @param entries class path entries, jars or directories
+     * @return hex encoded SHA-256 of the content of the entries, and of the entries of their manifests
+     * <code>Class-Path</code>
+     */
+    static String classpath(final Collection<Path> entries) {
+        final MessageDigest digest = sha256();
+        final Set<Path> done = new HashSet<>();
+        final Deque<Path> queue = new ArrayDeque<>(entries);
+        while (!queue.isEmpty()) {
+            final Path entry = queue.pop().toAbsolutePath().normalize();
+            if (!done.add(entry)) continue;
+            digest.update(entry.getFileName() != null ? entry.getFileName().toString().getBytes(UTF_8) : new byte[0]);
+            try {
+                if (Files.isDirectory(entry)) {
+                    final SortedMap<String, Path> files = new TreeMap<>();
+                    final Path root = entry;
+                    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                            if (attributes.isRegularFile()) files.put(root.relativize(file).toString(), file);
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+                    for (Map.Entry<String, Path> file : files.entrySet()) {
+                        digest.update(file.getKey().getBytes(UTF_8));
+                        digest.update(sha256().digest(Files.readAllBytes(file.getValue())));
+                    }
+                } else if (Files.isRegularFile(entry)) {
+                    queue.addAll(jar(entry, digest));
+                }
+            } catch (IOException | RuntimeException e) {
+                // Unreadable entries are hashed as missing
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * Hash the content of a jar, ignoring the archive metadata (eg: timestamps), so that rebuilding a jar or a
+     * manifest-only jar does not change the hash.
+     *
+     * @param jar    jar to hash
+     * @param digest digest to update
+     * @return entries of the jar manifest <code>Class-Path</code>
+     * @throws IOException if the jar cannot be read
+     */
+    private static List<Path> jar(final Path jar, final MessageDigest digest) throws IOException {
+        final List<Path> entries = new ArrayList<>();
+        try (JarFile file = new JarFile(jar.toFile())) {
+            final SortedMap<String, JarEntry> files = new TreeMap<>();
+            for (Enumeration<JarEntry> it = file.entries(); it.hasMoreElements(); ) {
+                final JarEntry entry = it.nextElement();
+                if (!entry.isDirectory()) files.put(entry.getName(), entry);
+            }
+            for (Map.Entry<String, JarEntry> entry : files.entrySet()) {
+                digest.update(entry.getKey().getBytes(UTF_8));
+                try (InputStream in = file.getInputStream(entry.getValue())) {
+                    digest.update(sha256().digest(read(in)));
+                }
+            }
+
+            final Manifest manifest = file.getManifest();
+            final String value = manifest != null ? manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) : null;
+            if (value != null)
+                for (String url : value.trim().split("\\s+"))
+                    if (!url.isEmpty()) entries.add(Paths.get(jar.toUri().resolve(url)));
+        }
+        return entries;
+    }
+
+    /**
+     * @return class file, {@code null} if it is a platform class or cannot be read
+     */
+    private ClassFile load(final String name) {
+        if (classes.containsKey(name)) return classes.get(name);
+        final String resource = name.replace('.', '/') + ".class";
+        ClassFile file = null;
+        if (platform.getResource(resource) == null) {
+            try (InputStream in = loader.getResourceAsStream(resource)) {
+                if (in != null) {
+                    final byte[] bytes = read(in);
+                    file = new ClassFile(sha256().digest(bytes), references(bytes));
+                }
+            } catch (IOException | RuntimeException e) {
+                // Unreadable or malformed class files are left out of the closure
+            }
+        }
+        classes.put(name, file);
+        return file;
+    }
+
+    /**
+     * @param bytes class file
+     * @return binary names of the classes referenced by the class file constant pool
+     * @throws IOException if the class file is malformed
+     */
+    static Set<String> references(final byte[] bytes) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != 0xCAFEBABE) throw new IOException("Not a class file");
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        final int count = in.readUnsignedShort();
+        final String[] utf8 = new String[count];
+        final int[] classNames = new int[count];
+        int classes = 0;
+        for (int i = 1; i < count; i++) {
+            final int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1:
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7:
+                    classNames[classes++] = in.readUnsignedShort();
+                    break;
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    in.skipBytes(2);
+                    break;
+                case 15:
+                    in.skipBytes(3);
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    in.skipBytes(4);
+                    break;
+                case 5:
+                case 6:
+                    in.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        final Set<String> references = new TreeSet<>();
+        for (int i = 0; i < classes; i++) {
+            final String name = utf8[classNames[i]];
+            if (name == null) continue;
+            if (name.startsWith("[")) addDescriptorTypes(name, references);
+            else references.add(name.replace('/', '.'));
+        }
+        for (String value : utf8)
+            if (value != null && value.indexOf(';') > 0)
+                addDescriptorTypes(value, references);
+        return references;
+    }
+
+    private static void addDescriptorTypes(final String descriptor, final Set<String> references) {
+        final Matcher matcher = DESCRIPTOR_TYPE.matcher(descriptor);
+        while (matcher.find())
+            references.add(matcher.group(1).replace('/', '.'));
+    }
+
+    private static byte[] read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        for (int read; (read = in.read(buffer)) >= 0; )
+            out.write(buffer, 0, read);
+        return out.toByteArray();
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String hex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : bytes)
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    private static final class ClassFile {
+
+        final byte[] digest;
+
+        final Set<String> references;
+
+        ClassFile(final byte[] digest, final Set<String> references) {
+            this.digest = digest;
+            this.references = references;
+        }
+    }
+}
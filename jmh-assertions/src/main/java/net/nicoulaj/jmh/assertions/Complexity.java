@@ -0,0 +1,163 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+/**
+ * Algorithmic complexity classes, from the cheapest to the most expensive.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.JMHComplexityAssert
+ */
+public enum Complexity {
+
+    CONSTANT("O(1)") {
+        @Override
+        double apply(final double n) {
+            return 1;
+        }
+    },
+
+    LOGARITHMIC("O(log n)") {
+        @Override
+        double apply(final double n) {
+            return Math.log(n);
+        }
+    },
+
+    LINEAR("O(n)") {
+        @Override
+        double apply(final double n) {
+            return n;
+        }
+    },
+
+    LINEARITHMIC("O(n log n)") {
+        @Override
+        double apply(final double n) {
+            return n * Math.log(n);
+        }
+    },
+
+    QUADRATIC("O(n^2)") {
+        @Override
+        double apply(final double n) {
+            return n * n;
+        }
+    };
+
+    /**
+     * Akaike information criterion difference under which fits are considered equivalent.
+     */
+    private static final double CRITERION_MARGIN = 2;
+
+    private final String notation;
+
+    Complexity(final String notation) {
+        this.notation = notation;
+    }
+
+    /**
+     * @param n input size
+     * @return cost for this size, up to a constant factor
+     */
+    abstract double apply(double n);
+
+    /**
+     * Find the complexity class that best fits measured costs.
+     * <p/>
+     * Each class is fitted as <code>cost = a + b·f(n)</code> with <code>b &ge; 0</code>, the intercept
+     * absorbing the fixed cost of a benchmark invocation. The intercept is not constrained to be positive: short
+     * invocations may overlap with the benchmark loop, and a class that can only bend up to fit such costs would
+     * lose to the next more expensive class. Residuals are relative to the measured costs, so that large sizes do
+     * not dominate the fit. Classes are ranked by Akaike information criterion, so that the
+     * extra coefficient of a growing class is not enough to beat {@link #CONSTANT} on noise alone, and the cheapest
+     * class whose criterion is within 2 of the best one is selected: a more expensive class must improve the fit
+     * by a real margin, not by the noise between neighbour classes (eg: {@link #LINEAR} and {@link #LINEARITHMIC}).
+     *
+     * @param sizes input sizes, at least 3 distinct ones
+     * @param costs cost for each size
+     * @return best fitting complexity class
+     * @throws IllegalArgumentException if there are less than 3 distinct sizes
+     */
+    static Complexity bestFit(final double[] sizes, final double[] costs) {
+        int distinct = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            boolean seen = false;
+            for (int j = 0; j < i; j++) seen |= sizes[j] == sizes[i];
+            if (!seen) distinct++;
+        }
+        if (distinct < 3)
+            throw new IllegalArgumentException("Complexity fit requires at least 3 distinct sizes, got " + distinct);
+
+        final Complexity[] complexities = values();
+        final double[] criteria = new double[complexities.length];
+        double bestCriterion = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < complexities.length; i++) {
+            criteria[i] = complexities[i].criterion(sizes, costs);
+            bestCriterion = Math.min(bestCriterion, criteria[i]);
+        }
+        for (int i = 0; i < complexities.length; i++)
+            if (criteria[i] <= bestCriterion + CRITERION_MARGIN) return complexities[i];
+        return complexities[complexities.length - 1];
+    }
+
+    private double criterion(final double[] sizes, final double[] costs) {
+        double sw = 0, swf = 0, swff = 0, swt = 0, swft = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            final double w = 1 / (costs[i] * costs[i]);
+            final double f = apply(sizes[i]);
+            sw += w;
+            swf += w * f;
+            swff += w * f * f;
+            swt += w * costs[i];
+            swft += w * f * costs[i];
+        }
+
+        // Weighted least squares, keeping the single term fits if better once the extra coefficient is accounted for
+        double criterion = criterion(sizes, costs, swt / sw, 0, 1);
+        if (this != CONSTANT) {
+            criterion = Math.min(criterion, criterion(sizes, costs, 0, Math.max(swft / swff, 0), 1));
+            final double determinant = sw * swff - swf * swf;
+            if (determinant > 0) {
+                final double a = (swff * swt - swf * swft) / determinant;
+                final double b = (sw * swft - swf * swt) / determinant;
+                if (b >= 0) criterion = Math.min(criterion, criterion(sizes, costs, a, b, 2));
+            }
+        }
+        return criterion;
+    }
+
+    private double criterion(final double[] sizes, final double[] costs, final double a, final double b, final int parameters) {
+        return sizes.length * Math.log(squares(sizes, costs, a, b) / sizes.length) + 2 * parameters;
+    }
+
+    private double squares(final double[] sizes, final double[] costs, final double a, final double b) {
+        double sum = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            final double error = (costs[i] - a - b * apply(sizes[i])) / costs[i];
+            sum += error * error;
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return notation;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.RunResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static net.nicoulaj.jmh.assertions.Failures.describe;
+import static net.nicoulaj.jmh.assertions.Failures.fail;
+
+/**
+ * Default implementation of {@link net.nicoulaj.jmh.assertions.JMHComplexityAssert}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.JMHAssertions
+ */
+final class ComplexityAssert implements JMHComplexityAssert {
+
+    private final String param;
+
+    private final Map<String, Map<Double, Double>> costs;
+
+    private final Map<String, List<double[]>> samples;
+
+    private final Map<String, Complexity> fits;
+
+    ComplexityAssert(final Collection<RunResult> runResults, final String param) {
+        this.param = param;
+        costs = new LinkedHashMap<>();
+        samples = new LinkedHashMap<>();
+        for (RunResult result : runResults) {
+            final String size = result.getParams().getParam(param);
+            if (size == null)
+                throw new AssertionError("No " + param + " parameter for " + result.getParams().getBenchmark());
+            final double value;
+            try {
+                value = Double.parseDouble(size);
+            } catch (NumberFormatException e) {
+                throw new AssertionError("Parameter " + param + " of " + result.getParams().getBenchmark() + " is not a number: " + size);
+            }
+            final String key = describe(result.getParams(), param);
+            if (!costs.containsKey(key)) {
+                costs.put(key, new TreeMap<Double, Double>());
+                samples.put(key, new ArrayList<double[]>());
+            }
+            costs.get(key).put(value, cost(result.getParams().getMode(), result.getPrimaryResult().getScore()));
+            for (double score : RunResultAssert.means(RunResultAssert.forkScores(result)))
+                samples.get(key).add(new double[]{value, cost(result.getParams().getMode(), score)});
+        }
+
+        // Fit the per-fork costs rather than their means, so that the fit criterion accounts for the run-to-run noise
+        fits = new LinkedHashMap<>();
+        for (Map.Entry<String, List<double[]>> entry : samples.entrySet()) {
+            final double[] sizes = new double[entry.getValue().size()];
+            final double[] values = new double[sizes.length];
+            int i = 0;
+            for (double[] point : entry.getValue()) {
+                sizes[i] = point[0];
+                values[i++] = point[1];
+            }
+            try {
+                fits.put(entry.getKey(), Complexity.bestFit(sizes, values));
+            } catch (IllegalArgumentException e) {
+                throw new AssertionError("Failed to fit complexity of " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public JMHComplexityAssert hasComplexity(final Complexity expected) {
+        final List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Complexity> fit : fits.entrySet())
+            if (fit.getValue() != expected)
+                failures.add(fit.getKey() + " is " + fit.getValue() + " " + costs.get(fit.getKey()));
+        fail("Expected complexity " + expected + " over " + param, failures);
+        return this;
+    }
+
+    @Override
+    public JMHComplexityAssert hasComplexityAtMost(final Complexity max) {
+        final List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Complexity> fit : fits.entrySet())
+            if (fit.getValue().compareTo(max) > 0)
+                failures.add(fit.getKey() + " is " + fit.getValue() + " " + costs.get(fit.getKey()));
+        fail("Expected complexity at most " + max + " over " + param, failures);
+        return this;
+    }
+
+    /**
+     * @return time per operation, in the score time unit
+     */
+    private static double cost(final Mode mode, final double score) {
+        if (mode == Mode.Throughput) return 1 / score;
+        return score;
+    }
+}
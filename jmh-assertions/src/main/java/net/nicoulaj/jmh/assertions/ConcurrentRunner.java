@@ -0,0 +1,249 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.BenchmarkList;
+import org.openjdk.jmh.runner.BenchmarkListEntry;
+import org.openjdk.jmh.runner.Defaults;
+import org.openjdk.jmh.runner.format.OutputFormatFactory;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.openjdk.jmh.util.Utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Runs independent benchmark forks concurrently, each pinned with <code>taskset</code> to its own set of
+ * physical cores.
+ * <p/>
+ * Every fork of every benchmark is run by its own JMH {@link org.openjdk.jmh.runner.Runner}, whose forked JVM is
+ * launched through a wrapper script pinning it to a free CPU set. Results of the forks of a benchmark are merged
+ * back, so assertions see the same results as a serial run.
+ * <p/>
+ * Before running concurrently, the memory bandwidth contention between as many streams as CPU sets is measured,
+ * and the number of concurrent forks is halved until the per-stream bandwidth loss is under a threshold, as
+ * forks sharing saturated memory channels would skew each other's results.
+ * <p/>
+ * The run falls back to serial execution if:
+ * <ul>
+ * <li>the host JVM is not started with <code>-Djmh.ignoreLock=true</code>, as JMH otherwise forbids concurrent runs,</li>
+ * <li><code>taskset</code> is not available,</li>
+ * <li>there are not enough cores for at least two CPU sets,</li>
+ * <li>running two forks concurrently loses too much memory bandwidth, or the loss could not be measured,</li>
+ * <li>some benchmarks run without forking.</li>
+ * </ul>
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+final class ConcurrentRunner {
+
+    private ConcurrentRunner() {
+        // Static class
+    }
+
+    /**
+     * @param options          run options
+     * @param coresPerFork     number of physical cores each fork is pinned to
+     * @param maxBandwidthLoss max per-stream memory bandwidth loss between concurrent forks, in [0, 1]
+     * @return run results
+     */
+    static Collection<RunResult> run(final Options options, final int coresPerFork, final double maxBandwidthLoss) {
+        if (!Boolean.getBoolean("jmh.ignoreLock"))
+            return serial(options, "the JVM must be started with -Djmh.ignoreLock=true");
+        if (!isTasksetAvailable())
+            return serial(options, "taskset is not available");
+
+        List<String> cpuSets = CpuPartition.detect(coresPerFork);
+        if (cpuSets.size() < 2)
+            return serial(options, "not enough cores for " + coresPerFork + " cores per fork");
+        int concurrency = cpuSets.size();
+        while (concurrency > 1) {
+            final double loss = BandwidthProbe.loss(cpuSets.subList(0, concurrency));
+            if (Double.isNaN(loss))
+                return serial(options, "memory bandwidth contention could not be measured");
+            if (loss <= maxBandwidthLoss) break;
+            concurrency /= 2;
+        }
+        if (concurrency < 2)
+            return serial(options, "memory bandwidth contention");
+        if (concurrency < cpuSets.size())
+            JMHAssertions.status(options, "# Concurrent forks limited to " + concurrency + " by memory bandwidth contention");
+        cpuSets = cpuSets.subList(0, concurrency);
+
+        return run(options, cpuSets);
+    }
+
+    /**
+     * Fall back to serial execution.
+     *
+     * @param options run options
+     * @param reason  why forks are not run concurrently
+     * @return run results
+     */
+    private static Collection<RunResult> serial(final Options options, final String reason) {
+        // JMH truncates the output file, print the reason once it is done
+        final Collection<RunResult> results = JMHAssertions.run(options);
+        JMHAssertions.status(options, "# Concurrent forks disabled: " + reason);
+        return results;
+    }
+
+    /**
+     * @param options run options
+     * @param cpuSets disjoint CPU sets, as <code>taskset</code> CPU lists
+     * @return run results
+     */
+    static Collection<RunResult> run(final Options options, final List<String> cpuSets) {
+        final List<Fork> forks = new ArrayList<>();
+        final BenchmarkList benchmarks = BenchmarkList.defaultList();
+        final Map<String, BenchmarkListEntry> entries = new LinkedHashMap<>();
+        for (BenchmarkListEntry entry : benchmarks.find(OutputFormatFactory.createFormatInstance(System.out, VerboseMode.SILENT),
+                                                        options.getIncludes(),
+                                                        options.getExcludes()))
+            if (!entries.containsKey(entry.getUsername())) entries.put(entry.getUsername(), entry);
+        for (BenchmarkListEntry entry : entries.values()) {
+            final int count = options.getForkCount().orElse(entry.getForks().orElse(Defaults.MEASUREMENT_FORKS));
+            if (count <= 0)
+                return serial(options, entry.getUsername() + " runs without forking");
+            for (int i = 0; i < count; i++)
+                forks.add(new Fork(entry, i));
+        }
+
+        final BlockingQueue<String> free = new LinkedBlockingQueue<>(cpuSets);
+        final Map<String, String> launchers = new HashMap<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(cpuSets.size());
+        try (OutputStream out = options.getOutput().hasValue() ? new FileOutputStream(options.getOutput().get(), true) : null) {
+            OutputFormatFactory.createFormatInstance(out != null ? new PrintStream(out, true) : System.out,
+                                                     options.verbosity().orElse(Defaults.VERBOSITY))
+                    .println("# Running " + forks.size() + " forks concurrently on CPU sets " + cpuSets);
+            final List<Future<Collection<RunResult>>> futures = new ArrayList<>();
+            for (final Fork fork : forks) {
+                futures.add(executor.submit(new Callable<Collection<RunResult>>() {
+                    @Override
+                    public Collection<RunResult> call() throws Exception {
+                        final String cpuSet = free.take();
+                        try {
+                            return fork.run(options, launcher(launchers, cpuSet, fork.jvm(options)), out != null ? out : System.out);
+                        } finally {
+                            free.put(cpuSet);
+                        }
+                    }
+                }));
+            }
+
+            final List<Collection<RunResult>> runs = new ArrayList<>();
+            for (Future<Collection<RunResult>> future : futures)
+                runs.add(future.get());
+            final List<RunResult> results = RunResults.merge(runs);
+            RunResults.write(options, results);
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AssertionError) throw (AssertionError) e.getCause();
+            throw new AssertionError(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static synchronized String launcher(final Map<String, String> launchers, final String cpuSet, final String jvm) throws IOException {
+        final String key = cpuSet + '\u0000' + jvm;
+        if (!launchers.containsKey(key)) {
+            final Path script = Files.createTempFile("jmh-taskset-", ".sh");
+            Files.write(script, ("#!/bin/sh\nexec taskset -c " + cpuSet + " '" + jvm.replace("'", "'\\''") + "' \"$@\"\n").getBytes(UTF_8));
+            script.toFile().setExecutable(true);
+            script.toFile().deleteOnExit();
+            launchers.put(key, script.toString());
+        }
+        return launchers.get(key);
+    }
+
+    private static boolean isTasksetAvailable() {
+        final String path = System.getenv("PATH");
+        if (path == null) return false;
+        for (String dir : path.split(File.pathSeparator))
+            if (new File(dir, "taskset").canExecute()) return true;
+        return false;
+    }
+
+    /**
+     * A single fork of a benchmark.
+     */
+    private static final class Fork {
+
+        private final BenchmarkListEntry entry;
+
+        private final int index;
+
+        Fork(final BenchmarkListEntry entry, final int index) {
+            this.entry = entry;
+            this.index = index;
+        }
+
+        String jvm(final Options options) {
+            return options.getJvm().orElse(entry.getJvm().orElse(Utils.getCurrentJvm()));
+        }
+
+        Collection<RunResult> run(final Options options, final String launcher, final OutputStream out) throws IOException {
+            final Path output = Files.createTempFile("jmh-fork-", ".log");
+            final Path result = Files.createTempFile("jmh-fork-", ".result");
+            try {
+                return JMHAssertions.run(new ForkOptions(options,
+                                                         "^" + Pattern.quote(entry.getUsername()) + "$",
+                                                         index == 0,
+                                                         launcher,
+                                                         output.toString(),
+                                                         result.toString()));
+            } finally {
+                synchronized (ConcurrentRunner.class) {
+                    Files.copy(output, out);
+                    out.flush();
+                }
+                Files.deleteIfExists(output);
+                Files.deleteIfExists(result);
+            }
+        }
+    }
+}
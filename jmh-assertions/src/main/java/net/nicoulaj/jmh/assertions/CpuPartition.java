@@ -0,0 +1,128 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Partitions the CPUs the host JVM is allowed to run on into disjoint sets of whole physical cores,
+ * as exposed by Linux procfs and sysfs.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.ConcurrentRunner
+ */
+final class CpuPartition {
+
+    private CpuPartition() {
+        // Static class
+    }
+
+    /**
+     * @param coresPerSet number of physical cores in each set
+     * @return CPU sets, as <code>taskset</code> CPU lists (eg: <code>2,3,10,11</code>)
+     */
+    static List<String> detect(final int coresPerSet) {
+        return partition(cores(), coresPerSet);
+    }
+
+    /**
+     * Split cores into consecutive sets of {@code coresPerSet} cores. Unless all cores make a single set, the first
+     * one is left to the host JVM and the operating system, so that they do not compete with the forks.
+     *
+     * @param cores       CPUs of each physical core
+     * @param coresPerSet number of physical cores in each set
+     * @return CPU sets, as <code>taskset</code> CPU lists
+     */
+    static List<String> partition(final List<? extends Set<Integer>> cores, final int coresPerSet) {
+        if (coresPerSet < 1)
+            throw new IllegalArgumentException("Cores per set must be positive, got " + coresPerSet);
+
+        final int first = cores.size() > coresPerSet ? 1 : 0;
+        final List<String> sets = new ArrayList<>();
+        for (int start = first; start + coresPerSet <= cores.size(); start += coresPerSet) {
+            final StringBuilder set = new StringBuilder();
+            for (Set<Integer> core : cores.subList(start, start + coresPerSet))
+                for (int cpu : core)
+                    set.append(set.length() > 0 ? "," : "").append(cpu);
+            sets.add(set.toString());
+        }
+        return sets;
+    }
+
+    /**
+     * @return CPUs of each physical core the host JVM is allowed to run on
+     */
+    static List<Set<Integer>> cores() {
+        Set<Integer> allowed = null;
+        for (String line : lines(Paths.get("/proc/self/status")))
+            if (line.startsWith("Cpus_allowed_list:"))
+                allowed = parse(line.substring("Cpus_allowed_list:".length()));
+        if (allowed == null || allowed.isEmpty()) {
+            allowed = new TreeSet<>();
+            for (int cpu = 0; cpu < Runtime.getRuntime().availableProcessors(); cpu++) allowed.add(cpu);
+        }
+
+        final Map<Integer, Set<Integer>> cores = new LinkedHashMap<>();
+        for (int cpu : allowed) {
+            final List<String> siblings = lines(Paths.get("/sys/devices/system/cpu/cpu" + cpu + "/topology/thread_siblings_list"));
+            final Set<Integer> core = new TreeSet<>(siblings.isEmpty() ? Collections.singleton(cpu) : parse(siblings.get(0)));
+            core.retainAll(allowed);
+            core.add(cpu);
+            final int id = core.iterator().next();
+            if (!cores.containsKey(id)) cores.put(id, core);
+        }
+        return new ArrayList<>(cores.values());
+    }
+
+    /**
+     * @param list CPU list, eg: <code>0-3,8,10-11</code>
+     * @return CPU indexes
+     */
+    static Set<Integer> parse(final String list) {
+        final Set<Integer> cpus = new TreeSet<>();
+        for (String range : list.trim().split(",")) {
+            if (range.trim().isEmpty()) continue;
+            final String[] bounds = range.trim().split("-");
+            final int from = Integer.parseInt(bounds[0]);
+            final int to = bounds.length > 1 ? Integer.parseInt(bounds[1]) : from;
+            for (int cpu = from; cpu <= to; cpu++) cpus.add(cpu);
+        }
+        return cpus;
+    }
+
+    private static List<String> lines(final Path path) {
+        try {
+            return Files.readAllLines(path, UTF_8);
+        } catch (IOException | SecurityException e) {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.util.List;
+
+/**
+ * Helpers for building assertion failure messages.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+final class Failures {
+
+    private Failures() {
+    }
+
+    /**
+     * @param expectation expectation description, eg: <code>Expected ... less than 1</code>
+     * @param failures    one description per result not meeting the expectation
+     * @throws AssertionError listing the failures, if any
+     */
+    static void fail(final String expectation, final List<String> failures) {
+        if (failures.isEmpty()) return;
+        final StringBuilder message = new StringBuilder(expectation).append(':');
+        for (String failure : failures)
+            message.append("\n  ").append(failure);
+        throw new AssertionError(message.toString());
+    }
+
+    /**
+     * @return benchmark name, mode and parameters, eg: <code>com.acme.Benchmark.method (thrpt, size=10)</code>
+     */
+    static String describe(final BenchmarkParams params) {
+        return describe(params, null);
+    }
+
+    /**
+     * @param excluded parameter left out of the description, {@code null} for none
+     * @return benchmark name, mode and parameters other than the excluded one
+     */
+    static String describe(final BenchmarkParams params, final String excluded) {
+        final StringBuilder description = new StringBuilder(params.getBenchmark()).append(" (").append(params.getMode().shortLabel());
+        for (String key : params.getParamsKeys())
+            if (!key.equals(excluded))
+                description.append(", ").append(key).append('=').append(params.getParam(key));
+        return description.append(')').toString();
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.openjdk.jmh.runner.options.WarmupMode;
+import org.openjdk.jmh.util.Optional;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Options of a single fork of a single benchmark, run by {@link net.nicoulaj.jmh.assertions.ConcurrentRunner}.
+ * <p/>
+ * {@link org.openjdk.jmh.runner.options.OptionsBuilder#parent(Options)} merges includes with the parent ones,
+ * so this delegates to the run options instead.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+final class ForkOptions implements Options {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Options options;
+
+    private final String include;
+
+    private final boolean warmupForks;
+
+    private final String jvm;
+
+    private final String output;
+
+    private final String result;
+
+    /**
+     * @param options     run options
+     * @param include     benchmark include regex
+     * @param warmupForks whether to run the warmup forks of the benchmark
+     * @param jvm         JVM launcher
+     * @param output      output file
+     * @param result      result file
+     */
+    ForkOptions(final Options options, final String include, final boolean warmupForks, final String jvm, final String output, final String result) {
+        this.options = options;
+        this.include = include;
+        this.warmupForks = warmupForks;
+        this.jvm = jvm;
+        this.output = output;
+        this.result = result;
+    }
+
+    @Override
+    public List<String> getIncludes() {
+        return Collections.singletonList(include);
+    }
+
+    @Override
+    public List<String> getExcludes() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Optional<String> getOutput() {
+        return Optional.of(output);
+    }
+
+    @Override
+    public Optional<ResultFormatType> getResultFormat() {
+        return options.getResultFormat();
+    }
+
+    @Override
+    public Optional<String> getResult() {
+        return Optional.of(result);
+    }
+
+    @Override
+    public Optional<Boolean> shouldDoGC() {
+        return options.shouldDoGC();
+    }
+
+    @Override
+    public List<ProfilerConfig> getProfilers() {
+        return options.getProfilers();
+    }
+
+    @Override
+    public Optional<VerboseMode> verbosity() {
+        return options.verbosity();
+    }
+
+    @Override
+    public Optional<Boolean> shouldFailOnError() {
+        return options.shouldFailOnError();
+    }
+
+    @Override
+    public Optional<Integer> getThreads() {
+        return options.getThreads();
+    }
+
+    @Override
+    public Optional<int[]> getThreadGroups() {
+        return options.getThreadGroups();
+    }
+
+    @Override
+    public Optional<Boolean> shouldSyncIterations() {
+        return options.shouldSyncIterations();
+    }
+
+    @Override
+    public Optional<Integer> getWarmupIterations() {
+        return options.getWarmupIterations();
+    }
+
+    @Override
+    public Optional<TimeValue> getWarmupTime() {
+        return options.getWarmupTime();
+    }
+
+    @Override
+    public Optional<Integer> getWarmupBatchSize() {
+        return options.getWarmupBatchSize();
+    }
+
+    @Override
+    public Optional<WarmupMode> getWarmupMode() {
+        return options.getWarmupMode();
+    }
+
+    @Override
+    public List<String> getWarmupIncludes() {
+        return options.getWarmupIncludes();
+    }
+
+    @Override
+    public Optional<Integer> getMeasurementIterations() {
+        return options.getMeasurementIterations();
+    }
+
+    @Override
+    public Optional<TimeValue> getMeasurementTime() {
+        return options.getMeasurementTime();
+    }
+
+    @Override
+    public Optional<Integer> getMeasurementBatchSize() {
+        return options.getMeasurementBatchSize();
+    }
+
+    @Override
+    public Collection<Mode> getBenchModes() {
+        return options.getBenchModes();
+    }
+
+    @Override
+    public Optional<TimeUnit> getTimeUnit() {
+        return options.getTimeUnit();
+    }
+
+    @Override
+    public Optional<Integer> getOperationsPerInvocation() {
+        return options.getOperationsPerInvocation();
+    }
+
+    @Override
+    public Optional<Integer> getForkCount() {
+        return Optional.of(1);
+    }
+
+    @Override
+    public Optional<Integer> getWarmupForkCount() {
+        return warmupForks ? options.getWarmupForkCount() : Optional.of(0);
+    }
+
+    @Override
+    public Optional<String> getJvm() {
+        return Optional.of(jvm);
+    }
+
+    @Override
+    public Optional<Collection<String>> getJvmArgs() {
+        return options.getJvmArgs();
+    }
+
+    @Override
+    public Optional<Collection<String>> getJvmArgsAppend() {
+        return options.getJvmArgsAppend();
+    }
+
+    @Override
+    public Optional<Collection<String>> getJvmArgsPrepend() {
+        return options.getJvmArgsPrepend();
+    }
+
+    @Override
+    public Optional<Collection<String>> getParameter(final String name) {
+        return options.getParameter(name);
+    }
+
+    @Override
+    public Optional<TimeValue> getTimeout() {
+        return options.getTimeout();
+    }
+}
@@ -19,10 +19,15 @@
 package net.nicoulaj.jmh.assertions;
 
 import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Defaults;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.format.OutputFormatFactory;
 import org.openjdk.jmh.runner.options.Options;
 
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
 import java.util.Collection;
 
 /**
@@ -52,11 +57,30 @@ public final class JMHAssertions {
         return new RunResultAssert(result);
     }
 
-    private static Collection<RunResult> run(Options options) {
+    static Collection<RunResult> run(Options options) {
         try {
             return new Runner(options).run();
         } catch (RunnerException e) {
             throw new AssertionError(e);
         }
     }
+
+    /**
+     * Print a status line of a run like JMH prints its own: appended to the run output file if any, else to the
+     * standard output, and not at all if the run is silent.
+     *
+     * @param options run options
+     * @param line    status line
+     */
+    static void status(final Options options, final String line) {
+        if (!options.getOutput().hasValue()) {
+            OutputFormatFactory.createFormatInstance(System.out, options.verbosity().orElse(Defaults.VERBOSITY)).println(line);
+            return;
+        }
+        try (PrintStream out = new PrintStream(new FileOutputStream(options.getOutput().get(), true))) {
+            OutputFormatFactory.createFormatInstance(out, options.verbosity().orElse(Defaults.VERBOSITY)).println(line);
+        } catch (FileNotFoundException e) {
+            // Status lines are informational, JMH reports the output file error itself
+        }
+    }
 }
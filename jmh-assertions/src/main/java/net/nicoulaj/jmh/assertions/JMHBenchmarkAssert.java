@@ -0,0 +1,37 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+/**
+ * Assertions comparing a benchmark with other benchmarks of the same run.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.JMHRunResultsAssert#benchmark(String)
+ */
+public interface JMHBenchmarkAssert {
+
+    /**
+     * Compare with another benchmark of the same run, eg:
+     * <code>benchmark("encodeFast").isFasterThan("encodeBaseline").byAtLeast(20, PERCENT)</code>.
+     *
+     * @param other other benchmark name, either fully qualified or its simple method name
+     * @return comparison assertions
+     */
+    JMHBenchmarkComparisonAssert isFasterThan(String other);
+}
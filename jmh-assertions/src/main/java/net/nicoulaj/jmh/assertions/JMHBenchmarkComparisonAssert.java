@@ -0,0 +1,59 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+/**
+ * Assertions on the relative speed of two benchmarks of the same run.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.JMHBenchmarkAssert#isFasterThan(String)
+ */
+public interface JMHBenchmarkComparisonAssert {
+
+    /**
+     * Assert the benchmark is faster than the other one by at least a given amount, for each
+     * combination of parameters and mode both benchmarks were run with.
+     * <p/>
+     * The ratio of speeds is estimated from the measurement iteration scores of both benchmarks, and must be
+     * at least the expected one at the lower bound of its 99% confidence interval.
+     *
+     * @param amount min relative difference, <code>0</code> to only assert it is faster
+     * @param unit   relative difference unit
+     * @return run results assertions
+     * @see #byAtLeast(double, RelativeUnit, double)
+     */
+    JMHRunResultsAssert byAtLeast(double amount, RelativeUnit unit);
+
+    /**
+     * Assert the benchmark is faster than the other one by at least a given amount, for each
+     * combination of parameters and mode both benchmarks were run with.
+     * <p/>
+     * The ratio of speeds is estimated from the measurement iteration scores of both benchmarks, using Welch's t
+     * confidence interval of the difference of their log speeds, and must be at least the expected one at the
+     * lower bound of this interval. The interval is computed from the per-fork means of the log speeds when both
+     * benchmarks have at least two forks; otherwise from the iteration log speeds, which ignores the run-to-run
+     * variance and is only a within-fork confidence.
+     *
+     * @param amount     min relative difference, <code>0</code> to only assert it is faster
+     * @param unit       relative difference unit
+     * @param confidence confidence level of the ratio lower bound, in <code>]0, 1[</code>
+     * @return run results assertions
+     */
+    JMHRunResultsAssert byAtLeast(double amount, RelativeUnit unit, double confidence);
+}
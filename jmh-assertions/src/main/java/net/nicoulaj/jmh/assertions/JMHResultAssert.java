@@ -0,0 +1,47 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+/**
+ * Assertions on a numeric benchmark result, such as a profiler secondary result.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.JMHRunResultsAssert#secondary(String)
+ */
+public interface JMHResultAssert {
+
+    JMHResultAssert isLessThan(double value);
+
+    JMHResultAssert isGreaterThan(double value);
+
+    /**
+     * @param min min score, inclusive
+     * @param max max score, inclusive
+     * @return this
+     */
+    JMHResultAssert isBetween(double min, double max);
+
+    /**
+     * @param error max score error (half-width of the score confidence interval), in the score unit
+     * @return this
+     */
+    JMHResultAssert hasErrorBelow(double error);
+
+    JMHResultAssert hasUnit(String unit);
+}
@@ -26,6 +26,7 @@ import org.openjdk.jmh.runner.options.TimeValue;
 import org.openjdk.jmh.runner.options.VerboseMode;
 import org.openjdk.jmh.runner.options.WarmupMode;
 
+import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -52,6 +53,8 @@ public interface JMHRunBuilderAssert extends JMHRunResultsAssert {
 
     JMHRunBuilderAssert addProfiler(Class<? extends Profiler> profiler);
 
+    JMHRunBuilderAssert addProfiler(Class<? extends Profiler> profiler, String initLine);
+
     JMHRunBuilderAssert verbosity(VerboseMode mode);
 
     JMHRunBuilderAssert shouldFailOnError(boolean value);
@@ -100,5 +103,63 @@ public interface JMHRunBuilderAssert extends JMHRunResultsAssert {
 
     JMHRunBuilderAssert param(String name, String... values);
 
+    /**
+     * Reuse the results of benchmarks that did not change since a previous run, instead of running them again.
+     * <p/>
+     * Results are stored by a hash of the bytecode of the benchmark and of all the classes it references, of the
+     * class path content, of the fork JVM and its flags, and of the run options: any change to the class path jars
+     * or directories runs the benchmarks again. The cache can also be enabled for all assertions with the
+     * <code>jmh.assertions.cache</code> system property.
+     *
+     * @param directory cache directory, {@code null} to disable the cache
+     * @return this
+     */
+    JMHRunBuilderAssert resultCache(Path directory);
+
+    /**
+     * Run benchmarks one fork at a time instead of a fixed number of forks, until the relative half-width of the
+     * score confidence interval of each result is under a target, or a fork budget is exhausted.
+     * <p/>
+     * Score assertions with a threshold, such as {@link #hasScoreOver(double)}, also stop as soon as the
+     * confidence interval is entirely over or under the threshold.
+     * <p/>
+     * The confidence interval is computed from the mean score of each fork, so each benchmark runs at least two forks.
+     *
+     * @param maxRelativeError target relative half-width of the score confidence interval, eg: <code>0.02</code>
+     * @param maxForks         max number of forks of each benchmark
+     * @return this
+     */
+    JMHRunBuilderAssert adaptive(double maxRelativeError, int maxForks);
+
+    /**
+     * Run independent forks concurrently, each pinned to its own set of physical cores, unless memory bandwidth
+     * contention between concurrent forks would cause more than 10% per-fork bandwidth loss.
+     *
+     * @param coresPerFork number of physical cores each fork is pinned to
+     * @return this
+     * @see #concurrentForks(int, double)
+     */
+    JMHRunBuilderAssert concurrentForks(int coresPerFork);
+
+    /**
+     * Run independent forks concurrently, each pinned to its own set of physical cores with <code>taskset</code>.
+     * <p/>
+     * The host JVM must be started with <code>-Djmh.ignoreLock=true</code>, otherwise forks are run serially.
+     *
+     * @param coresPerFork     number of physical cores each fork is pinned to
+     * @param maxBandwidthLoss max per-fork memory bandwidth loss caused by concurrent forks, in [0, 1], the number
+     *                         of concurrent forks is reduced until it is met
+     * @return this
+     */
+    JMHRunBuilderAssert concurrentForks(int coresPerFork, double maxBandwidthLoss);
+
     JMHRunResultsAssert runsWithoutError();
+
+    /**
+     * Run the benchmarks once for each thread count, and fit their throughputs to the Universal Scalability Law.
+     *
+     * @param counts thread counts, must include {@code 1} and at least two other counts, eg: <code>1, 2, 4, 8, 16</code>
+     * @return scalability assertions
+     */
+    JMHScalabilityAssert threadSweep(int... counts);
 }
@@ -26,4 +26,10 @@ package net.nicoulaj.jmh.assertions;
  */
 public interface JMHRunResultAssert extends JMHRunResultsAssert {
 
+    /**
+     * Assert the primary result, eg: <code>hasSingleResult().primary().hasErrorBelow(0.1)</code>.
+     *
+     * @return primary result assertions
+     */
+    JMHResultAssert primary();
 }
@@ -18,6 +18,9 @@
  */
 package net.nicoulaj.jmh.assertions;
 
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Assertions for a collection of {@link org.openjdk.jmh.results.RunResult}s.
  *
@@ -33,4 +36,99 @@ public interface JMHRunResultsAssert {
     JMHRunResultsAssert hasScoreOver(double value);
 
     JMHRunResultsAssert hasScoreOver(double value, double tolerance);
+
+    /**
+     * Assert at least {@code p} percent of the samples of each result are under a latency, which is cheaper than
+     * computing the actual percentile: samples are streamed once, without being sorted nor copied.
+     *
+     * @param p     percentile, in ]0, 100]
+     * @param value max latency
+     * @param unit  latency unit
+     * @return this
+     */
+    JMHRunResultsAssert hasPercentileUnder(double p, double value, TimeUnit unit);
+
+    JMHRunResultsAssert hasMaxUnder(double value, TimeUnit unit);
+
+    JMHRunResultsAssert hasMeanUnder(double value, TimeUnit unit);
+
+    /**
+     * Assert results are not slower than the ones of a previous run, with 99% confidence.
+     *
+     * @param baselineJson     JMH JSON result file of the previous run (<code>-rf json</code>)
+     * @param maxRegressionPct max tolerated slowdown, in percent of the baseline score
+     * @return this
+     * @see #isNotSlowerThanBaseline(Path, double, double)
+     */
+    JMHRunResultsAssert isNotSlowerThanBaseline(Path baselineJson, double maxRegressionPct);
+
+    /**
+     * Assert results are not slower than the ones of a previous run.
+     * <p/>
+     * Each result is compared with the baseline result of the same benchmark, mode and parameters. A result fails
+     * if its mean slowdown is over {@code maxRegressionPct} <em>and</em> the lower bound of the Welch confidence
+     * interval of the slowdown is over zero, so that noise alone does not fail the assertion. The interval is
+     * computed from the per-fork mean scores when both runs have at least two forks; otherwise from the iteration
+     * scores, which ignores the run-to-run variance and is only a within-fork confidence. Results with no matching
+     * baseline are ignored, but at least one must match.
+     *
+     * @param baselineJson     JMH JSON result file of the previous run (<code>-rf json</code>)
+     * @param maxRegressionPct max tolerated slowdown, in percent of the baseline score
+     * @param confidence       confidence level, in ]0, 1[
+     * @return this
+     */
+    JMHRunResultsAssert isNotSlowerThanBaseline(Path baselineJson, double maxRegressionPct, double confidence);
+
+    /**
+     * Compare a benchmark with other benchmarks of the same run. Relative assertions do not depend on the
+     * speed of the machine running the benchmarks, unlike absolute scores or baselines from previous runs.
+     *
+     * @param name benchmark name, either fully qualified or its simple method name
+     * @return benchmark assertions
+     */
+    JMHBenchmarkAssert benchmark(String name);
+
+    /**
+     * Fit the results to algorithmic complexity classes over the values of a size parameter, eg:
+     * <code>param("size", "100", "1000", "10000").complexity("size").hasComplexity(LINEAR)</code>.
+     * <p/>
+     * The mean score of each fork is a point of the fit, so that several forks let it account for the run-to-run
+     * noise; a more expensive class is only selected if it fits the points significantly better.
+     *
+     * @param param numeric benchmark parameter name, with at least 3 distinct values
+     * @return complexity assertions
+     */
+    JMHComplexityAssert complexity(String param);
+
+    /**
+     * Assert benchmarks do not allocate, according to the <code>·gc.alloc.rate.norm</code> secondary result of
+     * {@link org.openjdk.jmh.profile.GCProfiler}.
+     *
+     * @return this
+     * @see #allocatesAtMost(long)
+     */
+    JMHRunResultsAssert isAllocationFree();
+
+    /**
+     * Assert benchmarks allocate at most a given number of bytes per operation, according to the
+     * <code>·gc.alloc.rate.norm</code> secondary result of {@link org.openjdk.jmh.profile.GCProfiler}.
+     * <p/>
+     * The JMH infrastructure allocates a few hundred bytes per iteration, amortized over its operations: up to
+     * 2048 bytes per measurement iteration over the budget are tolerated, so the tolerance per operation shrinks
+     * as the number of operations grows. It can be changed with the <code>jmh.assertions.allocationTolerance</code>
+     * system property.
+     *
+     * @param bytesPerOp max allocated bytes per operation
+     * @return this
+     */
+    JMHRunResultsAssert allocatesAtMost(long bytesPerOp);
+
+    /**
+     * Assert a secondary result of each benchmark, such as a profiler metric, eg:
+     * <code>secondary("gc.count").isLessThan(1)</code>.
+     *
+     * @param label secondary result label, the <code>·</code> prefix of JMH profilers results may be omitted
+     * @return secondary result assertions
+     */
+    JMHResultAssert secondary(String label);
 }
@@ -0,0 +1,56 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+/**
+ * Assertions on the thread scalability of benchmarks, fitted to the Universal Scalability Law for each
+ * benchmark, mode and parameters combination.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.JMHRunBuilderAssert#threadSweep(int...)
+ */
+public interface JMHScalabilityAssert {
+
+    /**
+     * Assert the modelled throughput is at least a fraction of perfect linear scaling, eg:
+     * <code>scalesAtLeast(0.8).upTo(8)</code>.
+     *
+     * @param efficiency min fraction of linear scaling, in ]0, 1]
+     * @return efficiency assertions
+     */
+    JMHScalabilityEfficiencyAssert scalesAtLeast(double efficiency);
+
+    /**
+     * @param sigma max contention coefficient (serialized fraction of the work)
+     * @return this
+     */
+    JMHScalabilityAssert contentionBelow(double sigma);
+
+    /**
+     * @param kappa max coherency coefficient (cost of keeping shared data consistent between threads)
+     * @return this
+     */
+    JMHScalabilityAssert coherencyBelow(double kappa);
+
+    /**
+     * @param threads min thread count under which the modelled throughput keeps increasing
+     * @return this
+     */
+    JMHScalabilityAssert peaksAtLeast(int threads);
+}
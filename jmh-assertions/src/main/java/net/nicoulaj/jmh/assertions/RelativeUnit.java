@@ -0,0 +1,54 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+/**
+ * Unit of a relative difference between two benchmark scores.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.JMHBenchmarkComparisonAssert
+ */
+public enum RelativeUnit {
+
+    /**
+     * Percent of the other benchmark speed, eg: <code>20</code> means 1.2 times as fast.
+     */
+    PERCENT {
+        @Override
+        double toRatio(final double amount) {
+            return 1 + amount / 100;
+        }
+    },
+
+    /**
+     * Times the other benchmark speed, eg: <code>2</code> means twice as fast.
+     */
+    TIMES {
+        @Override
+        double toRatio(final double amount) {
+            return amount;
+        }
+    };
+
+    /**
+     * @param amount relative difference in this unit
+     * @return speed ratio
+     */
+    abstract double toRatio(double amount);
+}
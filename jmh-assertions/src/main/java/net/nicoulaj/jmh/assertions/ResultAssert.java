@@ -0,0 +1,132 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.nicoulaj.jmh.assertions.Failures.describe;
+import static net.nicoulaj.jmh.assertions.Failures.fail;
+
+/**
+ * Default implementation of {@link net.nicoulaj.jmh.assertions.JMHResultAssert}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.JMHAssertions
+ */
+final class ResultAssert implements JMHResultAssert {
+
+    private final String label;
+
+    private final Map<String, Result> results;
+
+    private ResultAssert(final String label, final Map<String, Result> results) {
+        this.label = label;
+        this.results = results;
+    }
+
+    /**
+     * @param runResults results to assert
+     * @param label      secondary result label, the JMH <code>·</code> prefix of profiler results may be omitted
+     * @return secondary results assertions
+     */
+    static ResultAssert secondary(final Collection<RunResult> runResults, final String label) {
+        final Map<String, Result> results = new LinkedHashMap<>();
+        for (RunResult runResult : runResults) {
+            final Map<String, Result> secondaries = runResult.getSecondaryResults();
+            Result result = secondaries.get(label);
+            if (result == null) result = secondaries.get("\u00b7" + label);
+            if (result == null)
+                throw new AssertionError("No " + label + " secondary result for " + describe(runResult.getParams())
+                                         + ", available results are " + secondaries.keySet());
+            results.put(describe(runResult.getParams()), result);
+        }
+        return new ResultAssert(label, results);
+    }
+
+    /**
+     * @param runResult result to assert
+     * @return primary result assertions
+     */
+    static ResultAssert primary(final RunResult runResult) {
+        final Map<String, Result> results = new LinkedHashMap<>();
+        results.put(describe(runResult.getParams()), runResult.getPrimaryResult());
+        return new ResultAssert("primary result", results);
+    }
+
+    @Override
+    public JMHResultAssert isLessThan(final double value) {
+        final List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Result> result : results.entrySet())
+            if (!(result.getValue().getScore() < value))
+                failures.add(result.getKey() + " is " + format(result.getValue()));
+        fail("Expected " + label + " " + "less than " + value, failures);
+        return this;
+    }
+
+    @Override
+    public JMHResultAssert isGreaterThan(final double value) {
+        final List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Result> result : results.entrySet())
+            if (!(result.getValue().getScore() > value))
+                failures.add(result.getKey() + " is " + format(result.getValue()));
+        fail("Expected " + label + " " + "greater than " + value, failures);
+        return this;
+    }
+
+    @Override
+    public JMHResultAssert isBetween(final double min, final double max) {
+        final List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Result> result : results.entrySet())
+            if (!(result.getValue().getScore() >= min && result.getValue().getScore() <= max))
+                failures.add(result.getKey() + " is " + format(result.getValue()));
+        fail("Expected " + label + " " + "between " + min + " and " + max, failures);
+        return this;
+    }
+
+    @Override
+    public JMHResultAssert hasErrorBelow(final double error) {
+        final List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Result> result : results.entrySet())
+            if (!(result.getValue().getScoreError() < error))
+                failures.add(result.getKey() + " is " + format(result.getValue()));
+        fail("Expected " + label + " " + "with error below " + error, failures);
+        return this;
+    }
+
+    @Override
+    public JMHResultAssert hasUnit(final String unit) {
+        final List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Result> result : results.entrySet())
+            if (!result.getValue().getScoreUnit().equals(unit))
+                failures.add(result.getKey() + " is " + format(result.getValue()));
+        fail("Expected " + label + " " + "in " + unit, failures);
+        return this;
+    }
+
+    private static String format(final Result result) {
+        return result.getScore() + " ± " + result.getScoreError() + " " + result.getScoreUnit();
+    }
+}
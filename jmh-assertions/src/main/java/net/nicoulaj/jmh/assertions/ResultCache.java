@@ -0,0 +1,220 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.BenchmarkList;
+import org.openjdk.jmh.runner.BenchmarkListEntry;
+import org.openjdk.jmh.runner.format.OutputFormatFactory;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.openjdk.jmh.util.Optional;
+import org.openjdk.jmh.util.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Content-addressed store of benchmark results, to skip benchmarks that did not change since a previous run.
+ * <p/>
+ * The results of each benchmark are stored under a SHA-256 key of:
+ * <ul>
+ * <li>the bytecode closure of the benchmark class and of its generated JMH class (see {@link BytecodeClosure}),
+ * so that changes to any class the benchmark depends on invalidate it,</li>
+ * <li>the content of the class path jars and directories, as a conservative fallback for the classes and resources
+ * the bytecode closure does not reach (eg: loaded by reflection),</li>
+ * <li>the fork JVM (version if it is the host JVM, path, size and modification time otherwise) and its flags,</li>
+ * <li>the benchmark annotations and every run option that affects measurements,</li>
+ * <li>any extra settings of the caller, such as the adaptive run settings.</li>
+ * </ul>
+ * Output, result file and verbosity options are not part of the key.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+final class ResultCache {
+
+    private ResultCache() {
+        // Static class
+    }
+
+    /**
+     * @param options   run options
+     * @param directory cache directory
+     * @param settings  extra settings the results depend on
+     * @param step      runs the benchmarks missing from the cache
+     * @return cached and fresh run results
+     */
+    static List<RunResult> run(final Options options, final Path directory, final String settings, final RunStep step) {
+        final Map<String, List<BenchmarkListEntry>> benchmarks = new LinkedHashMap<>();
+        for (BenchmarkListEntry entry : BenchmarkList.defaultList().find(OutputFormatFactory.createFormatInstance(System.out, VerboseMode.SILENT),
+                                                                          options.getIncludes(),
+                                                                          options.getExcludes())) {
+            if (!benchmarks.containsKey(entry.getUsername())) benchmarks.put(entry.getUsername(), new ArrayList<BenchmarkListEntry>());
+            benchmarks.get(entry.getUsername()).add(entry);
+        }
+
+        final BytecodeClosure closure = new BytecodeClosure(Thread.currentThread().getContextClassLoader());
+        final Map<String, String> keys = new LinkedHashMap<>();
+        final List<Collection<RunResult>> runs = new ArrayList<>();
+        final ChainedOptionsBuilder missing = new OptionsBuilder().parent(options);
+        int hits = 0;
+        for (Map.Entry<String, List<BenchmarkListEntry>> benchmark : benchmarks.entrySet()) {
+            final String key = key(options, benchmark.getValue(), closure, settings);
+            keys.put(benchmark.getKey(), key);
+            final Collection<RunResult> cached = read(directory.resolve(key + ".ser"));
+            if (cached != null) {
+                runs.add(cached);
+                missing.exclude("^" + Pattern.quote(benchmark.getKey()) + "$");
+                hits++;
+            }
+        }
+
+        if (hits < benchmarks.size()) {
+            final Collection<RunResult> fresh = step.run(hits > 0 ? missing.build() : options);
+            runs.add(fresh);
+
+            final Map<String, List<RunResult>> results = new LinkedHashMap<>();
+            for (RunResult result : fresh) {
+                final String benchmark = result.getParams().getBenchmark();
+                if (!results.containsKey(benchmark)) results.put(benchmark, new ArrayList<RunResult>());
+                results.get(benchmark).add(result);
+            }
+            for (Map.Entry<String, List<RunResult>> result : results.entrySet())
+                if (keys.containsKey(result.getKey()))
+                    write(options, directory, keys.get(result.getKey()), result.getValue());
+        }
+
+        // Printed after the fresh run, which would truncate the run output file
+        if (hits > 0)
+            JMHAssertions.status(options, "# Reusing cached results of " + hits + " of " + benchmarks.size() + " benchmark(s) from " + directory);
+        final List<RunResult> results = RunResults.merge(runs);
+        if (hits > 0) RunResults.write(options, results);
+        return results;
+    }
+
+    private static String key(final Options options,
+                              final List<BenchmarkListEntry> entries,
+                              final BytecodeClosure closure,
+                              final String settings) {
+        final List<String> roots = new ArrayList<>();
+        final StringBuilder key = new StringBuilder();
+        for (BenchmarkListEntry entry : entries) {
+            roots.add(entry.getUserClassQName());
+            roots.add(entry.generatedTarget().substring(0, entry.generatedTarget().lastIndexOf('.')));
+            key.append("entry=").append(entry.toLine()).append('\n');
+        }
+        key.append("bytecode=").append(closure.hash(roots)).append('\n');
+        key.append("classpath=").append(closure.classpath()).append('\n');
+
+        final BenchmarkListEntry entry = entries.get(0);
+        final String jvm = options.getJvm().orElse(entry.getJvm().orElse(Utils.getCurrentJvm()));
+        key.append("jvm=").append(jvm).append('\n');
+        if (jvm.equals(Utils.getCurrentJvm())) {
+            key.append("jvm.version=").append(System.getProperty("java.vm.name")).append(' ')
+               .append(System.getProperty("java.vm.version")).append('\n');
+        } else {
+            final File file = new File(jvm);
+            key.append("jvm.file=").append(file.length()).append(' ').append(file.lastModified()).append('\n');
+        }
+        key.append("jvmArgs=").append(options.getJvmArgs().orElse(
+                entry.getJvmArgs().orElse(ManagementFactory.getRuntimeMXBean().getInputArguments()))).append('\n');
+        key.append("jvmArgsPrepend=").append(value(options.getJvmArgsPrepend())).append('\n');
+        key.append("jvmArgsAppend=").append(value(options.getJvmArgsAppend())).append('\n');
+
+        for (ProfilerConfig profiler : options.getProfilers())
+            key.append("profiler=").append(profiler.getKlass()).append(' ').append(profiler.getOpts()).append('\n');
+        key.append("shouldDoGC=").append(value(options.shouldDoGC())).append('\n');
+        key.append("shouldFailOnError=").append(value(options.shouldFailOnError())).append('\n');
+        key.append("threads=").append(value(options.getThreads())).append('\n');
+        key.append("threadGroups=").append(options.getThreadGroups().hasValue() ? Arrays.toString(options.getThreadGroups().get()) : "-").append('\n');
+        key.append("syncIterations=").append(value(options.shouldSyncIterations())).append('\n');
+        key.append("warmupIterations=").append(value(options.getWarmupIterations())).append('\n');
+        key.append("warmupTime=").append(value(options.getWarmupTime())).append('\n');
+        key.append("warmupBatchSize=").append(value(options.getWarmupBatchSize())).append('\n');
+        key.append("warmupMode=").append(value(options.getWarmupMode())).append('\n');
+        key.append("warmupIncludes=").append(options.getWarmupIncludes()).append('\n');
+        key.append("measurementIterations=").append(value(options.getMeasurementIterations())).append('\n');
+        key.append("measurementTime=").append(value(options.getMeasurementTime())).append('\n');
+        key.append("measurementBatchSize=").append(value(options.getMeasurementBatchSize())).append('\n');
+        key.append("modes=").append(options.getBenchModes()).append('\n');
+        key.append("timeUnit=").append(value(options.getTimeUnit())).append('\n');
+        key.append("operationsPerInvocation=").append(value(options.getOperationsPerInvocation())).append('\n');
+        key.append("forks=").append(value(options.getForkCount())).append('\n');
+        key.append("warmupForks=").append(value(options.getWarmupForkCount())).append('\n');
+        key.append("timeout=").append(value(options.getTimeout())).append('\n');
+        if (entry.getParams().hasValue())
+            for (String param : entry.getParams().get().keySet())
+                key.append("param.").append(param).append('=').append(value(options.getParameter(param))).append('\n');
+        key.append("settings=").append(settings).append('\n');
+
+        final MessageDigest digest = BytecodeClosure.sha256();
+        return BytecodeClosure.hex(digest.digest(key.toString().getBytes(UTF_8)));
+    }
+
+    private static String value(final Optional<?> value) {
+        return value.hasValue() ? String.valueOf(value.get()) : "-";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<RunResult> read(final Path file) {
+        if (!Files.isRegularFile(file)) return null;
+        try (InputStream in = Files.newInputStream(file);
+             ObjectInputStream objects = new ObjectInputStream(in)) {
+            return (Collection<RunResult>) objects.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // Stale or corrupted entries are treated as missing, and overwritten
+            return null;
+        }
+    }
+
+    private static void write(final Options options, final Path directory, final String key, final List<RunResult> results) {
+        try {
+            Files.createDirectories(directory);
+            final Path temp = Files.createTempFile(directory, key, ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp);
+                 ObjectOutputStream objects = new ObjectOutputStream(out)) {
+                objects.writeObject(new ArrayList<>(results));
+            }
+            Files.move(temp, directory.resolve(key + ".ser"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            JMHAssertions.status(options, "# Failed to cache results in " + directory + ": " + e.getMessage());
+        }
+    }
+}
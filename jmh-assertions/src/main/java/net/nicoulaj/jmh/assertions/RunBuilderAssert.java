@@ -19,10 +19,17 @@
 package net.nicoulaj.jmh.assertions;
 
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.profile.Profiler;
+import org.openjdk.jmh.results.RunResult;
 import org.openjdk.jmh.results.format.ResultFormatType;
 import org.openjdk.jmh.runner.options.*;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import static net.nicoulaj.jmh.assertions.JMHAssertions.assertJMH;
@@ -37,12 +44,100 @@ final class RunBuilderAssert implements JMHRunBuilderAssert {
 
     private final ChainedOptionsBuilder options;
 
+    private int coresPerFork;
+
+    private double maxBandwidthLoss;
+
+    private double maxRelativeError;
+
+    private int maxForks;
+
+    private Path cache;
+
     RunBuilderAssert() {
         options = new OptionsBuilder();
+        final String cache = System.getProperty("jmh.assertions.cache");
+        if (cache != null && !cache.isEmpty()) this.cache = Paths.get(cache);
     }
 
     private JMHRunResultsAssert build() {
-        return assertJMH(options.build());
+        return build(Double.NaN);
+    }
+
+    /**
+     * @param threshold score the assertion compares results with, {@link Double#NaN} if none
+     */
+    private JMHRunResultsAssert build(final double threshold) {
+        return assertJMH(run(options.build(), threshold));
+    }
+
+    private Collection<RunResult> run(final Options options, final double threshold) {
+        final RunStep step = new RunStep() {
+            @Override
+            public Collection<RunResult> run(final Options options) {
+                return measure(options, threshold);
+            }
+        };
+        if (cache != null)
+            return ResultCache.run(options, cache, settings(threshold), step);
+        return step.run(options);
+    }
+
+    private Collection<RunResult> measure(final Options options, final double threshold) {
+        if (maxForks > 0)
+            return AdaptiveRunner.run(options, maxRelativeError, maxForks, threshold, new RunStep() {
+                @Override
+                public Collection<RunResult> run(final Options options) {
+                    return fork(options);
+                }
+            });
+        return fork(options);
+    }
+
+    private Collection<RunResult> fork(final Options options) {
+        if (coresPerFork > 0)
+            return ConcurrentRunner.run(options, coresPerFork, maxBandwidthLoss);
+        return JMHAssertions.run(options);
+    }
+
+    private String settings(final double threshold) {
+        final StringBuilder settings = new StringBuilder();
+        if (maxForks > 0)
+            settings.append("adaptive=").append(maxRelativeError).append('/').append(maxForks).append(" threshold=").append(threshold);
+        if (coresPerFork > 0)
+            settings.append(" concurrent=").append(coresPerFork).append('/').append(maxBandwidthLoss);
+        return settings.toString();
+    }
+
+    @Override
+    public RunBuilderAssert resultCache(final Path directory) {
+        this.cache = directory;
+        return this;
+    }
+
+    @Override
+    public RunBuilderAssert adaptive(final double maxRelativeError, final int maxForks) {
+        if (!(maxRelativeError > 0))
+            throw new IllegalArgumentException("Max relative error must be positive, got " + maxRelativeError);
+        if (maxForks < 1)
+            throw new IllegalArgumentException("Max forks must be positive, got " + maxForks);
+        this.maxRelativeError = maxRelativeError;
+        this.maxForks = maxForks;
+        return this;
+    }
+
+    @Override
+    public RunBuilderAssert concurrentForks(final int coresPerFork) {
+        return concurrentForks(coresPerFork, 0.1);
+    }
+
+    @Override
+    public RunBuilderAssert concurrentForks(final int coresPerFork, final double maxBandwidthLoss) {
+        if (coresPerFork < 1)
+            throw new IllegalArgumentException("Cores per fork must be positive, got " + coresPerFork);
+        this.coresPerFork = coresPerFork;
+        this.maxBandwidthLoss = maxBandwidthLoss;
+        return this;
     }
 
     @Override
@@ -189,6 +284,12 @@ final class RunBuilderAssert implements JMHRunBuilderAssert {
         return this;
     }
 
+    @Override
+    public JMHRunBuilderAssert addProfiler(final Class<? extends Profiler> profiler, final String initLine) {
+        options.addProfiler(profiler, initLine);
+        return this;
+    }
+
     @Override
     public RunBuilderAssert forks(final int value) {
         options.forks(value);
@@ -242,6 +343,24 @@ final class RunBuilderAssert implements JMHRunBuilderAssert {
         return build();
     }
 
+    @Override
+    public JMHScalabilityAssert threadSweep(final int... counts) {
+        if (counts.length == 0)
+            throw new IllegalArgumentException("No thread count to sweep");
+        final Options parent = options.build();
+        final RunStep step = new RunStep() {
+            @Override
+            public Collection<RunResult> run(final Options options) {
+                return RunBuilderAssert.this.run(options, Double.NaN);
+            }
+        };
+        // Each thread count is a separate run, appended to the output file
+        final Map<Integer, Collection<RunResult>> results = new TreeMap<>();
+        for (int count : counts)
+            results.put(count, RunResults.step(new OptionsBuilder().parent(parent).threads(count).build(), results.isEmpty(), step));
+        return new ScalabilityAssert(results);
+    }
+
     @Override
     public JMHRunResultAssert hasSingleResult() {
         return runsWithoutError().hasSingleResult();
@@ -254,11 +373,69 @@ final class RunBuilderAssert implements JMHRunBuilderAssert {
 
     @Override
     public JMHRunResultsAssert hasScoreOver(final double value) {
-        return runsWithoutError().hasScoreOver(value);
+        return hasScoreOver(value, 0);
     }
 
     @Override
     public JMHRunResultsAssert hasScoreOver(final double value, final double tolerance) {
-        return runsWithoutError().hasScoreOver(value, tolerance);
+        return build(value - tolerance).hasScoreOver(value, tolerance);
+    }
+
+    @Override
+    public JMHRunResultsAssert hasPercentileUnder(final double p, final double value, final TimeUnit unit) {
+        return runsWithoutError().hasPercentileUnder(p, value, unit);
+    }
+
+    @Override
+    public JMHRunResultsAssert hasMaxUnder(final double value, final TimeUnit unit) {
+        return runsWithoutError().hasMaxUnder(value, unit);
+    }
+
+    @Override
+    public JMHRunResultsAssert hasMeanUnder(final double value, final TimeUnit unit) {
+        return runsWithoutError().hasMeanUnder(value, unit);
+    }
+
+    @Override
+    public JMHRunResultsAssert isNotSlowerThanBaseline(final Path baselineJson, final double maxRegressionPct) {
+        return runsWithoutError().isNotSlowerThanBaseline(baselineJson, maxRegressionPct);
+    }
+
+    @Override
+    public JMHRunResultsAssert isNotSlowerThanBaseline(final Path baselineJson, final double maxRegressionPct, final double confidence) {
+        return runsWithoutError().isNotSlowerThanBaseline(baselineJson, maxRegressionPct, confidence);
+    }
+
+    @Override
+    public JMHBenchmarkAssert benchmark(final String name) {
+        return runsWithoutError().benchmark(name);
+    }
+
+    @Override
+    public JMHComplexityAssert complexity(final String param) {
+        return runsWithoutError().complexity(param);
+    }
+
+    @Override
+    public JMHRunResultsAssert isAllocationFree() {
+        return withGCProfiler().runsWithoutError().isAllocationFree();
+    }
+
+    @Override
+    public JMHRunResultsAssert allocatesAtMost(final long bytesPerOp) {
+        return withGCProfiler().runsWithoutError().allocatesAtMost(bytesPerOp);
+    }
+
+    @Override
+    public JMHResultAssert secondary(final String label) {
+        return runsWithoutError().secondary(label);
+    }
+
+    private RunBuilderAssert withGCProfiler() {
+        for (ProfilerConfig profiler : options.build().getProfilers())
+            if (profiler.getKlass().equals(GCProfiler.class.getCanonicalName()))
+                return this;
+        options.addProfiler(GCProfiler.class);
+        return this;
     }
 }
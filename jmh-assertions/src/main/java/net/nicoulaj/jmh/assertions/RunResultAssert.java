@@ -19,7 +19,23 @@
 package net.nicoulaj.jmh.assertions;
 
 
+import org.apache.commons.math3.distribution.TDistribution;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
 import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static net.nicoulaj.jmh.assertions.Failures.describe;
 
 /**
  * Default implementation of {@link net.nicoulaj.jmh.assertions.JMHRunResultAssert}.
@@ -29,6 +45,19 @@ import org.openjdk.jmh.results.RunResult;
  */
 final class RunResultAssert implements JMHRunResultAssert {
 
+    static final double DEFAULT_CONFIDENCE = 0.99;
+
+    private static final String ALLOC_RATE = "\u00b7gc.alloc.rate";
+
+    private static final String ALLOC_RATE_NORM = "\u00b7gc.alloc.rate.norm";
+
+    /**
+     * Bytes the JMH infrastructure may allocate during a measurement iteration, tolerated over allocation budgets
+     * (a few hundred bytes with HotSpot), configurable with the <code>jmh.assertions.allocationTolerance</code>
+     * system property.
+     */
+    static final long ALLOCATION_TOLERANCE = Long.getLong("jmh.assertions.allocationTolerance", 2048);
+
     private final RunResult runResult;
 
     RunResultAssert(final RunResult runResult) {
@@ -64,6 +93,246 @@ final class RunResultAssert implements JMHRunResultAssert {
         return this;
     }
 
+    public JMHRunResultAssert hasPercentileUnder(final double p, final double value, final TimeUnit unit) {
+        if (!(p > 0 && p <= 100))
+            throw new IllegalArgumentException("Percentile must be in ]0, 100], got " + p);
+
+        final String scoreUnit = runResult.getPrimaryResult().getScoreUnit();
+        final double limit = toScoreUnit(value, unit);
+        long samples = 0;
+        long under = 0;
+        final Iterator<Map.Entry<Double, Long>> data = runResult.getPrimaryResult().getStatistics().getRawData();
+        while (data.hasNext()) {
+            final Map.Entry<Double, Long> entry = data.next();
+            samples += entry.getValue();
+            if (entry.getKey() <= limit) under += entry.getValue();
+        }
+
+        if (samples == 0)
+            throw new AssertionError("Expected " + p + "th percentile under " + limit + " " + scoreUnit + ", got no samples");
+        if (under < Math.ceil(p / 100 * samples))
+            throw new AssertionError("Expected " + p + "th percentile under " + limit + " " + scoreUnit + ", only "
+                                     + (100.0 * under / samples) + "% of " + samples + " samples are under it");
+        return this;
+    }
+
+    public JMHRunResultAssert hasMaxUnder(final double value, final TimeUnit unit) {
+        final double limit = toScoreUnit(value, unit);
+        final double max = runResult.getPrimaryResult().getStatistics().getMax();
+        if (max > limit)
+            throw new AssertionError("Expected max under " + limit + " " + runResult.getPrimaryResult().getScoreUnit() + ", actual max is " + max);
+        return this;
+    }
+
+    public JMHRunResultAssert hasMeanUnder(final double value, final TimeUnit unit) {
+        final double limit = toScoreUnit(value, unit);
+        final double mean = runResult.getPrimaryResult().getStatistics().getMean();
+        if (mean > limit)
+            throw new AssertionError("Expected mean under " + limit + " " + runResult.getPrimaryResult().getScoreUnit() + ", actual mean is " + mean);
+        return this;
+    }
+
+    public JMHRunResultAssert isNotSlowerThanBaseline(final Path baselineJson, final double maxRegressionPct) {
+        return isNotSlowerThanBaseline(baselineJson, maxRegressionPct, DEFAULT_CONFIDENCE);
+    }
+
+    public JMHRunResultAssert isNotSlowerThanBaseline(final Path baselineJson, final double maxRegressionPct, final double confidence) {
+        final Baseline.Entry entry = findBaseline(Baseline.read(baselineJson));
+        if (entry == null)
+            throw new AssertionError("No result for " + runResult.getParams().getBenchmark() + " in baseline " + baselineJson);
+        final String regression = regression(entry, maxRegressionPct, confidence);
+        if (regression != null)
+            throw new AssertionError("Expected not slower than baseline " + baselineJson + ": " + regression);
+        return this;
+    }
+
+    public JMHBenchmarkAssert benchmark(final String name) {
+        return new RunResultsAssert(Collections.singletonList(runResult)).benchmark(name);
+    }
+
+    public JMHComplexityAssert complexity(final String param) {
+        return new RunResultsAssert(Collections.singletonList(runResult)).complexity(param);
+    }
+
+    @Override
+    public JMHResultAssert primary() {
+        return ResultAssert.primary(runResult);
+    }
+
+    public JMHResultAssert secondary(final String label) {
+        return ResultAssert.secondary(Collections.singletonList(runResult), label);
+    }
+
+    public JMHRunResultAssert isAllocationFree() {
+        return allocatesAtMost(0);
+    }
+
+    public JMHRunResultAssert allocatesAtMost(final long bytesPerOp) {
+        final String failure = allocationFailure(bytesPerOp);
+        if (failure != null)
+            throw new AssertionError("Expected at most " + bytesPerOp + " B/op allocated: " + failure);
+        return this;
+    }
+
+    /**
+     * Compare the bytes allocated by all the measurement iterations with the budget for their operations, plus
+     * {@link #ALLOCATION_TOLERANCE} per iteration for the JMH infrastructure.
+     *
+     * @return allocation budget overrun description, {@code null} if none
+     */
+    String allocationFailure(final long bytesPerOp) {
+        final Map<String, Result> secondaries = runResult.getSecondaryResults();
+        if (!secondaries.containsKey(ALLOC_RATE_NORM) && !secondaries.containsKey(ALLOC_RATE))
+            throw new AssertionError("No " + ALLOC_RATE_NORM + " result for " + describe(runResult.getParams()) + ", is GCProfiler enabled?");
+
+        double allocated = 0;
+        double budget = 0;
+        long operations = 0;
+        for (BenchmarkResult benchmarkResult : runResult.getBenchmarkResults()) {
+            for (IterationResult iterationResult : benchmarkResult.getIterationResults()) {
+                // GCProfiler normalizes by all the operations, and only reports iterations that allocated
+                final long ops = iterationResult.getMetadata().getAllOps();
+                final Result norm = iterationResult.getSecondaryResults().get(ALLOC_RATE_NORM);
+                if (norm != null) allocated += norm.getScore() * ops;
+                budget += (double) bytesPerOp * ops + ALLOCATION_TOLERANCE;
+                operations += ops;
+            }
+        }
+        if (allocated > budget)
+            return describe(runResult.getParams()) + " allocates " + (operations > 0 ? allocated / operations : allocated) + " B/op";
+        return null;
+    }
+
+    Baseline.Entry findBaseline(final Baseline baseline) {
+        return baseline.find(runResult.getParams());
+    }
+
+    /**
+     * Compare the scores with a baseline, using Welch's t confidence interval of the difference of means.
+     * <p/>
+     * Iterations of the same fork share its JIT compilation and memory layout, so the interval is computed from
+     * the per-fork mean scores when both runs have at least two forks. Otherwise it falls back to the iteration
+     * scores, which only accounts for the within-fork variance, and the regression description says so.
+     *
+     * @return regression description, {@code null} if none
+     */
+    String regression(final Baseline.Entry baseline, final double maxRegressionPct, final double confidence) {
+        if (!(confidence > 0 && confidence < 1))
+            throw new IllegalArgumentException("Confidence must be in ]0, 1[, got " + confidence);
+
+        final String scoreUnit = runResult.getPrimaryResult().getScoreUnit();
+        if (!scoreUnit.equals(baseline.unit))
+            throw new AssertionError("Expected score unit " + baseline.unit + " for " + baseline + " as in baseline, actual score unit is " + scoreUnit);
+
+        final double[][] currentForks = forkScores(runResult);
+        final double[] current = flatten(currentForks);
+        final double[] base = flatten(baseline.forks);
+        if (current.length == 0 || base.length == 0)
+            throw new AssertionError("No iteration score to compare with baseline for " + baseline);
+
+        final double baseMean = mean(base);
+        final double currentMean = mean(current);
+
+        // Slowdown is a higher time per operation, or a lower throughput
+        final boolean perFork = currentForks.length >= 2 && baseline.forks.length >= 2;
+        final double[] values = perFork ? means(currentForks) : current;
+        final double[] others = perFork ? means(baseline.forks) : base;
+        final boolean throughput = runResult.getParams().getMode() == Mode.Throughput;
+        final double delta = throughput ? baseMean - currentMean : currentMean - baseMean;
+        final double lower = throughput ? lowerBound(others, values, confidence)
+                                        : lowerBound(values, others, confidence);
+
+        final double regression = 100 * delta / Math.abs(baseMean);
+        final double lowerRegression = 100 * lower / Math.abs(baseMean);
+        if (regression > maxRegressionPct && lowerRegression > 0)
+            return baseline + " is " + String.format("%.2f", regression) + "% slower than baseline (at least "
+                   + String.format("%.2f", lowerRegression) + "% with " + (100 * confidence) + "% confidence"
+                   + (perFork ? "" : " within forks only, run at least 2 forks in both runs to account for run-to-run variance")
+                   + "), max is " + maxRegressionPct + "%: " + currentMean + " " + scoreUnit + " vs " + baseMean + " " + scoreUnit;
+        return null;
+    }
+
+    /**
+     * One-sided lower bound of the difference of means of two samples, using Welch's t confidence interval.
+     * <p/>
+     * With a single value on either side there is no variance estimate, so the point estimate is used as is.
+     *
+     * @return lower bound of {@code mean(values) - mean(others)}
+     */
+    static double lowerBound(final double[] values, final double[] others, final double confidence) {
+        final double mean = mean(values);
+        final double otherMean = mean(others);
+        final double delta = mean - otherMean;
+        if (values.length < 2 || others.length < 2) return delta;
+
+        final double v1 = variance(values, mean) / values.length;
+        final double v2 = variance(others, otherMean) / others.length;
+        final double error = Math.sqrt(v1 + v2);
+        if (!(error > 0)) return delta;
+        final double df = (v1 + v2) * (v1 + v2) / (v1 * v1 / (values.length - 1) + v2 * v2 / (others.length - 1));
+        return delta - new TDistribution(df).inverseCumulativeProbability(confidence) * error;
+    }
+
+    /**
+     * @return primary scores of the measurement iterations, by fork
+     */
+    static double[][] forkScores(final RunResult runResult) {
+        final List<double[]> forks = new ArrayList<>();
+        for (BenchmarkResult benchmarkResult : runResult.getBenchmarkResults()) {
+            final double[] scores = new double[benchmarkResult.getIterationResults().size()];
+            int i = 0;
+            for (IterationResult iterationResult : benchmarkResult.getIterationResults())
+                scores[i++] = iterationResult.getPrimaryResult().getScore();
+            if (scores.length > 0) forks.add(scores);
+        }
+        return forks.toArray(new double[forks.size()][]);
+    }
+
+    /**
+     * @return all the values of all the forks
+     */
+    static double[] flatten(final double[][] forks) {
+        int count = 0;
+        for (double[] fork : forks) count += fork.length;
+        final double[] values = new double[count];
+        int i = 0;
+        for (double[] fork : forks)
+            for (double value : fork) values[i++] = value;
+        return values;
+    }
+
+    /**
+     * @return mean of the values of each fork
+     */
+    static double[] means(final double[][] forks) {
+        final double[] means = new double[forks.length];
+        for (int i = 0; i < forks.length; i++) means[i] = mean(forks[i]);
+        return means;
+    }
+
+    private static double mean(final double[] values) {
+        double sum = 0;
+        for (double value : values) sum += value;
+        return sum / values.length;
+    }
+
+    private static double variance(final double[] values, final double mean) {
+        double sum = 0;
+        for (double value : values) sum += (value - mean) * (value - mean);
+        return sum / (values.length - 1);
+    }
+
+    private double toScoreUnit(final double value, final TimeUnit unit) {
+        final String scoreUnit = runResult.getPrimaryResult().getScoreUnit();
+        if (scoreUnit.endsWith("/op")) {
+            final String prefix = scoreUnit.substring(0, scoreUnit.length() - "/op".length());
+            for (TimeUnit timeUnit : TimeUnit.values())
+                if (TimeValue.tuToString(timeUnit).equals(prefix))
+                    return value * unit.toNanos(1) / timeUnit.toNanos(1);
+        }
+        throw new AssertionError("Expected a time per operation score (eg: SampleTime or AverageTime mode), actual score unit is " + scoreUnit);
+    }
+
     private static String format(double value, double tolerance) {
         if (tolerance == 0) return String.valueOf(value);
         return value + "±" + tolerance;
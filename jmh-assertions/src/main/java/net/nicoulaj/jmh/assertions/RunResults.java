@@ -0,0 +1,114 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.runner.Defaults;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Utilities for {@link org.openjdk.jmh.results.RunResult}s of runs split into several JMH runs.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+final class RunResults {
+
+    private RunResults() {
+        // Static class
+    }
+
+    /**
+     * Merge the forks of results of several runs.
+     *
+     * @param runs results of each run
+     * @return a result for each benchmark, mode and parameters combination, holding the forks of all runs
+     */
+    static List<RunResult> merge(final Collection<? extends Collection<RunResult>> runs) {
+        final SortedMap<BenchmarkParams, List<BenchmarkResult>> merged = new TreeMap<>();
+        for (Collection<RunResult> run : runs) {
+            for (RunResult result : run) {
+                if (!merged.containsKey(result.getParams())) merged.put(result.getParams(), new ArrayList<BenchmarkResult>());
+                merged.get(result.getParams()).addAll(result.getBenchmarkResults());
+            }
+        }
+        final List<RunResult> results = new ArrayList<>();
+        for (Map.Entry<BenchmarkParams, List<BenchmarkResult>> entry : merged.entrySet())
+            results.add(new RunResult(entry.getKey(), entry.getValue()));
+        return results;
+    }
+
+    /**
+     * Run one of the JMH runs a run is split into.
+     * <p/>
+     * JMH truncates the output file of each run, so the step writes to a temporary file instead, then appended to
+     * the output file of the run if any.
+     *
+     * @param options run options
+     * @param first   whether this is the first step of the run, whose output replaces the output file content as
+     *                a single JMH run would
+     * @param step    runs the benchmarks
+     * @return step results
+     */
+    static Collection<RunResult> step(final Options options, final boolean first, final RunStep step) {
+        if (!options.getOutput().hasValue()) return step.run(options);
+        try {
+            final Path output = Files.createTempFile("jmh-step-", ".log");
+            try {
+                return step.run(new OptionsBuilder().parent(options).output(output.toString()).build());
+            } finally {
+                try (OutputStream out = new FileOutputStream(options.getOutput().get(), !first)) {
+                    Files.copy(output, out);
+                }
+                Files.deleteIfExists(output);
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Write results to the result file requested by run options, if any, as JMH {@link org.openjdk.jmh.runner.Runner} does.
+     *
+     * @param options run options
+     * @param results results to write
+     */
+    static void write(final Options options, final Collection<RunResult> results) {
+        if (options.getResult().hasValue() || options.getResultFormat().hasValue()) {
+            final String file = options.getResult().orElse(
+                    Defaults.RESULT_FILE_PREFIX + "." + options.getResultFormat().orElse(Defaults.RESULT_FORMAT).toString().toLowerCase());
+            ResultFormatFactory.getInstance(options.getResultFormat().orElse(Defaults.RESULT_FORMAT), file).writeOut(results);
+        }
+    }
+}
@@ -20,8 +20,11 @@ package net.nicoulaj.jmh.assertions;
 
 import org.openjdk.jmh.results.RunResult;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Default implementation of {@link net.nicoulaj.jmh.assertions.JMHRunResultsAssert}.
@@ -68,4 +71,97 @@ final class RunResultsAssert implements JMHRunResultsAssert {
             runResultAssert.hasScoreOver(value, tolerance);
         return this;
     }
+
+    @Override
+    public JMHRunResultsAssert hasPercentileUnder(final double p, final double value, final TimeUnit unit) {
+        hasResults();
+        for (RunResultAssert runResultAssert : runResultAsserts)
+            runResultAssert.hasPercentileUnder(p, value, unit);
+        return this;
+    }
+
+    @Override
+    public JMHRunResultsAssert hasMaxUnder(final double value, final TimeUnit unit) {
+        hasResults();
+        for (RunResultAssert runResultAssert : runResultAsserts)
+            runResultAssert.hasMaxUnder(value, unit);
+        return this;
+    }
+
+    @Override
+    public JMHRunResultsAssert hasMeanUnder(final double value, final TimeUnit unit) {
+        hasResults();
+        for (RunResultAssert runResultAssert : runResultAsserts)
+            runResultAssert.hasMeanUnder(value, unit);
+        return this;
+    }
+
+    @Override
+    public JMHRunResultsAssert isNotSlowerThanBaseline(final Path baselineJson, final double maxRegressionPct) {
+        return isNotSlowerThanBaseline(baselineJson, maxRegressionPct, RunResultAssert.DEFAULT_CONFIDENCE);
+    }
+
+    @Override
+    public JMHRunResultsAssert isNotSlowerThanBaseline(final Path baselineJson, final double maxRegressionPct, final double confidence) {
+        hasResults();
+        final Baseline baseline = Baseline.read(baselineJson);
+        final List<String> regressions = new ArrayList<>();
+        int matched = 0;
+        for (RunResultAssert runResultAssert : runResultAsserts) {
+            final Baseline.Entry entry = runResultAssert.findBaseline(baseline);
+            if (entry == null) continue;
+            matched++;
+            final String regression = runResultAssert.regression(entry, maxRegressionPct, confidence);
+            if (regression != null) regressions.add(regression);
+        }
+        if (matched == 0)
+            throw new AssertionError("No benchmark result matches baseline " + baselineJson);
+        if (!regressions.isEmpty()) {
+            final StringBuilder message = new StringBuilder("Expected not slower than baseline ").append(baselineJson).append(':');
+            for (String regression : regressions)
+                message.append("\n  ").append(regression);
+            throw new AssertionError(message.toString());
+        }
+        return this;
+    }
+
+    @Override
+    public JMHBenchmarkAssert benchmark(final String name) {
+        hasResults();
+        return new BenchmarkAssert(this, runResults, name);
+    }
+
+    @Override
+    public JMHComplexityAssert complexity(final String param) {
+        hasResults();
+        return new ComplexityAssert(runResults, param);
+    }
+
+    @Override
+    public JMHRunResultsAssert isAllocationFree() {
+        return allocatesAtMost(0);
+    }
+
+    @Override
+    public JMHRunResultsAssert allocatesAtMost(final long bytesPerOp) {
+        hasResults();
+        final List<String> failures = new ArrayList<>();
+        for (RunResultAssert runResultAssert : runResultAsserts) {
+            final String failure = runResultAssert.allocationFailure(bytesPerOp);
+            if (failure != null) failures.add(failure);
+        }
+        if (!failures.isEmpty()) {
+            final StringBuilder message = new StringBuilder("Expected at most ").append(bytesPerOp).append(" B/op allocated:");
+            for (String failure : failures)
+                message.append("\n  ").append(failure);
+            throw new AssertionError(message.toString());
+        }
+        return this;
+    }
+
+    @Override
+    public JMHResultAssert secondary(final String label) {
+        hasResults();
+        return ResultAssert.secondary(runResults, label);
+    }
 }
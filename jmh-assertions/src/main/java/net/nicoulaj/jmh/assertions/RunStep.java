@@ -0,0 +1,41 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.options.Options;
+
+import java.util.Collection;
+
+/**
+ * Runs benchmarks, for runners that split a run into several JMH runs.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.AdaptiveRunner
+ * @see net.nicoulaj.jmh.assertions.ResultCache
+ * @see net.nicoulaj.jmh.assertions.RunResults#step(Options, boolean, RunStep)
+ */
+interface RunStep {
+
+    /**
+     * @param options run options
+     * @return run results
+     */
+    Collection<RunResult> run(Options options);
+}
@@ -0,0 +1,147 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.RunResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static net.nicoulaj.jmh.assertions.Failures.describe;
+import static net.nicoulaj.jmh.assertions.Failures.fail;
+
+/**
+ * Default implementation of {@link net.nicoulaj.jmh.assertions.JMHScalabilityAssert}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see net.nicoulaj.jmh.assertions.JMHAssertions
+ */
+final class ScalabilityAssert implements JMHScalabilityAssert {
+
+    private final Map<String, UniversalScalabilityLaw> models;
+
+    private final Map<String, Map<Integer, Double>> throughputs;
+
+    /**
+     * @param runResults results of each thread count
+     */
+    ScalabilityAssert(final Map<Integer, Collection<RunResult>> runResults) {
+        throughputs = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Collection<RunResult>> entry : runResults.entrySet()) {
+            for (RunResult result : entry.getValue()) {
+                final String key = describe(result.getParams());
+                if (!throughputs.containsKey(key)) throughputs.put(key, new TreeMap<Integer, Double>());
+                throughputs.get(key).put(entry.getKey(), throughput(result, entry.getKey()));
+            }
+        }
+        if (throughputs.isEmpty())
+            throw new AssertionError("No benchmark record");
+
+        models = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<Integer, Double>> entry : throughputs.entrySet()) {
+            final int[] threads = new int[entry.getValue().size()];
+            final double[] values = new double[threads.length];
+            int i = 0;
+            for (Map.Entry<Integer, Double> point : entry.getValue().entrySet()) {
+                threads[i] = point.getKey();
+                values[i++] = point.getValue();
+            }
+            try {
+                models.put(entry.getKey(), UniversalScalabilityLaw.fit(threads, values));
+            } catch (IllegalArgumentException e) {
+                throw new AssertionError("Failed to fit scalability of " + entry.getKey() + " with threads " + entry.getValue().keySet() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public JMHScalabilityEfficiencyAssert scalesAtLeast(final double efficiency) {
+        if (!(efficiency > 0 && efficiency <= 1))
+            throw new IllegalArgumentException("Efficiency must be in ]0, 1], got " + efficiency);
+        return new JMHScalabilityEfficiencyAssert() {
+            @Override
+            public JMHScalabilityAssert upTo(final int threads) {
+                if (threads < 1)
+                    throw new IllegalArgumentException("Thread count must be positive, got " + threads);
+                final List<String> failures = new ArrayList<>();
+                for (Map.Entry<String, UniversalScalabilityLaw> model : models.entrySet())
+                    for (int n = 2; n <= threads; n++)
+                        if (model.getValue().efficiency(n) < efficiency) {
+                            failures.add(model.getKey() + " scales at " + format(model.getValue().efficiency(n))
+                                         + " with " + n + " threads" + details(model.getKey()));
+                            break;
+                        }
+                fail("Expected scaling efficiency at least " + efficiency + " up to " + threads + " threads", failures);
+                return ScalabilityAssert.this;
+            }
+        };
+    }
+
+    @Override
+    public JMHScalabilityAssert contentionBelow(final double sigma) {
+        final List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, UniversalScalabilityLaw> model : models.entrySet())
+            if (model.getValue().getSigma() >= sigma)
+                failures.add(model.getKey() + " contention is " + format(model.getValue().getSigma()) + details(model.getKey()));
+        fail("Expected contention below " + sigma, failures);
+        return this;
+    }
+
+    @Override
+    public JMHScalabilityAssert coherencyBelow(final double kappa) {
+        final List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, UniversalScalabilityLaw> model : models.entrySet())
+            if (model.getValue().getKappa() >= kappa)
+                failures.add(model.getKey() + " coherency is " + format(model.getValue().getKappa()) + details(model.getKey()));
+        fail("Expected coherency below " + kappa, failures);
+        return this;
+    }
+
+    @Override
+    public JMHScalabilityAssert peaksAtLeast(final int threads) {
+        final List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, UniversalScalabilityLaw> model : models.entrySet())
+            if (model.getValue().peak() < threads)
+                failures.add(model.getKey() + " peaks at " + model.getValue().peak() + " threads" + details(model.getKey()));
+        fail("Expected throughput peak at least at " + threads + " threads", failures);
+        return this;
+    }
+
+    private String details(final String key) {
+        return " (" + models.get(key) + ", measured " + throughputs.get(key) + ")";
+    }
+
+    /**
+     * @return total operations per time unit, over all threads
+     */
+    private static double throughput(final RunResult result, final int threads) {
+        final double score = result.getPrimaryResult().getScore();
+        if (result.getParams().getMode() == Mode.Throughput) return score;
+        return threads / score;
+    }
+
+    private static String format(final double value) {
+        return String.format("%.4f", value);
+    }
+}
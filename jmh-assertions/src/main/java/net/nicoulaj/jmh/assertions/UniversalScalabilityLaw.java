@@ -0,0 +1,155 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+/**
+ * Universal Scalability Law model of a benchmark throughput as a function of its number of threads:
+ * <code>X(N) = λN / (1 + σ(N - 1) + κN(N - 1))</code>.
+ * <p/>
+ * <code>σ</code> is the contention coefficient (serialized fraction of the work, as in Amdahl's law) and
+ * <code>κ</code> the coherency coefficient (cost of keeping shared data consistent between threads), which
+ * makes throughput eventually decrease when adding threads.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see <a href="http://www.perfdynamics.com/Manifesto/USLscalability.html">Universal Scalability Law</a>
+ */
+final class UniversalScalabilityLaw {
+
+    private final double lambda;
+
+    private final double sigma;
+
+    private final double kappa;
+
+    UniversalScalabilityLaw(final double lambda, final double sigma, final double kappa) {
+        this.lambda = lambda;
+        this.sigma = sigma;
+        this.kappa = kappa;
+    }
+
+    /**
+     * Fit the model to measured throughputs, by linear least squares on the
+     * <code>N / C(N) - 1 = σ(N - 1) + κN(N - 1)</code> form, where <code>C(N) = X(N) / X(1)</code>.
+     * <p/>
+     * Both coefficients are constrained to be non-negative: a negative coefficient has no physical meaning, and
+     * measurement noise would otherwise be compensated by an inflated other coefficient.
+     *
+     * @param threads     thread counts, must contain {@code 1} and at least two other distinct counts
+     * @param throughputs throughput for each thread count
+     * @return fitted model
+     * @throws IllegalArgumentException if there are not enough thread counts to fit the model
+     */
+    static UniversalScalabilityLaw fit(final int[] threads, final double[] throughputs) {
+        double lambda = Double.NaN;
+        for (int i = 0; i < threads.length; i++)
+            if (threads[i] == 1) lambda = throughputs[i];
+        if (Double.isNaN(lambda))
+            throw new IllegalArgumentException("Scalability fit requires a single thread result");
+
+        double s11 = 0, s12 = 0, s22 = 0, s1y = 0, s2y = 0;
+        for (int i = 0; i < threads.length; i++) {
+            final double n = threads[i];
+            final double x1 = n - 1;
+            final double x2 = n * (n - 1);
+            final double y = n * lambda / throughputs[i] - 1;
+            s11 += x1 * x1;
+            s12 += x1 * x2;
+            s22 += x2 * x2;
+            s1y += x1 * y;
+            s2y += x2 * y;
+        }
+
+        final double determinant = s11 * s22 - s12 * s12;
+        if (!(determinant > 0))
+            throw new IllegalArgumentException("Scalability fit requires at least 3 distinct thread counts, including 1");
+        final double sigma = (s22 * s1y - s12 * s2y) / determinant;
+        final double kappa = (s11 * s2y - s12 * s1y) / determinant;
+        if (sigma >= 0 && kappa >= 0)
+            return new UniversalScalabilityLaw(lambda, sigma, kappa);
+
+        // The constrained optimum lies on a boundary: fit each coefficient alone and keep the best residual
+        final double sigmaOnly = Math.max(0, s1y / s11);
+        final double kappaOnly = Math.max(0, s2y / s22);
+        if (residual(sigmaOnly, 0, s11, s12, s22, s1y, s2y) <= residual(0, kappaOnly, s11, s12, s22, s1y, s2y))
+            return new UniversalScalabilityLaw(lambda, sigmaOnly, 0);
+        return new UniversalScalabilityLaw(lambda, 0, kappaOnly);
+    }
+
+    /**
+     * @return sum of squared residuals of the linearized fit, minus the constant sum of squared observations
+     */
+    private static double residual(final double sigma, final double kappa,
+                                   final double s11, final double s12, final double s22,
+                                   final double s1y, final double s2y) {
+        return sigma * sigma * s11 + 2 * sigma * kappa * s12 + kappa * kappa * s22 - 2 * sigma * s1y - 2 * kappa * s2y;
+    }
+
+    /**
+     * @return single thread throughput
+     */
+    double getLambda() {
+        return lambda;
+    }
+
+    /**
+     * @return contention coefficient
+     */
+    double getSigma() {
+        return sigma;
+    }
+
+    /**
+     * @return coherency coefficient
+     */
+    double getKappa() {
+        return kappa;
+    }
+
+    /**
+     * @param threads thread count
+     * @return modelled throughput
+     */
+    double throughput(final int threads) {
+        return lambda * threads / (1 + sigma * (threads - 1) + kappa * threads * (threads - 1));
+    }
+
+    /**
+     * @param threads thread count
+     * @return modelled throughput relative to perfect linear scaling, {@code 1} meaning perfect scaling
+     */
+    double efficiency(final int threads) {
+        return throughput(threads) / (lambda * threads);
+    }
+
+    /**
+     * @return thread count with the highest modelled throughput, {@link Integer#MAX_VALUE} if throughput never decreases
+     */
+    int peak() {
+        if (!(kappa > 0)) return Integer.MAX_VALUE;
+        final double peak = Math.sqrt((1 - sigma) / kappa);
+        if (!(peak >= 1)) return 1;
+        final int floor = (int) Math.min(Math.floor(peak), Integer.MAX_VALUE - 1);
+        return throughput(floor + 1) > throughput(floor) ? floor + 1 : floor;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("USL(λ=%.4g, σ=%.4f, κ=%.6f)", lambda, sigma, kappa);
+    }
+}
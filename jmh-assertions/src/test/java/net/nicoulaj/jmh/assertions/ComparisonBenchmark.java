@@ -0,0 +1,53 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+
+/**
+ * Test benchmark for relative assertions.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+@BenchmarkMode(AverageTime)
+@Fork(1)
+@Warmup(iterations = 1, time = 100, timeUnit = MILLISECONDS)
+@Measurement(iterations = 10, time = 50, timeUnit = MILLISECONDS)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+public class ComparisonBenchmark {
+
+    @Param({"10", "100"})
+    public int tokens;
+
+    @Benchmark
+    public void fast() {
+        Blackhole.consumeCPU(tokens);
+    }
+
+    @Benchmark
+    public void slow() {
+        Blackhole.consumeCPU(tokens * 20);
+    }
+}
@@ -18,9 +18,53 @@
  */
 package net.nicoulaj.jmh.assertions;
 
+import net.nicoulaj.jmh.profilers.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.write;
+import static java.nio.file.Paths.get;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.nicoulaj.jmh.assertions.Complexity.LINEAR;
+import static net.nicoulaj.jmh.assertions.Complexity.QUADRATIC;
 import static net.nicoulaj.jmh.assertions.JMHAssertions.assertJMH;
+import static net.nicoulaj.jmh.assertions.RelativeUnit.PERCENT;
+import static net.nicoulaj.jmh.assertions.RelativeUnit.TIMES;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
 
 /**
  * Test for {@link JMHAssertions}.
@@ -31,16 +75,443 @@ public class JMHAssertionsTest {
 
     @Test
     public void test001() {
-        assertJMH().runsWithoutError();
+        assertJMH()
+                .include(TestBenchmark.class.getName())
+                .runsWithoutError();
     }
 
     @Test
     public void test002() {
-        assertJMH().hasResults();
+        assertJMH()
+                .include(TestBenchmark.class.getName())
+                .hasResults();
     }
 
     @Test
     public void test003() {
-        assertJMH().hasScoreOver(0.1);
+        assertJMH()
+                .include(TestBenchmark.class.getName())
+                .warmupIterations(2)
+                .hasScoreOver(0.1);
+    }
+
+    @Test
+    public void test004() {
+        assertJMH()
+                .include(LatencyBenchmark.class.getName())
+                .hasPercentileUnder(99, 1, SECONDS)
+                .hasMaxUnder(10, SECONDS)
+                .hasMeanUnder(100, MILLISECONDS);
+    }
+
+    @Test(expectedExceptions = AssertionError.class, expectedExceptionsMessageRegExp = "Expected 50.0th percentile under .*")
+    public void test005() {
+        assertJMH()
+                .include(LatencyBenchmark.class.getName())
+                .hasPercentileUnder(50, 1, NANOSECONDS);
+    }
+
+    @Test
+    public void test006() throws Exception {
+        createDirectories(get("target"));
+        final Path baseline = get("target", "latency-baseline.json");
+        assertJMH()
+                .include(LatencyBenchmark.class.getName())
+                .resultFormat(ResultFormatType.JSON)
+                .result(baseline.toString())
+                .runsWithoutError();
+
+        assertJMH()
+                .include(LatencyBenchmark.class.getName())
+                .isNotSlowerThanBaseline(baseline, 50);
+    }
+
+    @Test(expectedExceptions = AssertionError.class, expectedExceptionsMessageRegExp = "(?s)Expected not slower than baseline .*% slower than baseline.* within forks only.*")
+    public void test007() throws Exception {
+        createDirectories(get("target"));
+        final Path baseline = write(get("target", "fast-baseline.json"), (
+                "[{\"benchmark\": \"" + LatencyBenchmark.class.getName() + ".benchmark\", \"mode\": \"sample\",\n" +
+                " \"primaryMetric\": {\"score\": 0.001, \"scoreUnit\": \"us/op\", \"rawDataHistogram\": [[\n" +
+                "   [[0.001, 100], [0.002, 1]],\n" +
+                "   [[0.001, 90], [0.002, 2]],\n" +
+                "   [[0.001, 110], [0.002, 3]]]]}}]").getBytes(UTF_8));
+
+        assertJMH()
+                .include(LatencyBenchmark.class.getName())
+                .isNotSlowerThanBaseline(baseline, 5, 0.5);
+    }
+
+    @Test
+    public void test008() {
+        assertJMH()
+                .include(ComparisonBenchmark.class.getName())
+                .benchmark("fast").isFasterThan("slow").byAtLeast(100, PERCENT)
+                .benchmark(ComparisonBenchmark.class.getName() + ".fast").isFasterThan("slow").byAtLeast(2, TIMES);
+    }
+
+    @Test(expectedExceptions = AssertionError.class, expectedExceptionsMessageRegExp = "(?s)Expected slow faster than fast by at least 0.0 percent:.*tokens=10.*within forks only.*tokens=100.*")
+    public void test009() {
+        assertJMH()
+                .include(ComparisonBenchmark.class.getName())
+                .benchmark("slow").isFasterThan("fast").byAtLeast(0, PERCENT);
+    }
+
+    @Test
+    public void test010() {
+        assertJMH()
+                .include(ScalabilityBenchmark.class.getName() + ".parallel")
+                .threadSweep(1, 2, 4)
+                .scalesAtLeast(0.8).upTo(4)
+                .contentionBelow(0.1)
+                .peaksAtLeast(8);
+    }
+
+    @Test(expectedExceptions = AssertionError.class, expectedExceptionsMessageRegExp = "(?s)Expected scaling efficiency at least 0.8 up to 4 threads:.*serialized.*")
+    public void test011() {
+        assertJMH()
+                .include(ScalabilityBenchmark.class.getName() + ".serialized")
+                .threadSweep(1, 2, 4)
+                .scalesAtLeast(0.8).upTo(4);
+    }
+
+    @Test
+    public void test012() {
+        final int[] threads = {1, 2, 4, 8, 16};
+        final double[] throughputs = new double[threads.length];
+        for (int i = 0; i < threads.length; i++)
+            throughputs[i] = new UniversalScalabilityLaw(100, 0.05, 0.002).throughput(threads[i]);
+
+        final UniversalScalabilityLaw model = UniversalScalabilityLaw.fit(threads, throughputs);
+        assertEquals(model.getLambda(), 100.0);
+        assertEquals(model.getSigma(), 0.05, 1e-9);
+        assertEquals(model.getKappa(), 0.002, 1e-9);
+        assertEquals(model.peak(), 22);
+        assertEquals(model.efficiency(1), 1.0);
+
+        final UniversalScalabilityLaw noisy = UniversalScalabilityLaw.fit(new int[]{1, 2, 4}, new double[]{0.883, 1.662, 3.532});
+        assertEquals(noisy.getKappa(), 0.0);
+        assertEquals(noisy.getSigma(), 0.0063, 1e-4);
+    }
+
+    @Test
+    public void test013() {
+        assertJMH()
+                .include(ComplexityBenchmark.class.getName() + ".linear")
+                .forks(3)
+                .complexity("size")
+                .hasComplexity(LINEAR);
+    }
+
+    @Test(expectedExceptions = AssertionError.class, expectedExceptionsMessageRegExp = "(?s)Expected complexity at most O\\(n\\) over size:.*quadratic.* is O\\(n\\^2\\).*")
+    public void test014() {
+        assertJMH()
+                .include(ComplexityBenchmark.class.getName() + ".quadratic")
+                .complexity("size")
+                .hasComplexityAtMost(LINEAR);
+    }
+
+    @Test
+    public void test015() {
+        final double[] sizes = {10, 100, 1000, 10000};
+        for (Complexity complexity : Complexity.values()) {
+            final double[] costs = new double[sizes.length];
+            for (int i = 0; i < sizes.length; i++)
+                costs[i] = 50 + 3 * complexity.apply(sizes[i]) * (i % 2 == 0 ? 1.01 : 0.99);
+            assertEquals(Complexity.bestFit(sizes, costs), complexity);
+        }
+        assertEquals(Complexity.bestFit(sizes, new double[]{50, 52, 49, 51}), Complexity.CONSTANT);
+        assertEquals(Complexity.bestFit(new double[]{1000, 2000, 4000}, new double[]{1000, 4000, 16000}), QUADRATIC);
+        // Slightly better fitted by O(n log n), not by a real margin
+        assertEquals(Complexity.bestFit(new double[]{300, 1000, 3000, 10000}, new double[]{30, 100, 311, 1120}), LINEAR);
+    }
+
+    @Test
+    public void test016() {
+        assertJMH()
+                .include(AllocationBenchmark.class.getName() + ".free")
+                .isAllocationFree();
+    }
+
+    @Test(expectedExceptions = AssertionError.class, expectedExceptionsMessageRegExp = "(?s)Expected at most 64 B/op allocated:.*allocating \\(avgt\\) allocates .* B/op")
+    public void test017() {
+        assertJMH()
+                .include(AllocationBenchmark.class.getName())
+                .allocatesAtMost(64);
+    }
+
+    @Test
+    public void test018() {
+        final JMHRunResultsAssert results = assertJMH()
+                .include(AllocationBenchmark.class.getName() + ".allocating")
+                .addProfiler(GCProfiler.class)
+                .runsWithoutError();
+        results.secondary("gc.alloc.rate.norm").hasUnit("B/op").isBetween(64, 1024).isGreaterThan(64);
+        results.secondary("\u00b7gc.count").isLessThan(Double.MAX_VALUE);
+        results.hasSingleResult().primary().hasUnit("ns/op").isGreaterThan(0);
+    }
+
+    @Test(expectedExceptions = AssertionError.class, expectedExceptionsMessageRegExp = "(?s)Expected gc.alloc.rate.norm less than 1.0:.*allocating \\(avgt\\) is .* B/op")
+    public void test019() {
+        assertJMH()
+                .include(AllocationBenchmark.class.getName() + ".allocating")
+                .addProfiler(GCProfiler.class)
+                .secondary("gc.alloc.rate.norm")
+                .isLessThan(1);
+    }
+
+    @Test
+    public void test020() {
+        final List<Set<Integer>> cores = new ArrayList<>();
+        for (int core = 0; core < 5; core++)
+            cores.add(new TreeSet<>(asList(core, core + 5)));
+        assertEquals(CpuPartition.partition(cores, 2), asList("1,6,2,7", "3,8,4,9"));
+        assertEquals(CpuPartition.partition(cores.subList(0, 4), 2), asList("1,6,2,7"));
+        assertEquals(CpuPartition.partition(cores.subList(0, 2), 2), asList("0,5,1,6"));
+        assertEquals(CpuPartition.partition(cores, 5), asList("0,5,1,6,2,7,3,8,4,9"));
+        assertEquals(CpuPartition.parse("0-2,5"), new TreeSet<>(asList(0, 1, 2, 5)));
+    }
+
+    @Test
+    public void test021() throws Exception {
+        createDirectories(get("target"));
+        final Path result = get("target", "concurrent-result.json");
+        final Collection<RunResult> results = ConcurrentRunner.run(
+                new OptionsBuilder()
+                        .include(TestBenchmark.class.getName())
+                        .forks(2)
+                        .resultFormat(ResultFormatType.JSON)
+                        .result(result.toString())
+                        .build(),
+                asList("0", "0"));
+
+        assertEquals(results.size(), 1);
+        assertEquals(results.iterator().next().getBenchmarkResults().size(), 2);
+        assertJMH(results).hasScoreOver(0);
+        assertEquals(((List<?>) ((Map<?, ?>) ((Map<?, ?>) ((List<?>) Json.parse(new String(readAllBytes(result), UTF_8))).get(0))
+                .get("primaryMetric")).get("rawData")).size(), 2);
+    }
+
+    @Test
+    public void test022() {
+        assertJMH()
+                .include(TestBenchmark.class.getName())
+                .concurrentForks(1)
+                .hasSingleResult();
+    }
+
+    @Test
+    public void test023() {
+        final RunStep step = new RunStep() {
+            @Override
+            public Collection<RunResult> run(final Options options) {
+                return JMHAssertions.run(options);
+            }
+        };
+        final Options options = new OptionsBuilder().include(TestBenchmark.class.getName()).build();
+
+        assertEquals(AdaptiveRunner.run(options, Double.MAX_VALUE, 3, Double.NaN, step).get(0).getBenchmarkResults().size(), 2);
+        assertEquals(AdaptiveRunner.run(options, Double.MIN_VALUE, 3, Double.NaN, step).get(0).getBenchmarkResults().size(), 3);
+        assertEquals(AdaptiveRunner.run(options, Double.MIN_VALUE, 3, -1e9, step).get(0).getBenchmarkResults().size(), 2);
+    }
+
+    @Test
+    public void test024() {
+        assertJMH()
+                .include(TestBenchmark.class.getName())
+                .adaptive(0.5, 3)
+                .hasScoreOver(0);
+    }
+
+    @Test
+    public void test025() throws Exception {
+        final String generated = TestBenchmark.class.getPackage().getName() + ".generated.TestBenchmark_benchmark_jmhTest";
+        final ClassLoader loader = getClass().getClassLoader();
+        final ClassLoader changed = new ClassLoader(loader) {
+            @Override
+            public InputStream getResourceAsStream(final String name) {
+                if (!name.equals(TestBenchmark.class.getName().replace('.', '/') + ".class"))
+                    return super.getResourceAsStream(name);
+                try (InputStream in = super.getResourceAsStream(name)) {
+                    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    for (int b; (b = in.read()) >= 0; ) bytes.write(b);
+                    bytes.write(0);
+                    return new ByteArrayInputStream(bytes.toByteArray());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+
+        final String hash = new BytecodeClosure(loader).hash(asList(generated));
+        assertEquals(new BytecodeClosure(loader).hash(asList(generated)), hash);
+        assertNotEquals(new BytecodeClosure(changed).hash(asList(generated)), hash);
+        assertNotEquals(new BytecodeClosure(loader).hash(asList(LatencyBenchmark.class.getName())), hash);
+        try (InputStream in = loader.getResourceAsStream(TestBenchmark.class.getName().replace('.', '/') + ".class")) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (int b; (b = in.read()) >= 0; ) bytes.write(b);
+            assertTrue(BytecodeClosure.references(bytes.toByteArray()).contains(Benchmark.class.getName()));
+        }
+    }
+
+    @Test
+    public void test026() throws Exception {
+        createDirectories(get("target"));
+        final Path cache = createTempDirectory(get("target"), "jmh-cache-");
+        final AtomicInteger runs = new AtomicInteger();
+        final RunStep step = new RunStep() {
+            @Override
+            public Collection<RunResult> run(final Options options) {
+                runs.incrementAndGet();
+                return JMHAssertions.run(options);
+            }
+        };
+        final Options options = new OptionsBuilder().include(TestBenchmark.class.getName()).build();
+
+        final List<RunResult> first = ResultCache.run(options, cache, "", step);
+        final List<RunResult> second = ResultCache.run(options, cache, "", step);
+        assertEquals(runs.get(), 1);
+        assertEquals(second.size(), 1);
+        assertEquals(second.get(0).getPrimaryResult().getScore(), first.get(0).getPrimaryResult().getScore());
+
+        ResultCache.run(new OptionsBuilder().parent(options).measurementIterations(2).build(), cache, "", step);
+        ResultCache.run(options, cache, "other", step);
+        assertEquals(runs.get(), 3);
+
+        assertJMH()
+                .include(TestBenchmark.class.getName())
+                .resultCache(cache)
+                .hasSingleResult();
+        assertEquals(runs.get(), 3);
+    }
+
+    @Test(expectedExceptions = AssertionError.class, expectedExceptionsMessageRegExp = "Baseline .* is not a JMH JSON result file: primaryMetric is not an object")
+    public void test027() throws Exception {
+        createDirectories(get("target"));
+        Baseline.read(write(get("target", "malformed-baseline.json"),
+                            "[{\"benchmark\": \"benchmark\", \"mode\": \"thrpt\", \"primaryMetric\": 1.0}]".getBytes(UTF_8)));
+    }
+
+    @Test(expectedExceptions = AssertionError.class, expectedExceptionsMessageRegExp = "Baseline .* is not a JMH JSON result file: histogram bucket is not a \\[value, count\\] pair")
+    public void test028() throws Exception {
+        createDirectories(get("target"));
+        Baseline.read(write(get("target", "malformed-histogram-baseline.json"), (
+                "[{\"benchmark\": \"benchmark\", \"mode\": \"sample\",\n" +
+                " \"primaryMetric\": {\"rawDataHistogram\": [[[[\"0.001\", 100]]]]}}]").getBytes(UTF_8)));
+    }
+
+    @Test
+    public void test029() throws Exception {
+        createDirectories(get("target"));
+        final Path output = write(get("target", "status-output.txt"), "run\n".getBytes(UTF_8));
+        JMHAssertions.status(new OptionsBuilder().output(output.toString()).build(), "# status");
+        JMHAssertions.status(new OptionsBuilder().output(output.toString()).verbosity(VerboseMode.SILENT).build(), "# silent");
+        assertEquals(new String(readAllBytes(output), UTF_8), "run\n# status" + System.lineSeparator());
+    }
+
+    @Test(expectedExceptions = AssertionError.class, expectedExceptionsMessageRegExp = "(?s)Expected not slower than baseline (?!.*within forks only).*% slower than baseline.*")
+    public void test030() throws Exception {
+        createDirectories(get("target"));
+        final Path baseline = write(get("target", "fast-forks-baseline.json"), (
+                "[{\"benchmark\": \"" + LatencyBenchmark.class.getName() + ".benchmark\", \"mode\": \"sample\",\n" +
+                " \"primaryMetric\": {\"score\": 0.001, \"scoreUnit\": \"us/op\", \"rawDataHistogram\": [\n" +
+                "   [[[0.001, 100], [0.002, 1]], [[0.001, 90], [0.002, 2]]],\n" +
+                "   [[[0.001, 110], [0.002, 3]], [[0.001, 100], [0.002, 2]]]]}}]").getBytes(UTF_8));
+
+        assertJMH()
+                .include(LatencyBenchmark.class.getName())
+                .forks(2)
+                .isNotSlowerThanBaseline(baseline, 5, 0.5);
+    }
+
+    @Test(expectedExceptions = AssertionError.class, expectedExceptionsMessageRegExp = "(?s)Expected slow faster than fast by at least 0.0 percent:(?!.*within forks only).*tokens=10.*")
+    public void test031() {
+        assertJMH()
+                .include(ComparisonBenchmark.class.getName())
+                .param("tokens", "10")
+                .forks(2)
+                .benchmark("slow").isFasterThan("fast").byAtLeast(0, PERCENT);
+    }
+
+    @Test
+    public void test032() throws Exception {
+        createDirectories(get("target"));
+        final Path output = write(get("target", "sweep-output.txt"), "stale\n".getBytes(UTF_8));
+        assertJMH()
+                .include(ScalabilityBenchmark.class.getName() + ".parallel")
+                .output(output.toString())
+                .threadSweep(1, 2, 4);
+        final String content = new String(readAllBytes(output), UTF_8);
+        assertFalse(content.contains("stale"));
+        assertTrue(content.contains("# Threads: 1 thread"));
+        assertTrue(content.contains("# Threads: 2 threads"));
+        assertTrue(content.contains("# Threads: 4 threads"));
+    }
+
+    @Test
+    public void test033() {
+        // Few operations per iteration, that the JMH infrastructure allocations are amortized over
+        assertJMH()
+                .include(ComplexityBenchmark.class.getName() + ".quadratic")
+                .param("size", "3000")
+                .isAllocationFree();
+    }
+
+    @Test
+    public void test034() throws Exception {
+        createDirectories(get("target"));
+        final Path output = get("target", "concurrent-output.txt");
+        assertJMH()
+                .include(TestBenchmark.class.getName())
+                .output(output.toString())
+                .concurrentForks(1)
+                .hasSingleResult();
+        String content = new String(readAllBytes(output), UTF_8);
+        assertTrue(content.contains("# Concurrent forks disabled: ") || content.contains("forks concurrently on CPU sets"));
+        assertTrue(content.contains("# Benchmark: " + TestBenchmark.class.getName()));
+
+        ConcurrentRunner.run(
+                new OptionsBuilder()
+                        .include(TestBenchmark.class.getName())
+                        .forks(2)
+                        .output(output.toString())
+                        .build(),
+                asList("0", "0"));
+        content = new String(readAllBytes(output), UTF_8);
+        assertTrue(content.contains("# Running 2 forks concurrently on CPU sets [0, 0]"));
+        assertTrue(content.contains("# Benchmark: " + TestBenchmark.class.getName()));
+    }
+
+    @Test
+    public void test035() throws Exception {
+        createDirectories(get("target"));
+        final Path output = write(get("target", "adaptive-output.txt"), "stale\n".getBytes(UTF_8));
+        assertJMH()
+                .include(TestBenchmark.class.getName())
+                .output(output.toString())
+                .adaptive(Double.MIN_VALUE, 2)
+                .hasScoreOver(0);
+        final String content = new String(readAllBytes(output), UTF_8);
+        assertFalse(content.contains("stale"));
+        assertEquals(content.split("# Run complete").length, 3);
+        assertTrue(content.contains("# Adaptive run budget of 2 fork(s) exhausted"));
+    }
+
+    @Test
+    public void test036() throws Exception {
+        createDirectories(get("target"));
+        final Path classes = createTempDirectory(get("target"), "classpath-");
+        write(classes.resolve("resource.txt"), "1".getBytes(UTF_8));
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classes.getFileName() + "/");
+        final Path jar = get("target", "classpath-" + classes.getFileName() + ".jar");
+        new JarOutputStream(newOutputStream(jar), manifest).close();
+
+        final String hash = BytecodeClosure.classpath(asList(jar));
+        assertEquals(BytecodeClosure.classpath(asList(jar)), hash);
+        write(classes.resolve("resource.txt"), "2".getBytes(UTF_8));
+        assertNotEquals(BytecodeClosure.classpath(asList(jar)), hash);
+        assertEquals(BytecodeClosure.classpath(asList(jar)), BytecodeClosure.classpath(asList(jar, classes)));
+        assertFalse(new BytecodeClosure(getClass().getClassLoader()).classpath().isEmpty());
     }
 }
@@ -0,0 +1,53 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.assertions;
+
+import org.openjdk.jmh.annotations.*;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+
+/**
+ * Test benchmark for scalability assertions. Benchmarks sleep rather than burn CPU, so that they
+ * scale regardless of the number of CPUs of the machine running the tests.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+@BenchmarkMode(Throughput)
+@Fork(1)
+@Warmup(iterations = 1, time = 100, timeUnit = MILLISECONDS)
+@Measurement(iterations = 3, time = 100, timeUnit = MILLISECONDS)
+@OutputTimeUnit(MILLISECONDS)
+@State(Scope.Benchmark)
+public class ScalabilityBenchmark {
+
+    private final Object lock = new Object();
+
+    @Benchmark
+    public void parallel() throws InterruptedException {
+        Thread.sleep(1);
+    }
+
+    @Benchmark
+    public void serialized() throws InterruptedException {
+        synchronized (lock) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ROOT;
+
+/**
+ * Method-level diff of profiles between a baseline and a candidate run.
+ * <p/>
+ * Profiles are {@link CollapsedStacks collapsed stacks} files (eg: <code>&lt;benchmark&gt;.cpu.collapsed</code>,
+ * <code>&lt;benchmark&gt;.alloc.collapsed</code>). Self weights are compared as shares of each profile total,
+ * so runs of different lengths can be compared, and a {@link FlameGraph#diff differential flame graph} is rendered.
+ * <p/>
+ * Usage:
+ * <pre>
+ * java -cp ... net.nicoulaj.jmh.profilers.ProfileDiff &lt;baseline&gt; &lt;candidate&gt; [output directory]
+ * </pre>
+ * where baseline and candidate are either two files, or two directories whose <code>*.collapsed</code> files are
+ * paired by name.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class ProfileDiff {
+
+    private static final String EXTENSION = ".collapsed";
+
+    private static final String ALLOCATION_SUFFIX = ".alloc";
+
+    private static final int REPORT_LIMIT = 30;
+
+    private final String name;
+
+    private final CollapsedStacks baseline;
+
+    private final CollapsedStacks candidate;
+
+    /**
+     * @param name      profile name, eg: <code>org.acme.MyBenchmark.encode.alloc</code>
+     * @param baseline  baseline profile
+     * @param candidate candidate profile
+     */
+    public ProfileDiff(final String name, final CollapsedStacks baseline, final CollapsedStacks candidate) {
+        this.name = name;
+        this.baseline = baseline;
+        this.candidate = candidate;
+    }
+
+    /**
+     * @return profile holds allocation samples (its name has the <code>.alloc</code> suffix written by
+     * the Flight Recorder profiler), so frames are allocation sites
+     */
+    public boolean isAllocation() {
+        return name.endsWith(ALLOCATION_SUFFIX);
+    }
+
+    /**
+     * @return self weight changes by frame, largest first
+     */
+    public List<FrameDelta> getDeltas() {
+        final Map<String, Long> baselineSelf = baseline.selfByFrame();
+        final Map<String, Long> candidateSelf = candidate.selfByFrame();
+        final Set<String> frames = new HashSet<>(baselineSelf.keySet());
+        frames.addAll(candidateSelf.keySet());
+
+        final List<FrameDelta> deltas = new ArrayList<>(frames.size());
+        for (String frame : frames) {
+            final Long before = baselineSelf.get(frame);
+            final Long after = candidateSelf.get(frame);
+            deltas.add(new FrameDelta(frame,
+                                      before != null ? before : 0,
+                                      after != null ? after : 0,
+                                      share(before, baseline.getTotal()),
+                                      share(after, candidate.getTotal())));
+        }
+        Collections.sort(deltas, new Comparator<FrameDelta>() {
+            @Override
+            public int compare(final FrameDelta a, final FrameDelta b) {
+                final int byDelta = Double.compare(Math.abs(b.getDelta()), Math.abs(a.getDelta()));
+                return byDelta != 0 ? byDelta : a.getFrame().compareTo(b.getFrame());
+            }
+        });
+        return deltas;
+    }
+
+    /**
+     * @return differential flame graph of the candidate against the baseline
+     */
+    public FlameGraph getFlameGraph() {
+        return FlameGraph.diff(baseline, candidate);
+    }
+
+    /**
+     * @param limit max number of frames
+     * @return text report of the largest changes
+     */
+    public String report(final int limit) {
+        final StringBuilder report = new StringBuilder();
+        report.append(isAllocation() ? "Allocation by site" : "Self time by method").append(" diff for ").append(name)
+                .append(format(ROOT, " (baseline total: %,d, candidate total: %,d)%n", baseline.getTotal(), candidate.getTotal()));
+        report.append(format(ROOT, "%9s %9s %9s  %s%n", "delta", "baseline", "candidate", "frame"));
+        final List<FrameDelta> deltas = getDeltas();
+        for (FrameDelta delta : deltas.subList(0, Math.min(limit, deltas.size())))
+            report.append(format(ROOT, "%+8.2f%% %8.2f%% %8.2f%%  %s%n",
+                                 100 * delta.getDelta(), 100 * delta.getBaselineShare(), 100 * delta.getCandidateShare(), delta.getFrame()));
+        return report.toString();
+    }
+
+    /**
+     * Write the text report and the differential flame graph.
+     *
+     * @param directory output directory
+     * @return text report
+     * @throws IOException if failed to write the files
+     */
+    public String write(final Path directory) throws IOException {
+        Files.createDirectories(directory);
+        final String report = report(REPORT_LIMIT);
+        Files.write(directory.resolve(name + ".diff.txt"), report.getBytes(UTF_8));
+        getFlameGraph().writeSvg(directory.resolve(name + ".diff.svg"), name + " (red: grew, blue: shrank)");
+        return report;
+    }
+
+    private static double share(final Long weight, final long total) {
+        return weight != null && total > 0 ? (double) weight / total : 0;
+    }
+
+    /**
+     * Diff baseline and candidate profiles.
+     *
+     * @param args baseline, candidate, optional output directory (defaults to the current directory)
+     * @throws IOException if failed to read or write profiles
+     */
+    public static void main(final String... args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: ProfileDiff <baseline> <candidate> [output directory]");
+            System.exit(2);
+        }
+        final Path baseline = Paths.get(args[0]);
+        final Path candidate = Paths.get(args[1]);
+        final Path output = Paths.get(args.length > 2 ? args[2] : ".");
+
+        final Map<String, Path[]> pairs = new TreeMap<>();
+        if (Files.isDirectory(baseline) && Files.isDirectory(candidate)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(baseline, "*" + EXTENSION)) {
+                for (Path file : files) {
+                    final Path other = candidate.resolve(file.getFileName().toString());
+                    if (Files.isRegularFile(other)) pairs.put(name(file), new Path[]{file, other});
+                }
+            }
+        } else {
+            pairs.put(name(candidate), new Path[]{baseline, candidate});
+        }
+        if (pairs.isEmpty()) {
+            System.err.println("No " + EXTENSION + " profiles found in both " + baseline + " and " + candidate);
+            System.exit(1);
+        }
+
+        // Profiles are parsed and diffed in background, off the CPUs of any benchmark run on the host
+        final List<Future<String>> reports = new ArrayList<>(pairs.size());
+        for (final Map.Entry<String, Path[]> pair : pairs.entrySet()) {
+            reports.add(PostProcessing.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return new ProfileDiff(pair.getKey(),
+                                           CollapsedStacks.read(pair.getValue()[0]),
+                                           CollapsedStacks.read(pair.getValue()[1])).write(output);
+                }
+            }));
+        }
+        for (Future<String> report : reports) {
+            try {
+                System.out.println(report.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private static String name(final Path file) {
+        final String name = file.getFileName().toString();
+        return name.endsWith(EXTENSION) ? name.substring(0, name.length() - EXTENSION.length()) : name;
+    }
+
+    /**
+     * Change of the self weight of a frame.
+     *
+     * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+     */
+    public static final class FrameDelta {
+
+        private final String frame;
+
+        private final long baselineWeight;
+
+        private final long candidateWeight;
+
+        private final double baselineShare;
+
+        private final double candidateShare;
+
+        FrameDelta(final String frame,
+                   final long baselineWeight,
+                   final long candidateWeight,
+                   final double baselineShare,
+                   final double candidateShare) {
+            this.frame = frame;
+            this.baselineWeight = baselineWeight;
+            this.candidateWeight = candidateWeight;
+            this.baselineShare = baselineShare;
+            this.candidateShare = candidateShare;
+        }
+
+        public String getFrame() {
+            return frame;
+        }
+
+        public long getBaselineWeight() {
+            return baselineWeight;
+        }
+
+        public long getCandidateWeight() {
+            return candidateWeight;
+        }
+
+        public double getBaselineShare() {
+            return baselineShare;
+        }
+
+        public double getCandidateShare() {
+            return candidateShare;
+        }
+
+        /**
+         * @return change of the self weight share, positive if the frame weighs more in the candidate
+         */
+        public double getDelta() {
+            return candidateShare - baselineShare;
+        }
+
+        @Override
+        public String toString() {
+            return format(ROOT, "%s %+.2f%%", frame, 100 * getDelta());
+        }
+    }
+}
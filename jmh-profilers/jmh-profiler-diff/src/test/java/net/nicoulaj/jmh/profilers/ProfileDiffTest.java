@@ -0,0 +1,80 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.testng.annotations.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.write;
+import static java.nio.file.Paths.get;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.contentOf;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Test for {@link ProfileDiff}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class ProfileDiffTest {
+
+    @Test
+    public void test001() throws Exception {
+
+        createDirectories(get("target"));
+        final Path baseline = createTempDirectory(get("target"), "baseline-");
+        final Path candidate = createTempDirectory(get("target"), "candidate-");
+        final Path output = createTempDirectory(get("target"), "diff-");
+        write(baseline.resolve("Bench.run.cpu.collapsed"), ("main;run;encode 60\n"
+                                                             + "main;run;decode 40\n").getBytes(UTF_8));
+        write(candidate.resolve("Bench.run.cpu.collapsed"), ("main;run;encode 120\n"
+                                                              + "main;run;decode 40\n"
+                                                              + "main;run;encode;<escape> & \"copy\" 40\n").getBytes(UTF_8));
+
+        ProfileDiff.main(baseline.toString(), candidate.toString(), output.toString());
+
+        final ProfileDiff diff = new ProfileDiff("Bench.run.cpu",
+                                                 CollapsedStacks.read(baseline.resolve("Bench.run.cpu.collapsed")),
+                                                 CollapsedStacks.read(candidate.resolve("Bench.run.cpu.collapsed")));
+        assertThat(diff.isAllocation()).isFalse();
+        assertThat(new ProfileDiff("Bench.allocateBuffer.cpu", null, null).isAllocation()).isFalse();
+        assertThat(new ProfileDiff("Bench.allocateBuffer.alloc", null, null).isAllocation()).isTrue();
+        final List<ProfileDiff.FrameDelta> deltas = diff.getDeltas();
+        assertThat(deltas.get(0).getFrame()).isEqualTo("<escape> & \"copy\"");
+        assertThat(deltas.get(0).getDelta()).isCloseTo(0.2, within(1e-9));
+        assertThat(deltas.get(1).getFrame()).isEqualTo("decode");
+        assertThat(deltas.get(1).getDelta()).isCloseTo(-0.2, within(1e-9));
+        assertThat(deltas.get(2).getFrame()).isEqualTo("encode");
+        assertThat(deltas.get(2).getDelta()).isCloseTo(0, within(1e-9));
+
+        assertThat(contentOf(output.resolve("Bench.run.cpu.diff.txt").toFile()))
+                .startsWith("Self time by method diff for Bench.run.cpu")
+                .contains("-20.00%");
+        assertThat(contentOf(output.resolve("Bench.run.cpu.diff.svg").toFile()))
+                .startsWith("<?xml")
+                .contains("&lt;escape&gt; &amp; &quot;copy&quot;")
+                .contains("rgb(255,45,45)")
+                .endsWith("</svg>\n");
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static java.lang.System.getProperty;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static net.nicoulaj.jmh.profilers.ProcUtils.readLines;
+import static net.nicoulaj.jmh.profilers.ProcUtils.readSelected;
+import static net.nicoulaj.jmh.profilers.ProcUtils.readString;
+import static net.nicoulaj.jmh.profilers.StringUtils.join;
+
+/**
+ * Snapshot of the hardware, OS and JVM settings that affect benchmark results.
+ * <p/>
+ * Entries are flat {@code key -> value} strings, so that fingerprints can be stored as
+ * JSON next to JMH results and compared between runs with {@link #differences(EnvironmentFingerprint)}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see EnvironmentProfiler
+ */
+public final class EnvironmentFingerprint implements Serializable {
+
+    /** Entries that are recorded for information only, and ignored when comparing fingerprints. */
+    private static final Set<String> INFORMATIONAL = new TreeSet<>(Arrays.asList("host.name", "timestamp"));
+
+    /** HotSpot flags recorded as <code>jvm.flag.*</code> entries. */
+    private static final List<String> JVM_FLAGS = Arrays.asList(
+            "UseCompressedOops",
+            "UseLargePages",
+            "UseTransparentHugePages",
+            "AlwaysPreTouch",
+            "UseNUMA",
+            "TieredCompilation",
+            "UseBiasedLocking",
+            "MaxHeapSize",
+            "InitialHeapSize",
+            "ParallelGCThreads",
+            "CICompilerCount");
+
+    private final Map<String, String> entries;
+
+    private EnvironmentFingerprint(final Map<String, String> entries) {
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Capture the fingerprint of the current host and JVM.
+     *
+     * @return current fingerprint
+     */
+    public static EnvironmentFingerprint capture() {
+
+        final Map<String, String> entries = new LinkedHashMap<>();
+
+        put(entries, "host.name", hostName());
+        put(entries, "timestamp", String.valueOf(System.currentTimeMillis()));
+
+        // Hardware
+        final CpuTopology topology = CpuTopology.detect();
+        put(entries, "cpu.model", cpuModel());
+        put(entries, "cpu.online", topology.online().toString());
+        put(entries, "cpu.sockets", String.valueOf(topology.sockets()));
+        put(entries, "cpu.cores", String.valueOf(topology.cores()));
+        put(entries, "cpu.threads-per-core", String.valueOf(topology.threadsPerCore()));
+        put(entries, "cpu.isolated", topology.isolated().toString());
+        put(entries, "cpu.governor", cpuGovernors(topology.online()));
+        put(entries, "cpu.turbo", turbo());
+        put(entries, "numa.nodes", String.valueOf(topology.nodes().size()));
+        final List<String> nodes = new ArrayList<>();
+        for (Map.Entry<Integer, CpuSet> node : topology.nodes().entrySet())
+            nodes.add(node.getKey() + ":" + node.getValue());
+        put(entries, "numa.cpus", join(";", nodes));
+
+        // OS
+        put(entries, "os.name", getProperty("os.name"));
+        put(entries, "os.arch", getProperty("os.arch"));
+        final String kernel = readString("/proc/sys/kernel/osrelease");
+        put(entries, "os.kernel", kernel != null ? kernel : getProperty("os.version"));
+        put(entries, "mm.thp.enabled", readSelected("/sys/kernel/mm/transparent_hugepage/enabled"));
+        put(entries, "mm.thp.defrag", readSelected("/sys/kernel/mm/transparent_hugepage/defrag"));
+
+        // JVM
+        put(entries, "jvm.vendor", getProperty("java.vm.vendor"));
+        put(entries, "jvm.name", getProperty("java.vm.name"));
+        put(entries, "jvm.version", getProperty("java.vm.version"));
+        put(entries, "java.version", getProperty("java.version"));
+        put(entries, "jvm.args", join(" ", jvmArgs()));
+        put(entries, "jvm.heap.max", String.valueOf(Runtime.getRuntime().maxMemory()));
+        put(entries, "jvm.processors", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        final List<String> collectors = new ArrayList<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            collectors.add(gc.getName());
+        put(entries, "jvm.gc", join(",", collectors));
+        putJvmFlags(entries);
+
+        return new EnvironmentFingerprint(entries);
+    }
+
+    /**
+     * Build a fingerprint from raw entries.
+     *
+     * @param entries fingerprint entries
+     * @return fingerprint
+     */
+    public static EnvironmentFingerprint of(final Map<String, String> entries) {
+        return new EnvironmentFingerprint(new LinkedHashMap<>(entries));
+    }
+
+    /**
+     * @return fingerprint entries, in capture order
+     */
+    public Map<String, String> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @param key entry key
+     * @return entry value, {@code null} if unknown
+     */
+    public String get(final String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * List the performance-relevant differences with another fingerprint.
+     *
+     * @param other fingerprint to compare with, typically from a previous run
+     * @return human readable differences, empty if environments are equivalent
+     */
+    public List<String> differences(final EnvironmentFingerprint other) {
+        final Set<String> keys = new TreeSet<>(entries.keySet());
+        keys.addAll(other.entries.keySet());
+        keys.removeAll(INFORMATIONAL);
+        final List<String> differences = new ArrayList<>();
+        for (String key : keys) {
+            final String value = entries.get(key);
+            final String otherValue = other.entries.get(key);
+            if (value == null ? otherValue != null : !value.equals(otherValue))
+                differences.add(key + " differs: " + otherValue + " -> " + value);
+        }
+        return differences;
+    }
+
+    /**
+     * Serialize as a flat JSON object.
+     *
+     * @return JSON representation
+     */
+    public String toJson() {
+        final StringBuilder json = new StringBuilder("{\n");
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            if (json.length() > 2) json.append(",\n");
+            json.append("  ").append(Json.quote(entry.getKey())).append(": ").append(Json.quote(entry.getValue()));
+        }
+        return json.append("\n}\n").toString();
+    }
+
+    /**
+     * Parse a flat JSON object, as written by {@link #toJson()}.
+     *
+     * @param json JSON representation
+     * @return parsed fingerprint
+     * @throws IllegalArgumentException if the JSON is not a flat object of strings
+     */
+    public static EnvironmentFingerprint fromJson(final String json) {
+        final Object object = Json.parse(json);
+        if (!(object instanceof Map)) throw new IllegalArgumentException("Fingerprint JSON is not an object");
+        final Map<String, String> entries = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+            if (!(entry.getValue() instanceof String))
+                throw new IllegalArgumentException("Fingerprint JSON entry " + entry.getKey() + " is not a string");
+            entries.put((String) entry.getKey(), (String) entry.getValue());
+        }
+        return new EnvironmentFingerprint(entries);
+    }
+
+    /**
+     * Write the fingerprint to a JSON file.
+     *
+     * @param path destination file
+     * @throws IOException if the file could not be written
+     */
+    public void write(final Path path) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        Files.write(path, toJson().getBytes(UTF_8));
+    }
+
+    /**
+     * Read a fingerprint from a JSON file.
+     *
+     * @param path JSON file, as written by {@link #write(Path)}
+     * @return read fingerprint
+     * @throws IOException if the file could not be read
+     */
+    public static EnvironmentFingerprint read(final Path path) throws IOException {
+        return fromJson(new String(Files.readAllBytes(path), UTF_8));
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        for (Map.Entry<String, String> entry : entries.entrySet())
+            buffer.append("  ").append(entry.getKey()).append(" = ").append(entry.getValue()).append('\n');
+        return buffer.toString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return this == o || o instanceof EnvironmentFingerprint && entries.equals(((EnvironmentFingerprint) o).entries);
+    }
+
+    @Override
+    public int hashCode() {
+        return entries.hashCode();
+    }
+
+    /**
+     * Compare two fingerprint files.
+     *
+     * @param args baseline and candidate JSON fingerprint paths
+     * @throws IOException if a file could not be read
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: " + EnvironmentFingerprint.class.getName() + " <baseline.json> <candidate.json>");
+            System.exit(2);
+        }
+        final List<String> differences = read(Paths.get(args[1])).differences(read(Paths.get(args[0])));
+        for (String difference : differences)
+            System.out.println("WARNING: " + difference);
+        System.exit(differences.isEmpty() ? 0 : 1);
+    }
+
+    private static void put(final Map<String, String> entries, final String key, final String value) {
+        entries.put(key, value != null ? value : "unknown");
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static List<String> jvmArgs() {
+        final List<String> args = new ArrayList<>();
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // Skip harness settings, that change on every run without affecting the benchmark
+            if (arg.startsWith("-XX:CompileCommandFile=") || arg.startsWith("-Djmh.")) continue;
+            args.add(arg);
+        }
+        return args;
+    }
+
+    private static String cpuModel() {
+        for (String line : readLines("/proc/cpuinfo")) {
+            final int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            final String key = line.substring(0, colon).trim();
+            if (key.equals("model name") || key.equals("cpu") || key.equals("Processor") || key.equals("uarch"))
+                return line.substring(colon + 1).trim();
+        }
+        return null;
+    }
+
+    private static String cpuGovernors(final CpuSet cpus) {
+        final Set<String> governors = new TreeSet<>();
+        for (int cpu : cpus.toArray()) {
+            final String governor = readString("/sys/devices/system/cpu/cpu" + cpu + "/cpufreq/scaling_governor");
+            if (governor != null) governors.add(governor);
+        }
+        return governors.isEmpty() ? null : join(",", governors);
+    }
+
+    private static String turbo() {
+        final String noTurbo = readString("/sys/devices/system/cpu/intel_pstate/no_turbo");
+        if (noTurbo != null) return "0".equals(noTurbo) ? "enabled" : "disabled";
+        final String boost = readString("/sys/devices/system/cpu/cpufreq/boost");
+        if (boost != null) return "1".equals(boost) ? "enabled" : "disabled";
+        return null;
+    }
+
+    private static void putJvmFlags(final Map<String, String> entries) {
+        final HotSpotDiagnosticMXBean hotspot;
+        try {
+            hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        } catch (RuntimeException | LinkageError e) {
+            return;
+        }
+        if (hotspot == null) return;
+        for (String flag : JVM_FLAGS) {
+            try {
+                entries.put("jvm.flag." + flag, hotspot.getVMOption(flag).getValue());
+            } catch (IllegalArgumentException e) {
+                // Flag not supported by this JVM
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import net.nicoulaj.jmh.profilers.ProfilerOptions.Option;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.ExternalProfiler;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.profile.ProfilerException;
+import org.openjdk.jmh.results.Aggregator;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.stringOption;
+import static org.openjdk.jmh.results.AggregationPolicy.MAX;
+import static org.openjdk.jmh.results.ResultRole.SECONDARY;
+
+/**
+ * Records an {@link EnvironmentFingerprint} of the benchmark JVM and host.
+ * <p/>
+ * The fingerprint is captured from inside the forked JVM (so JVM flags are the effective ones),
+ * written as a JSON sidecar file per fork and attached as a secondary result whose score is the number of
+ * performance-relevant differences with an optional baseline fingerprint.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class EnvironmentProfiler implements ExternalProfiler, InternalProfiler {
+
+    /** System property passing the fork index to the forked JVM. */
+    private static final String FORK_PROPERTY = "jmh.environment.fork";
+
+    /**
+     * Directory where the <code>&lt;benchmark&gt;-&lt;mode&gt;[-&lt;param&gt;=&lt;value&gt;...]-fork&lt;N&gt;.environment.json</code>
+     * sidecar files are written.
+     * By default, the current directory is used, next to JMH default result file.
+     */
+    private static final Option<String> DIR = stringOption("dir", ".");
+
+    /**
+     * Path of a fingerprint JSON file from a previous run to compare with.
+     * By default, no comparison is done.
+     */
+    private static final Option<String> BASELINE = stringOption("baseline", null);
+
+    private final ProfilerOptions options;
+
+    private EnvironmentResult result;
+
+    private int forks;
+
+    public EnvironmentProfiler() throws ProfilerException {
+        this(null);
+    }
+
+    public EnvironmentProfiler(final String initLine) throws ProfilerException {
+        options = new ProfilerOptions("environment", initLine, asList(DIR, BASELINE));
+    }
+
+    @Override
+    public String getDescription() {
+        return "Host and JVM environment fingerprint";
+    }
+
+    @Override
+    public boolean allowPrintOut() {
+        return true;
+    }
+
+    @Override
+    public boolean allowPrintErr() {
+        return true;
+    }
+
+    @Override
+    public Collection<String> addJVMInvokeOptions(final BenchmarkParams params) {
+        return emptyList();
+    }
+
+    @Override
+    public Collection<String> addJVMOptions(final BenchmarkParams params) {
+        // One profiler instance per benchmark and parameters set, called once per fork, warmup forks included
+        return asList("-D" + FORK_PROPERTY + "=" + ++forks);
+    }
+
+    @Override
+    public void beforeTrial(final BenchmarkParams params) {
+    }
+
+    @Override
+    public Collection<? extends Result> afterTrial(final BenchmarkResult benchmarkResult, final long pid, final File stdOut, final File stdErr) {
+        return emptyList();
+    }
+
+    @Override
+    public void beforeIteration(final BenchmarkParams benchmarkParams, final IterationParams iterationParams) {
+        if (result != null) return;
+
+        final EnvironmentFingerprint fingerprint = EnvironmentFingerprint.capture();
+        final String baseline = options.get(BASELINE, benchmarkParams);
+        final Path sidecar = Paths.get(options.get(DIR, benchmarkParams),
+                                       ArtifactResult.baseName(benchmarkParams) + "-fork" + System.getProperty(FORK_PROPERTY, "0") + ".environment.json");
+        try {
+            fingerprint.write(sidecar);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write environment fingerprint to " + sidecar, e);
+        }
+
+        List<String> differences = Collections.emptyList();
+        if (baseline != null) {
+            try {
+                differences = fingerprint.differences(EnvironmentFingerprint.read(Paths.get(baseline)));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read baseline environment fingerprint " + baseline, e);
+            }
+        }
+
+        result = new EnvironmentResult(fingerprint, sidecar.toAbsolutePath().toString(), differences);
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(final BenchmarkParams benchmarkParams,
+                                                       final IterationParams iterationParams,
+                                                       final IterationResult iterationResult) {
+        return asList(result);
+    }
+
+    private static final class EnvironmentResult extends Result<EnvironmentResult> implements Aggregator<EnvironmentResult> {
+
+        private final EnvironmentFingerprint fingerprint;
+
+        private final String sidecar;
+
+        private final Collection<String> differences;
+
+        EnvironmentResult(final EnvironmentFingerprint fingerprint, final String sidecar, final Collection<String> differences) {
+            super(SECONDARY, "@environment", of(differences.size()), "diffs", MAX);
+            this.fingerprint = fingerprint;
+            this.sidecar = sidecar;
+            this.differences = differences;
+        }
+
+        @Override
+        protected Aggregator<EnvironmentResult> getThreadAggregator() {
+            return this;
+        }
+
+        @Override
+        protected Aggregator<EnvironmentResult> getIterationAggregator() {
+            return this;
+        }
+
+        @Override
+        public EnvironmentResult aggregate(final Collection<EnvironmentResult> results) {
+            final Set<String> differences = new LinkedHashSet<>();
+            for (EnvironmentResult result : results)
+                differences.addAll(result.differences);
+            final EnvironmentResult first = results.iterator().next();
+            return new EnvironmentResult(first.fingerprint, first.sidecar, new ArrayList<>(differences));
+        }
+
+        @Override
+        protected String simpleExtendedInfo() {
+            final StringBuilder info = new StringBuilder("Environment fingerprint at ").append(sidecar).append('\n');
+            info.append(fingerprint);
+            for (String difference : differences)
+                info.append("WARNING: environment ").append(difference).append('\n');
+            return info.toString();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.testng.annotations.Test;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Paths.get;
+import static net.nicoulaj.jmh.assertions.JMHAssertions.assertJMH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.contentOf;
+
+/**
+ * Test for {@link EnvironmentProfiler}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class EnvironmentProfilerTest {
+
+    @Test
+    public void test001() throws Exception {
+
+        createDirectories(get("target"));
+        final Path output = createTempFile(get("target"), "jmh-output-", ".log");
+
+        assertJMH()
+                .output(output.toString())
+                .addProfiler(EnvironmentProfiler.class, "dir=target")
+                .runsWithoutError();
+
+        assertThat(contentOf(output.toFile()))
+                .contains("Environment fingerprint at ")
+                .contains("jvm.version = ");
+
+        final EnvironmentFingerprint fingerprint = EnvironmentFingerprint.read(get("target", TestBenchmark.class.getName() + ".benchmark-thrpt-fork1.environment.json"));
+        assertThat(fingerprint.get("jvm.heap.max")).isNotNull();
+        assertThat(fingerprint.differences(EnvironmentFingerprint.fromJson(fingerprint.toJson()))).isEmpty();
+    }
+
+    @Test
+    public void test002() {
+
+        final Map<String, String> baseline = new LinkedHashMap<>();
+        baseline.put("host.name", "a");
+        baseline.put("cpu.governor", "performance");
+        baseline.put("jvm.args", "-Xmx1g \"quoted\"\t");
+
+        final Map<String, String> candidate = new LinkedHashMap<>(baseline);
+        candidate.put("host.name", "b");
+        candidate.put("cpu.governor", "powersave");
+
+        assertThat(EnvironmentFingerprint.of(candidate).differences(EnvironmentFingerprint.of(baseline)))
+                .containsExactly("cpu.governor differs: performance -> powersave");
+        assertThat(EnvironmentFingerprint.fromJson(EnvironmentFingerprint.of(baseline).toJson()).getEntries())
+                .isEqualTo(baseline);
+    }
+}
@@ -18,31 +18,44 @@
  */
 package net.nicoulaj.jmh.profilers;
 
+import net.nicoulaj.jmh.profilers.ProfilerOptions.Option;
 import org.openjdk.jmh.infra.BenchmarkParams;
 import org.openjdk.jmh.profile.ExternalProfiler;
-import org.openjdk.jmh.results.Aggregator;
+import org.openjdk.jmh.profile.ProfilerException;
 import org.openjdk.jmh.results.BenchmarkResult;
 import org.openjdk.jmh.results.Result;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 import static java.lang.Boolean.TRUE;
-import static java.lang.Integer.getInteger;
-import static java.lang.System.getProperty;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static net.nicoulaj.jmh.profilers.StringUtils.join;
-import static net.nicoulaj.jmh.profilers.SystemUtils.getBoolean;
-import static org.openjdk.jmh.results.AggregationPolicy.SUM;
-import static org.openjdk.jmh.results.ResultRole.SECONDARY;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.booleanOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.integerOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.stringOption;
 
 /**
  * <a href="http://www.oracle.com/technetwork/java/javaseproducts/mission-control/java-mission-control-1998576.html">Java Flight Recorder</a> support for <a href="http://openjdk.java.net/projects/code-tools/jmh">JMH</a>.
  *
+ * <p/>
+ * Each measured fork is recorded to its own file (warmup forks are not recorded), and CPU and allocation flame
+ * graphs of the benchmark code are generated from the recordings for each fork and for each benchmark (all forks
+ * merged), see {@link FlightRecorderStacks}. Recordings are parsed by {@link PostProcessing} while the next forks
+ * run, and the merged flame graphs are written when the flame graph result of the benchmark is first read, so
+ * that the runner never waits for them between benchmarks.
+ *
  * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
  */
 public final class FlightRecorderProfiler implements ExternalProfiler {
@@ -52,88 +65,90 @@ public final class FlightRecorderProfiler implements ExternalProfiler {
      * By default, this parameter is set to false (recording runs for a limited time).
      * To make the recording run continuously, set the parameter to true.
      */
-    private static final Boolean DEFAULT_RECORDING = getBoolean("jmh.jfr.defaultrecording", TRUE);
+    private static final Option<Boolean> DEFAULT_RECORDING = booleanOption("defaultrecording", TRUE);
 
     /**
      * Specifies whether JFR should write a continuous recording to disk.
      * By default, this parameter is set to false (continuous recording to disk is disabled).
      * To enable it, set the parameter to true, and also set defaultrecording=true.
      */
-    private static final Boolean DISK = getBoolean("jmh.jfr.disk", null);
+    private static final Option<Boolean> DISK = booleanOption("disk", null);
 
     /**
      * Specifies whether a dump file of JFR data should be generated when the JVM terminates in a controlled manner.
      * By default, this parameter is set to false (dump file on exit is not generated).
      * To enable it, set the parameter to true, and also set defaultrecording=true.
      */
-    private static final Boolean DUMP_ON_EXIT = getBoolean("jmh.jfr.dumponexit", TRUE);
+    private static final Option<Boolean> DUMP_ON_EXIT = booleanOption("dumponexit", TRUE);
 
     /**
-     * Specifies the path and name of the dump file with JFR data that is created when the JVM exits in a controlled manner if you set the dumponexit=true parameter.
+     * Specifies the directory where the dump files with JFR data are created when the JVM exits in a controlled manner if you set the dumponexit=true parameter.
+     * One <code>&lt;benchmark&gt;-&lt;mode&gt;[-&lt;param&gt;=&lt;value&gt;...]-fork&lt;N&gt;.jfr</code> recording is
+     * created per measured fork.
      * Setting the path makes sense only if you also set defaultrecording=true.
      */
-    private static final String DUMP_ON_EXIT_PATH = getProperty("jmh.jfr.dumponexitpath", ".");
+    private static final Option<String> DUMP_ON_EXIT_PATH = stringOption("dumponexitpath", ".");
 
     /**
      * Specifies the total amount of primary memory (in bytes) used for data retention.
      * Append k or K, to specify the size in KB, m or M to specify the size in MB, g or G to specify the size in GB.
      * By default, the size is set to 462848 bytes.
      */
-    private static final String GLOBAL_BUFFER_SIZE = getProperty("jmh.jfr.globalbuffersize", null);
+    private static final Option<String> GLOBAL_BUFFER_SIZE = stringOption("globalbuffersize", null);
 
     /**
      * Specify the amount of data written to the log file by JFR.
      * Allowed values : quiet, error, warning, info, debug, trace
      * By default, it is set to info.
      */
-    private static final String LOG_LEVEL = getProperty("jmh.jfr.loglevel", null);
+    private static final Option<String> LOG_LEVEL = stringOption("loglevel", null);
 
     /**
      * Specifies the maximum age (in minutes) of disk data for default recording.
      * By default, the maximum age is set to 15 minutes.
      * This parameter is valid only if you set the disk=true parameter.
      */
-    private static final Integer MAX_AGE = getInteger("jmh.jfr.maxage", null);
+    private static final Option<Integer> MAX_AGE = integerOption("maxage", null);
 
     /**
      * Specifies the maximum size (in bytes) of the data chunks in a recording.
      * Append k or K, to specify the size in KB, m or M to specify the size in MB, g or G to specify the size in GB.
      * By default, the maximum size of data chunks is set to 12 MB.
      */
-    private static final String MAX_CHUNK_SIZE = getProperty("jmh.jfr.maxchunksize", null);
+    private static final Option<String> MAX_CHUNK_SIZE = stringOption("maxchunksize", null);
 
     /**
      * Specifies the maximum size (in bytes) of disk data for default recording.
      * Append k or K, to specify the size in KB, m or M to specify the size in MB, g or G to specify the size in GB.
      * By default, the maximum size of disk data is not limited.
      */
-    private static final String MAX_SIZE = getProperty("jmh.jfr.maxsize", null);
+    private static final Option<String> MAX_SIZE = stringOption("maxsize", null);
 
     /**
      * Specifies the repository (a directory) for temporary disk storage.
      * By default, the system's temporary directory is used.
      */
-    private static final String REPOSITORY = getProperty("jmh.jfr.repository", null);
+    private static final Option<String> REPOSITORY = stringOption("repository", null);
 
     /**
      * Specifies whether thread sampling is enabled.
      * Thread sampling occurs only if the sampling event is enabled along with this parameter.
      * By default, this parameter is enabled.
      */
-    private static final Boolean SAMPLE_THREADS = getBoolean("jmh.jfr.samplethreads", null);
+    private static final Option<Boolean> SAMPLE_THREADS = booleanOption("samplethreads", null);
 
     /**
      * Specifies the path and name of the event settings file (of type JFC).
      * By default, the default.jfc file is used, which is located in JAVA_HOME/jre/lib/jfr. *
      */
-    private static final String SETTINGS = getProperty("jmh.jfr.settings", null);
+    private static final Option<String> SETTINGS = stringOption("settings", null);
 
     /**
      * Stack depth for stack traces by JFR.
      * By default, the depth is set to 64 method calls.
      * The maximum is 2048, minimum is 1.
      */
-    private static final String STACK_DEPTH = getProperty("jmh.jfr.stackdepth", null);
+    private static final Option<String> STACK_DEPTH = stringOption("stackdepth", null);
 
     /**
      * Specifies the per-thread local buffer size (in bytes).
@@ -142,12 +157,71 @@ public final class FlightRecorderProfiler implements ExternalProfiler {
      * It can increase application footprint in a thread-rich environment.
      * By default, the local buffer size is set to 5 KB.
      */
-    private static final String THREAD_BUFFER_SIZE = getProperty("jmh.jfr.threadbuffersize", null);
+    private static final Option<String> THREAD_BUFFER_SIZE = stringOption("threadbuffersize", null);
+
+    /**
+     * Specifies whether CPU and allocation flame graphs should be generated from the recording of each fork,
+     * see {@link FlightRecorderStacks}.
+     * By default, this parameter is set to true if the JFR consumer API is available in the host JVM.
+     */
+    private static final Option<Boolean> FLAME_GRAPH = booleanOption("flamegraph", FlightRecorderStacks.isAvailable());
+
+    /**
+     * Regex matching the names of the threads kept in flame graphs.
+     * By default, only JMH worker threads are kept.
+     */
+    private static final Option<String> THREADS = stringOption("threads", FlightRecorderStacks.WORKER_THREADS.pattern());
+
+    /**
+     * Specifies whether flame graphs should only keep the subtree of the generated <code>*_jmhStub</code> method.
+     * By default, this parameter is set to true (JMH infrastructure frames are hidden).
+     */
+    private static final Option<Boolean> STUB_ONLY = booleanOption("stubonly", TRUE);
+
+    /**
+     * Supported options, in the order they are passed to <code>-XX:FlightRecorderOptions</code>.
+     */
+    private static final List<Option<?>> JFR_OPTIONS = asList(DEFAULT_RECORDING, DISK, DUMP_ON_EXIT, DUMP_ON_EXIT_PATH,
+                                                              GLOBAL_BUFFER_SIZE, LOG_LEVEL, MAX_AGE, MAX_CHUNK_SIZE,
+                                                              MAX_SIZE, REPOSITORY, SAMPLE_THREADS, SETTINGS, STACK_DEPTH,
+                                                              THREAD_BUFFER_SIZE);
+
+    /**
+     * Options supported by <code>-XX:StartFlightRecording</code> on JDK 9+, other ones are passed to
+     * <code>-XX:FlightRecorderOptions</code> (<code>defaultrecording</code>, <code>loglevel</code> and
+     * <code>samplethreads</code> do not exist anymore).
+     */
+    private static final List<Option<?>> START_OPTIONS = asList(DISK, DUMP_ON_EXIT, MAX_AGE, MAX_SIZE, SETTINGS);
+
+    private static final List<Option<?>> RECORDER_OPTIONS = asList(GLOBAL_BUFFER_SIZE, MAX_CHUNK_SIZE, REPOSITORY,
+                                                                   STACK_DEPTH, THREAD_BUFFER_SIZE);
+
+    private final ProfilerOptions options;
+
+    /** Stacks of all the forks so far, JMH creating one profiler instance per benchmark and parameters set. */
+    private final FlightRecorderStacks stacks = FlightRecorderStacks.empty();
+
+    private final List<Future<List<Path>>> pending = new ArrayList<>();
+
+    private int forks;
+
+    private Path recording;
+
+    public FlightRecorderProfiler() throws ProfilerException {
+        this(null);
+    }
+
+    public FlightRecorderProfiler(final String initLine) throws ProfilerException {
+        final List<Option<?>> supported = new ArrayList<>(JFR_OPTIONS);
+        supported.addAll(asList(FLAME_GRAPH, THREADS, STUB_ONLY));
+        options = new ProfilerOptions("jfr", initLine, supported);
+    }
 
     @Override
     public String getDescription() {
         return "Java Flight Recorder";
     }
+
     @Override
     public boolean allowPrintOut() {
         return true;
@@ -166,25 +240,48 @@ public final class FlightRecorderProfiler implements ExternalProfiler {
     @Override
     public Collection<String> addJVMOptions(final BenchmarkParams params) {
 
-        final List<String> opts = new ArrayList<>();
-        if (DEFAULT_RECORDING != null) opts.add("defaultrecording=" + String.valueOf(DEFAULT_RECORDING));
-        if (DISK != null) opts.add("disk=" + String.valueOf(DISK));
-        if (DUMP_ON_EXIT != null) opts.add("dumponexit=" + String.valueOf(DUMP_ON_EXIT));
-        if (DUMP_ON_EXIT_PATH != null) opts.add("dumponexitpath=" + DUMP_ON_EXIT_PATH);
-        if (GLOBAL_BUFFER_SIZE != null) opts.add("globalbuffersize=" + GLOBAL_BUFFER_SIZE);
-        if (LOG_LEVEL != null) opts.add("loglevel=" + LOG_LEVEL);
-        if (MAX_AGE != null) opts.add("maxage=" + MAX_AGE);
-        if (MAX_CHUNK_SIZE != null) opts.add("maxchunksize=" + MAX_CHUNK_SIZE);
-        if (MAX_SIZE != null) opts.add("maxsize=" + MAX_SIZE);
-        if (REPOSITORY != null) opts.add("repository=" + REPOSITORY);
-        if (SAMPLE_THREADS != null) opts.add("samplethreads=" + String.valueOf(SAMPLE_THREADS));
-        if (SETTINGS != null) opts.add("settings=" + SETTINGS);
-        if (STACK_DEPTH != null) opts.add("stackdepth=" + STACK_DEPTH);
-        if (THREAD_BUFFER_SIZE != null) opts.add("threadbuffersize=" + THREAD_BUFFER_SIZE);
-
-        return asList("-XX:+UnlockCommercialFeatures",
-                      "-XX:+FlightRecorder",
-                      "-XX:FlightRecorderOptions=" + join(",", opts));
+        // Called once per fork, warmup forks first, which are not recorded
+        final int fork = ++forks - params.getWarmupForks();
+        if (fork < 1) {
+            recording = null;
+            return emptyList();
+        }
+
+        // One recording per fork, so that forks can be compared and flame graphs generated for each of them
+        recording = Paths.get(options.get(DUMP_ON_EXIT_PATH, params), ArtifactResult.baseName(params) + "-fork" + fork + ".jfr").toAbsolutePath();
+
+        final String jdk = params.getJdkVersion();
+        if (jdk != null && jdk.startsWith("1.")) {
+            final List<String> opts = new ArrayList<>();
+            for (Option<?> option : JFR_OPTIONS) {
+                final Object value = option == DUMP_ON_EXIT_PATH ? recording : options.get(option, params);
+                if (value != null) opts.add(option.getName() + "=" + value);
+            }
+            return asList("-XX:+UnlockCommercialFeatures",
+                          "-XX:+FlightRecorder",
+                          "-XX:FlightRecorderOptions=" + join(",", opts));
+        }
+
+        final List<String> start = new ArrayList<>();
+        for (Option<?> option : START_OPTIONS) {
+            final Object value = options.get(option, params);
+            if (value == null) continue;
+            if (option == MAX_AGE) start.add(option.getName() + "=" + value + "m");
+            else start.add(option.getName() + "=" + value);
+        }
+        if (options.get(SETTINGS, params) == null) start.add("settings=profile");
+        start.add("filename=" + recording);
+
+        final List<String> recorder = new ArrayList<>();
+        for (Option<?> option : RECORDER_OPTIONS) {
+            final Object value = options.get(option, params);
+            if (value != null) recorder.add(option.getName() + "=" + value);
+        }
+
+        final List<String> jvmOptions = new ArrayList<>();
+        jvmOptions.add("-XX:StartFlightRecording=" + join(",", start));
+        if (!recorder.isEmpty()) jvmOptions.add("-XX:FlightRecorderOptions=" + join(",", recorder));
+        return jvmOptions;
     }
 
     @Override
@@ -194,33 +291,75 @@ public final class FlightRecorderProfiler implements ExternalProfiler {
 
     @Override
     public Collection<? extends Result> afterTrial(BenchmarkResult benchmarkResult, long l, final File stdOut, final File stdErr) {
-        return asList(new JFRResult());
-    }
-
-    private static final class JFRResult extends Result<JFRResult> implements Aggregator<JFRResult> {
-
-        JFRResult() {
-            super(SECONDARY, "@jfr", new EmptyStatistics(), "none", SUM);
+        if (recording == null) return emptyList();
+
+        final BenchmarkParams params = benchmarkResult.getParams();
+        final List<Result> results = new ArrayList<>();
+        results.add(new ArtifactResult("@jfr", "Java Flight Recorder recording", recording.toString()));
+
+        if (options.get(FLAME_GRAPH, params) && Files.isRegularFile(recording)) {
+            final Path file = recording;
+            final Pattern threads = Pattern.compile(options.get(THREADS, params));
+            final boolean stubOnly = options.get(STUB_ONLY, params);
+            pending.add(PostProcessing.submit(new Callable<List<Path>>() {
+                @Override
+                public List<Path> call() throws IOException {
+                    final FlightRecorderStacks forkStacks = FlightRecorderStacks.read(file, threads, stubOnly);
+                    synchronized (stacks) {
+                        stacks.merge(forkStacks);
+                    }
+                    return forkStacks.write(file.getParent(), file.getFileName().toString().replaceAll("\\.jfr$", ""));
+                }
+            }));
         }
 
-        @Override
-        protected Aggregator<JFRResult> getThreadAggregator() {
-            return this;
+        // Benchmark profiles merge all the forks, so they are written once the last one is parsed, when read
+        if (forks - params.getWarmupForks() == params.getForks() && !pending.isEmpty()) {
+            final List<Future<List<Path>>> forkTasks = new ArrayList<>(pending);
+            final Path directory = recording.getParent();
+            final String name = ArtifactResult.baseName(params);
+            pending.clear();
+            results.add(new ArtifactResult("@jfr.flamegraph", "Flame graph", PostProcessing.join(new Callable<Collection<String>>() {
+                @Override
+                public Collection<String> call() {
+                    return merge(forkTasks, directory, name);
+                }
+            })));
         }
 
-        @Override
-        protected Aggregator<JFRResult> getIterationAggregator() {
-            return this;
-        }
+        return results;
+    }
 
-        @Override
-        protected String simpleExtendedInfo() {
-            return "Java Flight Recorder recording at " + Paths.get(DUMP_ON_EXIT_PATH).toAbsolutePath();
+    /**
+     * Failures are reported and skipped, as flame graphs are a by-product of the recordings.
+     *
+     * @return paths of the fork flame graphs and of the merged ones
+     */
+    private List<String> merge(final List<Future<List<Path>>> forkTasks, final Path directory, final String name) {
+        final List<Path> files = new ArrayList<>();
+        for (Future<List<Path>> task : forkTasks) {
+            try {
+                files.addAll(task.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return pathsOf(files);
+            } catch (ExecutionException e) {
+                System.err.println("WARNING: failed to generate flame graphs in " + directory + ": " + e.getCause());
+            }
         }
-
-        @Override
-        public JFRResult aggregate(final Collection<JFRResult> results) {
-            return new JFRResult();
+        try {
+            synchronized (stacks) {
+                files.addAll(stacks.write(directory, name));
+            }
+        } catch (IOException e) {
+            System.err.println("WARNING: failed to generate flame graphs in " + directory + ": " + e);
         }
+        return pathsOf(files);
+    }
+
+    private static List<String> pathsOf(final List<Path> files) {
+        final List<String> paths = new ArrayList<>(files.size());
+        for (Path file : files) paths.add(file.toString());
+        return paths;
     }
 }
@@ -0,0 +1,275 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * CPU and allocation {@link CollapsedStacks collapsed stacks} extracted from a Java Flight Recorder recording,
+ * so that recordings can be browsed as {@link FlameGraph flame graphs} and diffed with <code>ProfileDiff</code> without JMC.
+ * <p/>
+ * Samples can be restricted to JMH worker threads, and stacks cut at the generated <code>*_jmhStub</code> method so
+ * that only the benchmark code subtree is kept. Stacks truncated by JFR before reaching the stub are kept under a
+ * <code>[truncated]</code> root frame, so that the profile total still matches the number of samples.
+ * <p/>
+ * Requires the <code>jdk.jfr.consumer</code> API (JDK 11+, or JDK 8u262+). Offline usage:
+ * <pre>
+ * java -cp ... net.nicoulaj.jmh.profilers.FlightRecorderStacks &lt;recording or directory&gt;...
+ * </pre>
+ * which writes, next to each recording, <code>&lt;recording&gt;.cpu.collapsed</code>, <code>&lt;recording&gt;.cpu.svg</code>,
+ * <code>&lt;recording&gt;.alloc.collapsed</code> and <code>&lt;recording&gt;.alloc.svg</code> for each recording.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class FlightRecorderStacks {
+
+    /**
+     * Matches the names of the threads running benchmark methods.
+     */
+    public static final Pattern WORKER_THREADS = Pattern.compile("-jmh-worker-");
+
+    /**
+     * Matches any thread.
+     */
+    public static final Pattern ALL_THREADS = Pattern.compile("");
+
+    private static final String EXTENSION = ".jfr";
+
+    private static final String STUB_SUFFIX = "_jmhStub";
+
+    private static final String TRUNCATED = "[truncated]";
+
+    private final CollapsedStacks cpu = new CollapsedStacks();
+
+    private final CollapsedStacks tlabAllocations = new CollapsedStacks();
+
+    private final CollapsedStacks sampledAllocations = new CollapsedStacks();
+
+    private FlightRecorderStacks() {
+    }
+
+    /**
+     * @return stacks without any sample, to {@link #merge} other stacks into
+     */
+    public static FlightRecorderStacks empty() {
+        return new FlightRecorderStacks();
+    }
+
+    /**
+     * Extract stacks from a recording.
+     *
+     * @param recording JFR recording file
+     * @param threads   only keep samples of threads whose name matches this pattern
+     * @param stubOnly  only keep the subtree of the <code>*_jmhStub</code> frame
+     * @return stacks
+     * @throws IOException if failed to read the recording
+     */
+    public static FlightRecorderStacks read(final Path recording, final Pattern threads, final boolean stubOnly) throws IOException {
+        final FlightRecorderStacks stacks = new FlightRecorderStacks();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                final RecordedEvent event = file.readEvent();
+                switch (event.getEventType().getName()) {
+                case "jdk.ExecutionSample":
+                    stacks.add(stacks.cpu, event, event.<RecordedThread>getValue("sampledThread"), null, 1, threads, stubOnly);
+                    break;
+                case "jdk.ObjectAllocationInNewTLAB":
+                    stacks.add(stacks.tlabAllocations, event, event.getThread(), event.<RecordedClass>getValue("objectClass"),
+                               event.getLong("tlabSize"), threads, stubOnly);
+                    break;
+                case "jdk.ObjectAllocationOutsideTLAB":
+                    stacks.add(stacks.tlabAllocations, event, event.getThread(), event.<RecordedClass>getValue("objectClass"),
+                               event.getLong("allocationSize"), threads, stubOnly);
+                    break;
+                case "jdk.ObjectAllocationSample":
+                    stacks.add(stacks.sampledAllocations, event, event.getThread(), event.<RecordedClass>getValue("objectClass"),
+                               event.getLong("weight"), threads, stubOnly);
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+        return stacks;
+    }
+
+    private void add(final CollapsedStacks stacks,
+                     final RecordedEvent event,
+                     final RecordedThread thread,
+                     final RecordedClass allocated,
+                     final long weight,
+                     final Pattern threads,
+                     final boolean stubOnly) {
+        if (thread == null || thread.getJavaName() == null || !threads.matcher(thread.getJavaName()).find()) return;
+        final RecordedStackTrace trace = event.getStackTrace();
+        if (trace == null) return;
+
+        // JFR frames are ordered from leaf to root
+        final List<RecordedFrame> frames = trace.getFrames();
+        int root = frames.size() - 1;
+        if (stubOnly) {
+            while (root >= 0 && !isStub(frames.get(root))) root--;
+            if (root < 0 && !trace.isTruncated()) return;
+        }
+
+        final StringBuilder stack = new StringBuilder();
+        if (root < 0) {
+            stack.append(TRUNCATED);
+            root = frames.size() - 1;
+        }
+        for (int i = root; i >= 0; i--) {
+            if (stack.length() > 0) stack.append(';');
+            stack.append(frame(frames.get(i).getMethod()));
+        }
+        if (allocated != null) {
+            if (stack.length() > 0) stack.append(';');
+            stack.append(allocated.getName().replace(' ', '_')).append("_[k]");
+        }
+        if (stack.length() > 0) stacks.add(stack.toString(), weight);
+    }
+
+    private static boolean isStub(final RecordedFrame frame) {
+        final RecordedMethod method = frame.getMethod();
+        return method != null && method.getName().endsWith(STUB_SUFFIX);
+    }
+
+    private static String frame(final RecordedMethod method) {
+        if (method == null) return "[unknown]";
+        return (method.getType().getName() + '.' + method.getName()).replace(';', ':').replace(' ', '_');
+    }
+
+    /**
+     * @return CPU samples stacks, weighted by sample count
+     */
+    public CollapsedStacks getCpu() {
+        return cpu;
+    }
+
+    /**
+     * Allocations are taken from TLAB events (JDK 8 to 15 <code>profile</code> settings) if the recording has some,
+     * or from throttled allocation samples (JDK 16+), but never both to avoid counting allocations twice.
+     *
+     * @return allocation stacks, with the allocated class as leaf frame, weighted by bytes
+     */
+    public CollapsedStacks getAllocations() {
+        return tlabAllocations.getTotal() > 0 ? tlabAllocations : sampledAllocations;
+    }
+
+    /**
+     * Add all the samples of other stacks to these ones.
+     *
+     * @param other stacks to add
+     * @return these stacks
+     */
+    public FlightRecorderStacks merge(final FlightRecorderStacks other) {
+        cpu.merge(other.cpu);
+        tlabAllocations.merge(other.tlabAllocations);
+        sampledAllocations.merge(other.sampledAllocations);
+        return this;
+    }
+
+    /**
+     * Write <code>&lt;name&gt;.cpu.collapsed</code>, <code>&lt;name&gt;.alloc.collapsed</code> and their SVG
+     * flame graphs, skipping empty profiles.
+     *
+     * @param dir  output directory
+     * @param name file names prefix, eg: benchmark name
+     * @return written files
+     * @throws IOException if failed to write files
+     */
+    public List<Path> write(final Path dir, final String name) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        write(cpu, dir, name + ".cpu", name + " (CPU samples)", files);
+        write(getAllocations(), dir, name + ".alloc", name + " (allocated bytes)", files);
+        return files;
+    }
+
+    private static void write(final CollapsedStacks stacks,
+                              final Path dir,
+                              final String name,
+                              final String title,
+                              final List<Path> files) throws IOException {
+        if (stacks.getTotal() == 0) return;
+        final Path collapsed = dir.resolve(name + ".collapsed");
+        final Path svg = dir.resolve(name + ".svg");
+        stacks.write(collapsed);
+        FlameGraph.of(stacks).writeSvg(svg, title);
+        files.add(collapsed);
+        files.add(svg);
+    }
+
+    /**
+     * @return whether the <code>jdk.jfr.consumer</code> API is available in this JVM
+     */
+    public static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.consumer.RecordingFile");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Convert recordings to collapsed stacks and flame graphs, keeping only JMH worker threads and the
+     * <code>*_jmhStub</code> subtree.
+     *
+     * @param args recordings or directories of <code>*.jfr</code> recordings
+     * @throws IOException if failed to read or write files
+     */
+    public static void main(final String... args) throws IOException {
+        final List<Path> recordings = new ArrayList<>();
+        for (String arg : args) {
+            final Path path = Paths.get(arg);
+            if (Files.isRegularFile(path)) {
+                recordings.add(path);
+            } else if (Files.isDirectory(path)) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(path, "*" + EXTENSION)) {
+                    for (Path file : files) recordings.add(file);
+                }
+            }
+        }
+        if (recordings.isEmpty()) {
+            System.err.println("Usage: FlightRecorderStacks <recording or directory>...");
+            System.exit(2);
+        }
+
+        for (Path recording : recordings) {
+            final String name = recording.getFileName().toString();
+            final String prefix = name.endsWith(EXTENSION) ? name.substring(0, name.length() - EXTENSION.length()) : name;
+            for (Path file : read(recording, WORKER_THREADS, true).write(recording.toAbsolutePath().getParent(), prefix))
+                System.out.println(file);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.testng.annotations.Test;
 import java.nio.file.Path;
 
 import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempDirectory;
 import static java.nio.file.Files.createTempFile;
 import static java.nio.file.Paths.get;
 import static net.nicoulaj.jmh.assertions.JMHAssertions.assertJMH;
@@ -52,16 +53,33 @@ public class FlightRecorderProfilerTest {
         createDirectories(get("target"));
         final Path output = createTempFile(get("target"), "jmh-output-", ".log");
 
-        System.setProperty("jmh.jfr.dumponexitpath", "target");
+        final Path dir = createTempDirectory(get("target"), "jfr-");
+        System.setProperty("jmh.jfr.dumponexitpath", dir.toString());
 
         assertJMH()
                 .output(output.toString())
+                .warmupForks(1)
                 .addProfiler(FlightRecorderProfiler.class)
                 .runsWithoutError();
 
         assertThat(contentOf(output.toFile()))
                 .contains("# Preparing profilers: FlightRecorderProfiler")
                 .contains("# Processing profiler results: FlightRecorderProfiler")
-                .contains("Java Flight Recorder recording at ");
+                .contains("Java Flight Recorder recording at ")
+                .contains("Flame graph");
+
+        final Path recording = dir.resolve(TestBenchmark.class.getName() + ".benchmark-thrpt-fork1.jfr");
+        assertThat(dir.resolve(TestBenchmark.class.getName() + ".benchmark-thrpt-fork2.jfr")).exists();
+        assertThat(dir.resolve(TestBenchmark.class.getName() + ".benchmark-thrpt-fork3.jfr")).doesNotExist();
+
+        final CollapsedStacks cpu = FlightRecorderStacks.read(recording, FlightRecorderStacks.WORKER_THREADS, true).getCpu();
+        assertThat(cpu.getTotal()).isPositive();
+        for (String stack : cpu.getStacks().keySet())
+            assertThat(stack).matches("(.*_jmhStub|\\[truncated\\]).*");
+
+        assertThat(FlightRecorderStacks.read(recording, FlightRecorderStacks.ALL_THREADS, false).getCpu().getTotal())
+                .isGreaterThanOrEqualTo(cpu.getTotal());
+        assertThat(CollapsedStacks.read(dir.resolve(TestBenchmark.class.getName() + ".benchmark-thrpt.cpu.collapsed")).getTotal())
+                .isGreaterThanOrEqualTo(cpu.getTotal());
     }
 }
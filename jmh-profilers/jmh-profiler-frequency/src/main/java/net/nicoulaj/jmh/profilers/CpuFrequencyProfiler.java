@@ -0,0 +1,199 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import net.nicoulaj.jmh.profilers.ProfilerOptions.Option;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.profile.ProfilerException;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Arrays.copyOf;
+import static java.util.Collections.emptyList;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.doubleOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.longOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.stringOption;
+import static org.openjdk.jmh.results.AggregationPolicy.AVG;
+import static org.openjdk.jmh.results.AggregationPolicy.MAX;
+import static org.openjdk.jmh.results.AggregationPolicy.MIN;
+import static org.openjdk.jmh.results.AggregationPolicy.SUM;
+import static org.openjdk.jmh.runner.IterationType.MEASUREMENT;
+
+/**
+ * Tracks the frequency of the CPUs the benchmark runs on, and thermal throttling, during measurement iterations.
+ * <p/>
+ * A background thread, pinned to CPUs outside of the fork affinity (eg: the ones left by a pinning profiler)
+ * when there are some, samples <code>cpufreq/scaling_cur_freq</code> of the CPUs the JMH worker threads last ran
+ * on (all the fork CPUs until the workers are known), thermal zones temperatures and thermal throttling counters
+ * from Linux sysfs, so that idle CPUs of the fork affinity do not skew the frequencies. The average and minimum
+ * frequencies of each iteration are attached as <code>@cpufreq.avg</code> and <code>@cpufreq.min</code>
+ * secondary results, and iterations where the frequency dropped below the highest frequency seen in the fork,
+ * or where CPUs were throttled, are counted in <code>@cpufreq.drops</code>.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class CpuFrequencyProfiler implements InternalProfiler {
+
+    /**
+     * Sampling interval, in milliseconds.
+     * By default, it is set to 50 ms.
+     */
+    private static final Option<Long> INTERVAL = longOption("interval", 50L);
+
+    /**
+     * Frequency drop, in percent of the highest frequency seen in the fork, above which an iteration is flagged.
+     * By default, it is set to 5%.
+     */
+    private static final Option<Double> DROP = doubleOption("drop", 5.0);
+
+    /**
+     * CPUs to run the sampling thread on, eg: <code>0</code>.
+     * By default, the online CPUs outside of the fork affinity are used. If the fork may run on all CPUs, the
+     * sampling thread is left unpinned, and shares the benchmark threads CPUs (it mostly sleeps), with a warning.
+     */
+    private static final Option<String> CPUS = stringOption("cpus", null);
+
+    private static final String WORKER = "-jmh-worker-";
+
+    private final ProfilerOptions options;
+
+    /** Kernel thread ids of the JMH worker threads, read by the sampling thread. */
+    private volatile long[] workers = new long[0];
+
+    private FrequencySampler sampler;
+
+    private CpuSet samplerCpus;
+
+    private Thread thread;
+
+    private double highest = Double.NaN;
+
+    public CpuFrequencyProfiler() throws ProfilerException {
+        this(null);
+    }
+
+    public CpuFrequencyProfiler(final String initLine) throws ProfilerException {
+        options = new ProfilerOptions("cpufreq", initLine, asList(INTERVAL, DROP, CPUS));
+    }
+
+    @Override
+    public String getDescription() {
+        return "CPU frequency and thermal throttling tracking";
+    }
+
+    @Override
+    public void beforeIteration(final BenchmarkParams benchmarkParams, final IterationParams iterationParams) {
+        if (iterationParams.getType() != MEASUREMENT) return;
+
+        if (sampler == null) {
+            CpuSet cpus = AffinityUtils.getAffinity(AffinityUtils.currentThreadId());
+            if (cpus == null || cpus.isEmpty()) cpus = CpuTopology.detect().online();
+            sampler = new FrequencySampler(FrequencySampler.CPU_ROOT, FrequencySampler.THERMAL_ROOT, cpus);
+
+            // Benchmark threads are not pinned, so they may run on any CPU of the fork affinity
+            final String option = options.get(CPUS, benchmarkParams);
+            samplerCpus = option != null ? CpuSet.parse(option) : CpuTopology.detect().online().minus(cpus);
+            if (samplerCpus.isEmpty())
+                System.err.println("WARNING: no CPU outside of the fork affinity " + cpus + ", the CPU frequency sampler is not pinned");
+        }
+        if (!sampler.isAvailable()) return;
+
+        // Workers are started lazily by the first iteration
+        if (workers.length < benchmarkParams.getThreads()) {
+            final List<Long> tids = new ArrayList<>();
+            for (Map.Entry<String, Long> thread : AffinityUtils.nativeThreadIds().entrySet())
+                if (thread.getKey().contains(WORKER)) tids.add(thread.getValue());
+            final long[] found = new long[tids.size()];
+            for (int i = 0; i < found.length; i++) found[i] = tids.get(i);
+            workers = found;
+        }
+
+        sampler.reset();
+        final long interval = options.get(INTERVAL, benchmarkParams);
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if (!samplerCpus.isEmpty()) AffinityUtils.setAffinity(AffinityUtils.currentThreadId(), samplerCpus);
+                while (!Thread.currentThread().isInterrupted()) {
+                    sampler.sample(workerCpus());
+                    try {
+                        Thread.sleep(interval);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+            }
+        }, "jmh-cpufreq-sampler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(final BenchmarkParams benchmarkParams,
+                                                       final IterationParams iterationParams,
+                                                       final IterationResult iterationResult) {
+        if (thread == null) return emptyList();
+
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+
+        // Sample at least once, even if the iteration was shorter than the sampling interval
+        sampler.sample(workerCpus());
+
+        if (!(sampler.getMax() <= highest)) highest = sampler.getMax();
+        final boolean dropped = sampler.getMin() < highest * (1 - options.get(DROP, benchmarkParams) / 100)
+                                || sampler.getThrottles() > 0;
+
+        final List<Result> results = new ArrayList<>();
+        results.add(new AggregatingResult("@cpufreq.avg", sampler.getAverage(), "MHz", AVG));
+        results.add(new AggregatingResult("@cpufreq.min", sampler.getMin(), "MHz", MIN));
+        results.add(new AggregatingResult("@cpufreq.drops", dropped ? 1 : 0, "iterations", SUM));
+        if (!Double.isNaN(sampler.getMaxTemperature()))
+            results.add(new AggregatingResult("@thermal.max", sampler.getMaxTemperature(), "°C", MAX));
+        if (sampler.hasThrottleCounters())
+            results.add(new AggregatingResult("@thermal.throttles", sampler.getThrottles(), "events", SUM));
+        return results;
+    }
+
+    /**
+     * @return CPUs the worker threads last ran on, empty if not known
+     */
+    private CpuSet workerCpus() {
+        final int[] cpus = new int[workers.length];
+        int count = 0;
+        for (long tid : workers) {
+            final int cpu = AffinityUtils.lastCpu(tid);
+            if (cpu >= 0) cpus[count++] = cpu;
+        }
+        return CpuSet.of(copyOf(cpus, count));
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static net.nicoulaj.jmh.profilers.ProcUtils.readLong;
+
+/**
+ * Samples the current frequency of a set of CPUs, thermal zones temperatures and thermal throttling counters
+ * from Linux sysfs.
+ * <p/>
+ * Not thread safe: samples are taken by a single thread, and read once it is done.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+final class FrequencySampler {
+
+    static final Path CPU_ROOT = Paths.get("/sys/devices/system/cpu");
+
+    static final Path THERMAL_ROOT = Paths.get("/sys/class/thermal");
+
+    private final Map<Integer, String> frequencies = new TreeMap<>();
+
+    private final List<String> throttles = new ArrayList<>();
+
+    private final List<String> temperatures = new ArrayList<>();
+
+    private long samples;
+
+    private double sum;
+
+    private double min;
+
+    private double max;
+
+    private double temperature;
+
+    private long firstThrottles;
+
+    private long lastThrottles;
+
+    /**
+     * @param cpuRoot     sysfs CPU devices directory
+     * @param thermalRoot sysfs thermal class directory
+     * @param cpus        CPUs to sample
+     */
+    FrequencySampler(final Path cpuRoot, final Path thermalRoot, final CpuSet cpus) {
+        for (int cpu : cpus.toArray()) {
+            final Path dir = cpuRoot.resolve("cpu" + cpu);
+            if (readLong(dir.resolve("cpufreq/scaling_cur_freq").toString()) != null)
+                frequencies.put(cpu, dir.resolve("cpufreq/scaling_cur_freq").toString());
+            if (readLong(dir.resolve("thermal_throttle/core_throttle_count").toString()) != null)
+                throttles.add(dir.resolve("thermal_throttle/core_throttle_count").toString());
+        }
+        final File[] zones = thermalRoot.toFile().listFiles();
+        if (zones != null)
+            for (File zone : zones)
+                if (zone.getName().startsWith("thermal_zone") && readLong(new File(zone, "temp").getPath()) != null)
+                    temperatures.add(new File(zone, "temp").getPath());
+        reset();
+    }
+
+    /**
+     * @return at least one CPU frequency can be sampled
+     */
+    boolean isAvailable() {
+        return !frequencies.isEmpty();
+    }
+
+    /**
+     * @return thermal throttling counters are available for at least one CPU
+     */
+    boolean hasThrottleCounters() {
+        return !throttles.isEmpty();
+    }
+
+    /**
+     * Forget previous samples.
+     */
+    void reset() {
+        samples = 0;
+        sum = 0;
+        min = Double.NaN;
+        max = Double.NaN;
+        temperature = Double.NaN;
+        firstThrottles = throttles();
+        lastThrottles = firstThrottles;
+    }
+
+    /**
+     * Take a sample of all the CPUs.
+     *
+     * @see #sample(CpuSet)
+     */
+    void sample() {
+        sample(CpuSet.EMPTY);
+    }
+
+    /**
+     * Take a sample: the average frequency of the given CPUs, the max temperature of the thermal zones, and the
+     * throttling counters.
+     *
+     * @param cpus CPUs to average the frequency of, eg: the ones the benchmark threads run on, all the sampled
+     *             CPUs if empty or if none of them is sampled
+     */
+    void sample(final CpuSet cpus) {
+        final List<String> files = new ArrayList<>();
+        for (Map.Entry<Integer, String> cpu : frequencies.entrySet())
+            if (cpus.contains(cpu.getKey())) files.add(cpu.getValue());
+        if (files.isEmpty()) files.addAll(frequencies.values());
+
+        long total = 0;
+        int count = 0;
+        for (String file : files) {
+            final Long khz = readLong(file);
+            if (khz == null) continue;
+            total += khz;
+            count++;
+        }
+        if (count > 0) {
+            final double mhz = total / 1000.0 / count;
+            samples++;
+            sum += mhz;
+            min = samples == 1 ? mhz : Math.min(min, mhz);
+            max = samples == 1 ? mhz : Math.max(max, mhz);
+        }
+
+        for (String file : temperatures) {
+            final Long millis = readLong(file);
+            if (millis != null && !(millis / 1000.0 <= temperature)) temperature = millis / 1000.0;
+        }
+
+        lastThrottles = throttles();
+    }
+
+    private long throttles() {
+        long total = 0;
+        for (String file : throttles) {
+            final Long count = readLong(file);
+            if (count != null) total += count;
+        }
+        return total;
+    }
+
+    long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return average frequency of the CPUs over the samples, in MHz, {@code NaN} if no sample
+     */
+    double getAverage() {
+        return samples > 0 ? sum / samples : Double.NaN;
+    }
+
+    /**
+     * @return lowest sampled frequency, in MHz, {@code NaN} if no sample
+     */
+    double getMin() {
+        return min;
+    }
+
+    /**
+     * @return highest sampled frequency, in MHz, {@code NaN} if no sample
+     */
+    double getMax() {
+        return max;
+    }
+
+    /**
+     * @return highest sampled temperature, in °C, {@code NaN} if no thermal zone is available
+     */
+    double getMaxTemperature() {
+        return temperature;
+    }
+
+    /**
+     * @return thermal throttling events of the CPUs since the last reset
+     */
+    long getThrottles() {
+        return lastThrottles - firstThrottles;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.isReadable;
+import static java.nio.file.Paths.get;
+import static net.nicoulaj.jmh.assertions.JMHAssertions.assertJMH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.contentOf;
+
+/**
+ * Test for {@link CpuFrequencyProfiler}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class CpuFrequencyProfilerTest {
+
+    @Test
+    public void test001() throws Exception {
+
+        if (!isReadable(FrequencySampler.CPU_ROOT.resolve("cpu0/cpufreq/scaling_cur_freq")))
+            throw new SkipException("Profiler not available in this environment, cannot test");
+
+        createDirectories(get("target"));
+        final Path output = createTempFile(get("target"), "jmh-output-", ".log");
+
+        assertJMH()
+                .output(output.toString())
+                .addProfiler(CpuFrequencyProfiler.class)
+                .runsWithoutError();
+
+        assertThat(contentOf(output.toFile()))
+                .contains("@cpufreq.avg")
+                .contains("@cpufreq.min")
+                .contains("@cpufreq.drops");
+    }
+
+    @Test
+    public void test002() throws Exception {
+
+        createDirectories(get("target"));
+        final Path sysfs = createTempDirectory(get("target"), "sysfs-");
+        final Path cpus = sysfs.resolve("cpu");
+        final Path thermal = sysfs.resolve("thermal");
+        write(cpus, "cpu0/cpufreq/scaling_cur_freq", "2000000");
+        write(cpus, "cpu1/cpufreq/scaling_cur_freq", "3000000");
+        write(cpus, "cpu1/thermal_throttle/core_throttle_count", "3");
+        write(cpus, "cpu2/cpufreq/scaling_cur_freq", "1000000");
+        write(thermal, "thermal_zone0/temp", "45000");
+        write(thermal, "thermal_zone1/temp", "52000");
+
+        final FrequencySampler sampler = new FrequencySampler(cpus, thermal, CpuSet.of(0, 1));
+        assertThat(sampler.isAvailable()).isTrue();
+        assertThat(sampler.hasThrottleCounters()).isTrue();
+
+        sampler.sample();
+        write(cpus, "cpu1/cpufreq/scaling_cur_freq", "1000000");
+        write(cpus, "cpu1/thermal_throttle/core_throttle_count", "5");
+        sampler.sample();
+
+        assertThat(sampler.getSamples()).isEqualTo(2);
+        assertThat(sampler.getAverage()).isEqualTo(2000.0);
+        assertThat(sampler.getMin()).isEqualTo(1500.0);
+        assertThat(sampler.getMax()).isEqualTo(2500.0);
+        assertThat(sampler.getMaxTemperature()).isEqualTo(52.0);
+        assertThat(sampler.getThrottles()).isEqualTo(2);
+
+        sampler.reset();
+        sampler.sample(CpuSet.of(0, 2));
+        assertThat(sampler.getAverage()).isEqualTo(2000.0);
+        sampler.sample(CpuSet.of(3));
+        assertThat(sampler.getMin()).isEqualTo(1500.0);
+
+        sampler.reset();
+        assertThat(sampler.getSamples()).isZero();
+        assertThat(sampler.getThrottles()).isZero();
+        assertThat(new FrequencySampler(cpus, thermal, CpuSet.of(3)).isAvailable()).isFalse();
+    }
+
+    private static void write(final Path root, final String file, final String value) throws IOException {
+        createDirectories(root.resolve(file).getParent());
+        Files.write(root.resolve(file), value.getBytes(US_ASCII));
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import net.nicoulaj.jmh.profilers.MemoryMappings.Mapping;
+import net.nicoulaj.jmh.profilers.ProfilerOptions.Option;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.ExternalProfiler;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.profile.ProfilerException;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.util.Statistics;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.lang.Boolean.TRUE;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static net.nicoulaj.jmh.profilers.ProcUtils.readSelected;
+import static net.nicoulaj.jmh.profilers.ProcUtils.readString;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.booleanOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.doubleOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.stringOption;
+import static org.openjdk.jmh.results.AggregationPolicy.AVG;
+
+/**
+ * Runs benchmark forks with transparent or explicit huge pages, and checks from inside the fork which fraction
+ * of the Java heap is actually backed by huge pages.
+ * <p/>
+ * After each iteration, the heap mappings are located in <code>/proc/self/smaps</code> and the share of their
+ * resident memory held by huge pages (<code>AnonHugePages</code> for THP, <code>*_Hugetlb</code> for
+ * <code>hugetlbfs</code>) is attached as the <code>@hugepages</code> secondary result, along with the host
+ * THP settings, so that every result tells which mode it actually ran in.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class LargePagesProfiler implements ExternalProfiler, InternalProfiler {
+
+    private static final String THP = "thp";
+
+    private static final String EXPLICIT = "explicit";
+
+    private static final String OFF = "off";
+
+    private static final String DEFAULT = "default";
+
+    /**
+     * Huge pages mode of the forks:
+     * <ul>
+     * <li><code>thp</code>: transparent huge pages (<code>-XX:+UseTransparentHugePages</code>),</li>
+     * <li><code>explicit</code>: <code>hugetlbfs</code> huge pages (<code>-XX:+UseLargePages</code>), that must be reserved on the host,</li>
+     * <li><code>off</code>: no huge pages (<code>-XX:-UseLargePages</code>),</li>
+     * <li><code>default</code>: JVM flags are left untouched, only the heap is checked.</li>
+     * </ul>
+     * By default, transparent huge pages are used.
+     */
+    private static final Option<String> MODE = stringOption("mode", THP);
+
+    /**
+     * Specifies whether the heap should be touched on JVM startup (<code>-XX:+AlwaysPreTouch</code>), so that it
+     * is fully backed by (huge) pages before the first iteration.
+     * By default, this parameter is set to true.
+     */
+    private static final Option<Boolean> PRE_TOUCH = booleanOption("pretouch", TRUE);
+
+    /**
+     * Minimum fraction (between 0 and 1) of the resident heap that must be backed by huge pages, the benchmark
+     * fails if it is not reached.
+     * By default, no minimum is enforced, and the fraction is only reported.
+     */
+    private static final Option<Double> MIN_FRACTION = doubleOption("minfraction", null);
+
+    private final ProfilerOptions options;
+
+    public LargePagesProfiler() throws ProfilerException {
+        this(null);
+    }
+
+    public LargePagesProfiler(final String initLine) throws ProfilerException {
+        options = new ProfilerOptions("largepages", initLine, asList(MODE, PRE_TOUCH, MIN_FRACTION));
+        final String mode = options.get(MODE);
+        if (!asList(THP, EXPLICIT, OFF, DEFAULT).contains(mode))
+            throw new ProfilerException("Invalid mode '" + mode + "' for largepages profiler, expected one of thp, explicit, off or default");
+    }
+
+    @Override
+    public String getDescription() {
+        return "Large pages configuration and verification";
+    }
+
+    @Override
+    public boolean allowPrintOut() {
+        return true;
+    }
+
+    @Override
+    public boolean allowPrintErr() {
+        return true;
+    }
+
+    @Override
+    public Collection<String> addJVMInvokeOptions(final BenchmarkParams params) {
+        return emptyList();
+    }
+
+    @Override
+    public Collection<String> addJVMOptions(final BenchmarkParams params) {
+        final List<String> opts = new ArrayList<>();
+        switch (options.get(MODE, params)) {
+        case THP:
+            opts.add("-XX:+UseTransparentHugePages");
+            break;
+        case EXPLICIT:
+            opts.add("-XX:+UseLargePages");
+            opts.add("-XX:-UseTransparentHugePages");
+            break;
+        case OFF:
+            opts.add("-XX:-UseLargePages");
+            opts.add("-XX:-UseTransparentHugePages");
+            break;
+        default:
+            break;
+        }
+        if (options.get(PRE_TOUCH, params)) opts.add("-XX:+AlwaysPreTouch");
+        return opts;
+    }
+
+    @Override
+    public void beforeTrial(final BenchmarkParams params) {
+        // Nothing to do
+    }
+
+    @Override
+    public Collection<? extends Result> afterTrial(final BenchmarkResult benchmarkResult, final long pid, final File stdOut, final File stdErr) {
+        return emptyList();
+    }
+
+    @Override
+    public void beforeIteration(final BenchmarkParams benchmarkParams, final IterationParams iterationParams) {
+        // Nothing to do
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(final BenchmarkParams benchmarkParams,
+                                                       final IterationParams iterationParams,
+                                                       final IterationResult iterationResult) {
+        final String mode = options.get(MODE, benchmarkParams);
+        final List<String> warnings = new ArrayList<>();
+
+        final MemoryMappings mappings = MemoryMappings.current();
+        List<Mapping> heap = mappings.heap(maxHeapSize());
+        if (heap.isEmpty()) {
+            warnings.add("Java heap not found in /proc/self/smaps, reporting all anonymous memory");
+            heap = new ArrayList<>();
+            for (Mapping mapping : mappings.getMappings())
+                if (mapping.isAnonymous()) heap.add(mapping);
+        }
+        final long resident = MemoryMappings.resident(heap);
+        final double fraction = resident > 0 ? (double) MemoryMappings.huge(heap) / resident : 0;
+
+        final String thp = setting(readSelected("/sys/kernel/mm/transparent_hugepage/enabled"));
+        final String defrag = setting(readSelected("/sys/kernel/mm/transparent_hugepage/defrag"));
+        if (THP.equals(mode) && "never".equals(thp))
+            warnings.add("transparent huge pages are disabled on the host (transparent_hugepage/enabled = never)");
+        if (EXPLICIT.equals(mode) && !hugePagesReserved())
+            warnings.add("no huge pages are reserved on the host (HugePages_Total = 0 in /proc/meminfo)");
+
+        final Double min = options.get(MIN_FRACTION, benchmarkParams);
+        if (min != null && fraction < min)
+            throw new IllegalStateException(String.format("Only %.1f%% of the resident heap is backed by huge pages, expected at least %.1f%% %s",
+                                                          fraction * 100, min * 100, warnings));
+
+        final String info = String.format("Heap: %d MB resident, %.1f%% on huge pages (mode %s, THP enabled = %s, defrag = %s)",
+                                          resident >> 20, fraction * 100, mode, thp, defrag);
+        return asList(new HugePagesResult(fraction * 100, info, warnings));
+    }
+
+    private static long maxHeapSize() {
+        try {
+            final HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            if (hotspot != null) return Long.parseLong(hotspot.getVMOption("MaxHeapSize").getValue());
+        } catch (RuntimeException | LinkageError e) {
+            // Not a HotSpot JVM
+        }
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    private static boolean hugePagesReserved() {
+        final String meminfo = readString("/proc/meminfo");
+        if (meminfo == null) return false;
+        for (String line : meminfo.split("\n"))
+            if (line.startsWith("HugePages_Total:"))
+                return !line.substring("HugePages_Total:".length()).trim().equals("0");
+        return false;
+    }
+
+    private static String setting(final String value) {
+        return value != null ? value : "unknown";
+    }
+
+    private static final class HugePagesResult extends AggregatingResult {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String info;
+
+        private final Collection<String> warnings;
+
+        HugePagesResult(final double fraction, final String info, final Collection<String> warnings) {
+            this(of(fraction), info, warnings);
+        }
+
+        private HugePagesResult(final Statistics fractions, final String info, final Collection<String> warnings) {
+            super("@hugepages", fractions, "%", AVG);
+            this.info = info;
+            this.warnings = warnings;
+        }
+
+        @Override
+        protected AggregatingResult aggregated(final Statistics statistics, final Collection<? extends AggregatingResult> results) {
+            final Set<String> warnings = new LinkedHashSet<>();
+            String info = this.info;
+            for (AggregatingResult result : results) {
+                if (!(result instanceof HugePagesResult)) continue;
+                warnings.addAll(((HugePagesResult) result).warnings);
+                info = ((HugePagesResult) result).info;
+            }
+            return new HugePagesResult(statistics, info, new ArrayList<>(warnings));
+        }
+
+        @Override
+        protected String simpleExtendedInfo() {
+            final StringBuilder info = new StringBuilder(this.info).append('\n');
+            for (String warning : warnings)
+                info.append("WARNING: ").append(warning).append('\n');
+            return info.toString();
+        }
+    }
+}
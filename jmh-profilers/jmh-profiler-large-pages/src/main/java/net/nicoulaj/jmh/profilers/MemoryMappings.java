@@ -0,0 +1,198 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Memory mappings of a Linux process, as exposed by <code>/proc/&lt;pid&gt;/smaps</code>, with their
+ * huge pages usage.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class MemoryMappings {
+
+    private final List<Mapping> mappings;
+
+    private MemoryMappings(final List<Mapping> mappings) {
+        this.mappings = mappings;
+    }
+
+    /**
+     * @return mappings of the current process, empty if <code>/proc/self/smaps</code> is not available
+     */
+    public static MemoryMappings current() {
+        final String smaps = ProcUtils.readString("/proc/self/smaps");
+        return parse(smaps != null ? smaps : "");
+    }
+
+    /**
+     * @param smaps content of a <code>/proc/&lt;pid&gt;/smaps</code> file
+     * @return mappings
+     */
+    public static MemoryMappings parse(final String smaps) {
+        final List<Mapping> mappings = new ArrayList<>();
+        Mapping mapping = null;
+        for (String line : smaps.split("\n")) {
+            final int colon = line.indexOf(':');
+            final int space = line.indexOf(' ');
+            final int dash = line.indexOf('-');
+            if (dash > 0 && space > dash && (colon < 0 || colon > space)) {
+                // Mapping header: start-end perms offset dev inode [path]
+                final String[] fields = line.trim().split("\\s+", 6);
+                mapping = new Mapping(Long.parseUnsignedLong(fields[0].substring(0, dash), 16),
+                                      Long.parseUnsignedLong(fields[0].substring(dash + 1), 16),
+                                      fields.length > 5 ? fields[5] : "");
+                mappings.add(mapping);
+            } else if (mapping != null && colon > 0 && line.endsWith(" kB")) {
+                final long kb = Long.parseLong(line.substring(colon + 1, line.length() - 3).trim());
+                switch (line.substring(0, colon)) {
+                case "Rss":
+                    mapping.rss = kb * 1024;
+                    break;
+                case "AnonHugePages":
+                    mapping.anonHugePages = kb * 1024;
+                    break;
+                case "Shared_Hugetlb":
+                case "Private_Hugetlb":
+                    mapping.hugetlb += kb * 1024;
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+        return new MemoryMappings(Collections.unmodifiableList(mappings));
+    }
+
+    /**
+     * @return all mappings, by address
+     */
+    public List<Mapping> getMappings() {
+        return mappings;
+    }
+
+    /**
+     * Locate the Java heap: HotSpot reserves it as a single range of anonymous memory of the max heap size, that
+     * the kernel splits into several mappings as it gets committed or advised for huge pages.
+     *
+     * @param maxHeapSize JVM <code>MaxHeapSize</code> flag value, in bytes
+     * @return contiguous anonymous mappings spanning exactly {@code maxHeapSize} bytes, empty if not found
+     */
+    public List<Mapping> heap(final long maxHeapSize) {
+        for (int i = 0; i < mappings.size(); i++) {
+            if (!mappings.get(i).isAnonymous()) continue;
+            final long start = mappings.get(i).start;
+            for (int j = i; j < mappings.size(); j++) {
+                final Mapping mapping = mappings.get(j);
+                if (!mapping.isAnonymous() || j > i && mapping.start != mappings.get(j - 1).end) break;
+                if (mapping.end - start == maxHeapSize) return mappings.subList(i, j + 1);
+                if (mapping.end - start > maxHeapSize) break;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * @param mappings mappings
+     * @return resident bytes of the mappings, including <code>hugetlbfs</code> pages
+     */
+    public static long resident(final List<Mapping> mappings) {
+        long resident = 0;
+        for (Mapping mapping : mappings) resident += mapping.rss + mapping.hugetlb;
+        return resident;
+    }
+
+    /**
+     * @param mappings mappings
+     * @return resident bytes of the mappings backed by transparent or <code>hugetlbfs</code> huge pages
+     */
+    public static long huge(final List<Mapping> mappings) {
+        long huge = 0;
+        for (Mapping mapping : mappings) huge += mapping.anonHugePages + mapping.hugetlb;
+        return huge;
+    }
+
+    /**
+     * A memory mapping.
+     *
+     * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+     */
+    public static final class Mapping {
+
+        private final long start;
+
+        private final long end;
+
+        private final String path;
+
+        private long rss;
+
+        private long anonHugePages;
+
+        private long hugetlb;
+
+        Mapping(final long start, final long end, final String path) {
+            this.start = start;
+            this.end = end;
+            this.path = path;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * @return mapped file, or pseudo path (eg: <code>[stack]</code>), empty for anonymous memory
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return mapping is anonymous memory, including <code>hugetlbfs</code> backed anonymous memory
+         */
+        public boolean isAnonymous() {
+            return path.isEmpty() || path.startsWith("/anon_hugepage") || path.startsWith("SYSV");
+        }
+
+        public long getRss() {
+            return rss;
+        }
+
+        public long getAnonHugePages() {
+            return anonHugePages;
+        }
+
+        public long getHugetlb() {
+            return hugetlb;
+        }
+
+        @Override
+        public String toString() {
+            return Long.toHexString(start) + "-" + Long.toHexString(end) + " " + path;
+        }
+    }
+}
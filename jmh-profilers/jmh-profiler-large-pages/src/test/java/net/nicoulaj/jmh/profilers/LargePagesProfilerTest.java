@@ -0,0 +1,96 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.nio.file.Path;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Paths.get;
+import static net.nicoulaj.jmh.assertions.JMHAssertions.assertJMH;
+import static net.nicoulaj.jmh.profilers.SystemUtils.OperatingSystem.LINUX;
+import static net.nicoulaj.jmh.profilers.SystemUtils.OperatingSystem.getOS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.contentOf;
+
+/**
+ * Test for {@link LargePagesProfiler}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class LargePagesProfilerTest {
+
+    @Test
+    public void test001() throws Exception {
+
+        if (getOS() != LINUX)
+            throw new SkipException("Profiler not available in this environment, cannot test");
+
+        createDirectories(get("target"));
+        final Path output = createTempFile(get("target"), "jmh-output-", ".log");
+
+        assertJMH()
+                .output(output.toString())
+                .addProfiler(LargePagesProfiler.class, "mode=off")
+                .runsWithoutError();
+
+        assertThat(contentOf(output.toFile()))
+                .contains("@hugepages")
+                .contains("0.0% on huge pages (mode off")
+                .doesNotContain("Java heap not found");
+    }
+
+    @Test
+    public void test002() {
+
+        final MemoryMappings mappings = MemoryMappings.parse(
+                "00400000-00401000 r-xp 00000000 08:01 1234                               /usr/bin/java\n" +
+                "Size:                  4 kB\n" +
+                "Rss:                   4 kB\n" +
+                "f0000000-f2000000 rw-p 00000000 00:00 0 \n" +
+                "Size:              32768 kB\n" +
+                "Rss:               32768 kB\n" +
+                "AnonHugePages:     30720 kB\n" +
+                "f2000000-f8000000 ---p 00000000 00:00 0 \n" +
+                "Size:              98304 kB\n" +
+                "Rss:                   0 kB\n" +
+                "AnonHugePages:         0 kB\n" +
+                "f8000000-100000000 rw-p 00000000 00:00 0 \n" +
+                "Size:             131072 kB\n" +
+                "Rss:               8192 kB\n" +
+                "AnonHugePages:     2048 kB\n" +
+                "VmFlags: rd wr mr mw me ac sd\n" +
+                "100000000-100100000 rw-p 00000000 00:00 0 \n" +
+                "Rss:                1024 kB\n" +
+                "7f0000000000-7f0000200000 rw-p 00000000 00:00 0                          /anon_hugepage (deleted)\n" +
+                "Rss:                   0 kB\n" +
+                "Private_Hugetlb:    2048 kB\n");
+
+        assertThat(mappings.getMappings()).hasSize(6);
+        assertThat(mappings.heap(256L << 20)).hasSize(3);
+        assertThat(MemoryMappings.resident(mappings.heap(256L << 20))).isEqualTo(40L << 20);
+        assertThat(MemoryMappings.huge(mappings.heap(256L << 20))).isEqualTo(32L << 20);
+        assertThat(mappings.heap(2L << 20)).hasSize(1);
+        assertThat(MemoryMappings.huge(mappings.heap(2L << 20))).isEqualTo(2L << 20);
+        assertThat(mappings.heap(100L << 20)).isEmpty();
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import net.nicoulaj.jmh.profilers.ProfilerOptions.Option;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.ExternalProfiler;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.profile.ProfilerException;
+import org.openjdk.jmh.results.Aggregator;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.Boolean.TRUE;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.booleanOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.integerOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.stringOption;
+import static org.openjdk.jmh.results.AggregationPolicy.MAX;
+import static org.openjdk.jmh.results.ResultRole.SECONDARY;
+
+/**
+ * Pins benchmark forks to a set of CPUs of a single NUMA node, by prefixing the fork command with
+ * <code>numactl</code> (or <code>taskset</code> if <code>numactl</code> is not installed).
+ * <p/>
+ * CPUs are chosen among the {@link CpuTopology#isolated() isolated CPUs} if any, restricted to the NUMA node (or
+ * socket) holding most of them, keeping a single hardware thread per physical core. With <code>numactl</code>,
+ * memory allocations are also bound to that node.
+ * <p/>
+ * The effective CPU and memory affinity is checked from inside the fork, and attached as the <code>@pinning</code>
+ * secondary result whose score is the number of CPUs the fork was allowed to run on.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class PinningProfiler implements ExternalProfiler, InternalProfiler {
+
+    /**
+     * CPUs to choose from, eg: <code>2-7,10</code>.
+     * By default, isolated CPUs are used if any, otherwise all online CPUs.
+     */
+    private static final Option<String> CPUS = stringOption("cpus", null);
+
+    /**
+     * Maximum number of CPUs to pin each fork to.
+     * By default, all the chosen CPUs are used.
+     */
+    private static final Option<Integer> COUNT = integerOption("count", null);
+
+    /**
+     * NUMA node to pin forks to.
+     * By default, the node holding most of the candidate CPUs is used.
+     */
+    private static final Option<Integer> NODE = integerOption("node", null);
+
+    /**
+     * Specifies whether a single hardware thread per physical core should be used, so that benchmark threads do
+     * not compete with each other (or with the JVM threads) on SMT siblings.
+     * By default, this parameter is set to true.
+     */
+    private static final Option<Boolean> AVOID_SMT = booleanOption("avoidsmt", TRUE);
+
+    /**
+     * Specifies whether memory allocations should be bound to the NUMA node of the chosen CPUs.
+     * By default, this parameter is set to true. Requires <code>numactl</code>.
+     */
+    private static final Option<Boolean> MEMBIND = booleanOption("membind", TRUE);
+
+    /**
+     * Specifies whether the benchmark should fail if the effective affinity of the fork is not the expected one.
+     * By default, this parameter is set to true. Otherwise, a warning is reported.
+     */
+    private static final Option<Boolean> STRICT = booleanOption("strict", TRUE);
+
+    private final ProfilerOptions options;
+
+    private final CpuTopology topology;
+
+    private PinningResult result;
+
+    public PinningProfiler() throws ProfilerException {
+        this(null);
+    }
+
+    public PinningProfiler(final String initLine) throws ProfilerException {
+        options = new ProfilerOptions("pinning", initLine, asList(CPUS, COUNT, NODE, AVOID_SMT, MEMBIND, STRICT));
+        topology = CpuTopology.detect();
+    }
+
+    @Override
+    public String getDescription() {
+        return "CPU and NUMA pinning of benchmark forks";
+    }
+
+    @Override
+    public boolean allowPrintOut() {
+        return true;
+    }
+
+    @Override
+    public boolean allowPrintErr() {
+        return true;
+    }
+
+    @Override
+    public Collection<String> addJVMInvokeOptions(final BenchmarkParams params) {
+        final CpuSet cpus = cpus(params);
+        final int node = node(params, cpus);
+        if (SystemUtils.isCommandAvailable("numactl")) {
+            final List<String> command = new ArrayList<>(asList("numactl", "--physcpubind=" + cpus));
+            if (membind(params, node)) command.add("--membind=" + node);
+            return command;
+        }
+        if (SystemUtils.isCommandAvailable("taskset")) {
+            return asList("taskset", "-c", cpus.toString());
+        }
+        throw new IllegalStateException("Neither numactl nor taskset is available, cannot pin forks");
+    }
+
+    @Override
+    public Collection<String> addJVMOptions(final BenchmarkParams params) {
+        return emptyList();
+    }
+
+    @Override
+    public void beforeTrial(final BenchmarkParams params) {
+        // Keep background post-processing of other profilers off the measured CPUs
+        PostProcessing.excludeCpus(cpus(params));
+    }
+
+    @Override
+    public Collection<? extends Result> afterTrial(final BenchmarkResult benchmarkResult, final long pid, final File stdOut, final File stdErr) {
+        return emptyList();
+    }
+
+    @Override
+    public void beforeIteration(final BenchmarkParams benchmarkParams, final IterationParams iterationParams) {
+        if (result != null) return;
+
+        final CpuSet expectedCpus = cpus(benchmarkParams);
+        final int node = node(benchmarkParams, expectedCpus);
+        final CpuSet expectedNodes = membind(benchmarkParams, node) && SystemUtils.isCommandAvailable("numactl") ? CpuSet.of(node) : null;
+
+        final long tid = AffinityUtils.currentThreadId();
+        final CpuSet cpus = AffinityUtils.getAffinity(tid);
+        final CpuSet nodes = AffinityUtils.getMemoryNodes(tid);
+
+        final List<String> warnings = new ArrayList<>();
+        if (cpus == null)
+            warnings.add("could not read the fork CPU affinity");
+        else if (!cpus.equals(expectedCpus))
+            warnings.add("fork CPU affinity is " + cpus + ", expected " + expectedCpus);
+        if (expectedNodes != null && nodes != null && !nodes.equals(expectedNodes))
+            warnings.add("fork memory is bound to NUMA nodes " + nodes + ", expected " + expectedNodes);
+        if (!warnings.isEmpty() && options.get(STRICT, benchmarkParams))
+            throw new IllegalStateException("Fork is not pinned as expected: " + warnings);
+
+        result = new PinningResult(cpus != null ? cpus : expectedCpus, nodes, Runtime.getRuntime().availableProcessors(), warnings);
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(final BenchmarkParams benchmarkParams,
+                                                       final IterationParams iterationParams,
+                                                       final IterationResult iterationResult) {
+        return asList(result);
+    }
+
+    /**
+     * @param params benchmark parameters
+     * @return CPUs to pin the benchmark forks to
+     */
+    CpuSet cpus(final BenchmarkParams params) {
+        return choose(topology,
+                      options.get(CPUS, params) != null ? CpuSet.parse(options.get(CPUS, params)) : null,
+                      options.get(NODE, params),
+                      options.get(AVOID_SMT, params),
+                      options.get(COUNT, params));
+    }
+
+    private int node(final BenchmarkParams params, final CpuSet cpus) {
+        final Integer node = options.get(NODE, params);
+        return node != null ? node : topology.node(cpus.toArray()[0]);
+    }
+
+    private boolean membind(final BenchmarkParams params, final int node) {
+        return node >= 0 && options.get(MEMBIND, params);
+    }
+
+    /**
+     * Choose the CPUs to pin forks to.
+     *
+     * @param topology host topology
+     * @param cpus     CPUs to choose from, {@code null} for isolated CPUs, or all online CPUs if none are isolated
+     * @param node     NUMA node to restrict to, {@code null} for the node (or socket) holding most candidate CPUs
+     * @param avoidSmt keep a single hardware thread per physical core
+     * @param count    maximum number of CPUs, {@code null} for no limit
+     * @return chosen CPUs
+     * @throws IllegalStateException if no CPU matches
+     */
+    static CpuSet choose(final CpuTopology topology, final CpuSet cpus, final Integer node, final boolean avoidSmt, final Integer count) {
+        CpuSet candidates = cpus != null ? cpus : topology.isolated().isEmpty() ? topology.online() : topology.isolated();
+        candidates = candidates.intersection(topology.online());
+
+        if (node != null) {
+            final CpuSet nodeCpus = topology.nodes().get(node);
+            if (nodeCpus == null) throw new IllegalStateException("NUMA node " + node + " does not exist");
+            candidates = candidates.intersection(nodeCpus);
+        } else if (!topology.nodes().isEmpty()) {
+            CpuSet best = CpuSet.EMPTY;
+            for (Map.Entry<Integer, CpuSet> entry : topology.nodes().entrySet()) {
+                final CpuSet nodeCpus = candidates.intersection(entry.getValue());
+                if (nodeCpus.size() > best.size()) best = nodeCpus;
+            }
+            candidates = best;
+        } else if (!candidates.isEmpty()) {
+            CpuSet best = CpuSet.EMPTY;
+            for (int socket = 0; socket < topology.sockets(); socket++) {
+                CpuSet socketCpus = CpuSet.EMPTY;
+                for (int cpu : candidates.toArray())
+                    if (topology.socket(cpu) == socket) socketCpus = socketCpus.union(CpuSet.of(cpu));
+                if (socketCpus.size() > best.size()) best = socketCpus;
+            }
+            candidates = best.isEmpty() ? candidates : best;
+        }
+
+        if (avoidSmt) candidates = topology.oneThreadPerCore(candidates);
+        if (count != null) candidates = candidates.first(count);
+        if (candidates.isEmpty()) throw new IllegalStateException("No CPU left to pin forks to");
+        return candidates;
+    }
+
+    private static final class PinningResult extends Result<PinningResult> implements Aggregator<PinningResult> {
+
+        private final CpuSet cpus;
+
+        private final CpuSet nodes;
+
+        private final int processors;
+
+        private final Collection<String> warnings;
+
+        PinningResult(final CpuSet cpus, final CpuSet nodes, final int processors, final Collection<String> warnings) {
+            super(SECONDARY, "@pinning", of(cpus.size()), "cpus", MAX);
+            this.cpus = cpus;
+            this.nodes = nodes;
+            this.processors = processors;
+            this.warnings = warnings;
+        }
+
+        @Override
+        protected Aggregator<PinningResult> getThreadAggregator() {
+            return this;
+        }
+
+        @Override
+        protected Aggregator<PinningResult> getIterationAggregator() {
+            return this;
+        }
+
+        @Override
+        public PinningResult aggregate(final Collection<PinningResult> results) {
+            final Set<String> warnings = new LinkedHashSet<>();
+            PinningResult widest = null;
+            for (PinningResult result : results) {
+                warnings.addAll(result.warnings);
+                if (widest == null || result.cpus.size() > widest.cpus.size()) widest = result;
+            }
+            return new PinningResult(widest.cpus, widest.nodes, widest.processors, new ArrayList<>(warnings));
+        }
+
+        @Override
+        protected String simpleExtendedInfo() {
+            final StringBuilder info = new StringBuilder("Fork pinned to CPUs ").append(cpus);
+            if (nodes != null) info.append(", memory on NUMA nodes ").append(nodes);
+            info.append(" (").append(processors).append(" available processors)\n");
+            for (String warning : warnings)
+                info.append("WARNING: ").append(warning).append('\n');
+            return info.toString();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.nio.file.Path;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Paths.get;
+import static net.nicoulaj.jmh.assertions.JMHAssertions.assertJMH;
+import static net.nicoulaj.jmh.profilers.SystemUtils.OperatingSystem.LINUX;
+import static net.nicoulaj.jmh.profilers.SystemUtils.OperatingSystem.getOS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.contentOf;
+
+/**
+ * Test for {@link PinningProfiler}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class PinningProfilerTest {
+
+    @Test
+    public void test001() throws Exception {
+
+        if (getOS() != LINUX || !SystemUtils.isCommandAvailable("taskset") && !SystemUtils.isCommandAvailable("numactl"))
+            throw new SkipException("Profiler not available in this environment, cannot test");
+
+        createDirectories(get("target"));
+        final Path output = createTempFile(get("target"), "jmh-output-", ".log");
+
+        assertJMH()
+                .output(output.toString())
+                .addProfiler(PinningProfiler.class, "count=1")
+                .runsWithoutError();
+
+        assertThat(contentOf(output.toFile()))
+                .contains("Fork pinned to CPUs ")
+                .contains("(1 available processors)")
+                .doesNotContain("WARNING");
+    }
+
+    @Test
+    public void test002() {
+
+        final CpuTopology topology = CpuTopology.detect();
+        final int cpu = topology.online().toArray()[0];
+
+        assertThat(PinningProfiler.choose(topology, CpuSet.of(cpu), null, true, null)).isEqualTo(CpuSet.of(cpu));
+        assertThat(PinningProfiler.choose(topology, null, null, true, 1).size()).isEqualTo(1);
+        assertThat(topology.online().containsAll(PinningProfiler.choose(topology, null, null, false, null))).isTrue();
+        for (int chosen : PinningProfiler.choose(topology, null, null, true, null).toArray())
+            assertThat(topology.siblings(chosen).minus(CpuSet.of(chosen)).intersection(
+                    PinningProfiler.choose(topology, null, null, true, null)).isEmpty()).isTrue();
+    }
+}
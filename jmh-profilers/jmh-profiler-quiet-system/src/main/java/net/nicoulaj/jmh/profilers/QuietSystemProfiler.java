@@ -0,0 +1,168 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import net.nicoulaj.jmh.profilers.ProfilerOptions.Option;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.ExternalProfiler;
+import org.openjdk.jmh.profile.ProfilerException;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.Result;
+
+import java.io.File;
+import java.util.Collection;
+
+import static java.lang.Boolean.FALSE;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.booleanOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.doubleOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.integerOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.longOption;
+import static org.openjdk.jmh.results.AggregationPolicy.MAX;
+
+/**
+ * Waits for the host to be quiet before each fork, and records the CPU load of other processes during the fork.
+ * <p/>
+ * Before each fork, the host CPU usage (<code>/proc/stat</code>) and runnable tasks count are sampled until they
+ * stay below the thresholds for a few consecutive samples, or until a timeout. After the fork, the share of the
+ * machine CPU capacity used by other processes than JMH and its forks is attached as the
+ * <code>@background.cpu</code> secondary result, and the time spent waiting as <code>@quiet.wait</code>, so
+ * that results contaminated by noisy neighbours can be spotted and filtered out.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class QuietSystemProfiler implements ExternalProfiler {
+
+    /**
+     * Maximum CPU usage of the host, in percent of all CPUs, for it to be considered quiet.
+     * By default, it is set to 10%.
+     */
+    private static final Option<Double> MAX_LOAD = doubleOption("maxload", 10.0);
+
+    /**
+     * Maximum number of runnable tasks on the host for it to be considered quiet.
+     * By default, it is set to 1.
+     */
+    private static final Option<Integer> MAX_RUNNABLE = integerOption("maxrunnable", 1);
+
+    /**
+     * Duration of each sample, in milliseconds.
+     * By default, it is set to 500 ms.
+     */
+    private static final Option<Long> INTERVAL = longOption("interval", 500L);
+
+    /**
+     * Number of consecutive quiet samples required before starting the fork.
+     * By default, it is set to 3.
+     */
+    private static final Option<Integer> SAMPLES = integerOption("samples", 3);
+
+    /**
+     * Maximum time to wait for the host to be quiet, in seconds.
+     * By default, it is set to 60 s.
+     */
+    private static final Option<Long> TIMEOUT = longOption("timeout", 60L);
+
+    /**
+     * Specifies whether the benchmark should fail if the host is still not quiet after the timeout.
+     * By default, this parameter is set to false (the fork is started anyway).
+     */
+    private static final Option<Boolean> STRICT = booleanOption("strict", FALSE);
+
+    private final ProfilerOptions options;
+
+    private SystemLoad start;
+
+    private double waited;
+
+    public QuietSystemProfiler() throws ProfilerException {
+        this(null);
+    }
+
+    public QuietSystemProfiler(final String initLine) throws ProfilerException {
+        options = new ProfilerOptions("quiet", initLine, asList(MAX_LOAD, MAX_RUNNABLE, INTERVAL, SAMPLES, TIMEOUT, STRICT));
+    }
+
+    @Override
+    public String getDescription() {
+        return "Quiet system gate and background load monitoring";
+    }
+
+    @Override
+    public boolean allowPrintOut() {
+        return true;
+    }
+
+    @Override
+    public boolean allowPrintErr() {
+        return true;
+    }
+
+    @Override
+    public Collection<String> addJVMInvokeOptions(final BenchmarkParams params) {
+        return emptyList();
+    }
+
+    @Override
+    public Collection<String> addJVMOptions(final BenchmarkParams params) {
+        return emptyList();
+    }
+
+    @Override
+    public void beforeTrial(final BenchmarkParams params) {
+        final double maxLoad = options.get(MAX_LOAD, params) / 100;
+        final int maxRunnable = options.get(MAX_RUNNABLE, params);
+        final long interval = options.get(INTERVAL, params);
+        final int samples = options.get(SAMPLES, params);
+        final long deadline = System.nanoTime() + options.get(TIMEOUT, params) * 1000000000L;
+        final long begin = System.nanoTime();
+
+        SystemLoad previous = SystemLoad.sample();
+        int quiet = 0;
+        double busy = 0;
+        while (previous != null && quiet < samples && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            final SystemLoad current = SystemLoad.sample();
+            busy = current.busy(previous);
+            quiet = busy <= maxLoad && current.getRunnable() <= maxRunnable ? quiet + 1 : 0;
+            previous = current;
+        }
+        waited = (System.nanoTime() - begin) / 1e9;
+
+        if (previous != null && quiet < samples && options.get(STRICT, params))
+            throw new IllegalStateException(String.format("Host is not quiet after %.0f s (%.1f%% CPU busy, %d runnable tasks, load average %.2f)",
+                                                          waited, busy * 100, previous.getRunnable(), previous.getLoadAverage()));
+
+        start = SystemLoad.sample();
+    }
+
+    @Override
+    public Collection<? extends Result> afterTrial(final BenchmarkResult benchmarkResult, final long pid, final File stdOut, final File stdErr) {
+        final SystemLoad end = SystemLoad.sample();
+        if (start == null || end == null) return emptyList();
+        return asList(new AggregatingResult("@background.cpu", end.background(start) * 100, "%", MAX),
+                      new AggregatingResult("@quiet.wait", waited, "s", MAX));
+    }
+}
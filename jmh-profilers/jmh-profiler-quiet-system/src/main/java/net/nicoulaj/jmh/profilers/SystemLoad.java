@@ -0,0 +1,135 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import static net.nicoulaj.jmh.profilers.ProcUtils.readString;
+
+/**
+ * A snapshot of the host CPU usage counters, from <code>/proc/stat</code>, <code>/proc/loadavg</code> and
+ * <code>/proc/self/stat</code>.
+ * <p/>
+ * CPU times are in clock ticks summed over all CPUs, so differences between two snapshots can be compared to
+ * each other without knowing the tick rate.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class SystemLoad {
+
+    private final long total;
+
+    private final long idle;
+
+    private final long self;
+
+    private final int running;
+
+    private final double loadAverage;
+
+    SystemLoad(final long total, final long idle, final long self, final int running, final double loadAverage) {
+        this.total = total;
+        this.idle = idle;
+        this.self = self;
+        this.running = running;
+        this.loadAverage = loadAverage;
+    }
+
+    /**
+     * @return current counters, {@code null} if <code>/proc/stat</code> is not available
+     */
+    public static SystemLoad sample() {
+        return parse(readString("/proc/stat"), readString("/proc/loadavg"), readString("/proc/self/stat"));
+    }
+
+    /**
+     * @param stat     <code>/proc/stat</code> content
+     * @param loadavg  <code>/proc/loadavg</code> content, may be {@code null}
+     * @param selfStat <code>/proc/self/stat</code> content, may be {@code null}
+     * @return counters, {@code null} if {@code stat} is {@code null} or malformed
+     */
+    static SystemLoad parse(final String stat, final String loadavg, final String selfStat) {
+        if (stat == null) return null;
+
+        long total = -1;
+        long idle = 0;
+        int running = 0;
+        for (String line : stat.split("\n")) {
+            final String[] fields = line.trim().split("\\s+");
+            if (fields[0].equals("cpu")) {
+                // user nice system idle iowait irq softirq steal (guest time is already counted in user)
+                total = 0;
+                for (int i = 1; i < Math.min(fields.length, 9); i++)
+                    total += Long.parseLong(fields[i]);
+                idle = Long.parseLong(fields[4]) + (fields.length > 5 ? Long.parseLong(fields[5]) : 0);
+            } else if (fields[0].equals("procs_running")) {
+                running = Integer.parseInt(fields[1]);
+            }
+        }
+        if (total < 0) return null;
+
+        double loadAverage = Double.NaN;
+        if (loadavg != null && !loadavg.isEmpty())
+            loadAverage = Double.parseDouble(loadavg.split("\\s+")[0]);
+
+        // utime stime cutime cstime, after the process name that may contain spaces
+        long self = 0;
+        if (selfStat != null && selfStat.lastIndexOf(')') > 0) {
+            final String[] fields = selfStat.substring(selfStat.lastIndexOf(')') + 1).trim().split("\\s+");
+            for (int i = 11; i <= 14 && i < fields.length; i++)
+                self += Long.parseLong(fields[i]);
+        }
+
+        return new SystemLoad(total, idle, self, running, loadAverage);
+    }
+
+    /**
+     * @param since previous snapshot
+     * @return fraction of the machine CPU capacity busy between the two snapshots, from 0 to 1
+     */
+    public double busy(final SystemLoad since) {
+        final long elapsed = total - since.total;
+        return elapsed > 0 ? Math.max(0, Math.min(1, 1 - (double) (idle - since.idle) / elapsed)) : 0;
+    }
+
+    /**
+     * Processes waited for by this JVM (eg: benchmark forks) are counted in its own CPU time once they exit.
+     *
+     * @param since previous snapshot
+     * @return fraction of the machine CPU capacity used by other processes than this JVM and its children
+     *         between the two snapshots, from 0 to 1
+     */
+    public double background(final SystemLoad since) {
+        final long elapsed = total - since.total;
+        final long busy = (elapsed - (idle - since.idle)) - (self - since.self);
+        return elapsed > 0 ? Math.max(0, Math.min(1, (double) busy / elapsed)) : 0;
+    }
+
+    /**
+     * @return number of runnable tasks, excluding the one reading the counters
+     */
+    public int getRunnable() {
+        return Math.max(0, running - 1);
+    }
+
+    /**
+     * @return 1 minute load average, {@code NaN} if not available
+     */
+    public double getLoadAverage() {
+        return loadAverage;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.nio.file.Path;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Paths.get;
+import static net.nicoulaj.jmh.assertions.JMHAssertions.assertJMH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.contentOf;
+import static org.assertj.core.api.Assertions.offset;
+
+/**
+ * Test for {@link QuietSystemProfiler}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class QuietSystemProfilerTest {
+
+    @Test
+    public void test001() throws Exception {
+
+        if (SystemLoad.sample() == null)
+            throw new SkipException("Profiler not available in this environment, cannot test");
+
+        createDirectories(get("target"));
+        final Path output = createTempFile(get("target"), "jmh-output-", ".log");
+
+        assertJMH()
+                .output(output.toString())
+                .addProfiler(QuietSystemProfiler.class, "interval=100;samples=1;timeout=2")
+                .runsWithoutError();
+
+        assertThat(contentOf(output.toFile()))
+                .contains("@background.cpu")
+                .contains("@quiet.wait");
+    }
+
+    @Test
+    public void test002() {
+
+        final SystemLoad before = SystemLoad.parse("cpu  1000 0 200 8000 100 0 0 0 0 0\ncpu0 1000 0 200 8000 100 0 0 0 0 0\nprocs_running 3\n",
+                                                   "0.50 0.40 0.30 2/100 1234",
+                                                   "42 (java (x)) S 1 42 42 0 -1 0 0 0 0 0 100 20 30 10 20 0 1");
+        final SystemLoad after = SystemLoad.parse("cpu  1500 0 300 8300 100 0 0 100 0 0\nprocs_running 1\n",
+                                                  null,
+                                                  "42 (java (x)) S 1 42 42 0 -1 0 0 0 0 0 200 50 200 40 20 0 1");
+
+        assertThat(before.getRunnable()).isEqualTo(2);
+        assertThat(before.getLoadAverage()).isEqualTo(0.5);
+        assertThat(after.getRunnable()).isEqualTo(0);
+        assertThat(after.getLoadAverage()).isNaN();
+
+        // 1000 ticks elapsed, 300 idle, 700 busy of which 130 + 200 by this JVM and its children
+        assertThat(after.busy(before)).isCloseTo(0.7, offset(1e-9));
+        assertThat(after.background(before)).isCloseTo(0.37, offset(1e-9));
+    }
+}
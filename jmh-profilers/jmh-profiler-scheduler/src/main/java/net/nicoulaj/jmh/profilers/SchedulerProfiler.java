@@ -0,0 +1,117 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.IterationResultMetaData;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.util.ListStatistics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+import static org.openjdk.jmh.results.AggregationPolicy.AVG;
+
+/**
+ * Linux scheduler statistics of the JMH worker threads.
+ * <p/>
+ * Worker threads are mapped to their kernel thread ids with a HotSpot thread dump (<code>nid</code>), and their
+ * {@link TaskStats scheduler statistics} are read before and after each iteration. The following secondary
+ * results are attached:
+ * <ul>
+ * <li><code>@sched.wait</code>: time spent by workers waiting on a run queue, per operation,</li>
+ * <li><code>@sched.wait.share</code>: share of the workers runnable time spent waiting on a run queue,</li>
+ * <li><code>@sched.migrations</code>: CPU migrations per worker thread, only if the kernel exposes them
+ * (<code>CONFIG_SCHED_DEBUG</code>),</li>
+ * <li><code>@sched.involuntary</code>: involuntary context switches (preemptions) per worker thread.</li>
+ * </ul>
+ * A high run queue wait share means benchmark threads are oversubscribing the available CPUs.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class SchedulerProfiler implements InternalProfiler {
+
+    private static final String WORKER = "-jmh-worker-";
+
+    private final Map<String, Long> workers = new LinkedHashMap<>();
+
+    private final Map<Long, TaskStats> before = new HashMap<>();
+
+    @Override
+    public String getDescription() {
+        return "Linux scheduler statistics of worker threads";
+    }
+
+    @Override
+    public void beforeIteration(final BenchmarkParams benchmarkParams, final IterationParams iterationParams) {
+        before.clear();
+        for (Long tid : workers.values()) {
+            final TaskStats stats = TaskStats.read(tid);
+            if (stats != null) before.put(tid, stats);
+        }
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(final BenchmarkParams benchmarkParams,
+                                                       final IterationParams iterationParams,
+                                                       final IterationResult iterationResult) {
+        if (workers.size() < benchmarkParams.getThreads()) {
+            // Workers are started lazily by the first iteration, their counters started with it
+            for (Map.Entry<String, Long> thread : AffinityUtils.nativeThreadIds().entrySet())
+                if (thread.getKey().contains(WORKER)) workers.put(thread.getKey(), thread.getValue());
+        }
+
+        int count = 0;
+        long run = 0;
+        long wait = 0;
+        final ListStatistics migrations = new ListStatistics();
+        final ListStatistics involuntary = new ListStatistics();
+        for (Long tid : workers.values()) {
+            final TaskStats after = TaskStats.read(tid);
+            if (after == null) continue;
+            final TaskStats previous = before.get(tid);
+            final TaskStats delta = after.minus(previous != null ? previous : TaskStats.ZERO);
+            count++;
+            run += delta.getRunNanos();
+            wait += delta.getWaitNanos();
+            if (delta.getMigrations() != TaskStats.UNKNOWN) migrations.addValue(delta.getMigrations());
+            if (delta.getInvoluntarySwitches() != TaskStats.UNKNOWN) involuntary.addValue(delta.getInvoluntarySwitches());
+        }
+        if (count == 0) return emptyList();
+
+        final List<Result> results = new ArrayList<>();
+        final IterationResultMetaData metadata = iterationResult.getMetadata();
+        if (metadata != null && metadata.getMeasuredOps() > 0)
+            results.add(new AggregatingResult("@sched.wait", (double) wait / metadata.getMeasuredOps(), "ns/op", AVG));
+        results.add(new AggregatingResult("@sched.wait.share", run + wait > 0 ? 100.0 * wait / (run + wait) : 0, "%", AVG));
+        if (migrations.getN() > 0)
+            results.add(new AggregatingResult("@sched.migrations", migrations, "#/thread", AVG));
+        if (involuntary.getN() > 0)
+            results.add(new AggregatingResult("@sched.involuntary", involuntary, "#/thread", AVG));
+        return results;
+    }
+}
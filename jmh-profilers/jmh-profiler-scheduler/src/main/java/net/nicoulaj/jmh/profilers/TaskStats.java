@@ -0,0 +1,193 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import static net.nicoulaj.jmh.profilers.ProcUtils.readString;
+
+/**
+ * Linux scheduler statistics of a task (thread), from <code>/proc/&lt;pid&gt;/task/&lt;tid&gt;/schedstat</code>,
+ * <code>/proc/&lt;pid&gt;/task/&lt;tid&gt;/sched</code> and <code>/proc/&lt;pid&gt;/task/&lt;tid&gt;/status</code>.
+ * <p/>
+ * Counters are cumulative since the task creation, use {@link #minus(TaskStats)} to get the statistics of a period.
+ * Counters that the kernel does not expose are {@link #UNKNOWN}: migrations are only in <code>sched</code>, that
+ * requires <code>CONFIG_SCHED_DEBUG</code>, context switches are read from <code>status</code> without it.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class TaskStats {
+
+    /** Value of the counters not exposed by the kernel. */
+    public static final long UNKNOWN = -1;
+
+    /** Statistics of a task that did not run yet. */
+    public static final TaskStats ZERO = new TaskStats(0, 0, 0, 0, 0, 0);
+
+    private final long runNanos;
+
+    private final long waitNanos;
+
+    private final long timeslices;
+
+    private final long migrations;
+
+    private final long voluntarySwitches;
+
+    private final long involuntarySwitches;
+
+    TaskStats(final long runNanos,
+              final long waitNanos,
+              final long timeslices,
+              final long migrations,
+              final long voluntarySwitches,
+              final long involuntarySwitches) {
+        this.runNanos = runNanos;
+        this.waitNanos = waitNanos;
+        this.timeslices = timeslices;
+        this.migrations = migrations;
+        this.voluntarySwitches = voluntarySwitches;
+        this.involuntarySwitches = involuntarySwitches;
+    }
+
+    /**
+     * @param tid Linux thread id of a thread of the current process
+     * @return thread statistics, {@code null} if not available
+     */
+    public static TaskStats read(final long tid) {
+        final String task = "/proc/self/task/" + tid + "/";
+        final String sched = readString(task + "sched");
+        return parse(readString(task + "schedstat"), sched, sched == null ? readString(task + "status") : null);
+    }
+
+    /**
+     * @param schedstat <code>schedstat</code> content
+     * @param sched     <code>sched</code> content, may be {@code null}
+     * @param status    <code>status</code> content, read for context switches if {@code sched} is {@code null},
+     *                  may be {@code null}
+     * @return statistics, {@code null} if {@code schedstat} is {@code null} or malformed
+     */
+    static TaskStats parse(final String schedstat, final String sched, final String status) {
+        if (schedstat == null) return null;
+        final String[] fields = schedstat.trim().split("\\s+");
+        if (fields.length < 3) return null;
+
+        long migrations = UNKNOWN;
+        long voluntary = UNKNOWN;
+        long involuntary = UNKNOWN;
+        if (sched != null) {
+            for (String line : sched.split("\n")) {
+                final int colon = line.indexOf(':');
+                if (colon < 0) continue;
+                final String key = line.substring(0, colon).trim();
+                final String value = line.substring(colon + 1).trim();
+                switch (key) {
+                case "se.nr_migrations":
+                    migrations = Long.parseLong(value);
+                    break;
+                case "nr_voluntary_switches":
+                    voluntary = Long.parseLong(value);
+                    break;
+                case "nr_involuntary_switches":
+                    involuntary = Long.parseLong(value);
+                    break;
+                default:
+                    break;
+                }
+            }
+        } else if (status != null) {
+            for (String line : status.split("\n")) {
+                final int colon = line.indexOf(':');
+                if (colon < 0) continue;
+                final String key = line.substring(0, colon).trim();
+                final String value = line.substring(colon + 1).trim();
+                switch (key) {
+                case "voluntary_ctxt_switches":
+                    voluntary = Long.parseLong(value);
+                    break;
+                case "nonvoluntary_ctxt_switches":
+                    involuntary = Long.parseLong(value);
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+
+        return new TaskStats(Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                             migrations, voluntary, involuntary);
+    }
+
+    /**
+     * @param before statistics at the beginning of the period
+     * @return statistics of the period, with {@link #UNKNOWN} counters if unknown in either statistics
+     */
+    public TaskStats minus(final TaskStats before) {
+        return new TaskStats(runNanos - before.runNanos,
+                             waitNanos - before.waitNanos,
+                             timeslices - before.timeslices,
+                             minus(migrations, before.migrations),
+                             minus(voluntarySwitches, before.voluntarySwitches),
+                             minus(involuntarySwitches, before.involuntarySwitches));
+    }
+
+    private static long minus(final long after, final long before) {
+        return after == UNKNOWN || before == UNKNOWN ? UNKNOWN : after - before;
+    }
+
+    /**
+     * @return time spent running on a CPU, in nanoseconds
+     */
+    public long getRunNanos() {
+        return runNanos;
+    }
+
+    /**
+     * @return time spent runnable but waiting on a run queue, in nanoseconds
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * @return number of time slices run on a CPU
+     */
+    public long getTimeslices() {
+        return timeslices;
+    }
+
+    /**
+     * @return number of migrations to another CPU, {@link #UNKNOWN} if not available
+     */
+    public long getMigrations() {
+        return migrations;
+    }
+
+    /**
+     * @return number of context switches because the task blocked, {@link #UNKNOWN} if not available
+     */
+    public long getVoluntarySwitches() {
+        return voluntarySwitches;
+    }
+
+    /**
+     * @return number of context switches because the task was preempted, {@link #UNKNOWN} if not available
+     */
+    public long getInvoluntarySwitches() {
+        return involuntarySwitches;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.nio.file.Path;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Paths.get;
+import static net.nicoulaj.jmh.assertions.JMHAssertions.assertJMH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.contentOf;
+
+/**
+ * Test for {@link SchedulerProfiler}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class SchedulerProfilerTest {
+
+    @Test
+    public void test001() throws Exception {
+
+        if (TaskStats.read(AffinityUtils.currentThreadId()) == null || AffinityUtils.nativeThreadIds().isEmpty())
+            throw new SkipException("Profiler not available in this environment, cannot test");
+
+        createDirectories(get("target"));
+        final Path output = createTempFile(get("target"), "jmh-output-", ".log");
+
+        assertJMH()
+                .output(output.toString())
+                .addProfiler(SchedulerProfiler.class)
+                .runsWithoutError();
+
+        assertThat(contentOf(output.toFile()))
+                .contains("@sched.wait:")
+                .contains("@sched.wait.share:")
+                .contains("@sched.migrations:")
+                .contains("@sched.involuntary:");
+    }
+
+    @Test
+    public void test002() {
+
+        final TaskStats before = TaskStats.parse("1000 200 3",
+                                                 "se.nr_migrations : 0\n" +
+                                                 "nr_voluntary_switches : 0\n" +
+                                                 "nr_involuntary_switches : 0\n",
+                                                 null);
+        final TaskStats after = TaskStats.parse("5000 900 10\n",
+                                                "java (1234, #threads: 20)\n" +
+                                                "-------------------------------------------------------------------\n" +
+                                                "se.exec_start                                :      123456789.000000\n" +
+                                                "se.nr_migrations                             :                    4\n" +
+                                                "nr_switches                                  :                   12\n" +
+                                                "nr_voluntary_switches                        :                    5\n" +
+                                                "nr_involuntary_switches                      :                    7\n",
+                                                null);
+        final TaskStats delta = after.minus(before);
+        assertThat(delta.getRunNanos()).isEqualTo(4000);
+        assertThat(delta.getWaitNanos()).isEqualTo(700);
+        assertThat(delta.getTimeslices()).isEqualTo(7);
+        assertThat(delta.getMigrations()).isEqualTo(4);
+        assertThat(delta.getVoluntarySwitches()).isEqualTo(5);
+        assertThat(delta.getInvoluntarySwitches()).isEqualTo(7);
+        assertThat(TaskStats.parse(null, null, null)).isNull();
+    }
+
+    @Test
+    public void test003() {
+
+        final TaskStats before = TaskStats.parse("1000 200 3", null,
+                                                 "voluntary_ctxt_switches:\t2\nnonvoluntary_ctxt_switches:\t1\n");
+        final TaskStats after = TaskStats.parse("5000 900 10", null,
+                                                "Name:\tjava\n" +
+                                                "voluntary_ctxt_switches:\t7\n" +
+                                                "nonvoluntary_ctxt_switches:\t8\n");
+        final TaskStats delta = after.minus(before);
+        assertThat(delta.getRunNanos()).isEqualTo(4000);
+        assertThat(delta.getMigrations()).isEqualTo(TaskStats.UNKNOWN);
+        assertThat(delta.getVoluntarySwitches()).isEqualTo(5);
+        assertThat(delta.getInvoluntarySwitches()).isEqualTo(7);
+        assertThat(TaskStats.parse("1000 200 3", null, null).minus(TaskStats.ZERO).getInvoluntarySwitches())
+                .isEqualTo(TaskStats.UNKNOWN);
+    }
+}
@@ -18,24 +18,23 @@
  */
 package net.nicoulaj.jmh.profilers;
 
+import net.nicoulaj.jmh.profilers.ProfilerOptions.Option;
 import org.openjdk.jmh.infra.BenchmarkParams;
 import org.openjdk.jmh.profile.ExternalProfiler;
-import org.openjdk.jmh.results.Aggregator;
+import org.openjdk.jmh.profile.ProfilerException;
 import org.openjdk.jmh.results.BenchmarkResult;
 import org.openjdk.jmh.results.Result;
 
 import java.io.File;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
-import static java.lang.Integer.getInteger;
-import static java.lang.System.getProperty;
 import static java.util.Arrays.asList;
-import static org.openjdk.jmh.results.AggregationPolicy.SUM;
-import static org.openjdk.jmh.results.ResultRole.SECONDARY;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.booleanOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.integerOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.stringOption;
 
 /**
  * <a href="http://www.oracle.com/technetwork/server-storage/solarisstudio/overview/index.html">Solaris Studio</a> support for <a href="http://openjdk.java.net/projects/code-tools/jmh">JMH</a>.
@@ -49,126 +48,156 @@ public class SolarisStudioProfiler implements ExternalProfiler {
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String CLOCK_PROFILING_INTERVAL = getProperty("jmh.solaris-studio.clock-profiling-interval", null);
+    private static final Option<String> CLOCK_PROFILING_INTERVAL = stringOption("clock-profiling-interval", null);
 
     /**
      * Specify HW counter profiling.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String HW_COUNTER_PROFILING = getProperty("jmh.solaris-studio.hw-counter-profiling", null);
+    private static final Option<String> HW_COUNTER_PROFILING = stringOption("hw-counter-profiling", null);
 
     /**
      * Specify synchronization wait tracing.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String SYNCHRONIZATION_WAIT_TRACING = getProperty("jmh.solaris-studio.synchronization-wait-tracing", null);
+    private static final Option<String> SYNCHRONIZATION_WAIT_TRACING = stringOption("synchronization-wait-tracing", null);
 
     /**
      * Specify thread analyzer experiment.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String THREAD_ANALYZER = getProperty("jmh.solaris-studio.thread-analyzer", null);
+    private static final Option<String> THREAD_ANALYZER = stringOption("thread-analyzer", null);
 
     /**
      * Specify heap tracing.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String HEAP_TRACING = getProperty("jmh.solaris-studio.heap-tracing", null);
+    private static final Option<String> HEAP_TRACING = stringOption("heap-tracing", null);
 
     /**
      * Specify I/O tracing.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String IO_TRACING = getProperty("jmh.solaris-studio.io-tracing", null);
+    private static final Option<String> IO_TRACING = stringOption("io-tracing", null);
 
     /**
      * Specify time over which to record data.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String DURATION = getProperty("jmh.solaris-studio.duration", null);
+    private static final Option<String> DURATION = stringOption("duration", null);
 
     /**
      * Specify following descendant processes.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String FOLLOW_DESCENDANT = getProperty("jmh.solaris-studio.follow-descendant", null);
+    private static final Option<String> FOLLOW_DESCENDANT = stringOption("follow-descendant", null);
 
     /**
      * Specify archiving of load-objects.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String ARCHIVING = getProperty("jmh.solaris-studio.archiving", null);
+    private static final Option<String> ARCHIVING = stringOption("archiving", null);
 
     /**
      * Specify periodic sampling interval (s).
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final Integer SAMPLING_INTERVAL = getInteger("jmh.solaris-studio.sampling-interval", null);
+    private static final Option<Integer> SAMPLING_INTERVAL = integerOption("sampling-interval", null);
 
     /**
      * Specify experiment size limit (MB).
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final Integer SIZE_LIMIT = getInteger("jmh.solaris-studio.size-limit", null);
+    private static final Option<Integer> SIZE_LIMIT = integerOption("size-limit", null);
 
     /**
      * Specify signal for samples.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String SIGNAL = getProperty("jmh.solaris-studio.signal", null);
+    private static final Option<String> SIGNAL = stringOption("signal", null);
 
     /**
      * Specify experiment name.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String NAME = getProperty("jmh.solaris-studio.name", null);
+    private static final Option<String> NAME = stringOption("name", null);
 
     /**
      * Specify experiment directory.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String DIRECTORY = getProperty("jmh.solaris-studio.directory", ".");
+    private static final Option<String> DIRECTORY = stringOption("directory", ".");
 
     /**
      * Specify experiment group.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String GROUP = getProperty("jmh.solaris-studio.group", null);
+    private static final Option<String> GROUP = stringOption("group", null);
 
     /**
      * Redirect all of <code>collect</code>'s output to file.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String OUTPUT = getProperty("jmh.solaris-studio.output", null);
+    private static final Option<String> OUTPUT = stringOption("output", null);
 
     /**
      * Print expanded log of processing.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final Boolean VERBOSE = SystemUtils.getBoolean("jmh.solaris-studio.verbose", null);
+    private static final Option<Boolean> VERBOSE = booleanOption("verbose", null);
 
     /**
      * Specify comment label.
      *
      * @see <a href="http://docs.oracle.com/cd/E19205-01/820-4180/man1/collect.1.html"><code>man collect</code></a> or <code>collect -h</code>.
      */
-    private static final String LABEL = getProperty("jmh.solaris-studio.label", null);
+    private static final Option<String> LABEL = stringOption("label", null);
+
+    private static final List<Option<?>> OPTIONS = asList(
+            CLOCK_PROFILING_INTERVAL,
+            HW_COUNTER_PROFILING,
+            SYNCHRONIZATION_WAIT_TRACING,
+            THREAD_ANALYZER,
+            HEAP_TRACING,
+            IO_TRACING,
+            DURATION,
+            FOLLOW_DESCENDANT,
+            ARCHIVING,
+            SAMPLING_INTERVAL,
+            SIZE_LIMIT,
+            SIGNAL,
+            NAME,
+            DIRECTORY,
+            GROUP,
+            OUTPUT,
+            VERBOSE,
+            LABEL);
+
+    private final ProfilerOptions options;
+
+    public SolarisStudioProfiler() throws ProfilerException {
+        this(null);
+    }
+
+    public SolarisStudioProfiler(final String initLine) throws ProfilerException {
+        options = new ProfilerOptions("solaris-studio", initLine, OPTIONS);
+    }
 
     @Override
     public String getDescription() {
@@ -192,77 +221,33 @@ public class SolarisStudioProfiler implements ExternalProfiler {
 
         opts.add("collect");
 
-        if (CLOCK_PROFILING_INTERVAL != null) {
-            opts.add("-p");
-            opts.add(String.valueOf(CLOCK_PROFILING_INTERVAL));
-        }
-        if (HW_COUNTER_PROFILING != null) {
-            opts.add("-h");
-            opts.add(String.valueOf(HW_COUNTER_PROFILING));
-        }
-        if (SYNCHRONIZATION_WAIT_TRACING != null) {
-            opts.add("-s");
-            opts.add(String.valueOf(SYNCHRONIZATION_WAIT_TRACING));
-        }
-        if (THREAD_ANALYZER != null) {
-            opts.add("-r");
-            opts.add(String.valueOf(THREAD_ANALYZER));
-        }
-        if (HEAP_TRACING != null) {
-            opts.add("-H");
-            opts.add(String.valueOf(HEAP_TRACING));
-        }
-        if (IO_TRACING != null) {
-            opts.add("-i");
-            opts.add(String.valueOf(IO_TRACING));
-        }
-        if (DURATION != null) {
-            opts.add("-t");
-            opts.add(String.valueOf(DURATION));
-        }
-        if (FOLLOW_DESCENDANT != null) {
-            opts.add("-F");
-            opts.add(String.valueOf(FOLLOW_DESCENDANT));
-        }
-        if (ARCHIVING != null) {
-            opts.add("-A");
-            opts.add(String.valueOf(ARCHIVING));
-        }
-        if (SAMPLING_INTERVAL != null) {
-            opts.add("-S");
-            opts.add(String.valueOf(SAMPLING_INTERVAL));
-        }
-        if (SIZE_LIMIT != null) {
-            opts.add("-L");
-            opts.add(String.valueOf(SIZE_LIMIT));
-        }
-        if (SIGNAL != null) {
-            opts.add("-l");
-            opts.add(String.valueOf(SIGNAL));
-        }
-        if (NAME != null) {
-            opts.add("-o");
-            opts.add(String.valueOf(NAME));
-        }
-        if (DIRECTORY != null) {
-            opts.add("-d");
-            opts.add(String.valueOf(DIRECTORY));
-        }
-        if (GROUP != null) {
-            opts.add("-g");
-            opts.add(String.valueOf(GROUP));
-        }
-        if (OUTPUT != null) {
-            opts.add("-O");
-            opts.add(String.valueOf(OUTPUT));
-        }
-        if (VERBOSE != null && VERBOSE) { opts.add("-v");}
-        if (LABEL != null) {
-            opts.add("-C");
-            opts.add(String.valueOf(LABEL));
-        }
+        addOption(opts, "-p", options.get(CLOCK_PROFILING_INTERVAL, params));
+        addOption(opts, "-h", options.get(HW_COUNTER_PROFILING, params));
+        addOption(opts, "-s", options.get(SYNCHRONIZATION_WAIT_TRACING, params));
+        addOption(opts, "-r", options.get(THREAD_ANALYZER, params));
+        addOption(opts, "-H", options.get(HEAP_TRACING, params));
+        addOption(opts, "-i", options.get(IO_TRACING, params));
+        addOption(opts, "-t", options.get(DURATION, params));
+        addOption(opts, "-F", options.get(FOLLOW_DESCENDANT, params));
+        addOption(opts, "-A", options.get(ARCHIVING, params));
+        addOption(opts, "-S", options.get(SAMPLING_INTERVAL, params));
+        addOption(opts, "-L", options.get(SIZE_LIMIT, params));
+        addOption(opts, "-l", options.get(SIGNAL, params));
+        addOption(opts, "-o", options.get(NAME, params));
+        addOption(opts, "-d", options.get(DIRECTORY, params));
+        addOption(opts, "-g", options.get(GROUP, params));
+        addOption(opts, "-O", options.get(OUTPUT, params));
+        if (Boolean.TRUE.equals(options.get(VERBOSE, params))) opts.add("-v");
+        addOption(opts, "-C", options.get(LABEL, params));
+
+        return opts;
+    }
 
-        return  opts;
+    private static void addOption(final List<String> opts, final String flag, final Object value) {
+        if (value != null) {
+            opts.add(flag);
+            opts.add(String.valueOf(value));
+        }
     }
 
     @Override
@@ -277,33 +262,6 @@ public class SolarisStudioProfiler implements ExternalProfiler {
 
     @Override
     public Collection<? extends Result> afterTrial(final BenchmarkResult benchmarkResult, long l, final File stdOut, final File stdErr) {
-        return asList(new SolarisStudioResult());
-    }
-
-    private static final class SolarisStudioResult extends Result<SolarisStudioResult> implements Aggregator<SolarisStudioResult> {
-
-        SolarisStudioResult() {
-            super(SECONDARY, "@solaris-studio", new EmptyStatistics(), "none", SUM);
-        }
-
-        @Override
-        protected Aggregator<SolarisStudioResult> getThreadAggregator() {
-            return this;
-        }
-
-        @Override
-        protected Aggregator<SolarisStudioResult> getIterationAggregator() {
-            return this;
-        }
-
-        @Override
-        protected String simpleExtendedInfo() {
-            return "Solaris Studio experiment at " + Paths.get(DIRECTORY).toAbsolutePath();
-        }
-
-        @Override
-        public SolarisStudioResult aggregate(final Collection<SolarisStudioResult> results) {
-            return new SolarisStudioResult();
-        }
+        return asList(new ArtifactResult("@solaris-studio", "Solaris Studio experiment", options.get(DIRECTORY, benchmarkResult.getParams())));
     }
 }
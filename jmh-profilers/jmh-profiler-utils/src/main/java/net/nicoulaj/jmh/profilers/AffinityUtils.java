@@ -0,0 +1,173 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Static CPU affinity and scheduling priority helpers for Linux threads and processes,
+ * relying on <code>taskset</code> and <code>renice</code>.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class AffinityUtils {
+
+    private static final Pattern THREAD_DUMP_LINE = Pattern.compile("^\"(.*)\" .* nid=(0x[0-9a-fA-F]+|[0-9]+)");
+
+    private AffinityUtils() {
+        // Static class
+    }
+
+    /**
+     * @return Linux thread id of the current thread, {@code -1} if not available
+     */
+    public static long currentThreadId() {
+        try {
+            // Resolves to /proc/<pid>/task/<tid>
+            final Path self = Files.readSymbolicLink(Paths.get("/proc/thread-self"));
+            return Long.parseLong(self.getFileName().toString());
+        } catch (IOException | UnsupportedOperationException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return kernel thread ids of the JVM threads by name, empty if not available (eg: not a HotSpot JVM)
+     */
+    public static Map<String, Long> nativeThreadIds() {
+        try {
+            final Object dump = ManagementFactory.getPlatformMBeanServer().invoke(
+                    new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                    "threadPrint",
+                    new Object[]{new String[0]},
+                    new String[]{String[].class.getName()});
+            return parseThreadDump(String.valueOf(dump));
+        } catch (Exception e) {
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * @param dump HotSpot thread dump
+     * @return kernel thread ids by thread name
+     */
+    static Map<String, Long> parseThreadDump(final String dump) {
+        final Map<String, Long> ids = new LinkedHashMap<>();
+        for (String line : dump.split("\n")) {
+            final Matcher matcher = THREAD_DUMP_LINE.matcher(line);
+            if (!matcher.find()) continue;
+            final String nid = matcher.group(2);
+            ids.put(matcher.group(1), nid.startsWith("0x") ? Long.parseLong(nid.substring(2), 16) : Long.parseLong(nid));
+        }
+        return ids;
+    }
+
+    /**
+     * @param tid Linux thread or process id
+     * @return CPU the thread last ran on, {@code -1} if not available
+     */
+    public static int lastCpu(final long tid) {
+        return parseLastCpu(ProcUtils.readString("/proc/" + tid + "/stat"));
+    }
+
+    /**
+     * @param stat <code>/proc/&lt;tid&gt;/stat</code> content
+     * @return <code>processor</code> field (39th), {@code -1} if not available
+     */
+    static int parseLastCpu(final String stat) {
+        if (stat == null) return -1;
+        // The command name may contain spaces and parentheses, fields after it start with the state (3rd)
+        final String[] fields = stat.substring(stat.lastIndexOf(')') + 1).trim().split("\\s+");
+        try {
+            return fields.length > 36 ? Integer.parseInt(fields[36]) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param tid Linux thread or process id
+     * @return CPU affinity of the thread, {@code null} if not available
+     */
+    public static CpuSet getAffinity(final long tid) {
+        return readStatusList(tid, "Cpus_allowed_list:");
+    }
+
+    /**
+     * @param tid Linux thread or process id
+     * @return NUMA nodes the thread is allowed to allocate memory on, {@code null} if not available
+     */
+    public static CpuSet getMemoryNodes(final long tid) {
+        return readStatusList(tid, "Mems_allowed_list:");
+    }
+
+    private static CpuSet readStatusList(final long tid, final String key) {
+        final String status = ProcUtils.readString("/proc/" + tid + "/status");
+        if (status == null) return null;
+        for (String line : status.split("\n"))
+            if (line.startsWith(key))
+                return CpuSet.parse(line.substring(key.length()).trim());
+        return null;
+    }
+
+    /**
+     * Restrict a thread to a set of CPUs. Threads and processes created after the call inherit the affinity.
+     *
+     * @param tid  Linux thread or process id
+     * @param cpus CPUs to allow
+     * @return the affinity was set
+     */
+    public static boolean setAffinity(final long tid, final CpuSet cpus) {
+        return tid > 0 && !cpus.isEmpty() && exec("taskset", "-pc", cpus.toString(), String.valueOf(tid));
+    }
+
+    /**
+     * Change the scheduling priority of a thread.
+     *
+     * @param tid  Linux thread or process id
+     * @param nice niceness, from -20 (highest priority) to 19 (lowest priority)
+     * @return the priority was set
+     */
+    public static boolean setNice(final long tid, final int nice) {
+        return tid > 0 && exec("renice", "-n", String.valueOf(nice), "-p", String.valueOf(tid));
+    }
+
+    private static boolean exec(final String... command) {
+        try {
+            final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            StringUtils.toString(process.getInputStream());
+            return process.waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.Aggregator;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ResultRole;
+import org.openjdk.jmh.util.ListStatistics;
+import org.openjdk.jmh.util.Statistics;
+
+import java.util.Collection;
+
+import static org.openjdk.jmh.results.ResultRole.SECONDARY;
+
+/**
+ * Secondary profiler metric that aggregates across threads, iterations and forks like primary results do.
+ * <p/>
+ * Scalar metrics are aggregated by collecting the scores of the aggregated results, so the aggregated score is
+ * computed by the {@link AggregationPolicy} over all threads, iterations and forks, with error bars for
+ * {@link AggregationPolicy#AVG} (eg: a GC count per fork is summed with {@link AggregationPolicy#SUM}, an
+ * allocation rate per fork is averaged with {@link AggregationPolicy#AVG}, showing the fork-to-fork variance).
+ * <p/>
+ * Distribution metrics, backed by {@link HistogramStatistics}, are aggregated by merging histograms, so the
+ * aggregated score and percentiles are computed over all samples.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class AggregatingResult extends Result<AggregatingResult> {
+
+    private static final long serialVersionUID = -6893287306926541003L;
+
+    /**
+     * @param label  result label
+     * @param value  metric value
+     * @param unit   metric unit
+     * @param policy aggregation policy
+     */
+    public AggregatingResult(final String label, final double value, final String unit, final AggregationPolicy policy) {
+        this(SECONDARY, label, of(value), unit, policy);
+    }
+
+    /**
+     * @param label     result label
+     * @param histogram metric samples
+     * @param unit      metric unit
+     * @param policy    aggregation policy, applied to the samples
+     */
+    public AggregatingResult(final String label, final HistogramStatistics histogram, final String unit, final AggregationPolicy policy) {
+        this(SECONDARY, label, histogram, unit, policy);
+    }
+
+    /**
+     * @param label      result label
+     * @param statistics metric samples, aggregated by merging if they are {@link HistogramStatistics},
+     *                   possibly {@link DeferredStatistics deferred}
+     * @param unit       metric unit
+     * @param policy     aggregation policy, applied to the samples
+     */
+    public AggregatingResult(final String label, final Statistics statistics, final String unit, final AggregationPolicy policy) {
+        this(SECONDARY, label, statistics, unit, policy);
+    }
+
+    protected AggregatingResult(final ResultRole role,
+                                final String label,
+                                final Statistics statistics,
+                                final String unit,
+                                final AggregationPolicy policy) {
+        super(role, label, statistics, unit, policy);
+    }
+
+    /**
+     * @return metric samples are recorded in a histogram, merged on aggregation
+     */
+    public boolean isDistribution() {
+        return histogram(this) != null;
+    }
+
+    @Override
+    protected Aggregator<AggregatingResult> getThreadAggregator() {
+        return new AggregatingResultAggregator();
+    }
+
+    @Override
+    protected Aggregator<AggregatingResult> getIterationAggregator() {
+        return new AggregatingResultAggregator();
+    }
+
+    @Override
+    protected AggregatingResult getZeroResult() {
+        final HistogramStatistics histogram = histogram(this);
+        return histogram != null
+                ? new AggregatingResult(role, label, new HistogramStatistics(histogram.getPrecisionBits()), unit, policy)
+                : new AggregatingResult(role, label, of(0), unit, policy);
+    }
+
+    @Override
+    public String extendedInfo() {
+        return isDistribution() ? distributionExtendedInfo() : simpleExtendedInfo();
+    }
+
+    /**
+     * Build the aggregate of results, subclasses override it to also aggregate their own data.
+     *
+     * @param statistics aggregated samples
+     * @param results    aggregated results, this one first
+     * @return aggregated result
+     */
+    protected AggregatingResult aggregated(final Statistics statistics, final Collection<? extends AggregatingResult> results) {
+        return new AggregatingResult(role, label, statistics, unit, policy);
+    }
+
+    private static HistogramStatistics histogram(final Result<?> result) {
+        Statistics statistics = result.getStatistics();
+        if (statistics instanceof DeferredStatistics) statistics = ((DeferredStatistics) statistics).get();
+        return statistics instanceof HistogramStatistics ? (HistogramStatistics) statistics : null;
+    }
+
+    static class AggregatingResultAggregator implements Aggregator<AggregatingResult> {
+
+        @Override
+        public AggregatingResult aggregate(final Collection<AggregatingResult> results) {
+            final AggregatingResult first = results.iterator().next();
+            for (AggregatingResult result : results) {
+                if (!result.unit.equals(first.unit))
+                    throw new IllegalStateException("Cannot aggregate " + first.label + " results with different units: " + first.unit + " and " + result.unit);
+                if (result.policy != first.policy)
+                    throw new IllegalStateException("Cannot aggregate " + first.label + " results with different policies: " + first.policy + " and " + result.policy);
+            }
+
+            final HistogramStatistics firstHistogram = histogram(first);
+            if (firstHistogram != null) {
+                final HistogramStatistics merged = new HistogramStatistics(firstHistogram.getPrecisionBits());
+                for (AggregatingResult result : results) {
+                    final HistogramStatistics histogram = histogram(result);
+                    if (histogram == null)
+                        throw new IllegalStateException("Cannot aggregate " + first.label + " distribution with a scalar result");
+                    merged.merge(histogram);
+                }
+                return first.aggregated(merged, results);
+            }
+
+            final ListStatistics scores = new ListStatistics();
+            for (AggregatingResult result : results)
+                scores.addValue(result.getScore());
+            return first.aggregated(scores, results);
+        }
+    }
+}
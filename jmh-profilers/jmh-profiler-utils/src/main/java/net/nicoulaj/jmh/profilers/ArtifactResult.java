@@ -0,0 +1,192 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Aggregator;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.util.Statistics;
+
+import java.io.ObjectStreamException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static java.util.Arrays.asList;
+import static org.openjdk.jmh.results.AggregationPolicy.MAX;
+import static org.openjdk.jmh.results.ResultRole.SECONDARY;
+
+/**
+ * Secondary result pointing to files produced by a profiler (recordings, snapshots, experiments...).
+ * <p/>
+ * Aggregation keeps the files of all threads, iterations and forks, and the score is the number of distinct files.
+ * <p/>
+ * Artifacts can be {@link #ArtifactResult(String, String, Future) deferred} while {@link PostProcessing} produces
+ * them: aggregation does not wait for them, and their paths and score are only joined when first read.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class ArtifactResult extends Result<ArtifactResult> implements Aggregator<ArtifactResult> {
+
+    private static final long serialVersionUID = 5385931640312780577L;
+
+    private final String description;
+
+    private transient Future<? extends Collection<String>> pending;
+
+    private Set<String> paths;
+
+    /**
+     * @param label       result label
+     * @param description artifact description, eg: <code>Yourkit snapshot</code>
+     * @param paths       artifact paths
+     */
+    public ArtifactResult(final String label, final String description, final String... paths) {
+        this(label, description, asList(paths));
+    }
+
+    /**
+     * @param label       result label
+     * @param description artifact description, eg: <code>Yourkit snapshot</code>
+     * @param paths       artifact paths
+     */
+    public ArtifactResult(final String label, final String description, final Collection<String> paths) {
+        super(SECONDARY, label, of(new LinkedHashSet<>(paths).size()), "files", MAX);
+        this.description = description;
+        this.paths = Collections.unmodifiableSet(new LinkedHashSet<>(paths));
+    }
+
+    /**
+     * @param label       result label
+     * @param description artifact description, eg: <code>Flame graph</code>
+     * @param paths       artifact paths, being produced by {@link PostProcessing}
+     */
+    public ArtifactResult(final String label, final String description, final Future<? extends Collection<String>> paths) {
+        super(SECONDARY, label, new DeferredStatistics(PostProcessing.join(count(paths))), "files", MAX);
+        this.description = description;
+        this.pending = paths;
+    }
+
+    private static Callable<Statistics> count(final Future<? extends Collection<String>> paths) {
+        return new Callable<Statistics>() {
+            @Override
+            public Statistics call() throws Exception {
+                return of(new LinkedHashSet<>(paths.get()).size());
+            }
+        };
+    }
+
+    /**
+     * Base name for the files produced for a benchmark, distinct for each mode and parameters set:
+     * <code>&lt;benchmark&gt;-&lt;mode&gt;[-&lt;param&gt;=&lt;value&gt;...]</code>.
+     *
+     * @param params benchmark parameters
+     * @return file base name, without extension
+     */
+    public static String baseName(final BenchmarkParams params) {
+        final StringBuilder name = new StringBuilder(params.getBenchmark()).append('-').append(params.getMode().shortLabel());
+        for (String key : params.getParamsKeys())
+            name.append('-').append(key).append('=').append(params.getParam(key));
+        return name.toString().replaceAll("[^\\w.=-]", "_");
+    }
+
+    /**
+     * @return artifact description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return distinct artifact paths, in order, waiting for deferred artifacts if needed
+     * @throws IllegalStateException if deferred artifacts failed
+     */
+    public synchronized Set<String> getPaths() {
+        if (paths == null) {
+            try {
+                paths = Collections.unmodifiableSet(new LinkedHashSet<>(pending.get()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for post-processing", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Post-processing failed", e.getCause());
+            }
+        }
+        return paths;
+    }
+
+    private synchronized boolean isDeferred() {
+        return paths == null && !pending.isDone();
+    }
+
+    @Override
+    protected Aggregator<ArtifactResult> getThreadAggregator() {
+        return this;
+    }
+
+    @Override
+    protected Aggregator<ArtifactResult> getIterationAggregator() {
+        return this;
+    }
+
+    @Override
+    public ArtifactResult aggregate(final Collection<ArtifactResult> results) {
+        boolean deferred = false;
+        for (ArtifactResult result : results)
+            deferred |= result.isDeferred();
+        if (!deferred) {
+            final Set<String> paths = new LinkedHashSet<>();
+            for (ArtifactResult result : results)
+                paths.addAll(result.getPaths());
+            return new ArtifactResult(label, description, paths);
+        }
+
+        final List<ArtifactResult> sources = new ArrayList<>(results);
+        return new ArtifactResult(label, description, PostProcessing.join(new Callable<Collection<String>>() {
+            @Override
+            public Collection<String> call() {
+                final Set<String> paths = new LinkedHashSet<>();
+                for (ArtifactResult result : sources)
+                    paths.addAll(result.getPaths());
+                return paths;
+            }
+        }));
+    }
+
+    @Override
+    protected String simpleExtendedInfo() {
+        if (isDeferred())
+            return description + " being generated by post-processing\n";
+        final StringBuilder info = new StringBuilder();
+        for (String path : getPaths())
+            info.append(description).append(" at ").append(Paths.get(path).toAbsolutePath()).append('\n');
+        return info.toString();
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return pending == null ? this : new ArtifactResult(label, description, getPaths());
+    }
+}
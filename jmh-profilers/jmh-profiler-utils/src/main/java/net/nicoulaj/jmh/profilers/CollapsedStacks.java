@@ -0,0 +1,166 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Stack samples in the "collapsed" format of <a href="https://github.com/brendangregg/FlameGraph">FlameGraph</a>
+ * tools: one line per distinct stack, frames from root to leaf separated by <code>;</code>, followed by a space
+ * and the stack weight (samples, bytes allocated...).
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class CollapsedStacks {
+
+    private final Map<String, Long> stacks = new HashMap<>();
+
+    private long total;
+
+    /**
+     * Read a collapsed stacks file, in parallel for large files.
+     *
+     * @param file file to read
+     * @return stacks
+     * @throws IOException if failed to read the file
+     */
+    public static CollapsedStacks read(final Path file) throws IOException {
+        final List<Parser> parsers = LineUtils.forEachLine(file, Runtime.getRuntime().availableProcessors(), Parser::new);
+        final CollapsedStacks stacks = parsers.get(0).stacks;
+        for (int i = 1; i < parsers.size(); i++)
+            stacks.merge(parsers.get(i).stacks);
+        return stacks;
+    }
+
+    /**
+     * Add samples for a stack.
+     *
+     * @param stack  frames from root to leaf, separated by <code>;</code>
+     * @param weight stack weight
+     */
+    public void add(final String stack, final long weight) {
+        final Long current = stacks.get(stack);
+        stacks.put(stack, current != null ? current + weight : weight);
+        total += weight;
+    }
+
+    /**
+     * Add all the samples of other stacks to these ones.
+     *
+     * @param other stacks to add
+     * @return these stacks
+     */
+    public CollapsedStacks merge(final CollapsedStacks other) {
+        for (Map.Entry<String, Long> stack : other.stacks.entrySet())
+            add(stack.getKey(), stack.getValue());
+        return this;
+    }
+
+    /**
+     * @return total weight of all stacks
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return stacks weights
+     */
+    public Map<String, Long> getStacks() {
+        return Collections.unmodifiableMap(stacks);
+    }
+
+    /**
+     * @return weight of stacks by leaf frame (eg: self time by method, allocations by site)
+     */
+    public Map<String, Long> selfByFrame() {
+        final Map<String, Long> self = new HashMap<>();
+        for (Map.Entry<String, Long> stack : stacks.entrySet()) {
+            final String frame = stack.getKey().substring(stack.getKey().lastIndexOf(';') + 1);
+            final Long current = self.get(frame);
+            self.put(frame, current != null ? current + stack.getValue() : stack.getValue());
+        }
+        return self;
+    }
+
+    /**
+     * @return weight of stacks by frame appearing anywhere in the stack, counted once per stack
+     */
+    public Map<String, Long> totalByFrame() {
+        final Map<String, Long> totals = new HashMap<>();
+        final Set<String> seen = new HashSet<>();
+        for (Map.Entry<String, Long> stack : stacks.entrySet()) {
+            seen.clear();
+            for (String frame : stack.getKey().split(";")) {
+                if (!seen.add(frame)) continue;
+                final Long current = totals.get(frame);
+                totals.put(frame, current != null ? current + stack.getValue() : stack.getValue());
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Write the stacks, sorted.
+     *
+     * @param file file to write
+     * @throws IOException if failed to write the file
+     */
+    public void write(final Path file) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(file, UTF_8)) {
+            for (Map.Entry<String, Long> stack : new TreeMap<>(stacks).entrySet()) {
+                writer.write(stack.getKey());
+                writer.write(' ');
+                writer.write(String.valueOf(stack.getValue()));
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static final class Parser implements LineHandler {
+
+        final CollapsedStacks stacks = new CollapsedStacks();
+
+        @Override
+        public void onLine(final Line line) {
+            final int space = line.lastIndexOf(' ');
+            if (space <= 0 || space == line.length() - 1) return;
+            final long weight;
+            try {
+                weight = line.parseLong(space + 1, line.length());
+            } catch (NumberFormatException e) {
+                return;
+            }
+            stacks.add(line.decode(0, space), weight);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+ * An immutable set of CPU indexes, as found in Linux <code>cpulist</code> files
+ * (eg: <code>0-3,8-11</code>).
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see CpuTopology
+ */
+public final class CpuSet implements Serializable {
+
+    /** The empty set. */
+    public static final CpuSet EMPTY = new CpuSet(new BitSet());
+
+    private final BitSet cpus;
+
+    private CpuSet(final BitSet cpus) {
+        this.cpus = cpus;
+    }
+
+    /**
+     * Parse a Linux <code>cpulist</code> (eg: <code>0-3,8-11</code>).
+     *
+     * @param list CPU list, may be {@code null} or empty
+     * @return parsed CPU set
+     * @throws IllegalArgumentException if the list is malformed
+     */
+    public static CpuSet parse(final String list) {
+        final BitSet cpus = new BitSet();
+        if (list == null) return new CpuSet(cpus);
+        for (String range : list.trim().split(",")) {
+            range = range.trim();
+            if (range.isEmpty()) continue;
+            try {
+                final int dash = range.indexOf('-');
+                if (dash < 0) {
+                    cpus.set(Integer.parseInt(range));
+                } else {
+                    final int from = Integer.parseInt(range.substring(0, dash).trim());
+                    final int to = Integer.parseInt(range.substring(dash + 1).trim());
+                    if (to < from) throw new IllegalArgumentException("Invalid CPU range: " + range);
+                    cpus.set(from, to + 1);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid CPU list: " + list, e);
+            }
+        }
+        return new CpuSet(cpus);
+    }
+
+    /**
+     * Build a CPU set from CPU indexes.
+     *
+     * @param cpus CPU indexes
+     * @return CPU set
+     */
+    public static CpuSet of(final int... cpus) {
+        final BitSet set = new BitSet();
+        for (int cpu : cpus) set.set(cpu);
+        return new CpuSet(set);
+    }
+
+    public boolean contains(final int cpu) {
+        return cpus.get(cpu);
+    }
+
+    public boolean containsAll(final CpuSet other) {
+        final BitSet missing = (BitSet) other.cpus.clone();
+        missing.andNot(cpus);
+        return missing.isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return cpus.isEmpty();
+    }
+
+    public int size() {
+        return cpus.cardinality();
+    }
+
+    /**
+     * @return CPU indexes, in ascending order
+     */
+    public int[] toArray() {
+        return cpus.stream().toArray();
+    }
+
+    public CpuSet union(final CpuSet other) {
+        final BitSet result = (BitSet) cpus.clone();
+        result.or(other.cpus);
+        return new CpuSet(result);
+    }
+
+    public CpuSet intersection(final CpuSet other) {
+        final BitSet result = (BitSet) cpus.clone();
+        result.and(other.cpus);
+        return new CpuSet(result);
+    }
+
+    public CpuSet minus(final CpuSet other) {
+        final BitSet result = (BitSet) cpus.clone();
+        result.andNot(other.cpus);
+        return new CpuSet(result);
+    }
+
+    /**
+     * @param count number of CPUs to keep
+     * @return a set with the {@code count} lowest CPUs of this set
+     */
+    public CpuSet first(final int count) {
+        final BitSet result = new BitSet();
+        for (int cpu = cpus.nextSetBit(0), i = 0; cpu >= 0 && i < count; cpu = cpus.nextSetBit(cpu + 1), i++)
+            result.set(cpu);
+        return new CpuSet(result);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return this == o || o instanceof CpuSet && cpus.equals(((CpuSet) o).cpus);
+    }
+
+    @Override
+    public int hashCode() {
+        return cpus.hashCode();
+    }
+
+    /**
+     * @return the CPU set in Linux <code>cpulist</code> format
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        int start = cpus.nextSetBit(0);
+        while (start >= 0) {
+            final int end = cpus.nextClearBit(start) - 1;
+            if (buffer.length() > 0) buffer.append(',');
+            buffer.append(start);
+            if (end > start) buffer.append('-').append(end);
+            start = cpus.nextSetBit(end + 1);
+        }
+        return buffer.toString();
+    }
+}
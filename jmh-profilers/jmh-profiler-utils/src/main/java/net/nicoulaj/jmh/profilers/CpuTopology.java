@@ -0,0 +1,207 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static net.nicoulaj.jmh.profilers.ProcUtils.readLong;
+import static net.nicoulaj.jmh.profilers.ProcUtils.readString;
+
+/**
+ * CPU sockets/cores/SMT threads and NUMA nodes layout of the host, as exposed by Linux sysfs.
+ * <p/>
+ * On other platforms, or if sysfs is not readable, every CPU reported by the JVM is
+ * considered as a distinct core of a single socket without NUMA information.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ * @see CpuSet
+ */
+public final class CpuTopology {
+
+    private static final String CPU_ROOT = "/sys/devices/system/cpu";
+
+    private static final String NODE_ROOT = "/sys/devices/system/node";
+
+    private final CpuSet online;
+
+    private final CpuSet isolated;
+
+    private final Map<Integer, Long> cores;
+
+    private final Map<Integer, Integer> packages;
+
+    private final Map<Integer, CpuSet> siblings;
+
+    private final SortedMap<Integer, CpuSet> nodes;
+
+    private CpuTopology(final CpuSet online,
+                        final CpuSet isolated,
+                        final Map<Integer, Long> cores,
+                        final Map<Integer, Integer> packages,
+                        final Map<Integer, CpuSet> siblings,
+                        final SortedMap<Integer, CpuSet> nodes) {
+        this.online = online;
+        this.isolated = isolated;
+        this.cores = cores;
+        this.packages = packages;
+        this.siblings = siblings;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Detect the host topology.
+     *
+     * @return host topology
+     */
+    public static CpuTopology detect() {
+
+        CpuSet online = CpuSet.parse(readString(CPU_ROOT + "/online"));
+        if (online.isEmpty()) {
+            final int[] cpus = new int[Runtime.getRuntime().availableProcessors()];
+            for (int i = 0; i < cpus.length; i++) cpus[i] = i;
+            online = CpuSet.of(cpus);
+        }
+
+        final Map<Integer, Long> cores = new HashMap<>();
+        final Map<Integer, Integer> packages = new HashMap<>();
+        final Map<Integer, CpuSet> siblings = new HashMap<>();
+        for (int cpu : online.toArray()) {
+            final String topology = CPU_ROOT + "/cpu" + cpu + "/topology/";
+            final Long pkg = readLong(topology + "physical_package_id");
+            final Long core = readLong(topology + "core_id");
+            final CpuSet threads = CpuSet.parse(readString(topology + "thread_siblings_list"));
+            packages.put(cpu, pkg != null ? pkg.intValue() : 0);
+            cores.put(cpu, ((pkg != null ? pkg : 0) << 32) | (core != null ? core : cpu));
+            siblings.put(cpu, threads.isEmpty() ? CpuSet.of(cpu) : threads);
+        }
+
+        final SortedMap<Integer, CpuSet> nodes = new TreeMap<>();
+        final File[] nodeDirs = new File(NODE_ROOT).listFiles();
+        if (nodeDirs != null) {
+            for (File nodeDir : nodeDirs) {
+                if (!nodeDir.getName().matches("node[0-9]+")) continue;
+                final CpuSet cpus = CpuSet.parse(readString(new File(nodeDir, "cpulist").toPath()));
+                nodes.put(Integer.parseInt(nodeDir.getName().substring(4)), cpus);
+            }
+        }
+
+        return new CpuTopology(online,
+                               CpuSet.parse(readString(CPU_ROOT + "/isolated")),
+                               cores,
+                               packages,
+                               siblings,
+                               Collections.unmodifiableSortedMap(nodes));
+    }
+
+    /**
+     * @return online CPUs
+     */
+    public CpuSet online() {
+        return online;
+    }
+
+    /**
+     * @return CPUs isolated from the scheduler (<code>isolcpus</code> kernel parameter)
+     */
+    public CpuSet isolated() {
+        return isolated;
+    }
+
+    /**
+     * @return number of CPU sockets
+     */
+    public int sockets() {
+        return new HashSet<>(packages.values()).size();
+    }
+
+    /**
+     * @return number of physical cores
+     */
+    public int cores() {
+        return new HashSet<>(cores.values()).size();
+    }
+
+    /**
+     * @return max number of hardware threads per core (SMT)
+     */
+    public int threadsPerCore() {
+        int max = 1;
+        for (CpuSet threads : siblings.values())
+            max = Math.max(max, threads.size());
+        return max;
+    }
+
+    /**
+     * @param cpu CPU index
+     * @return CPUs sharing the same physical core, including {@code cpu} itself
+     */
+    public CpuSet siblings(final int cpu) {
+        final CpuSet threads = siblings.get(cpu);
+        return threads != null ? threads : CpuSet.of(cpu);
+    }
+
+    /**
+     * @param cpu CPU index
+     * @return CPU socket index
+     */
+    public int socket(final int cpu) {
+        final Integer pkg = packages.get(cpu);
+        return pkg != null ? pkg : 0;
+    }
+
+    /**
+     * @return NUMA node index to node CPUs, empty if NUMA information is not available
+     */
+    public SortedMap<Integer, CpuSet> nodes() {
+        return nodes;
+    }
+
+    /**
+     * @param cpu CPU index
+     * @return NUMA node index of the CPU, {@code -1} if unknown
+     */
+    public int node(final int cpu) {
+        for (Map.Entry<Integer, CpuSet> node : nodes.entrySet())
+            if (node.getValue().contains(cpu)) return node.getKey();
+        return -1;
+    }
+
+    /**
+     * Keep a single hardware thread per physical core.
+     *
+     * @param cpus CPUs to filter
+     * @return the lowest CPU of each physical core of {@code cpus}
+     */
+    public CpuSet oneThreadPerCore(final CpuSet cpus) {
+        final Set<Long> seen = new HashSet<>();
+        CpuSet result = CpuSet.EMPTY;
+        for (int cpu : cpus.toArray()) {
+            final Long core = cores.get(cpu);
+            if (seen.add(core != null ? core : -1L - cpu)) result = result.union(CpuSet.of(cpu));
+        }
+        return result;
+    }
+}
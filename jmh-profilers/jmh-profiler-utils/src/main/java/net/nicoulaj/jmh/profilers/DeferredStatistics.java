@@ -0,0 +1,119 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.openjdk.jmh.util.AbstractStatistics;
+import org.openjdk.jmh.util.Statistics;
+
+import java.io.ObjectStreamException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * {@link Statistics} computed in background by {@link PostProcessing}.
+ * <p/>
+ * JMH only reads secondary results scores once all forks are done, so profilers can return results backed
+ * by deferred statistics from <code>afterTrial</code>, and the next fork starts while artifacts are parsed.
+ * Any access waits for the computation to complete.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class DeferredStatistics extends AbstractStatistics {
+
+    private static final long serialVersionUID = -2935839414957536207L;
+
+    private final transient Future<? extends Statistics> future;
+
+    DeferredStatistics(final Future<? extends Statistics> future) {
+        this.future = future;
+    }
+
+    /**
+     * @return computed statistics, waiting for the computation if needed
+     * @throws IllegalStateException if the computation failed
+     */
+    public Statistics get() {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for post-processing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Post-processing failed", e.getCause());
+        }
+    }
+
+    /**
+     * @return the computation is complete
+     */
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    @Override
+    public double getMax() {
+        return get().getMax();
+    }
+
+    @Override
+    public double getMin() {
+        return get().getMin();
+    }
+
+    @Override
+    public long getN() {
+        return get().getN();
+    }
+
+    @Override
+    public double getSum() {
+        return get().getSum();
+    }
+
+    @Override
+    public double getMean() {
+        return get().getMean();
+    }
+
+    @Override
+    public double getVariance() {
+        return get().getVariance();
+    }
+
+    @Override
+    public double getPercentile(final double rank) {
+        return get().getPercentile(rank);
+    }
+
+    @Override
+    public int[] getHistogram(final double[] levels) {
+        return get().getHistogram(levels);
+    }
+
+    @Override
+    public Iterator<Map.Entry<Double, Long>> getRawData() {
+        return get().getRawData();
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return get();
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ROOT;
+
+/**
+ * SVG <a href="http://www.brendangregg.com/flamegraphs.html">flame graph</a> rendering of {@link CollapsedStacks}.
+ * <p/>
+ * Differential flame graphs show the candidate stacks, each frame colored by the change of its self weight share
+ * from the baseline: red when it grew, blue when it shrank.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class FlameGraph {
+
+    private static final int WIDTH = 1200;
+
+    private static final int PADDING = 10;
+
+    private static final int FRAME_HEIGHT = 16;
+
+    private static final int TITLE_HEIGHT = 32;
+
+    private static final double CHAR_WIDTH = 7;
+
+    private static final double MIN_WIDTH = 0.1;
+
+    /**
+     * Orders stacks frame by frame, so that stacks sharing a prefix of frames are contiguous.
+     */
+    private static final Comparator<String> FRAME_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(final String a, final String b) {
+            final int length = Math.min(a.length(), b.length());
+            for (int i = 0; i < length; i++) {
+                final char ca = a.charAt(i);
+                final char cb = b.charAt(i);
+                if (ca == cb) continue;
+                if (ca == ';') return -1;
+                if (cb == ';') return 1;
+                return ca - cb;
+            }
+            return a.length() - b.length();
+        }
+    };
+
+    private final CollapsedStacks stacks;
+
+    private final CollapsedStacks baseline;
+
+    private FlameGraph(final CollapsedStacks stacks, final CollapsedStacks baseline) {
+        this.stacks = stacks;
+        this.baseline = baseline;
+    }
+
+    /**
+     * @param stacks stacks to render
+     * @return flame graph
+     */
+    public static FlameGraph of(final CollapsedStacks stacks) {
+        return new FlameGraph(stacks, null);
+    }
+
+    /**
+     * @param baseline  baseline stacks
+     * @param candidate candidate stacks, rendered
+     * @return differential flame graph
+     */
+    public static FlameGraph diff(final CollapsedStacks baseline, final CollapsedStacks candidate) {
+        return new FlameGraph(candidate, baseline);
+    }
+
+    /**
+     * Write the flame graph as SVG.
+     *
+     * @param file  file to write
+     * @param title graph title
+     * @throws IOException if failed to write the file
+     */
+    public void writeSvg(final Path file, final String title) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        try (Writer writer = Files.newBufferedWriter(file, UTF_8)) {
+            writeSvg(writer, title);
+        }
+    }
+
+    /**
+     * Write the flame graph as SVG.
+     *
+     * @param writer output
+     * @param title  graph title
+     * @throws IOException if failed to write
+     */
+    public void writeSvg(final Writer writer, final String title) throws IOException {
+        final Node root = build();
+        final int depth = depth(root);
+        final int height = TITLE_HEIGHT + depth * FRAME_HEIGHT + 2 * PADDING;
+        writer.write(format(ROOT, "<?xml version=\"1.0\" standalone=\"no\"?>%n"
+                                  + "<svg version=\"1.1\" width=\"%d\" height=\"%d\" viewBox=\"0 0 %d %d\" "
+                                  + "xmlns=\"http://www.w3.org/2000/svg\" font-family=\"Verdana\" font-size=\"12\">%n"
+                                  + "<rect x=\"0\" y=\"0\" width=\"100%%\" height=\"100%%\" fill=\"#f8f8f8\"/>%n"
+                                  + "<text x=\"%d\" y=\"24\" text-anchor=\"middle\" font-size=\"17\">%s</text>%n",
+                                  WIDTH, height, WIDTH, height, WIDTH / 2, escape(title)));
+        if (root.value > 0) {
+            final double scale = (WIDTH - 2.0 * PADDING) / root.value;
+            render(writer, root, root, maxDelta(root, root), 0, PADDING, height - PADDING, scale);
+        }
+        writer.write("</svg>\n");
+    }
+
+    /**
+     * Build the tree of frames wide enough to be rendered, so that memory use does not depend on the number
+     * of distinct stacks.
+     */
+    private Node build() {
+        final Set<String> union = new HashSet<>(stacks.getStacks().keySet());
+        if (baseline != null) union.addAll(baseline.getStacks().keySet());
+        final String[] keys = union.toArray(new String[union.size()]);
+        Arrays.sort(keys, FRAME_ORDER);
+
+        final long[] values = new long[keys.length];
+        final long[] baselines = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            final Long value = stacks.getStacks().get(keys[i]);
+            final Long base = baseline != null ? baseline.getStacks().get(keys[i]) : null;
+            values[i] = value != null ? value : 0;
+            baselines[i] = base != null ? base : 0;
+        }
+
+        final Node root = new Node("all");
+        root.value = stacks.getTotal();
+        root.baseline = baseline != null ? baseline.getTotal() : 0;
+        final double threshold = MIN_WIDTH * root.value / (WIDTH - 2.0 * PADDING);
+        build(root, keys, values, baselines, new int[keys.length], 0, keys.length, threshold);
+        return root;
+    }
+
+    private static void build(final Node node,
+                              final String[] keys,
+                              final long[] values,
+                              final long[] baselines,
+                              final int[] positions,
+                              final int from,
+                              final int to,
+                              final double threshold) {
+        int i = from;
+        while (i < to) {
+            if (positions[i] < 0) {
+                node.self += values[i];
+                node.baselineSelf += baselines[i];
+                i++;
+                continue;
+            }
+
+            final String key = keys[i];
+            final int start = positions[i];
+            final int end = frameEnd(key, start);
+            long value = values[i];
+            long base = baselines[i];
+            int j = i + 1;
+            for (; j < to && positions[j] >= 0 && sameFrame(keys[j], positions[j], key, start, end); j++) {
+                value += values[j];
+                base += baselines[j];
+            }
+
+            if (value > 0 && value >= threshold) {
+                final Node child = new Node(key.substring(start, end));
+                child.value = value;
+                child.baseline = base;
+                for (int k = i; k < j; k++) {
+                    final int next = frameEnd(keys[k], positions[k]);
+                    positions[k] = next < keys[k].length() ? next + 1 : -1;
+                }
+                build(child, keys, values, baselines, positions, i, j, threshold);
+                node.children.add(child);
+            }
+            i = j;
+        }
+    }
+
+    private static int frameEnd(final String stack, final int start) {
+        final int end = stack.indexOf(';', start);
+        return end >= 0 ? end : stack.length();
+    }
+
+    private static boolean sameFrame(final String stack, final int start, final String other, final int otherStart, final int otherEnd) {
+        final int length = otherEnd - otherStart;
+        return frameEnd(stack, start) - start == length && stack.regionMatches(start, other, otherStart, length);
+    }
+
+    private void render(final Writer writer,
+                        final Node root,
+                        final Node node,
+                        final double maxDelta,
+                        final int level,
+                        final double x,
+                        final int bottom,
+                        final double scale) throws IOException {
+        final double width = node.value * scale;
+        final double y = bottom - (level + 1) * FRAME_HEIGHT;
+
+        final StringBuilder info = new StringBuilder(node.name)
+                .append(format(ROOT, " (%,d, %.2f%%", node.value, 100.0 * node.value / root.value));
+        if (baseline != null)
+            info.append(format(ROOT, ", self %+.2f%%", 100 * delta(root, node)));
+        info.append(')');
+
+        writer.write(format(ROOT, "<g><title>%s</title><rect x=\"%.1f\" y=\"%.1f\" width=\"%.1f\" height=\"%d\" fill=\"%s\" rx=\"2\" ry=\"2\"/>",
+                            escape(info.toString()), x, y, width, FRAME_HEIGHT - 1, color(root, node, maxDelta)));
+        final int chars = (int) ((width - 6) / CHAR_WIDTH);
+        if (chars >= 3) {
+            final String text = node.name.length() <= chars ? node.name : node.name.substring(0, chars - 2) + "..";
+            writer.write(format(ROOT, "<text x=\"%.1f\" y=\"%.1f\">%s</text>", x + 3, y + FRAME_HEIGHT - 4.5, escape(text)));
+        }
+        writer.write("</g>\n");
+
+        double childX = x;
+        for (Node child : node.children) {
+            render(writer, root, child, maxDelta, level + 1, childX, bottom, scale);
+            childX += child.value * scale;
+        }
+    }
+
+    private String color(final Node root, final Node node, final double maxDelta) {
+        if (baseline != null) {
+            final double delta = delta(root, node);
+            final int intensity = maxDelta > 0 ? (int) Math.round(210 * Math.abs(delta) / maxDelta) : 0;
+            return delta > 0
+                    ? format(ROOT, "rgb(255,%d,%d)", 255 - intensity, 255 - intensity)
+                    : format(ROOT, "rgb(%d,%d,255)", 255 - intensity, 255 - intensity);
+        }
+        final int hash = node.name.hashCode();
+        return format(ROOT, "rgb(%d,%d,%d)", 205 + Math.floorMod(hash, 50), Math.floorMod(hash >> 8, 230), Math.floorMod(hash >> 16, 55));
+    }
+
+    /**
+     * @return change of the node self weight share, from the baseline to the candidate
+     */
+    private static double delta(final Node root, final Node node) {
+        final double share = root.value > 0 ? (double) node.self / root.value : 0;
+        final double baselineShare = root.baseline > 0 ? (double) node.baselineSelf / root.baseline : 0;
+        return share - baselineShare;
+    }
+
+    private static double maxDelta(final Node root, final Node node) {
+        double max = Math.abs(delta(root, node));
+        for (Node child : node.children)
+            max = Math.max(max, maxDelta(root, child));
+        return max;
+    }
+
+    private static int depth(final Node node) {
+        int depth = 0;
+        for (Node child : node.children)
+            depth = Math.max(depth, depth(child));
+        return depth + 1;
+    }
+
+    private static String escape(final String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static final class Node {
+
+        final String name;
+
+        final List<Node> children = new ArrayList<>();
+
+        long value;
+
+        long baseline;
+
+        long self;
+
+        long baselineSelf;
+
+        Node(final String name) {
+            this.name = name;
+        }
+    }
+}
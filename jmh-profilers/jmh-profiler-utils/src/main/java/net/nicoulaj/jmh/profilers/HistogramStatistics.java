@@ -0,0 +1,294 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.openjdk.jmh.util.AbstractStatistics;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link org.openjdk.jmh.util.Statistics} over non-negative <code>long</code> samples (eg: nanoseconds, bytes),
+ * recorded in a log-bucketed histogram.
+ * <p/>
+ * Values are counted in buckets whose width is a power of two fraction of the value, so the relative error of
+ * percentiles and raw data is bounded by <code>2<sup>-precisionBits</sup></code>, and memory use is bounded by
+ * about <code>(64 - precisionBits) * 2<sup>precisionBits - 1</sup></code> counters whatever the number of samples.
+ * Count, sum, min, max, mean and variance are exact.
+ * <p/>
+ * Instances are not thread safe: record samples in one instance per thread, then {@link #merge(HistogramStatistics)}
+ * them, which is lossless.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class HistogramStatistics extends AbstractStatistics {
+
+    private static final long serialVersionUID = 3062287917434722815L;
+
+    /**
+     * Default precision, less than 1% relative error, at most 30 KB per histogram.
+     */
+    public static final int DEFAULT_PRECISION_BITS = 7;
+
+    private final int precisionBits;
+
+    private final long[][] buckets;
+
+    private long n;
+
+    private long min = Long.MAX_VALUE;
+
+    private long max = Long.MIN_VALUE;
+
+    private double sum;
+
+    private double mean;
+
+    private double m2;
+
+    public HistogramStatistics() {
+        this(DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * @param precisionBits number of significant bits kept for each sample, between 1 and 16
+     */
+    public HistogramStatistics(final int precisionBits) {
+        if (precisionBits < 1 || precisionBits > 16)
+            throw new IllegalArgumentException("Precision bits should be within [1; 16]");
+        this.precisionBits = precisionBits;
+        this.buckets = new long[Long.SIZE - precisionBits][];
+    }
+
+    /**
+     * Record a sample.
+     *
+     * @param value sample value, non-negative
+     */
+    public void addValue(final long value) {
+        addValue(value, 1);
+    }
+
+    /**
+     * Record a sample several times.
+     *
+     * @param value sample value, non-negative
+     * @param count number of occurrences, non-negative
+     */
+    public void addValue(final long value, final long count) {
+        if (value < 0) throw new IllegalArgumentException("Negative value: " + value);
+        if (count < 0) throw new IllegalArgumentException("Negative count: " + count);
+        if (count == 0) return;
+
+        final int bucket = bucket(value);
+        long[] counts = buckets[bucket];
+        if (counts == null) counts = buckets[bucket] = new long[bucket == 0 ? 1 << precisionBits : 1 << (precisionBits - 1)];
+        counts[subBucket(bucket, value)] += count;
+
+        // Chan et al. parallel variance update, with the new samples as a zero-variance group
+        final long total = n + count;
+        final double delta = value - mean;
+        mean += delta * count / total;
+        m2 += delta * delta * n * count / total;
+        n = total;
+        sum += (double) value * count;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add all samples of another histogram to this one.
+     *
+     * @param other histogram with the same precision
+     * @return this histogram
+     */
+    public HistogramStatistics merge(final HistogramStatistics other) {
+        if (other.precisionBits != precisionBits)
+            throw new IllegalArgumentException("Cannot merge histograms with different precisions: " + precisionBits + " and " + other.precisionBits);
+        if (other.n == 0) return this;
+
+        for (int i = 0; i < buckets.length; i++) {
+            final long[] otherCounts = other.buckets[i];
+            if (otherCounts == null) continue;
+            if (buckets[i] == null) buckets[i] = new long[otherCounts.length];
+            for (int j = 0; j < otherCounts.length; j++)
+                buckets[i][j] += otherCounts[j];
+        }
+
+        final long total = n + other.n;
+        final double delta = other.mean - mean;
+        mean += delta * other.n / total;
+        m2 += other.m2 + delta * delta * n * other.n / total;
+        n = total;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * @return number of significant bits kept for each sample
+     */
+    public int getPrecisionBits() {
+        return precisionBits;
+    }
+
+    @Override
+    public double getMax() {
+        return n > 0 ? max : Double.NaN;
+    }
+
+    @Override
+    public double getMin() {
+        return n > 0 ? min : Double.NaN;
+    }
+
+    @Override
+    public long getN() {
+        return n;
+    }
+
+    @Override
+    public double getSum() {
+        return n > 0 ? sum : Double.NaN;
+    }
+
+    @Override
+    public double getMean() {
+        return n > 0 ? mean : Double.NaN;
+    }
+
+    @Override
+    public double getVariance() {
+        return n > 1 ? m2 / (n - 1) : Double.NaN;
+    }
+
+    @Override
+    public double getPercentile(final double rank) {
+        if (rank < 0.0d || rank > 100.0d)
+            throw new IllegalArgumentException("Rank should be within [0; 100]");
+        if (n == 0) return Double.NaN;
+        if (rank == 0.0d) return getMin();
+
+        final double pos = rank * (n + 1) / 100;
+        final double floorPos = Math.floor(pos);
+
+        final double flooredValue = get((long) floorPos);
+        final double nextValue = get((long) floorPos + 1);
+
+        return flooredValue + (nextValue - flooredValue) * (pos - floorPos);
+    }
+
+    @Override
+    public int[] getHistogram(final double[] levels) {
+        if (levels.length < 2)
+            throw new IllegalArgumentException("Expected more than two levels");
+
+        final int[] result = new int[levels.length - 1];
+        final Iterator<Map.Entry<Double, Long>> it = getRawData();
+        while (it.hasNext()) {
+            final Map.Entry<Double, Long> entry = it.next();
+            for (int c = 0; c < result.length; c++) {
+                if (levels[c] <= entry.getKey() && entry.getKey() < levels[c + 1]) {
+                    result[c] += entry.getValue();
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return bucket representative values in increasing order, with their counts
+     */
+    @Override
+    public Iterator<Map.Entry<Double, Long>> getRawData() {
+        return new Iterator<Map.Entry<Double, Long>>() {
+
+            private int bucket;
+
+            private int subBucket = -1;
+
+            {
+                advance();
+            }
+
+            private void advance() {
+                for (; bucket < buckets.length; bucket++, subBucket = -1) {
+                    final long[] counts = buckets[bucket];
+                    if (counts == null) continue;
+                    while (++subBucket < counts.length)
+                        if (counts[subBucket] != 0) return;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return bucket < buckets.length;
+            }
+
+            @Override
+            public Map.Entry<Double, Long> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                final Map.Entry<Double, Long> entry = new AbstractMap.SimpleImmutableEntry<>(
+                        value(bucket, subBucket), buckets[bucket][subBucket]);
+                advance();
+                return entry;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private double get(final long index) {
+        long cur = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            final long[] counts = buckets[i];
+            if (counts == null) continue;
+            for (int j = 0; j < counts.length; j++) {
+                cur += counts[j];
+                if (counts[j] != 0 && cur >= index) return value(i, j);
+            }
+        }
+        return getMax();
+    }
+
+    private int bucket(final long value) {
+        return Math.max(0, Long.SIZE - Long.numberOfLeadingZeros(value) - precisionBits);
+    }
+
+    private int subBucket(final int bucket, final long value) {
+        return bucket == 0 ? (int) value : (int) (value >> bucket) - (1 << (precisionBits - 1));
+    }
+
+    /**
+     * @return middle of the bucket value range, clamped to the recorded min/max
+     */
+    private double value(final int bucket, final int subBucket) {
+        if (bucket == 0) return subBucket;
+        final long lowest = ((long) subBucket + (1 << (precisionBits - 1))) << bucket;
+        final double middle = lowest + ((1L << bucket) - 1) / 2.0d;
+        return Math.max(min, Math.min(max, middle));
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON parser and string quoting, enough to read JMH JSON result files and write flat
+ * JSON sidecar files without adding a dependency.
+ * <p/>
+ * Objects are parsed to {@link Map}s, arrays to {@link List}s, numbers to {@link Double}s.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class Json {
+
+    private final String json;
+
+    private int position;
+
+    private Json(final String json) {
+        this.json = json;
+    }
+
+    /**
+     * @param json JSON document
+     * @return parsed value
+     * @throws IllegalArgumentException if the document is malformed
+     */
+    public static Object parse(final String json) {
+        final Json parser = new Json(json);
+        final Object value = parser.value();
+        parser.whitespace();
+        if (parser.position != json.length()) throw parser.error("Unexpected trailing content");
+        return value;
+    }
+
+    /**
+     * @param value string to quote
+     * @return JSON string literal
+     */
+    public static String quote(final String value) {
+        final StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                json.append("\\\"");
+                break;
+            case '\\':
+                json.append("\\\\");
+                break;
+            case '\n':
+                json.append("\\n");
+                break;
+            case '\r':
+                json.append("\\r");
+                break;
+            case '\t':
+                json.append("\\t");
+                break;
+            default:
+                if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+                else json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    private Object value() {
+        whitespace();
+        if (position >= json.length()) throw error("Unexpected end of document");
+        final char c = json.charAt(position);
+        switch (c) {
+        case '{':
+            return object();
+        case '[':
+            return array();
+        case '"':
+            return string();
+        case 't':
+            return literal("true", Boolean.TRUE);
+        case 'f':
+            return literal("false", Boolean.FALSE);
+        case 'n':
+            return literal("null", null);
+        default:
+            return number();
+        }
+    }
+
+    private Map<String, Object> object() {
+        final Map<String, Object> object = new LinkedHashMap<>();
+        position++;
+        whitespace();
+        if (peek() == '}') {
+            position++;
+            return object;
+        }
+        while (true) {
+            whitespace();
+            if (peek() != '"') throw error("Expected object key");
+            final String key = string();
+            whitespace();
+            expect(':');
+            object.put(key, value());
+            whitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect('}');
+                return object;
+            }
+        }
+    }
+
+    private List<Object> array() {
+        final List<Object> array = new ArrayList<>();
+        position++;
+        whitespace();
+        if (peek() == ']') {
+            position++;
+            return array;
+        }
+        while (true) {
+            array.add(value());
+            whitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect(']');
+                return array;
+            }
+        }
+    }
+
+    private String string() {
+        final StringBuilder string = new StringBuilder();
+        position++;
+        while (position < json.length()) {
+            final char c = json.charAt(position++);
+            if (c == '"') return string.toString();
+            if (c != '\\') {
+                string.append(c);
+                continue;
+            }
+            if (position >= json.length()) break;
+            final char escaped = json.charAt(position++);
+            switch (escaped) {
+            case 'b':
+                string.append('\b');
+                break;
+            case 'f':
+                string.append('\f');
+                break;
+            case 'n':
+                string.append('\n');
+                break;
+            case 'r':
+                string.append('\r');
+                break;
+            case 't':
+                string.append('\t');
+                break;
+            case 'u':
+                if (position + 4 > json.length()) throw error("Invalid unicode escape");
+                string.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                position += 4;
+                break;
+            default:
+                string.append(escaped);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private Double number() {
+        final int start = position;
+        while (position < json.length() && "+-0123456789.eE".indexOf(json.charAt(position)) >= 0) position++;
+        try {
+            return Double.valueOf(json.substring(start, position));
+        } catch (NumberFormatException e) {
+            position = start;
+            throw error("Unexpected character '" + json.charAt(start) + "'");
+        }
+    }
+
+    private Object literal(final String literal, final Object value) {
+        if (!json.startsWith(literal, position)) throw error("Unexpected character '" + json.charAt(position) + "'");
+        position += literal.length();
+        return value;
+    }
+
+    private void whitespace() {
+        while (position < json.length() && Character.isWhitespace(json.charAt(position))) position++;
+    }
+
+    private char peek() {
+        if (position >= json.length()) throw error("Unexpected end of document");
+        return json.charAt(position);
+    }
+
+    private void expect(final char c) {
+        if (peek() != c) throw error("Expected '" + c + "'");
+        position++;
+    }
+
+    private IllegalArgumentException error(final String message) {
+        return new IllegalArgumentException(message + " at offset " + position);
+    }
+}
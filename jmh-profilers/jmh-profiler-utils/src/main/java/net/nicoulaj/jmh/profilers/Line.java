@@ -0,0 +1,247 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A reusable view over a line of bytes, as passed to {@link LineHandler}.
+ * <p/>
+ * All indices are byte indices. The {@link CharSequence} methods, {@link #substring(int, int)} and
+ * {@link #toString()} consistently see one char per byte (ISO-8859-1), which is exact for the ASCII
+ * logs parsed by profilers and lets lookups and number parsing run without allocating. Text that may
+ * contain non-ASCII characters is decoded as UTF-8 with {@link #decode(int, int)}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class Line implements CharSequence {
+
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    private ByteBuffer buffer;
+
+    private int start;
+
+    private int length;
+
+    private long offset;
+
+    Line() {
+    }
+
+    Line set(final ByteBuffer buffer, final int start, final int length, final long offset) {
+        this.buffer = buffer;
+        this.start = start;
+        this.length = length;
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * @return offset of the line first byte in the parsed file or stream
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException(String.valueOf(index));
+        return (char) (buffer.get(start + index) & 0xFF);
+    }
+
+    /**
+     * @param index byte index
+     * @return raw byte at index
+     */
+    public byte byteAt(final int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException(String.valueOf(index));
+        return buffer.get(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        return substring(start, end);
+    }
+
+    /**
+     * @param start start index, inclusive
+     * @param end   end index, exclusive
+     * @return copy of the given range of the line, one char per byte
+     */
+    public String substring(final int start, final int end) {
+        return new String(bytes(start, end), ISO_8859_1);
+    }
+
+    /**
+     * @param start start index, inclusive
+     * @param end   end index, exclusive
+     * @return copy of the given range of the line, decoded as UTF-8
+     */
+    public String decode(final int start, final int end) {
+        return new String(bytes(start, end), UTF_8);
+    }
+
+    /**
+     * @return copy of the line, decoded as UTF-8
+     */
+    public String decode() {
+        return decode(0, length);
+    }
+
+    /**
+     * @return line is empty
+     */
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * @param prefix ASCII prefix
+     * @return line starts with prefix
+     */
+    public boolean startsWith(final CharSequence prefix) {
+        return regionMatches(0, prefix);
+    }
+
+    /**
+     * @param from   index to look at
+     * @param region ASCII text
+     * @return line contains the given text at index
+     */
+    public boolean regionMatches(final int from, final CharSequence region) {
+        if (from < 0 || from + region.length() > length) return false;
+        for (int i = 0; i < region.length(); i++)
+            if (charAt(from + i) != region.charAt(i)) return false;
+        return true;
+    }
+
+    /**
+     * @param c    ASCII char to look for
+     * @param from index to start from
+     * @return index of first occurrence of char at or after {@code from}, {@code -1} if not found
+     */
+    public int indexOf(final char c, final int from) {
+        for (int i = Math.max(0, from); i < length; i++)
+            if (charAt(i) == c) return i;
+        return -1;
+    }
+
+    /**
+     * @param text ASCII text to look for
+     * @param from index to start from
+     * @return index of first occurrence of text at or after {@code from}, {@code -1} if not found
+     */
+    public int indexOf(final CharSequence text, final int from) {
+        for (int i = Math.max(0, from); i + text.length() <= length; i++)
+            if (regionMatches(i, text)) return i;
+        return -1;
+    }
+
+    /**
+     * @param c ASCII char to look for
+     * @return index of last occurrence of char, {@code -1} if not found
+     */
+    public int lastIndexOf(final char c) {
+        for (int i = length - 1; i >= 0; i--)
+            if (charAt(i) == c) return i;
+        return -1;
+    }
+
+    /**
+     * Parse a decimal integer without allocating.
+     *
+     * @param start start index, inclusive
+     * @param end   end index, exclusive
+     * @return parsed value
+     * @throws NumberFormatException if the range is not a decimal integer
+     */
+    public long parseLong(final int start, final int end) {
+        if (start >= end) throw new NumberFormatException("Empty number at " + start);
+        int i = start;
+        final boolean negative = charAt(i) == '-';
+        if (negative || charAt(i) == '+') i++;
+        if (i == end) throw new NumberFormatException("Invalid number: " + substring(start, end));
+        long value = 0;
+        for (; i < end; i++) {
+            final int digit = charAt(i) - '0';
+            if (digit < 0 || digit > 9) throw new NumberFormatException("Invalid number: " + substring(start, end));
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a decimal number, without allocating for plain <code>[-]digits[.digits]</code> numbers
+     * of up to 15 significant digits, which are exactly rounded.
+     *
+     * @param start start index, inclusive
+     * @param end   end index, exclusive
+     * @return parsed value
+     * @throws NumberFormatException if the range is not a number
+     */
+    public double parseDouble(final int start, final int end) {
+        int i = start;
+        final boolean negative = i < end && charAt(i) == '-';
+        if (negative || (i < end && charAt(i) == '+')) i++;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            final char c = charAt(i);
+            if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c >= '0' && c <= '9' && digits < POWERS_OF_TEN.length - 1) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fraction) scale++;
+            } else {
+                return Double.parseDouble(substring(start, end));
+            }
+        }
+        if (digits == 0) return Double.parseDouble(substring(start, end));
+        final double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    @Override
+    public String toString() {
+        return substring(0, length);
+    }
+
+    private byte[] bytes(final int start, final int end) {
+        if (start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ") out of [0, " + length + ")");
+        final byte[] bytes = new byte[end - start];
+        final ByteBuffer view = buffer.duplicate();
+        ((Buffer) view).position(this.start + start);
+        view.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Static helpers for parsing large line-oriented files (GC, compilation, hiccup logs, collapsed stacks...)
+ * without loading them in memory.
+ * <p/>
+ * Files are memory-mapped by windows and streams are read through a single buffer, and lines are passed to
+ * a {@link LineHandler} as a reused {@link Line} view, so parsing allocates nothing per line unless the
+ * handler does. Lines are terminated by <code>\n</code>, an eventual trailing <code>\r</code> is stripped.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class LineUtils {
+
+    /**
+     * Size of memory-mapped windows.
+     */
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Files smaller than this are not worth splitting.
+     */
+    private static final long MIN_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private LineUtils() {
+        // Static class
+    }
+
+    /**
+     * Parse a file line by line.
+     *
+     * @param file    file to parse
+     * @param handler line handler
+     * @throws IOException if failed to read the file
+     */
+    public static void forEachLine(final Path file, final LineHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            forEachLine(channel, 0, channel.size(), handler);
+        }
+    }
+
+    /**
+     * Parse a stream line by line.
+     *
+     * @param inputStream stream to parse, not closed
+     * @param handler     line handler
+     * @throws IOException if failed to read the stream
+     */
+    public static void forEachLine(final InputStream inputStream, final LineHandler handler) throws IOException {
+        final Line line = new Line();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer view = ByteBuffer.wrap(buffer);
+        int start = 0;
+        int end = 0;
+        long offset = 0;
+        int read;
+        while ((read = inputStream.read(buffer, end, buffer.length - end)) != -1) {
+            int scan = end;
+            end += read;
+            for (; scan < end; scan++) {
+                if (buffer[scan] != '\n') continue;
+                emit(line, view, start, scan, offset, handler);
+                offset += scan + 1 - start;
+                start = scan + 1;
+            }
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                end -= start;
+                start = 0;
+            } else if (end == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                view = ByteBuffer.wrap(buffer);
+            }
+        }
+        if (end > start) emit(line, view, start, end, offset, handler);
+    }
+
+    /**
+     * Parse a file in parallel.
+     * <p/>
+     * The file is split in chunks on line boundaries, each parsed by its own handler in a dedicated thread.
+     * Handlers are returned in file order so that their results can be merged.
+     *
+     * @param file        file to parse
+     * @param parallelism max number of chunks
+     * @param handlers    handlers factory, called once per chunk
+     * @param <H>         handler type
+     * @return chunk handlers, in file order
+     * @throws IOException if failed to read the file
+     */
+    public static <H extends LineHandler> List<H> forEachLine(final Path file,
+                                                              final int parallelism,
+                                                              final Supplier<H> handlers) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            final long size = channel.size();
+            final int chunks = (int) Math.max(1, Math.min(parallelism, size / MIN_CHUNK_SIZE));
+
+            final long[] bounds = new long[chunks + 1];
+            bounds[chunks] = size;
+            for (int i = 1; i < chunks; i++)
+                bounds[i] = Math.max(bounds[i - 1], nextLineStart(channel, size * i / chunks, size));
+
+            final List<H> results = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++)
+                results.add(handlers.get());
+            if (chunks == 1) {
+                forEachLine(channel, 0, size, results.get(0));
+                return results;
+            }
+
+            final ExecutorService executor = Executors.newFixedThreadPool(chunks);
+            try {
+                final List<Future<?>> futures = new ArrayList<>(chunks);
+                for (int i = 0; i < chunks; i++) {
+                    final int chunk = i;
+                    futures.add(executor.submit(() -> {
+                        forEachLine(channel, bounds[chunk], bounds[chunk + 1], results.get(chunk));
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures)
+                    future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while parsing " + file, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw new IOException("Failed to parse " + file, e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+            return results;
+        }
+    }
+
+    private static void forEachLine(final FileChannel channel, final long from, final long to, final LineHandler handler) throws IOException {
+        final Line line = new Line();
+        byte[] carry = new byte[0];
+        int carryLength = 0;
+        long lineOffset = from;
+
+        for (long position = from; position < to; position += WINDOW_SIZE) {
+            final int size = (int) Math.min(WINDOW_SIZE, to - position);
+            final ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            int start = 0;
+            for (int i = 0; i < size; i++) {
+                if (window.get(i) != '\n') continue;
+                if (carryLength > 0) {
+                    carry = append(carry, carryLength, window, start, i);
+                    carryLength += i - start;
+                    emit(line, ByteBuffer.wrap(carry), 0, carryLength, lineOffset, handler);
+                    carryLength = 0;
+                } else {
+                    emit(line, window, start, i, lineOffset, handler);
+                }
+                lineOffset = position + i + 1;
+                start = i + 1;
+            }
+            if (start < size) {
+                carry = append(carry, carryLength, window, start, size);
+                carryLength += size - start;
+            }
+        }
+        if (carryLength > 0) emit(line, ByteBuffer.wrap(carry), 0, carryLength, lineOffset, handler);
+    }
+
+    private static byte[] append(byte[] carry, final int carryLength, final ByteBuffer window, final int from, final int to) {
+        if (carry.length < carryLength + to - from)
+            carry = Arrays.copyOf(carry, Math.max(carry.length * 2, carryLength + to - from));
+        for (int i = from; i < to; i++)
+            carry[carryLength + i - from] = window.get(i);
+        return carry;
+    }
+
+    private static long nextLineStart(final FileChannel channel, final long position, final long size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        for (long p = position; p < size; ) {
+            ((Buffer) buffer).clear();
+            final int read = channel.read(buffer, p);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++)
+                if (buffer.get(i) == '\n') return p + i + 1;
+            p += read;
+        }
+        return size;
+    }
+
+    private static void emit(final Line line, final ByteBuffer buffer, final int start, int end, final long offset, final LineHandler handler) {
+        if (end > start && buffer.get(end - 1) == '\r') end--;
+        handler.onLine(line.set(buffer, start, end - start, offset));
+    }
+}
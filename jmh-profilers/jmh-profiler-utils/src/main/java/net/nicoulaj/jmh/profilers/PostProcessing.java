@@ -0,0 +1,231 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.openjdk.jmh.util.Statistics;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Integer.getInteger;
+import static java.lang.System.getProperty;
+
+/**
+ * Background post-processing of profiler artifacts (recordings, snapshots, logs...).
+ * <p/>
+ * Profilers submit parsing tasks from <code>afterTrial</code> instead of running them inline, so the next
+ * fork starts immediately, and return results backed by {@link #defer(Callable) deferred statistics},
+ * that JMH only reads when all forks are done.
+ * <p/>
+ * Tasks run in the host JVM, in daemon threads with the lowest priority (niced to 19 on Linux), restricted
+ * to CPUs disjoint from the measured forks affinity: the CPUs declared with {@link #excludeCpus(CpuSet)}
+ * (eg: by a pinning profiler), or else the affinity of the submitting thread, that forks inherit. When no CPU
+ * is left (eg: forks are not pinned, or affinity is unknown), tasks do not run in background at all: they run
+ * when their result is first read or {@link #await awaited}, once JMH is done with the forks. Configuration:
+ * <ul>
+ * <li><code>jmh.postprocessing.threads</code>: number of worker threads, 1 by default,</li>
+ * <li><code>jmh.postprocessing.cpus</code>: CPUs the workers are restricted to (eg: <code>0,1</code>),
+ * overriding the forks affinity.</li>
+ * </ul>
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class PostProcessing {
+
+    private static final int THREADS = Math.max(1, getInteger("jmh.postprocessing.threads", 1));
+
+    private static final CpuSet CPUS = CpuSet.parse(getProperty("jmh.postprocessing.cpus"));
+
+    private static final int NICE = 19;
+
+    private static volatile CpuSet excluded = CpuSet.EMPTY;
+
+    private static final Queue<Future<?>> PENDING = new ConcurrentLinkedQueue<>();
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "jmh-postprocessing-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private static final ThreadLocal<Worker> WORKER = new ThreadLocal<Worker>() {
+        @Override
+        protected Worker initialValue() {
+            return new Worker();
+        }
+    };
+
+    private PostProcessing() {
+        // Static class
+    }
+
+    /**
+     * Declare CPUs used by measured forks, that post-processing must not run on.
+     *
+     * @param cpus CPUs to avoid, in addition to the previously excluded ones
+     */
+    public static void excludeCpus(final CpuSet cpus) {
+        synchronized (PostProcessing.class) {
+            excluded = excluded.union(cpus);
+        }
+    }
+
+    /**
+     * Submit a post-processing task.
+     *
+     * @param task task to run in background
+     * @param <T>  task result type
+     * @return task result
+     */
+    public static <T> Future<T> submit(final Callable<T> task) {
+        final CpuSet cpus = allowedCpus();
+        final Future<T> future;
+        if (cpus.isEmpty()) {
+            future = new LazyTask<>(task);
+        } else {
+            future = EXECUTOR.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    WORKER.get().prepare(cpus);
+                    return task.call();
+                }
+            });
+        }
+        for (Iterator<Future<?>> it = PENDING.iterator(); it.hasNext(); )
+            if (it.next().isDone()) it.remove();
+        PENDING.add(future);
+        return future;
+    }
+
+    /**
+     * Defer a task joining the results of other post-processing tasks. It runs in the thread first reading its
+     * result, once JMH is done with the forks, so that it does not hold a worker while waiting for the other tasks.
+     *
+     * @param task task to run when its result is read
+     * @param <T>  task result type
+     * @return task result
+     */
+    public static <T> Future<T> join(final Callable<T> task) {
+        final Future<T> future = new LazyTask<>(task);
+        PENDING.add(future);
+        return future;
+    }
+
+    /**
+     * Compute statistics in background.
+     *
+     * @param task task computing the statistics
+     * @return statistics, waiting for the task completion when read
+     */
+    public static DeferredStatistics defer(final Callable<? extends Statistics> task) {
+        return new DeferredStatistics(submit(task));
+    }
+
+    /**
+     * Wait for all the tasks submitted so far to complete.
+     *
+     * @param timeout max time to wait
+     * @param unit    timeout unit
+     * @return all the tasks completed in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static boolean await(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Future<?> future : PENDING) {
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                // Reported by the task future owner
+            } catch (TimeoutException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return CPUs post-processing threads should run on, empty if none is free from the measured forks
+     */
+    static CpuSet allowedCpus() {
+        if (!CPUS.isEmpty()) return CPUS;
+        final CpuSet online = CpuTopology.detect().online();
+        if (!excluded.isEmpty()) return online.minus(excluded);
+        final CpuSet inherited = AffinityUtils.getAffinity(AffinityUtils.currentThreadId());
+        return inherited != null ? online.minus(inherited) : CpuSet.EMPTY;
+    }
+
+    /**
+     * Task run by the first thread reading its result, when it could not run in background.
+     */
+    private static final class LazyTask<T> extends FutureTask<T> {
+
+        LazyTask(final Callable<T> task) {
+            super(task);
+        }
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            run();
+            return super.get();
+        }
+
+        @Override
+        public T get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            run();
+            return super.get(timeout, unit);
+        }
+    }
+
+    private static final class Worker {
+
+        private final long tid = AffinityUtils.currentThreadId();
+
+        private boolean niced;
+
+        private CpuSet cpus = CpuSet.EMPTY;
+
+        void prepare(final CpuSet allowed) {
+            if (tid < 0) return;
+            if (!niced) {
+                AffinityUtils.setNice(tid, NICE);
+                niced = true;
+            }
+            if (!allowed.equals(cpus) && AffinityUtils.setAffinity(tid, allowed))
+                cpus = allowed;
+        }
+    }
+}
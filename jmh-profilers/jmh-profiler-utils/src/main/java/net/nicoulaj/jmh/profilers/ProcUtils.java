@@ -0,0 +1,112 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Collections.emptyList;
+
+/**
+ * Static helpers for reading Linux <code>/proc</code> and <code>/sys</code> pseudo-files.
+ * <p/>
+ * All methods return {@code null} (or an empty list) when the file does not exist
+ * or cannot be read, so callers can degrade gracefully on other platforms.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class ProcUtils {
+
+    private ProcUtils() {
+        // Static class
+    }
+
+    /**
+     * Read a pseudo-file content.
+     *
+     * @param path file path
+     * @return trimmed file content, or {@code null} if not readable
+     */
+    public static String readString(final String path) {
+        return readString(Paths.get(path));
+    }
+
+    /**
+     * Read a pseudo-file content.
+     *
+     * @param path file path
+     * @return trimmed file content, or {@code null} if not readable
+     */
+    public static String readString(final Path path) {
+        try {
+            return new String(Files.readAllBytes(path), ISO_8859_1).trim();
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read a pseudo-file holding a single integer value.
+     *
+     * @param path file path
+     * @return file value, or {@code null} if not readable or not a number
+     */
+    public static Long readLong(final String path) {
+        final String value = readString(path);
+        if (value == null) return null;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read a pseudo-file lines.
+     *
+     * @param path file path
+     * @return file lines, or an empty list if not readable
+     */
+    public static List<String> readLines(final String path) {
+        try {
+            return Files.readAllLines(Paths.get(path), ISO_8859_1);
+        } catch (IOException | SecurityException e) {
+            return emptyList();
+        }
+    }
+
+    /**
+     * Extract the selected value of a sysfs multiple choice file (eg: <code>always [madvise] never</code>).
+     *
+     * @param path file path
+     * @return the value between brackets, the raw content if there is none, or {@code null} if not readable
+     */
+    public static String readSelected(final String path) {
+        final String value = readString(path);
+        if (value == null) return null;
+        final int start = value.indexOf('[');
+        final int end = value.indexOf(']', start + 1);
+        if (start < 0 || end < 0) return value;
+        return value.substring(start + 1, end);
+    }
+}
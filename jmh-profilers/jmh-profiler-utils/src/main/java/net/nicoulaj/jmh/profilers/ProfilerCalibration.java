@@ -0,0 +1,286 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.apache.commons.math3.distribution.TDistribution;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.Profiler;
+import org.openjdk.jmh.results.Aggregator;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.util.ListStatistics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static org.openjdk.jmh.results.AggregationPolicy.MAX;
+import static org.openjdk.jmh.results.ResultRole.SECONDARY;
+
+/**
+ * Measures the perturbation of a profiler on the benchmarks primary score.
+ * <p/>
+ * The benchmarks are run in single fork rounds alternating runs without and with the profiler (the order is
+ * swapped every round to cancel drifts of the host), then the relative overhead of the profiler on the primary
+ * score is estimated with a Welch confidence interval over the rounds. The profiled results are returned with
+ * an additional <code>@overhead</code> secondary result, flagged as unreliable if the overhead is above the
+ * configured maximum.
+ * <p/>
+ * Example:
+ * <pre>
+ * new ProfilerCalibration(options, YourkitProfiler.class).rounds(10).maxOverhead(0.02).run();
+ * </pre>
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class ProfilerCalibration {
+
+    private final Options options;
+
+    private final Class<? extends Profiler> profiler;
+
+    private String initLine = "";
+
+    private int rounds = 5;
+
+    private double confidence = 0.95;
+
+    private double maxOverhead = 0.05;
+
+    /**
+     * @param options  benchmarks options, without the profiler to calibrate
+     * @param profiler profiler to calibrate
+     */
+    public ProfilerCalibration(final Options options, final Class<? extends Profiler> profiler) {
+        this.options = options;
+        this.profiler = profiler;
+    }
+
+    /**
+     * @param initLine profiler init line, empty by default
+     * @return this calibration
+     */
+    public ProfilerCalibration initLine(final String initLine) {
+        this.initLine = initLine;
+        return this;
+    }
+
+    /**
+     * @param rounds number of forks run with and without the profiler, 5 by default
+     * @return this calibration
+     */
+    public ProfilerCalibration rounds(final int rounds) {
+        if (rounds < 1) throw new IllegalArgumentException("Rounds should be positive");
+        this.rounds = rounds;
+        return this;
+    }
+
+    /**
+     * @param confidence confidence level of the overhead interval, 0.95 by default
+     * @return this calibration
+     */
+    public ProfilerCalibration confidence(final double confidence) {
+        if (confidence <= 0 || confidence >= 1) throw new IllegalArgumentException("Confidence should be within ]0; 1[");
+        this.confidence = confidence;
+        return this;
+    }
+
+    /**
+     * @param maxOverhead relative overhead above which profiled results are flagged as unreliable, 0.05 by default
+     * @return this calibration
+     */
+    public ProfilerCalibration maxOverhead(final double maxOverhead) {
+        this.maxOverhead = maxOverhead;
+        return this;
+    }
+
+    /**
+     * Run the calibration.
+     *
+     * @return profiled results of all rounds, with an {@link OverheadResult}
+     * @throws RunnerException if a JMH run failed
+     */
+    public Collection<RunResult> run() throws RunnerException {
+
+        final Options baseline = builder().build();
+        final Options profiled = builder().addProfiler(profiler, initLine).build();
+
+        final Map<BenchmarkParams, ListStatistics> baselineScores = new LinkedHashMap<>();
+        final Map<BenchmarkParams, ListStatistics> profiledScores = new LinkedHashMap<>();
+        final Map<BenchmarkParams, List<BenchmarkResult>> profiledResults = new LinkedHashMap<>();
+        for (int round = 0; round < rounds; round++) {
+            if (round % 2 == 0) {
+                record(new Runner(baseline).run(), baselineScores, null);
+                record(new Runner(profiled).run(), profiledScores, profiledResults);
+            } else {
+                record(new Runner(profiled).run(), profiledScores, profiledResults);
+                record(new Runner(baseline).run(), baselineScores, null);
+            }
+        }
+
+        final List<RunResult> results = new ArrayList<>();
+        for (Map.Entry<BenchmarkParams, List<BenchmarkResult>> entry : profiledResults.entrySet()) {
+            final BenchmarkParams params = entry.getKey();
+            final ListStatistics base = baselineScores.get(params);
+            if (base == null) continue;
+            final OverheadResult overhead = overhead(params.getMode(), base, profiledScores.get(params));
+            entry.getValue().get(0).addBenchmarkResult(overhead);
+            results.add(new RunResult(params, entry.getValue()));
+        }
+        return results;
+    }
+
+    private ChainedOptionsBuilder builder() {
+        return new OptionsBuilder().parent(options).forks(1);
+    }
+
+    private static void record(final Collection<RunResult> runs,
+                               final Map<BenchmarkParams, ListStatistics> scores,
+                               final Map<BenchmarkParams, List<BenchmarkResult>> results) {
+        for (RunResult run : runs) {
+            ListStatistics statistics = scores.get(run.getParams());
+            if (statistics == null) scores.put(run.getParams(), statistics = new ListStatistics());
+            statistics.addValue(run.getPrimaryResult().getScore());
+            if (results == null) continue;
+            List<BenchmarkResult> benchmarkResults = results.get(run.getParams());
+            if (benchmarkResults == null) results.put(run.getParams(), benchmarkResults = new ArrayList<>());
+            benchmarkResults.addAll(run.getBenchmarkResults());
+        }
+    }
+
+    private OverheadResult overhead(final Mode mode, final ListStatistics baseline, final ListStatistics profiled) {
+
+        // Throughput is the only mode where the score increases with performance
+        final double sign = mode == Mode.Throughput ? -1 : 1;
+        final double mean = baseline.getMean();
+        final double overhead = sign * (profiled.getMean() - mean) / mean;
+
+        double lower = Double.NaN;
+        double upper = Double.NaN;
+        if (baseline.getN() > 1 && profiled.getN() > 1) {
+            final double vb = baseline.getVariance() / baseline.getN();
+            final double vp = profiled.getVariance() / profiled.getN();
+            final double error;
+            if (vb + vp == 0) {
+                error = 0;
+            } else {
+                final double df = (vb + vp) * (vb + vp)
+                        / (vb * vb / (baseline.getN() - 1) + vp * vp / (profiled.getN() - 1));
+                error = new TDistribution(df).inverseCumulativeProbability(1 - (1 - confidence) / 2)
+                        * Math.sqrt(vb + vp) / Math.abs(mean);
+            }
+            lower = overhead - error;
+            upper = overhead + error;
+        }
+
+        return new OverheadResult(profiler.getSimpleName(), overhead, lower, upper, confidence, maxOverhead);
+    }
+
+    /**
+     * Relative overhead of a profiler on the primary score, in percent.
+     *
+     * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+     */
+    public static final class OverheadResult extends Result<OverheadResult> implements Aggregator<OverheadResult> {
+
+        private static final long serialVersionUID = -2409453370937284478L;
+
+        private final String profiler;
+
+        private final double overhead;
+
+        private final double lower;
+
+        private final double upper;
+
+        private final double confidence;
+
+        private final double maxOverhead;
+
+        OverheadResult(final String profiler,
+                       final double overhead,
+                       final double lower,
+                       final double upper,
+                       final double confidence,
+                       final double maxOverhead) {
+            super(SECONDARY, "@overhead", of(overhead * 100), "%", MAX);
+            this.profiler = profiler;
+            this.overhead = overhead;
+            this.lower = lower;
+            this.upper = upper;
+            this.confidence = confidence;
+            this.maxOverhead = maxOverhead;
+        }
+
+        /**
+         * @return relative overhead, positive when the profiler slows the benchmark down
+         */
+        public double getOverhead() {
+            return overhead;
+        }
+
+        /**
+         * @return overhead confidence interval, {@code NaN} bounds if there were not enough rounds
+         */
+        public double[] getConfidenceInterval() {
+            return new double[]{lower, upper};
+        }
+
+        /**
+         * @return the overhead is within the configured maximum
+         */
+        public boolean isReliable() {
+            return overhead <= maxOverhead;
+        }
+
+        @Override
+        protected Aggregator<OverheadResult> getThreadAggregator() {
+            return this;
+        }
+
+        @Override
+        protected Aggregator<OverheadResult> getIterationAggregator() {
+            return this;
+        }
+
+        @Override
+        public OverheadResult aggregate(final Collection<OverheadResult> results) {
+            return results.iterator().next();
+        }
+
+        @Override
+        protected String simpleExtendedInfo() {
+            final StringBuilder info = new StringBuilder(format("%s overhead: %+.2f%% [%+.2f%%, %+.2f%%] (%.0f%% confidence)%n",
+                                                                profiler, overhead * 100, lower * 100, upper * 100, confidence * 100));
+            if (!isReliable())
+                info.append(format("WARNING: %s overhead is above %.2f%%, profiled results are unreliable%n", profiler, maxOverhead * 100));
+            return info.toString();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.ProfilerException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Typed profiler options, parsed from the JMH profiler init line
+ * (<code>-prof name:key=value;other=value</code>).
+ * <p/>
+ * An option value is resolved in this order:
+ * <ol>
+ * <li>the last <code>key@regex=value</code> entry of the init line whose regex is found in the benchmark name,</li>
+ * <li>the last <code>key=value</code> entry of the init line,</li>
+ * <li>the <code>jmh.&lt;profiler&gt;.&lt;key&gt;</code> system property of the host JVM,</li>
+ * <li>the option default value.</li>
+ * </ol>
+ * This allows to tune a profiler for a specific benchmark of a suite, eg:
+ * <code>-prof 'net.nicoulaj.jmh.profilers.YourkitProfiler:sampling=true;alloceach@.*Encoder.*=1'</code>.
+ * <p/>
+ * Profilers should expose a public <code>(String initLine)</code> constructor, that JMH calls with the init line.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class ProfilerOptions {
+
+    private final String name;
+
+    private final Map<String, Option<?>> options;
+
+    private final List<Entry> entries;
+
+    /**
+     * Parse a profiler init line.
+     *
+     * @param name    profiler name, used for system properties (<code>jmh.&lt;name&gt;.&lt;key&gt;</code>) and messages
+     * @param initLine profiler init line, may be {@code null} or empty
+     * @param options supported options
+     * @throws ProfilerException if the init line is malformed, holds unknown options or invalid values,
+     *                           or if <code>help</code> was requested
+     */
+    public ProfilerOptions(final String name, final String initLine, final Collection<? extends Option<?>> options) throws ProfilerException {
+        this.name = name;
+        this.options = new LinkedHashMap<>();
+        for (Option<?> option : options)
+            this.options.put(option.getName(), option);
+        this.entries = new ArrayList<>();
+
+        if (initLine == null) return;
+        for (String token : initLine.split(";")) {
+            if (token.trim().isEmpty()) continue;
+            if (token.trim().equals("help")) throw new ProfilerException(help());
+
+            final int equals = token.indexOf('=');
+            if (equals < 0)
+                throw new ProfilerException("Invalid option '" + token + "' for " + name + " profiler, expected key=value\n" + help());
+
+            String key = token.substring(0, equals).trim();
+            final String value = token.substring(equals + 1).trim();
+            Pattern benchmark = null;
+            final int at = key.indexOf('@');
+            if (at >= 0) {
+                try {
+                    benchmark = Pattern.compile(key.substring(at + 1));
+                } catch (PatternSyntaxException e) {
+                    throw new ProfilerException("Invalid benchmark regex in option '" + token + "' for " + name + " profiler: " + e.getMessage());
+                }
+                key = key.substring(0, at);
+            }
+
+            final Option<?> option = this.options.get(key);
+            if (option == null)
+                throw new ProfilerException("Unknown option '" + key + "' for " + name + " profiler\n" + help());
+            try {
+                option.parse(value);
+            } catch (IllegalArgumentException e) {
+                throw new ProfilerException("Invalid value '" + value + "' for option '" + key + "' of " + name + " profiler: " + e.getMessage());
+            }
+
+            entries.add(new Entry(key, benchmark, value));
+        }
+    }
+
+    /**
+     * Resolve an option value, ignoring benchmark specific entries.
+     *
+     * @param option option to resolve
+     * @param <T>    option type
+     * @return option value, may be {@code null} if the option has no default value
+     */
+    public <T> T get(final Option<T> option) {
+        return get(option, (String) null);
+    }
+
+    /**
+     * Resolve an option value for a given benchmark.
+     *
+     * @param option option to resolve
+     * @param params benchmark parameters
+     * @param <T>    option type
+     * @return option value, may be {@code null} if the option has no default value
+     */
+    public <T> T get(final Option<T> option, final BenchmarkParams params) {
+        return get(option, params != null ? params.getBenchmark() : null);
+    }
+
+    /**
+     * Resolve an option value for a given benchmark.
+     *
+     * @param option    option to resolve
+     * @param benchmark benchmark name, may be {@code null}
+     * @param <T>       option type
+     * @return option value, may be {@code null} if the option has no default value
+     */
+    public <T> T get(final Option<T> option, final String benchmark) {
+        if (!options.containsKey(option.getName()))
+            throw new IllegalArgumentException("Option '" + option.getName() + "' is not declared for " + name + " profiler");
+
+        String scoped = null;
+        String global = null;
+        for (Entry entry : entries) {
+            if (!entry.key.equals(option.getName())) continue;
+            if (entry.benchmark == null) global = entry.value;
+            else if (benchmark != null && entry.benchmark.matcher(benchmark).find()) scoped = entry.value;
+        }
+        if (scoped != null) return option.parse(scoped);
+        if (global != null) return option.parse(global);
+
+        final String property = System.getProperty(getSystemProperty(option));
+        if (property != null) {
+            try {
+                return option.parse(property);
+            } catch (IllegalArgumentException e) {
+                // Fallback to default, as System.getProperty() friends do
+            }
+        }
+        return option.getDefaultValue();
+    }
+
+    /**
+     * @param option option
+     * @return name of the system property used as fallback for this option
+     */
+    public String getSystemProperty(final Option<?> option) {
+        return "jmh." + name + "." + option.getName();
+    }
+
+    private String help() {
+        final StringBuilder help = new StringBuilder("Supported options for ").append(name).append(" profiler")
+                .append(" (key=value or key@benchmark-regex=value, separated by ';'):\n");
+        for (Option<?> option : options.values()) {
+            help.append("  ").append(option.getName());
+            if (option.getDefaultValue() != null) help.append(" (default: ").append(option.getDefaultValue()).append(")");
+            help.append(", or -D").append(getSystemProperty(option)).append('\n');
+        }
+        return help.toString();
+    }
+
+    /**
+     * Declare a string option.
+     *
+     * @param name         option name
+     * @param defaultValue default value, may be {@code null}
+     * @return option
+     */
+    public static Option<String> stringOption(final String name, final String defaultValue) {
+        return new Option<String>(name, defaultValue) {
+            @Override
+            String parse(final String value) {
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Declare a boolean option, accepting <code>true</code> or <code>false</code>.
+     *
+     * @param name         option name
+     * @param defaultValue default value, may be {@code null}
+     * @return option
+     */
+    public static Option<Boolean> booleanOption(final String name, final Boolean defaultValue) {
+        return new Option<Boolean>(name, defaultValue) {
+            @Override
+            Boolean parse(final String value) {
+                if (value.equalsIgnoreCase("true")) return true;
+                if (value.equalsIgnoreCase("false")) return false;
+                throw new IllegalArgumentException("expected true or false");
+            }
+        };
+    }
+
+    /**
+     * Declare an integer option.
+     *
+     * @param name         option name
+     * @param defaultValue default value, may be {@code null}
+     * @return option
+     */
+    public static Option<Integer> integerOption(final String name, final Integer defaultValue) {
+        return new Option<Integer>(name, defaultValue) {
+            @Override
+            Integer parse(final String value) {
+                return Integer.valueOf(value);
+            }
+        };
+    }
+
+    /**
+     * Declare a long option.
+     *
+     * @param name         option name
+     * @param defaultValue default value, may be {@code null}
+     * @return option
+     */
+    public static Option<Long> longOption(final String name, final Long defaultValue) {
+        return new Option<Long>(name, defaultValue) {
+            @Override
+            Long parse(final String value) {
+                return Long.valueOf(value);
+            }
+        };
+    }
+
+    /**
+     * Declare a floating point option.
+     *
+     * @param name         option name
+     * @param defaultValue default value, may be {@code null}
+     * @return option
+     */
+    public static Option<Double> doubleOption(final String name, final Double defaultValue) {
+        return new Option<Double>(name, defaultValue) {
+            @Override
+            Double parse(final String value) {
+                return Double.valueOf(value);
+            }
+        };
+    }
+
+    /**
+     * A typed profiler option declaration.
+     *
+     * @param <T> option type
+     * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+     */
+    public abstract static class Option<T> {
+
+        private final String name;
+
+        private final T defaultValue;
+
+        Option(final String name, final T defaultValue) {
+            this.name = name;
+            this.defaultValue = defaultValue;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public T getDefaultValue() {
+            return defaultValue;
+        }
+
+        /**
+         * @param value raw value
+         * @return parsed value
+         * @throws IllegalArgumentException if the value is invalid
+         */
+        abstract T parse(String value);
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final class Entry {
+
+        final String key;
+
+        final Pattern benchmark;
+
+        final String value;
+
+        Entry(final String key, final Pattern benchmark, final String value) {
+            this.key = key;
+            this.benchmark = benchmark;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.Profiler;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs heavy profilers in dedicated forks, so that the measured forks stay unperturbed.
+ * <p/>
+ * The benchmarks are first run with the given options, then once more per profiler in additional forks
+ * carrying only that profiler, without writing to the measurement output and result files. The secondary
+ * results of the profiling forks that the measurement results do not already have are attached to them,
+ * while their primary scores are discarded.
+ * <p/>
+ * Example:
+ * <pre>
+ * new ProfilingForks(options)
+ *     .addProfiler(YourkitProfiler.class, "sampling=true")
+ *     .addProfiler(FlightRecorderProfiler.class)
+ *     .run();
+ * </pre>
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public final class ProfilingForks {
+
+    private final Options options;
+
+    private final Map<Class<? extends Profiler>, String> profilers = new LinkedHashMap<>();
+
+    private int forks = 1;
+
+    /**
+     * @param options measurement options, without the profilers to run in dedicated forks
+     */
+    public ProfilingForks(final Options options) {
+        this.options = options;
+    }
+
+    /**
+     * @param profiler profiler to run in dedicated forks
+     * @return this run
+     */
+    public ProfilingForks addProfiler(final Class<? extends Profiler> profiler) {
+        return addProfiler(profiler, "");
+    }
+
+    /**
+     * @param profiler profiler to run in dedicated forks
+     * @param initLine profiler init line
+     * @return this run
+     */
+    public ProfilingForks addProfiler(final Class<? extends Profiler> profiler, final String initLine) {
+        profilers.put(profiler, initLine);
+        return this;
+    }
+
+    /**
+     * @param forks number of profiling forks per profiler and benchmark, 1 by default
+     * @return this run
+     */
+    public ProfilingForks forks(final int forks) {
+        if (forks < 1) throw new IllegalArgumentException("Forks should be positive");
+        this.forks = forks;
+        return this;
+    }
+
+    /**
+     * Run the benchmarks.
+     *
+     * @return measurement results, with the profiling forks secondary results
+     * @throws RunnerException if a JMH run failed
+     */
+    public Collection<RunResult> run() throws RunnerException {
+
+        final Collection<RunResult> results = new Runner(options).run();
+
+        for (Map.Entry<Class<? extends Profiler>, String> profiler : profilers.entrySet()) {
+            final Options profiled = new ProfilingOptions(options, new ProfilerConfig(profiler.getKey().getCanonicalName(), profiler.getValue()), forks);
+
+            final Map<BenchmarkParams, RunResult> profiledResults = new HashMap<>();
+            for (RunResult result : new Runner(profiled).run())
+                profiledResults.put(result.getParams(), result);
+
+            for (RunResult result : results) {
+                final RunResult profiledResult = profiledResults.get(result.getParams());
+                if (profiledResult == null || result.getBenchmarkResults().isEmpty()) continue;
+                final BenchmarkResult target = result.getBenchmarkResults().iterator().next();
+                // Benchmark level results override iteration ones with the same label, so only add the
+                // profiler own results, not profiled copies of measured ones (other profilers, groups, counters)
+                final Set<String> measured = new HashSet<>(result.getSecondaryResults().keySet());
+                for (Result secondary : new ArrayList<>(profiledResult.getSecondaryResults().values()))
+                    if (!secondary.getRole().isDerivative() && !measured.contains(secondary.getLabel()))
+                        target.addBenchmarkResult(secondary);
+            }
+        }
+
+        return results;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.openjdk.jmh.runner.options.WarmupMode;
+import org.openjdk.jmh.util.Optional;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Options of the profiling forks run by {@link ProfilingForks}.
+ * <p/>
+ * {@link org.openjdk.jmh.runner.options.OptionsBuilder#parent(Options)} merges profilers with the parent ones,
+ * so this delegates to the measurement options instead, with only the given profiler, and without the
+ * measurement output and result files, that would otherwise be overwritten.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+final class ProfilingOptions implements Options {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Options options;
+
+    private final ProfilerConfig profiler;
+
+    private final int forks;
+
+    /**
+     * @param options  measurement options
+     * @param profiler profiler to run
+     * @param forks    number of forks
+     */
+    ProfilingOptions(final Options options, final ProfilerConfig profiler, final int forks) {
+        this.options = options;
+        this.profiler = profiler;
+        this.forks = forks;
+    }
+
+    @Override
+    public List<String> getIncludes() {
+        return options.getIncludes();
+    }
+
+    @Override
+    public List<String> getExcludes() {
+        return options.getExcludes();
+    }
+
+    @Override
+    public Optional<String> getOutput() {
+        return Optional.none();
+    }
+
+    @Override
+    public Optional<ResultFormatType> getResultFormat() {
+        return Optional.none();
+    }
+
+    @Override
+    public Optional<String> getResult() {
+        return Optional.none();
+    }
+
+    @Override
+    public Optional<Boolean> shouldDoGC() {
+        return options.shouldDoGC();
+    }
+
+    @Override
+    public List<ProfilerConfig> getProfilers() {
+        return Collections.singletonList(profiler);
+    }
+
+    @Override
+    public Optional<VerboseMode> verbosity() {
+        return options.verbosity();
+    }
+
+    @Override
+    public Optional<Boolean> shouldFailOnError() {
+        return options.shouldFailOnError();
+    }
+
+    @Override
+    public Optional<Integer> getThreads() {
+        return options.getThreads();
+    }
+
+    @Override
+    public Optional<int[]> getThreadGroups() {
+        return options.getThreadGroups();
+    }
+
+    @Override
+    public Optional<Boolean> shouldSyncIterations() {
+        return options.shouldSyncIterations();
+    }
+
+    @Override
+    public Optional<Integer> getWarmupIterations() {
+        return options.getWarmupIterations();
+    }
+
+    @Override
+    public Optional<TimeValue> getWarmupTime() {
+        return options.getWarmupTime();
+    }
+
+    @Override
+    public Optional<Integer> getWarmupBatchSize() {
+        return options.getWarmupBatchSize();
+    }
+
+    @Override
+    public Optional<WarmupMode> getWarmupMode() {
+        return options.getWarmupMode();
+    }
+
+    @Override
+    public List<String> getWarmupIncludes() {
+        return options.getWarmupIncludes();
+    }
+
+    @Override
+    public Optional<Integer> getMeasurementIterations() {
+        return options.getMeasurementIterations();
+    }
+
+    @Override
+    public Optional<TimeValue> getMeasurementTime() {
+        return options.getMeasurementTime();
+    }
+
+    @Override
+    public Optional<Integer> getMeasurementBatchSize() {
+        return options.getMeasurementBatchSize();
+    }
+
+    @Override
+    public Collection<Mode> getBenchModes() {
+        return options.getBenchModes();
+    }
+
+    @Override
+    public Optional<TimeUnit> getTimeUnit() {
+        return options.getTimeUnit();
+    }
+
+    @Override
+    public Optional<Integer> getOperationsPerInvocation() {
+        return options.getOperationsPerInvocation();
+    }
+
+    @Override
+    public Optional<Integer> getForkCount() {
+        return Optional.of(forks);
+    }
+
+    @Override
+    public Optional<Integer> getWarmupForkCount() {
+        return Optional.of(0);
+    }
+
+    @Override
+    public Optional<String> getJvm() {
+        return options.getJvm();
+    }
+
+    @Override
+    public Optional<Collection<String>> getJvmArgs() {
+        return options.getJvmArgs();
+    }
+
+    @Override
+    public Optional<Collection<String>> getJvmArgsAppend() {
+        return options.getJvmArgsAppend();
+    }
+
+    @Override
+    public Optional<Collection<String>> getJvmArgsPrepend() {
+        return options.getJvmArgsPrepend();
+    }
+
+    @Override
+    public Optional<Collection<String>> getParameter(final String name) {
+        return options.getParameter(name);
+    }
+
+    @Override
+    public Optional<TimeValue> getTimeout() {
+        return options.getTimeout();
+    }
+}
@@ -68,6 +68,8 @@ public final class StringUtils {
 
     /**
      * Read an {@link InputStream}  into a {@link String}.
+     * <p/>
+     * Only suitable for small outputs, use {@link LineUtils} to parse large ones.
      *
      * @param inputStream input stream
      * @return output string
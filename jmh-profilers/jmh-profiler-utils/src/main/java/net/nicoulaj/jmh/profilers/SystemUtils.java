@@ -18,6 +18,8 @@
  */
 package net.nicoulaj.jmh.profilers;
 
+import java.io.File;
+
 import static java.lang.System.getProperty;
 
 /**
@@ -65,6 +67,18 @@ public final class SystemUtils {
         return val;
     }
 
+    /**
+     * @param command executable name
+     * @return whether an executable with this name is found in the <code>PATH</code>
+     */
+    public static boolean isCommandAvailable(final String command) {
+        final String path = System.getenv("PATH");
+        if (path == null) return false;
+        for (String dir : path.split(File.pathSeparator))
+            if (!dir.isEmpty() && new File(dir, command).canExecute()) return true;
+        return false;
+    }
+
     /**
      * A Java Virtual Machine.
      *
@@ -94,9 +108,13 @@ public final class SystemUtils {
         UNKNOWN;
 
         public static JVM getJVM() {
-            // FIXME This is totally broken, only HotSpot is detected
-            final String osname = getProperty("java.vm.name", "unknown").toLowerCase();
-            if (osname.matches(".*(openjdk|hotspot).*")) return HOTSPOT;
+            final String vmname = getProperty("java.vm.name", "unknown").toLowerCase();
+            final String vendor = getProperty("java.vm.vendor", "unknown").toLowerCase();
+            if (vmname.contains("graal")) return GRAAL;
+            if (vmname.contains("jrockit")) return JROCKIT;
+            if (vmname.contains("zing") || (vendor.contains("azul") && !vmname.matches(".*(openjdk|hotspot).*"))) return ZING;
+            if (vmname.contains("j9") || vmname.contains("openj9") || vendor.contains("ibm")) return J9;
+            if (vmname.matches(".*(openjdk|hotspot).*")) return HOTSPOT;
             return UNKNOWN;
         }
     }
@@ -136,12 +154,14 @@ public final class SystemUtils {
         UNKNOWN;
 
         public static OperatingSystem getOS() {
-            // FIXME This is totally broken, at least HP-UX, AIX and FreeBSD are missing
             final String osname = getProperty("os.name", "unknown").toLowerCase();
             if (osname.startsWith("windows")) return WINDOWS;
             if (osname.startsWith("linux")) return LINUX;
-            if (osname.startsWith("sunos")) return SOLARIS;
+            if (osname.startsWith("sunos") || osname.startsWith("solaris")) return SOLARIS;
             if (osname.startsWith("mac") || osname.startsWith("darwin")) return MAC;
+            if (osname.startsWith("hp-ux")) return HP_UX;
+            if (osname.startsWith("aix")) return AIX;
+            if (osname.startsWith("freebsd")) return FREEBSD;
             return UNKNOWN;
         }
     }
@@ -159,6 +179,7 @@ public final class SystemUtils {
         X86,
         AMD64,
         ARM,
+        AARCH64,
         PPC,
         PPC64,
         SPARC,
@@ -166,7 +187,6 @@ public final class SystemUtils {
         UNKNOWN;
 
         public static Architecture getArch() {
-            // FIXME "Works on my machine"
             switch (getProperty("os.arch", "unknown").toLowerCase()) {
             case "x86":
             case "i386":
@@ -177,10 +197,25 @@ public final class SystemUtils {
             case "x86_64":
             case "amd64":
                 return AMD64;
+            case "arm":
+            case "armv7l":
+                return ARM;
+            case "aarch64":
+            case "arm64":
+                return AARCH64;
             case "sparc":
+            case "sparcv9":
                 return SPARC;
             case "ppc":
+            case "powerpc":
                 return PPC;
+            case "ppc64":
+            case "ppc64le":
+                return PPC64;
+            case "ia64":
+            case "ia64n":
+            case "ia64w":
+                return IA64;
             }
             return UNKNOWN;
         }
@@ -206,13 +241,23 @@ public final class SystemUtils {
         UNKNOWN;
 
         public static Bitness getBitness() {
-            // FIXME Probably only works on Hotspot
-            switch (getProperty("sun.arch.data.model", "unknown")) {
+            // sun.arch.data.model is HotSpot specific, J9 exposes com.ibm.vm.bitmode
+            switch (getProperty("sun.arch.data.model", getProperty("com.ibm.vm.bitmode", "unknown"))) {
             case "32":
                 return BITS_32;
             case "64":
                 return BITS_64;
             }
+            switch (Architecture.getArch()) {
+            case AMD64:
+            case AARCH64:
+            case PPC64:
+                return BITS_64;
+            case X86:
+            case ARM:
+            case PPC:
+                return BITS_32;
+            }
             return UNKNOWN;
         }
     }
@@ -0,0 +1,57 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Test for {@link AffinityUtils}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class AffinityUtilsTest {
+
+    @Test
+    public void test001() {
+
+        assertThat(AffinityUtils.parseThreadDump(
+                "Full thread dump OpenJDK 64-Bit Server VM (17.0.9+9 mixed mode, sharing):\n\n" +
+                "\"main\" #1 prio=5 os_prio=0 cpu=219.03ms elapsed=0.59s tid=0x00007f17d8024ef0 nid=0x3704 waiting on condition  [0x00007f17de31e000]\n" +
+                "   java.lang.Thread.State: TIMED_WAITING (sleeping)\n" +
+                "\"a.B.c-jmh-worker-1\" #12 prio=5 os_prio=0 cpu=0.14ms elapsed=0.51s tid=0x00007f17d80ba040 nid=14097 runnable  [0x00007f17dcd71000]\n" +
+                "\"VM Thread\" os_prio=0 cpu=0.79ms elapsed=0.60s tid=0x00007f17d80a4e70 nid=0x3709 runnable\n"))
+                .containsExactly(entry("main", 0x3704L), entry("a.B.c-jmh-worker-1", 14097L), entry("VM Thread", 0x3709L));
+    }
+
+    @Test
+    public void test002() {
+
+        assertThat(AffinityUtils.parseLastCpu(
+                "14097 (a.B.c (x) y) R 14000 14000 1 0 -1 4194368 120 0 0 0 51 2 0 0 20 0 21 0 3360 5000000 4000 " +
+                "18446744073709551615 1 1 0 0 0 0 4 0 16898 0 0 0 -1 7 0 0 0 0 0 0 0 0 0 0 0 0 0\n"))
+                .isEqualTo(7);
+        assertThat(AffinityUtils.parseLastCpu("14097 (java) S 1 2 3")).isEqualTo(-1);
+        assertThat(AffinityUtils.parseLastCpu(null)).isEqualTo(-1);
+        if (AffinityUtils.currentThreadId() > 0)
+            assertThat(AffinityUtils.lastCpu(AffinityUtils.currentThreadId())).isGreaterThanOrEqualTo(0);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.testng.annotations.Test;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openjdk.jmh.results.AggregationPolicy.AVG;
+import static org.openjdk.jmh.results.AggregationPolicy.MAX;
+import static org.openjdk.jmh.results.AggregationPolicy.SUM;
+
+/**
+ * Test for {@link AggregatingResult} and {@link ArtifactResult}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class AggregatingResultTest {
+
+    @Test
+    public void test001() {
+
+        final AggregatingResult sum = new AggregatingResult("gc.count", 2, "counts", SUM).getIterationAggregator().aggregate(asList(
+                new AggregatingResult("gc.count", 2, "counts", SUM),
+                new AggregatingResult("gc.count", 3, "counts", SUM),
+                new AggregatingResult("gc.count", 5, "counts", SUM)));
+        assertThat(sum.getScore()).isEqualTo(10);
+        assertThat(sum.getSampleCount()).isEqualTo(3);
+
+        final AggregatingResult avg = new AggregatingResult("alloc", 0, "MB/s", AVG).getIterationAggregator().aggregate(asList(
+                new AggregatingResult("alloc", 100, "MB/s", AVG),
+                new AggregatingResult("alloc", 110, "MB/s", AVG),
+                new AggregatingResult("alloc", 90, "MB/s", AVG),
+                new AggregatingResult("alloc", 100, "MB/s", AVG)));
+        assertThat(avg.getScore()).isEqualTo(100);
+        assertThat(avg.getScoreError()).isGreaterThan(0);
+        assertThat(avg.getZeroResult().getScore()).isEqualTo(0);
+    }
+
+    @Test
+    public void test002() {
+
+        final HistogramStatistics first = new HistogramStatistics();
+        final HistogramStatistics second = new HistogramStatistics();
+        for (int i = 1; i <= 50; i++) first.addValue(i);
+        for (int i = 51; i <= 100; i++) second.addValue(i);
+
+        final AggregatingResult merged = new AggregatingResult("pause", first, "ms", MAX).getIterationAggregator().aggregate(asList(
+                new AggregatingResult("pause", first, "ms", MAX),
+                new AggregatingResult("pause", second, "ms", MAX)));
+        assertThat(merged.isDistribution()).isTrue();
+        assertThat(merged.getScore()).isEqualTo(100);
+        assertThat(merged.getSampleCount()).isEqualTo(100);
+        assertThat(merged.getStatistics().getPercentile(50)).isEqualTo(50.5);
+        assertThat(merged.extendedInfo()).contains("N = 100");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void test003() {
+        new AggregatingResult("alloc", 0, "MB/s", AVG).getIterationAggregator().aggregate(asList(
+                new AggregatingResult("alloc", 100, "MB/s", AVG),
+                new AggregatingResult("alloc", 100, "B/op", AVG)));
+    }
+
+    @Test
+    public void test004() {
+
+        final ArtifactResult artifacts = new ArtifactResult("@jfr", "Recording", "a.jfr").aggregate(asList(
+                new ArtifactResult("@jfr", "Recording", "a.jfr"),
+                new ArtifactResult("@jfr", "Recording", "b.jfr", "a.jfr")));
+        assertThat(artifacts.getPaths()).containsExactly("a.jfr", "b.jfr");
+        assertThat(artifacts.getScore()).isEqualTo(2);
+        assertThat(artifacts.extendedInfo()).contains("Recording at ").contains("b.jfr");
+    }
+
+    @Test
+    public void test005() throws Exception {
+
+        final AtomicInteger runs = new AtomicInteger();
+        final Future<Collection<String>> paths = PostProcessing.join(new Callable<Collection<String>>() {
+            @Override
+            public Collection<String> call() {
+                runs.incrementAndGet();
+                return asList("a.svg", "b.svg");
+            }
+        });
+        final ArtifactResult deferred = new ArtifactResult("@jfr.flamegraph", "Flame graph", paths);
+        final ArtifactResult artifacts = deferred.aggregate(asList(deferred, new ArtifactResult("@jfr.flamegraph", "Flame graph", "c.svg")));
+        assertThat(artifacts.extendedInfo()).contains("being generated");
+        assertThat(runs.get()).isEqualTo(0);
+
+        assertThat(artifacts.getScore()).isEqualTo(3);
+        assertThat(artifacts.getPaths()).containsExactly("a.svg", "b.svg", "c.svg");
+        assertThat(artifacts.extendedInfo()).contains("Flame graph at ").contains("c.svg");
+        assertThat(runs.get()).isEqualTo(1);
+    }
+}
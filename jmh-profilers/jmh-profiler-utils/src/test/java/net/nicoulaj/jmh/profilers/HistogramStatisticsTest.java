@@ -0,0 +1,105 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.openjdk.jmh.util.ListStatistics;
+import org.testng.annotations.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Test for {@link HistogramStatistics}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class HistogramStatisticsTest {
+
+    @Test
+    public void test001() {
+
+        final Random random = new Random(42);
+        final HistogramStatistics histogram = new HistogramStatistics();
+        final ListStatistics reference = new ListStatistics();
+        for (int i = 0; i < 100000; i++) {
+            final long value = (long) Math.exp(random.nextGaussian() * 2 + 10);
+            histogram.addValue(value);
+            reference.addValue(value);
+        }
+
+        assertThat(histogram.getN()).isEqualTo(reference.getN());
+        assertThat(histogram.getMin()).isEqualTo(reference.getMin());
+        assertThat(histogram.getMax()).isEqualTo(reference.getMax());
+        assertThat(histogram.getSum()).isCloseTo(reference.getSum(), within(reference.getSum() * 1e-12));
+        assertThat(histogram.getMean()).isCloseTo(reference.getMean(), within(reference.getMean() * 1e-9));
+        assertThat(histogram.getVariance()).isCloseTo(reference.getVariance(), within(reference.getVariance() * 1e-9));
+        for (double rank : new double[]{1, 10, 50, 90, 99, 99.9})
+            assertThat(histogram.getPercentile(rank)).isCloseTo(reference.getPercentile(rank), offset(reference.getPercentile(rank) / 64));
+        assertThat(histogram.getPercentile(0)).isEqualTo(reference.getMin());
+        assertThat(histogram.getPercentile(100)).isEqualTo(reference.getMax());
+    }
+
+    @Test
+    public void test002() {
+
+        final HistogramStatistics all = new HistogramStatistics();
+        final HistogramStatistics[] parts = {new HistogramStatistics(), new HistogramStatistics(), new HistogramStatistics()};
+        for (long i = 0; i < 30000; i++) {
+            all.addValue(i * i);
+            parts[(int) (i % parts.length)].addValue(i * i);
+        }
+        final HistogramStatistics merged = new HistogramStatistics().merge(parts[0]).merge(parts[1]).merge(parts[2]);
+
+        assertThat(merged.getN()).isEqualTo(all.getN());
+        assertThat(merged.getMin()).isEqualTo(all.getMin());
+        assertThat(merged.getMax()).isEqualTo(all.getMax());
+        assertThat(merged.getVariance()).isCloseTo(all.getVariance(), within(all.getVariance() * 1e-9));
+
+        final Iterator<Map.Entry<Double, Long>> expected = all.getRawData();
+        final Iterator<Map.Entry<Double, Long>> actual = merged.getRawData();
+        long count = 0;
+        while (expected.hasNext()) {
+            final Map.Entry<Double, Long> entry = expected.next();
+            assertThat(actual.next()).isEqualTo(entry);
+            count += entry.getValue();
+        }
+        assertThat(actual.hasNext()).isFalse();
+        assertThat(count).isEqualTo(all.getN());
+    }
+
+    @Test
+    public void test003() {
+
+        final HistogramStatistics histogram = new HistogramStatistics(4);
+        histogram.addValue(0);
+        histogram.addValue(3, 2);
+        histogram.addValue(1000);
+        histogram.addValue(Long.MAX_VALUE);
+
+        assertThat(histogram.getN()).isEqualTo(5);
+        assertThat(histogram.getHistogram(new double[]{0, 1, 10, 2000})).containsExactly(1, 2, 1);
+        assertThat(new HistogramStatistics().getPercentile(50)).isNaN();
+        assertThat(new HistogramStatistics().getMean()).isNaN();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.newBufferedWriter;
+import static java.nio.file.Files.write;
+import static java.nio.file.Paths.get;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link LineUtils} and {@link Line}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class LineUtilsTest {
+
+    private static final String CONTENT = "first line\r\n\nsecond;42;-1.5\nthird é\nunterminated";
+
+    @Test
+    public void test001() throws Exception {
+
+        final List<String> fromStream = new ArrayList<>();
+        LineUtils.forEachLine(new ByteArrayInputStream(CONTENT.getBytes(UTF_8)), line -> fromStream.add(line.decode()));
+
+        createDirectories(get("target"));
+        final Path file = createTempFile(get("target"), "lines-", ".txt");
+        write(file, CONTENT.getBytes(UTF_8));
+        final List<String> fromFile = new ArrayList<>();
+        LineUtils.forEachLine(file, line -> fromFile.add(line.decode()));
+
+        assertThat(fromStream).containsExactly("first line", "", "second;42;-1.5", "third é", "unterminated");
+        assertThat(fromFile).isEqualTo(fromStream);
+
+        LineUtils.forEachLine(new ByteArrayInputStream("third é".getBytes(UTF_8)), line -> {
+            assertThat(line.toString()).hasSize(line.length());
+            assertThat(line.subSequence(6, line.length()).toString()).isEqualTo(line.substring(6, line.length()));
+            assertThat(line.decode(6, line.length())).isEqualTo("é");
+        });
+    }
+
+    @Test
+    public void test002() throws Exception {
+
+        LineUtils.forEachLine(new ByteArrayInputStream("second;42;-1.5;1e3".getBytes(UTF_8)), line -> {
+            assertThat(line.startsWith("second")).isTrue();
+            final int first = line.indexOf(';', 0);
+            final int second = line.indexOf(';', first + 1);
+            final int third = line.lastIndexOf(';');
+            assertThat(line.parseLong(first + 1, second)).isEqualTo(42);
+            assertThat(line.parseDouble(second + 1, third)).isEqualTo(-1.5);
+            assertThat(line.parseDouble(third + 1, line.length())).isEqualTo(1000);
+            assertThat(line.indexOf("42", 0)).isEqualTo(first + 1);
+        });
+    }
+
+    @Test
+    public void test003() throws Exception {
+
+        createDirectories(get("target"));
+        final Path file = createTempFile(get("target"), "lines-", ".txt");
+        long expected = 0;
+        try (Writer writer = newBufferedWriter(file, UTF_8)) {
+            for (int i = 0; i < 1000000; i++) {
+                writer.write("sample " + i + "\n");
+                expected += i;
+            }
+        }
+
+        final List<SumHandler> handlers = LineUtils.forEachLine(file, 4, SumHandler::new);
+
+        assertThat(handlers.size()).isGreaterThan(1);
+        long sum = 0;
+        long count = 0;
+        for (SumHandler handler : handlers) {
+            sum += handler.sum;
+            count += handler.count;
+        }
+        assertThat(count).isEqualTo(1000000);
+        assertThat(sum).isEqualTo(expected);
+    }
+
+    private static final class SumHandler implements LineHandler {
+
+        long sum;
+
+        long count;
+
+        @Override
+        public void onLine(final Line line) {
+            sum += line.parseLong(line.indexOf(' ', 0) + 1, line.length());
+            count++;
+        }
+    }
+}
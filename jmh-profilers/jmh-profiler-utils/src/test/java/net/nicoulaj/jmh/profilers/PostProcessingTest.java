@@ -0,0 +1,82 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link PostProcessing}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class PostProcessingTest {
+
+    @Test
+    public void test001() throws Exception {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final DeferredStatistics statistics = PostProcessing.defer(() -> {
+            latch.await();
+            final HistogramStatistics histogram = new HistogramStatistics();
+            for (int i = 1; i <= 100; i++) histogram.addValue(i);
+            return histogram;
+        });
+
+        assertThat(statistics.isDone()).isFalse();
+        latch.countDown();
+        assertThat(statistics.getN()).isEqualTo(100);
+        assertThat(statistics.getMean()).isEqualTo(50.5);
+        assertThat(PostProcessing.await(10, TimeUnit.SECONDS)).isTrue();
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(statistics);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertThat(((HistogramStatistics) in.readObject()).getMax()).isEqualTo(100);
+        }
+    }
+
+    @Test
+    public void test002() throws Exception {
+
+        final Thread caller = Thread.currentThread();
+        final CpuSet allowed = PostProcessing.allowedCpus();
+        final Future<String> task = PostProcessing.submit(() -> Thread.currentThread() == caller ? null : Thread.currentThread().getName());
+
+        if (allowed.isEmpty()) {
+            // No CPU free from the forks: the task only runs once its result is read, in the reading thread
+            assertThat(task.isDone()).isFalse();
+            assertThat(task.get()).isNull();
+        } else {
+            assertThat(task.get()).startsWith("jmh-postprocessing-");
+            assertThat(allowed.intersection(AffinityUtils.getAffinity(AffinityUtils.currentThreadId())).isEmpty()).isTrue();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import net.nicoulaj.jmh.profilers.ProfilerCalibration.OverheadResult;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.testng.annotations.Test;
+
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link ProfilerCalibration}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class ProfilerCalibrationTest {
+
+    @Test
+    public void test001() throws Exception {
+
+        final Collection<RunResult> results = new ProfilerCalibration(new OptionsBuilder()
+                                                                              .include(TestBenchmark.class.getName())
+                                                                              .verbosity(VerboseMode.SILENT)
+                                                                              .build(),
+                                                                      GCProfiler.class)
+                .rounds(2)
+                .run();
+
+        assertThat(results).hasSize(1);
+        final RunResult result = results.iterator().next();
+        assertThat(result.getBenchmarkResults()).hasSize(2);
+        assertThat(result.getSecondaryResults()).containsKey("·gc.count");
+
+        final Result overhead = result.getSecondaryResults().get("@overhead");
+        assertThat(overhead).isInstanceOf(OverheadResult.class);
+        assertThat(overhead.getScoreUnit()).isEqualTo("%");
+        assertThat(((OverheadResult) overhead).getConfidenceInterval()[0]).isLessThanOrEqualTo(((OverheadResult) overhead).getOverhead());
+        assertThat(overhead.extendedInfo()).contains("GCProfiler overhead: ");
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import net.nicoulaj.jmh.profilers.ProfilerOptions.Option;
+import org.openjdk.jmh.profile.ProfilerException;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.booleanOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.integerOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.stringOption;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link ProfilerOptions}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class ProfilerOptionsTest {
+
+    private static final Option<String> DIR = stringOption("dir", ".");
+
+    private static final Option<Integer> DEPTH = integerOption("depth", null);
+
+    private static final Option<Boolean> ENABLED = booleanOption("enabled", false);
+
+    @Test
+    public void test001() throws Exception {
+
+        final ProfilerOptions options = new ProfilerOptions("test", "dir=out; depth=3;depth@Encoder=7;;enabled=true", asList(DIR, DEPTH, ENABLED));
+
+        assertThat(options.get(DIR)).isEqualTo("out");
+        assertThat(options.get(DEPTH)).isEqualTo(3);
+        assertThat(options.get(DEPTH, "org.acme.EncoderBenchmark.encode")).isEqualTo(7);
+        assertThat(options.get(DEPTH, "org.acme.DecoderBenchmark.decode")).isEqualTo(3);
+        assertThat(options.get(ENABLED)).isTrue();
+    }
+
+    @Test
+    public void test002() throws Exception {
+
+        final ProfilerOptions options = new ProfilerOptions("test", null, asList(DIR, DEPTH, ENABLED));
+
+        assertThat(options.get(DIR)).isEqualTo(".");
+        assertThat(options.get(DEPTH)).isNull();
+        assertThat(options.getSystemProperty(DEPTH)).isEqualTo("jmh.test.depth");
+
+        System.setProperty("jmh.test.depth", "5");
+        try {
+            assertThat(options.get(DEPTH)).isEqualTo(5);
+        } finally {
+            System.clearProperty("jmh.test.depth");
+        }
+    }
+
+    @Test(expectedExceptions = ProfilerException.class, expectedExceptionsMessageRegExp = "Unknown option 'foo'.*")
+    public void test003() throws Exception {
+        new ProfilerOptions("test", "foo=bar", asList(DIR, DEPTH, ENABLED));
+    }
+
+    @Test(expectedExceptions = ProfilerException.class, expectedExceptionsMessageRegExp = "Invalid value 'yes'.*")
+    public void test004() throws Exception {
+        new ProfilerOptions("test", "enabled=yes", asList(DIR, DEPTH, ENABLED));
+    }
+
+    @Test(expectedExceptions = ProfilerException.class, expectedExceptionsMessageRegExp = "(?s)Supported options for test profiler.*depth.*")
+    public void test005() throws Exception {
+        new ProfilerOptions("test", "help", asList(DIR, DEPTH, ENABLED));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * JMH utils - http://nicoulaj.github.com/jmh-utils
+ * Copyright © 2014-2018 JMH utils contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+package net.nicoulaj.jmh.profilers;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.profile.StackProfiler;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.testng.annotations.Test;
+
+import java.nio.file.Path;
+import java.util.Collection;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Paths.get;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.contentOf;
+
+/**
+ * Test for {@link ProfilingForks}.
+ *
+ * @author <a href="http://github.com/nicoulaj">nicoulaj</a>
+ */
+public class ProfilingForksTest {
+
+    @Test
+    public void test001() throws Exception {
+
+        final Collection<RunResult> results = new ProfilingForks(new OptionsBuilder()
+                                                                         .include(TestBenchmark.class.getName())
+                                                                         .verbosity(VerboseMode.SILENT)
+                                                                         .build())
+                .addProfiler(GCProfiler.class)
+                .forks(2)
+                .run();
+
+        assertThat(results).hasSize(1);
+        final RunResult result = results.iterator().next();
+        assertThat(result.getBenchmarkResults()).hasSize(1);
+        assertThat(result.getAggregatedResult().getIterationResults()).hasSize(3);
+        assertThat(result.getBenchmarkResults().iterator().next().getIterationResults().iterator().next().getSecondaryResults()).isEmpty();
+        assertThat(result.getSecondaryResults()).containsKey("·gc.count");
+    }
+
+    @Test
+    public void test002() throws Exception {
+
+        createDirectories(get("target"));
+        final Path output = createTempFile(get("target"), "jmh-output-", ".log");
+        final Path json = createTempFile(get("target"), "jmh-result-", ".json");
+
+        final Collection<RunResult> results = new ProfilingForks(new OptionsBuilder()
+                                                                         .include(TestBenchmark.class.getName())
+                                                                         .addProfiler(GCProfiler.class)
+                                                                         .output(output.toString())
+                                                                         .result(json.toString())
+                                                                         .resultFormat(ResultFormatType.JSON)
+                                                                         .build())
+                .addProfiler(StackProfiler.class)
+                .run();
+
+        assertThat(results).hasSize(1);
+        final BenchmarkResult result = results.iterator().next().getBenchmarkResults().iterator().next();
+        assertThat(result.getIterationResults().iterator().next().getSecondaryResults()).containsKey("·gc.count");
+        assertThat(result.getBenchmarkResults().keys()).containsOnly("·stack");
+        assertThat(result.getSecondaryResults()).containsKeys("·gc.count", "·stack");
+        assertThat(contentOf(output.toFile())).contains("gc.count").doesNotContain("StackProfiler");
+        assertThat(contentOf(json.toFile())).contains("gc.count").doesNotContain("stack");
+    }
+}
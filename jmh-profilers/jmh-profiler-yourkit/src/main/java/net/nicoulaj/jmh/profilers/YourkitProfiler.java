@@ -18,28 +18,27 @@
  */
 package net.nicoulaj.jmh.profilers;
 
+import net.nicoulaj.jmh.profilers.ProfilerOptions.Option;
 import org.openjdk.jmh.infra.BenchmarkParams;
 import org.openjdk.jmh.profile.ExternalProfiler;
-import org.openjdk.jmh.results.Aggregator;
+import org.openjdk.jmh.profile.ProfilerException;
 import org.openjdk.jmh.results.BenchmarkResult;
 import org.openjdk.jmh.results.Result;
 
 import java.io.File;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
-import static java.lang.Integer.getInteger;
-import static java.lang.System.getProperty;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.booleanOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.integerOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.longOption;
+import static net.nicoulaj.jmh.profilers.ProfilerOptions.stringOption;
 import static net.nicoulaj.jmh.profilers.StringUtils.join;
-import static net.nicoulaj.jmh.profilers.SystemUtils.getBoolean;
 import static net.nicoulaj.jmh.profilers.YourkitUtils.detectYourkitAgentLib;
 import static net.nicoulaj.jmh.profilers.YourkitUtils.detectYourkitHome;
-import static org.openjdk.jmh.results.AggregationPolicy.SUM;
-import static org.openjdk.jmh.results.ResultRole.SECONDARY;
 
 /**
  * <a href="http://www.yourkit.com">Yourkit</a> support for <a href="http://openjdk.java.net/projects/code-tools/jmh">JMH</a>.
@@ -51,19 +50,19 @@ public final class YourkitProfiler implements ExternalProfiler {
     /**
      * Yourkit installation home directory.
      */
-    private static final String YOURKIT_HOME = getProperty("jmh.yourkit.home", detectYourkitHome());
+    private static final Option<String> YOURKIT_HOME = stringOption("home", detectYourkitHome());
 
     /**
      * Yourkit agent library (path relative to {@link #YOURKIT_HOME}).
      */
-    private static final String YOURKIT_AGENT_LIB = getProperty("jmh.yourkit.agentlib", detectYourkitAgentLib());
+    private static final Option<String> YOURKIT_AGENT_LIB = stringOption("agentlib", detectYourkitAgentLib());
 
     /**
      * Specify the port that the profiler agent listens on for communication with the Profiler.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Integer PORT = getInteger("jmh.yourkit.port", null);
+    private static final Option<Integer> PORT = integerOption("port", null);
 
     /**
      * Same as {@link #PORT} but this binds agent socket to a particular IP only.
@@ -72,49 +71,49 @@ public final class YourkitProfiler implements ExternalProfiler {
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final String LISTEN = getProperty("jmh.yourkit.listen", null);
+    private static final Option<String> LISTEN = stringOption("listen", null);
 
     /**
      * Allow only local connections to the profiled application.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Boolean ONLY_LOCAL = getBoolean("jmh.yourkit.only_local", null);
+    private static final Option<Boolean> ONLY_LOCAL = booleanOption("only_local", null);
 
     /**
      * Postpone start of telemetry collection (milliseconds).
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Integer DELAY = getInteger("jmh.yourkit.delay", null);
+    private static final Option<Integer> DELAY = integerOption("delay", null);
 
     /**
      * Telemetry retention (hours).
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Integer TELEMETRY_LIMIT = getInteger("jmh.yourkit.telemetry_limit", null);
+    private static final Option<Integer> TELEMETRY_LIMIT = integerOption("telemetry_limit", null);
 
     /**
      * Telemetry period (milliseconds).
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Integer TELEMETRY_PERIOD = getInteger("jmh.yourkit.telemetry_period", null);
+    private static final Option<Integer> TELEMETRY_PERIOD = integerOption("telemetry_period", null);
 
     /**
      * Probes: limit the number of rows to be stored by the profiler agent per table.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Integer PROVE_TABLE_LENGTH_LIMIT = getInteger("jmh.yourkit.probe_table_length_limit", null);
+    private static final Option<Integer> PROVE_TABLE_LENGTH_LIMIT = integerOption("probe_table_length_limit", null);
 
     /**
      * Specify the number of recently finished threads for which CPU sampling, tracing and monitor profiling results are kept.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Integer DEAD_THREAD_LIMIT = getInteger("jmh.yourkit.dead_thread_limit", null);
+    private static final Option<Integer> DEAD_THREAD_LIMIT = integerOption("dead_thread_limit", null);
 
     /**
      * Capture a snapshot on profiled application exit.
@@ -123,21 +122,22 @@ public final class YourkitProfiler implements ExternalProfiler {
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final String ON_EXIT = getProperty("jmh.yourkit.on_exit", "snapshot");
+    private static final Option<String> ON_EXIT = stringOption("on_exit", "snapshot");
 
     /**
      * Specify custom snapshot directory.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final String DIR = getProperty("jmh.yourkit.dir", ".");
+    private static final Option<String> DIR = stringOption("dir", ".");
 
     /**
      * Specify custom logs directory.
+     * By default, {@link #DIR} is used.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final String LOG_DIR = getProperty("jmh.yourkit.logdir", DIR);
+    private static final Option<String> LOG_DIR = stringOption("logdir", null);
 
     /**
      * Specify a custom location of the CPU sampling settings configuration file.
@@ -145,7 +145,7 @@ public final class YourkitProfiler implements ExternalProfiler {
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      * @see <a href="http://www.yourkit.com/docs/java/help/sampling_settings.jsp">Sampling settings documentation</a>
      */
-    private static final String SAMPLING_SETTINGS_PATH = getProperty("jmh.yourkit.sampling_settings_path", null);
+    private static final Option<String> SAMPLING_SETTINGS_PATH = stringOption("sampling_settings_path", null);
 
     /**
      * Specify a custom location of the CPU tracing settings configuration file.
@@ -153,112 +153,112 @@ public final class YourkitProfiler implements ExternalProfiler {
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      * @see <a href="http://www.yourkit.com/docs/java/help/tracing_settings.jsp">Tracing settings documentation</a>
      */
-    private static final String TRACING_SETTINGS_PATH = getProperty("jmh.yourkit.tracing_settings_path", null);
+    private static final Option<String> TRACING_SETTINGS_PATH = stringOption("tracing_settings_path", null);
 
     /**
      * Application will launch with CPU sampling turned on.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Boolean SAMPLING = getBoolean("jmh.yourkit.sampling", null);
+    private static final Option<Boolean> SAMPLING = booleanOption("sampling", null);
 
     /**
      * Application will launch with CPU tracing turned on.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Boolean TRACING = getBoolean("jmh.yourkit.tracing", null);
+    private static final Option<Boolean> TRACING = booleanOption("tracing", null);
 
     /**
      * Application will launch with object allocation recording started and record each N-th allocation.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Integer ALLOC_EACH = getInteger("jmh.yourkit.alloceach", null);
+    private static final Option<Integer> ALLOC_EACH = integerOption("alloceach", null);
 
     /**
      * Application will launch with object allocation recording started and record allocation of objects with size bigger or equal B bytes.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Long ALLOC_SIZE_LIMIT = Long.getLong("jmh.yourkit.allocsizelimit", null);
+    private static final Option<Long> ALLOC_SIZE_LIMIT = longOption("allocsizelimit", null);
 
     /**
      * Do not perform per-class garbage object allocation recording.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Boolean NO_PER_CLASS_GC = getBoolean("jmh.yourkit.noperclassgc", null);
+    private static final Option<Boolean> NO_PER_CLASS_GC = booleanOption("noperclassgc", null);
 
     /**
      * Use sampled object allocation recording.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Boolean ALLOC_SAMPLED = getBoolean("jmh.yourkit.allocsampled", null);
+    private static final Option<Boolean> ALLOC_SAMPLED = booleanOption("allocsampled", null);
 
     /**
      * Launch Java application with started monitor profiling.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Boolean MONITORS = getBoolean("jmh.yourkit.monitors", null);
+    private static final Option<Boolean> MONITORS = booleanOption("monitors", null);
 
     /**
      * Automatically capture a memory snapshot when used heap memory reaches the threshold.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Integer USED_MEM = getInteger("jmh.yourkit.usedmem", null);
+    private static final Option<Integer> USED_MEM = integerOption("usedmem", null);
 
     /**
      * Automatically capture a HPROF snapshot when used heap memory reaches the threshold.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Integer USED_MEM_HPROF = getInteger("jmh.yourkit.usedmemhprof", null);
+    private static final Option<Integer> USED_MEM_HPROF = integerOption("usedmemhprof", null);
 
     /**
      * Periodically capture performance snapshots.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Integer PERIODIC_PERF = getInteger("jmh.yourkit.periodicperf", null);
+    private static final Option<Integer> PERIODIC_PERF = integerOption("periodicperf", null);
 
     /**
      * Periodically capture memory snapshots in the profiler's format (*.snapshot).
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Integer PERIODIC_MEM = getInteger("jmh.yourkit.periodicmem", null);
+    private static final Option<Integer> PERIODIC_MEM = integerOption("periodicmem", null);
 
     /**
      * Periodically capture HPROF snapshots.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Integer PERIODIC_HPROF = getInteger("jmh.yourkit.periodichprof", null);
+    private static final Option<Integer> PERIODIC_HPROF = integerOption("periodichprof", null);
 
     /**
      * Do not collect thread stack and status information shown in Thread view as well as in other telemetry views.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Boolean DISABLE_STACK_TELEMETRY = getBoolean("jmh.yourkit.disablestacktelemetry", null);
+    private static final Option<Boolean> DISABLE_STACK_TELEMETRY = booleanOption("disablestacktelemetry", null);
 
     /**
      * Do not collect exception telemetry.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Boolean DISABLE_EXCEPTION_TELEMETRY = getBoolean("jmh.yourkit.disableexceptiontelemetry", null);
+    private static final Option<Boolean> DISABLE_EXCEPTION_TELEMETRY = booleanOption("disableexceptiontelemetry", null);
 
     /**
      * Disable on OutOfMemoryError snapshots.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Boolean DISABLE_OOM_DUMPER = getBoolean("jmh.yourkit.disableoomedumper", null);
+    private static final Option<Boolean> DISABLE_OOM_DUMPER = booleanOption("disableoomedumper", null);
 
     /**
      * Specify which probes should be registered on startup.
@@ -266,7 +266,7 @@ public final class YourkitProfiler implements ExternalProfiler {
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      * @see <a href="http://www.yourkit.com/docs/java/help/register_probes.jsp">Probe registration documentation</a>
      */
-    private static final String PROBE_ON = getProperty("jmh.yourkit.probe_on", null);
+    private static final Option<String> PROBE_ON = stringOption("probe_on", null);
 
     /**
      * Specify which probes should be registered on startup.
@@ -274,7 +274,7 @@ public final class YourkitProfiler implements ExternalProfiler {
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      * @see <a href="http://www.yourkit.com/docs/java/help/register_probes.jsp">Probe registration documentation</a>
      */
-    private static final String PROBE_OFF = getProperty("jmh.yourkit.probe_off", null);
+    private static final Option<String> PROBE_OFF = stringOption("probe_off", null);
 
     /**
      * Specify which probes should be registered on startup.
@@ -282,7 +282,7 @@ public final class YourkitProfiler implements ExternalProfiler {
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      * @see <a href="http://www.yourkit.com/docs/java/help/register_probes.jsp">Probe registration documentation</a>
      */
-    private static final String PROBE_AUTO = getProperty("jmh.yourkit.probe_auto", null);
+    private static final Option<String> PROBE_AUTO = stringOption("probe_auto", null);
 
     /**
      * Specify which probes should be registered on startup.
@@ -290,7 +290,7 @@ public final class YourkitProfiler implements ExternalProfiler {
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      * @see <a href="http://www.yourkit.com/docs/java/help/register_probes.jsp">Probe registration documentation</a>
      */
-    private static final String PROBE_DISABLE = getProperty("jmh.yourkit.probe_disable", null);
+    private static final Option<String> PROBE_DISABLE = stringOption("probe_disable", null);
 
     /**
      * Specify where to find probe class(es) which are registered by class name.
@@ -298,7 +298,7 @@ public final class YourkitProfiler implements ExternalProfiler {
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      * @see <a href="http://www.yourkit.com/docs/java/help/register_probes.jsp">Probe registration documentation</a>
      */
-    private static final String PROBE_CLASSPATH = getProperty("jmh.yourkit.probeclasspath", null);
+    private static final Option<String> PROBE_CLASSPATH = stringOption("probeclasspath", null);
 
     /**
      * Specify where to find probe class(es) which are registered by class name.
@@ -306,7 +306,7 @@ public final class YourkitProfiler implements ExternalProfiler {
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      * @see <a href="http://www.yourkit.com/docs/java/help/register_probes.jsp">Probe registration documentation</a>
      */
-    private static final String PROBE_BOOT_CLASSPATH = getProperty("jmh.yourkit.probebootclasspath", null);
+    private static final Option<String> PROBE_BOOT_CLASSPATH = stringOption("probebootclasspath", null);
 
     /**
      * Specify the file with description of the triggers to be applied from startup.
@@ -314,28 +314,84 @@ public final class YourkitProfiler implements ExternalProfiler {
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      * @see <a href="http://www.yourkit.com/docs/java/help/triggers.jsp">Triggers documentation</a>
      */
-    private static final String TRIGGERS = getProperty("jmh.yourkit.triggers", null);
+    private static final Option<String> TRIGGERS = stringOption("triggers", null);
 
     /**
      * Do not instrument bytecode with instructions needed for object allocation recording.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Boolean DISABLE_ALLOC = getBoolean("jmh.yourkit.disablealloc", null);
+    private static final Option<Boolean> DISABLE_ALLOC = booleanOption("disablealloc", null);
 
     /**
      * Do not instrument bytecode with instructions needed for CPU tracing. Only CPU sampling will be available.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Boolean DISABLE_TRACING = getBoolean("jmh.yourkit.disabletracing", null);
+    private static final Option<Boolean> DISABLE_TRACING = booleanOption("disabletracing", null);
 
     /**
      * Disable several capabilities at once: disablealloc, disabletracing, disableexceptiontelemetry, disablestacktelemetry, probe_disable=*.
      *
      * @see <a href="http://www.yourkit.com/docs/java/help/startup_options.jsp">Yourkit startup options documentation</a>
      */
-    private static final Boolean DISABLE_ALL = getBoolean("jmh.yourkit.disableall", null);
+    private static final Option<Boolean> DISABLE_ALL = booleanOption("disableall", null);
+
+    /**
+     * Options passed to the Yourkit agent, in order.
+     */
+    private static final List<Option<?>> AGENT_OPTIONS = asList(
+            PORT,
+            LISTEN,
+            ONLY_LOCAL,
+            DELAY,
+            TELEMETRY_LIMIT,
+            TELEMETRY_PERIOD,
+            PROVE_TABLE_LENGTH_LIMIT,
+            DEAD_THREAD_LIMIT,
+            ON_EXIT,
+            DIR,
+            LOG_DIR,
+            SAMPLING_SETTINGS_PATH,
+            TRACING_SETTINGS_PATH,
+            SAMPLING,
+            TRACING,
+            ALLOC_EACH,
+            ALLOC_SIZE_LIMIT,
+            NO_PER_CLASS_GC,
+            ALLOC_SAMPLED,
+            MONITORS,
+            USED_MEM,
+            USED_MEM_HPROF,
+            PERIODIC_PERF,
+            PERIODIC_MEM,
+            PERIODIC_HPROF,
+            DISABLE_STACK_TELEMETRY,
+            DISABLE_EXCEPTION_TELEMETRY,
+            DISABLE_OOM_DUMPER,
+            PROBE_ON,
+            PROBE_OFF,
+            PROBE_AUTO,
+            PROBE_DISABLE,
+            PROBE_CLASSPATH,
+            PROBE_BOOT_CLASSPATH,
+            TRIGGERS,
+            DISABLE_ALLOC,
+            DISABLE_TRACING,
+            DISABLE_ALL);
+
+    private final ProfilerOptions options;
+
+    public YourkitProfiler() throws ProfilerException {
+        this(null);
+    }
+
+    public YourkitProfiler(final String initLine) throws ProfilerException {
+        final List<Option<?>> supported = new ArrayList<>(AGENT_OPTIONS);
+        supported.add(YOURKIT_HOME);
+        supported.add(YOURKIT_AGENT_LIB);
+        options = new ProfilerOptions("yourkit", initLine, supported);
+    }
 
     @Override
     public String getDescription() {
@@ -361,46 +417,13 @@ public final class YourkitProfiler implements ExternalProfiler {
     public Collection<String> addJVMOptions(final BenchmarkParams params) {
 
         final List<String> opts = new ArrayList<>();
-        if (PORT != null) opts.add("port=" + String.valueOf(PORT));
-        if (LISTEN != null) opts.add("listen=" + String.valueOf(LISTEN));
-        if (ONLY_LOCAL != null) opts.add("only_local=" + String.valueOf(ONLY_LOCAL));
-        if (DELAY != null) opts.add("delay=" + String.valueOf(DELAY));
-        if (TELEMETRY_LIMIT != null) opts.add("telemetry_limit=" + String.valueOf(TELEMETRY_LIMIT));
-        if (TELEMETRY_PERIOD != null) opts.add("telemetry_period=" + String.valueOf(TELEMETRY_PERIOD));
-        if (PROVE_TABLE_LENGTH_LIMIT != null) opts.add("probe_table_length_limit=" + String.valueOf(PROVE_TABLE_LENGTH_LIMIT));
-        if (DEAD_THREAD_LIMIT != null) opts.add("dead_thread_limit=" + String.valueOf(DEAD_THREAD_LIMIT));
-        if (ON_EXIT != null) opts.add("onexit=" + String.valueOf(ON_EXIT));
-        if (DIR != null) opts.add("dir=" + String.valueOf(DIR));
-        if (LOG_DIR != null) opts.add("logdir=" + String.valueOf(LOG_DIR));
-        if (SAMPLING_SETTINGS_PATH != null) opts.add("sampling_settings_path=" + String.valueOf(SAMPLING_SETTINGS_PATH));
-        if (TRACING_SETTINGS_PATH != null) opts.add("tracing_settings_path=" + String.valueOf(TRACING_SETTINGS_PATH));
-        if (SAMPLING != null) opts.add("sampling=" + String.valueOf(SAMPLING));
-        if (TRACING != null) opts.add("tracing=" + String.valueOf(TRACING));
-        if (ALLOC_EACH != null) opts.add("alloceach=" + String.valueOf(ALLOC_EACH));
-        if (ALLOC_SIZE_LIMIT != null) opts.add("allocsizelimit=" + String.valueOf(ALLOC_SIZE_LIMIT));
-        if (NO_PER_CLASS_GC != null) opts.add("noperclassgc=" + String.valueOf(NO_PER_CLASS_GC));
-        if (ALLOC_SAMPLED != null) opts.add("allocsampled=" + String.valueOf(ALLOC_SAMPLED));
-        if (MONITORS != null) opts.add("monitors=" + String.valueOf(MONITORS));
-        if (USED_MEM != null) opts.add("usedmem=" + String.valueOf(USED_MEM));
-        if (USED_MEM_HPROF != null) opts.add("usedmemhprof=" + String.valueOf(USED_MEM_HPROF));
-        if (PERIODIC_PERF != null) opts.add("periodicperf=" + String.valueOf(PERIODIC_PERF));
-        if (PERIODIC_MEM != null) opts.add("periodicmem=" + String.valueOf(PERIODIC_MEM));
-        if (PERIODIC_HPROF != null) opts.add("periodichprof=" + String.valueOf(PERIODIC_HPROF));
-        if (DISABLE_STACK_TELEMETRY != null) opts.add("disablestacktelemetry=" + String.valueOf(DISABLE_STACK_TELEMETRY));
-        if (DISABLE_EXCEPTION_TELEMETRY != null) opts.add("disableexceptiontelemetry=" + String.valueOf(DISABLE_EXCEPTION_TELEMETRY));
-        if (DISABLE_OOM_DUMPER != null) opts.add("disableoomedumper=" + String.valueOf(DISABLE_OOM_DUMPER));
-        if (PROBE_ON != null) opts.add("probe_on=" + String.valueOf(PROBE_ON));
-        if (PROBE_OFF != null) opts.add("probe_off=" + String.valueOf(PROBE_OFF));
-        if (PROBE_AUTO != null) opts.add("probe_auto=" + String.valueOf(PROBE_AUTO));
-        if (PROBE_DISABLE != null) opts.add("probe_disable=" + String.valueOf(PROBE_DISABLE));
-        if (PROBE_CLASSPATH != null) opts.add("probeclasspath=" + String.valueOf(PROBE_CLASSPATH));
-        if (PROBE_BOOT_CLASSPATH != null) opts.add("probebootclasspath=" + String.valueOf(PROBE_BOOT_CLASSPATH));
-        if (TRIGGERS != null) opts.add("triggers=" + String.valueOf(TRIGGERS));
-        if (DISABLE_ALLOC != null) opts.add("disablealloc=" + String.valueOf(DISABLE_ALLOC));
-        if (DISABLE_TRACING != null) opts.add("disabletracing=" + String.valueOf(DISABLE_TRACING));
-        if (DISABLE_ALL != null) opts.add("disableall=" + String.valueOf(DISABLE_ALL));
-
-        return asList("-agentpath:" + YOURKIT_HOME + File.separator + YOURKIT_AGENT_LIB + "=" + join(",", opts));
+        for (Option<?> option : AGENT_OPTIONS) {
+            Object value = options.get(option, params);
+            if (option == LOG_DIR && value == null) value = options.get(DIR, params);
+            if (value != null) opts.add((option == ON_EXIT ? "onexit" : option.getName()) + "=" + value);
+        }
+
+        return asList("-agentpath:" + options.get(YOURKIT_HOME, params) + File.separator + options.get(YOURKIT_AGENT_LIB, params) + "=" + join(",", opts));
     }
 
     @Override
@@ -409,34 +432,7 @@ public final class YourkitProfiler implements ExternalProfiler {
     }
 
     @Override
-    public Collection<? extends Result> afterTrial(final BenchmarkResult benchmarkParams, long l, final File stdOut, final File stdErr) {
-        return asList(new YourkitResult());
-    }
-
-    private static final class YourkitResult extends Result<YourkitResult> implements Aggregator<YourkitResult> {
-
-        YourkitResult() {
-            super(SECONDARY, "@yourkit", new EmptyStatistics(), "none", SUM);
-        }
-
-        @Override
-        protected Aggregator<YourkitResult> getThreadAggregator() {
-            return this;
-        }
-
-        @Override
-        protected Aggregator<YourkitResult> getIterationAggregator() {
-            return this;
-        }
-
-        @Override
-        public YourkitResult aggregate(Collection<YourkitResult> collection) {
-            return new YourkitResult();
-        }
-
-        @Override
-        protected String simpleExtendedInfo() {
-            return "Yourkit snapshot at " + Paths.get(DIR).toAbsolutePath();
-        }
+    public Collection<? extends Result> afterTrial(final BenchmarkResult benchmarkResult, long l, final File stdOut, final File stdErr) {
+        return asList(new ArtifactResult("@yourkit", "Yourkit snapshot", options.get(DIR, benchmarkResult.getParams())));
     }
 }